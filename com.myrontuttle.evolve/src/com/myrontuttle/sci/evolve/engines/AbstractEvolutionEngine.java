@@ -19,30 +19,57 @@ package com.myrontuttle.sci.evolve.engines;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import java.util.Random;
 
+import com.myrontuttle.sci.evolve.api.BatchFitnessEvaluator;
 import com.myrontuttle.sci.evolve.api.CandidateFactory;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
 import com.myrontuttle.sci.evolve.api.EvolutionEngine;
 import com.myrontuttle.sci.evolve.api.EvolutionObserver;
+import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
 import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
 import com.myrontuttle.sci.evolve.api.ExpressedFitnessEvaluator;
 import com.myrontuttle.sci.evolve.api.ExpressionStrategy;
 import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
 import com.myrontuttle.sci.evolve.api.PopulationStats;
 import com.myrontuttle.sci.evolve.api.TerminationCondition;
+import com.myrontuttle.sci.evolve.eval.BatchFitnessEvaluationTask;
+import com.myrontuttle.sci.evolve.eval.BatchFitnessEvaluatorAdapter;
+import com.myrontuttle.sci.evolve.eval.CachingFitnessEvaluator;
+import com.myrontuttle.sci.evolve.eval.ContentCachingFitnessEvaluator;
 import com.myrontuttle.sci.evolve.eval.ExpressedFitnessEvalutationTask;
 import com.myrontuttle.sci.evolve.eval.FitnessEvaluationWorker;
 import com.myrontuttle.sci.evolve.eval.FitnessEvalutationTask;
+import com.myrontuttle.sci.evolve.express.CachingExpressionStrategy;
+import com.myrontuttle.sci.evolve.express.ExpressionEvaluationTask;
 import com.myrontuttle.sci.evolve.express.ExpressionTask;
 import com.myrontuttle.sci.evolve.express.ExpressionWorker;
+import com.myrontuttle.sci.evolve.termination.ElapsedTime;
+import com.myrontuttle.sci.evolve.termination.Stagnation;
+import com.myrontuttle.sci.evolve.termination.UserAbort;
+import com.myrontuttle.sci.evolve.util.ArrayPopulation;
+import com.myrontuttle.sci.evolve.util.EvolutionTracer;
 import com.myrontuttle.sci.evolve.util.EvolutionUtils;
+import com.myrontuttle.sci.evolve.util.GenomePool;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
+import com.myrontuttle.sci.evolve.util.Tracing;
 
 
 /**
@@ -52,9 +79,10 @@ import com.myrontuttle.sci.evolve.util.EvolutionUtils;
  * @see CandidateFactory
  * @see FitnessEvaluator
  */
-public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
+public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>, AutoCloseable
 {
-    // A single multi-threaded worker is shared among multiple evolution engine instances.
+    // Unless an engine is given its own executor or thread pool, a single multi-threaded
+    // worker is shared among multiple evolution engine instances.
     private static FitnessEvaluationWorker concurrentWorker = null;
     private static ExpressionWorker concurrentExpressionWorker = null;
 
@@ -67,11 +95,53 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
     private final ExpressedFitnessEvaluator<T> expressedFitnessEvaluator;
 
     private volatile boolean singleThreaded = false;
+    private volatile boolean fitnessCarryOver = false;
+    private volatile boolean partialRanking = false;
+    private volatile boolean arrayPopulation = false;
+    private volatile boolean fusedExpression = false;
+    // Zero means batches are sized automatically, and only for batch evaluators.
+    private volatile int evaluationBatchSize = 0;
+    // Zero means evaluations may take as long as they need.
+    private volatile long evaluationTimeoutNanos = 0;
+    private volatile double penaltyFitness = 0;
+    private volatile boolean speculativeEvaluation = false;
+    private volatile boolean cancelInFlight = false;
+    private volatile GenomePool<? super T> genomePool = null;
 
-    protected List<TerminationCondition> satisfiedTerminationConditions;
-    private TerminationCondition[] terminationConditions;
-    private int currentGenerationIndex;
-    private long startTime;
+    // How often, in milliseconds, in-flight tasks check whether they should be cancelled.
+    private static final long STOP_CHECK_INTERVAL = 20;
+
+    // Engine-specific worker configuration, guarded by this engine's lock.  Workers are
+    // created when first needed and released by close().
+    private ExecutorService executorService = null;
+    private int threadCount = 0;
+    private int queueCapacity = 0;
+    private int virtualThreadLimit = 0;
+    private FitnessEvaluationWorker engineWorker = null;
+    private ExpressionWorker engineExpressionWorker = null;
+    // The number of evolution runs in progress, guarded by this engine's lock.
+    private int activeRuns = 0;
+
+    // The number of finished runs whose outcome is kept for getSatisfiedTerminationConditions.
+    private static final int FINISHED_SESSION_LIMIT = 64;
+
+    // The state of each population that is being evolved by this engine, the outcome of
+    // the most recently finished runs, and the run in progress on the current thread.
+    private final ConcurrentMap<Long, EvolutionSession<T>> sessions
+        = new ConcurrentHashMap<Long, EvolutionSession<T>>();
+    private final Map<Long, EvolutionSession<T>> finishedSessions
+        = Collections.synchronizedMap(new LinkedHashMap<Long, EvolutionSession<T>>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, EvolutionSession<T>> eldest) {
+                return size() > FINISHED_SESSION_LIMIT;
+            }
+        });
+    private final ThreadLocal<EvolutionSession<T>> currentSession = new ThreadLocal<EvolutionSession<T>>();
+    private volatile EvolutionSession<T> lastCompletedSession;
+
+    private final EngineMetrics metrics = new EngineMetrics(this);
 
 
     /**
@@ -118,16 +188,134 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
         this.rng = rng;
     }
     
+    /**
+     * @return The session of the evolution in progress on the calling thread.
+     * @throws IllegalStateException If the calling thread is not evolving a population
+     * with this engine.
+     */
+    protected EvolutionSession<T> getSession() {
+        EvolutionSession<T> session = currentSession.get();
+        if (session == null) {
+            throw new IllegalStateException("No evolution is in progress on this thread.");
+        }
+        return session;
+    }
+
+    /**
+     * Gets the state of the most recent evolution of a population.  Once a run has
+     * finished, its session is only kept until {@value #FINISHED_SESSION_LIMIT} more
+     * runs have finished.
+     * @param populationId The ID of the population.
+     * @return The session, or null if this engine has not evolved the population
+     * recently or its session has been ended.
+     */
+    public EvolutionSession<T> getSession(long populationId) {
+        EvolutionSession<T> session = sessions.get(populationId);
+        return session != null ? session : finishedSessions.get(populationId);
+    }
+
+    /**
+     * Discards the state kept for a population, such as the satisfied termination
+     * conditions and the population carried between {@link #evolveToExpression} calls.
+     * @param populationId The ID of the population.
+     */
+    public void endSession(long populationId) {
+        EvolutionSession<T> session = sessions.remove(populationId);
+        if (session != null) {
+            endRun(session);
+        }
+        finishedSessions.remove(populationId);
+    }
+
+    /**
+     * Makes a session current on the calling thread.
+     * @return The session that was previously current, to be restored afterwards.
+     */
+    private EvolutionSession<T> beginSession(EvolutionSession<T> session) {
+        synchronized (this) {
+            ++activeRuns;
+        }
+        EvolutionSession<T> previous = currentSession.get();
+        sessions.put(session.getPopulationId(), session);
+        currentSession.set(session);
+        return previous;
+    }
+
+    /**
+     * Restores the session that was current before a run.
+     * @param runOver True if the population will not be evolved further, in which case
+     * its session is no longer kept with those in progress.
+     */
+    private void finishSession(EvolutionSession<T> session, EvolutionSession<T> previous, boolean runOver) {
+        synchronized (this) {
+            --activeRuns;
+        }
+        session.disarmStop();
+        if (previous == null) {
+            currentSession.remove();
+        } else {
+            currentSession.set(previous);
+        }
+        if (session.getSatisfiedTerminationConditions() != null) {
+            lastCompletedSession = session;
+        }
+        if (runOver) {
+            sessions.remove(session.getPopulationId(), session);
+            if (session.getSatisfiedTerminationConditions() != null) {
+                finishedSessions.put(session.getPopulationId(), session);
+            }
+            endRun(session);
+        }
+    }
+
+    /**
+     * Discards the state that termination conditions keep for a finished run.
+     */
+    private static void endRun(EvolutionSession<?> session) {
+        for (TerminationCondition condition : session.getTerminationConditions()) {
+            if (condition instanceof Stagnation) {
+                ((Stagnation) condition).endRun(session.getPopulationId());
+            }
+        }
+    }
+
+    /**
+     * @return The timings recorded by this engine.
+     */
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sub-classes that evolve candidates with an evolutionary operator should return it,
+     * so that the stage timings of an
+     * {@link com.myrontuttle.sci.evolve.operators.EvolutionPipeline} are included in
+     * the engine's metrics.
+     * @return The evolutionary operator that creates offspring, or null if there is none.
+     */
+    protected EvolutionaryOperator<T> getEvolutionScheme() {
+        return null;
+    }
+
     protected int getCurrentGenerationIndex() {
-    	return currentGenerationIndex;
+    	return getSession().getGenerationIndex();
     }
     
     protected long getStartTime() {
-    	return startTime;
+    	return getSession().getStartTime();
     }
     
     protected TerminationCondition[] getTerminationConditions() {
-    	return terminationConditions;
+    	return getSession().getTerminationConditions();
+    }
+
+    /**
+     * Records the termination conditions that ended evolution of the population in
+     * progress on the calling thread.
+     * @param satisfiedConditions The satisfied conditions.
+     */
+    protected void setSatisfiedTerminationConditions(List<TerminationCondition> satisfiedConditions) {
+        getSession().setSatisfiedTerminationConditions(satisfiedConditions);
     }
     
     /**
@@ -191,58 +379,96 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
             throw new IllegalArgumentException("At least one TerminationCondition must be specified.");
         }
 
-        satisfiedTerminationConditions = null;
-        currentGenerationIndex = 0;
-        startTime = System.currentTimeMillis();
+        EvolutionSession<T> session = new EvolutionSession<T>(populationId, conditions);
+        EvolutionSession<T> previousSession = beginSession(session);
+        try {
+            return evolvePopulation(session, populationSize, eliteCount, seedCandidates);
+        } finally {
+            // Fitness carried over from expression steps is of no use once the run is over.
+            session.setLastExpressedEvaluation(null);
+            finishSession(session, previousSession, true);
+        }
+    }
 
+    private List<EvaluatedCandidate<T>> evolvePopulation(EvolutionSession<T> session,
+                                                         int populationSize,
+                                                         int eliteCount,
+                                                         Collection<T> seedCandidates) {
+        long populationId = session.getPopulationId();
+        TerminationCondition[] conditions = session.getTerminationConditions();
+        EvolutionTracer tracer = Tracing.current();
+        if (tracer != null) {
+            tracer.generationStarted(populationId, 0, populationSize);
+        }
+        long start = System.nanoTime();
         List<T> population = candidateFactory.generateInitialPopulation(populationSize,
                                                                         seedCandidates,
                                                                         rng);
+        metrics.record(EngineMetrics.Phase.INITIAL_POPULATION, start);
         
         List<EvaluatedCandidate<T>> evaluatedPopulation;
         if (includeExpression()) {
 
-            // Express each candidate in the population
-            List<ExpressedCandidate<T>> expressedCandidates = expressPopulation(population, populationId);
-            
-            notifyPopulationExpressed(expressedCandidates, populationId);
-            
-            //Calculate the fitness scores for each member of the expressed population.
-            evaluatedPopulation = evaluateExpressedPopulation(expressedCandidates);
+            // Express each candidate in the population and calculate the fitness scores
+            // for each member of the expressed population.
+            evaluatedPopulation = expressAndEvaluatePopulation(population, populationId, null);
         } else {
 
             //Calculate the fitness scores for each member of the population.
         	evaluatedPopulation = evaluatePopulation(population);
         }
-        EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, fitnessEvaluator.isNatural());
-        PopulationStats<T> stats = EvolutionUtils.getPopulationStats(populationId,
-        										  evaluatedPopulation,
-                                                  fitnessEvaluator.isNatural(),
-                                                  eliteCount,
-                                                  currentGenerationIndex,
-                                                  startTime);
-        
-        // Notify observers of the state of the population.
-        notifyPopulationChange(stats);
+        PopulationStats<T> stats = rankAndReport(populationId, evaluatedPopulation, eliteCount);
+        if (tracer != null) {
+            tracer.generationFinished(populationId, 0, evaluatedPopulation.size(), System.nanoTime() - start);
+        }
 
         List<TerminationCondition> satisfiedConditions = EvolutionUtils.shouldContinue(stats, conditions);
+        if (cancelInFlight) {
+            session.armStop();
+        }
         while (satisfiedConditions == null)
         {
-            ++currentGenerationIndex;
-            evaluatedPopulation = nextEvolutionStep(populationId, evaluatedPopulation, 
-            										eliteCount, rng);
-            EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, fitnessEvaluator.isNatural());
-            stats = EvolutionUtils.getPopulationStats(populationId,
-            										evaluatedPopulation,
-                                                    fitnessEvaluator.isNatural(),
-                                                    eliteCount,
-                                                    currentGenerationIndex,
-                                                    startTime);
-            // Notify observers of the state of the population.
-            notifyPopulationChange(stats);
+            boolean reclaiming = genomePool != null;
+            if (reclaiming) {
+                markDiscardable(evaluatedPopulation);
+            }
+            long generationStart = System.nanoTime();
+            int generationIndex = session.nextGeneration();
+            tracer = Tracing.current();
+            if (tracer != null) {
+                tracer.generationStarted(populationId, generationIndex, evaluatedPopulation.size());
+            }
+            session.setGenerationCutShort(false);
+            List<EvaluatedCandidate<T>> nextPopulation = nextEvolutionStep(populationId, evaluatedPopulation, 
+                                                                           eliteCount, rng);
+            evaluatedPopulation = session.isGenerationCutShort()
+                                  ? salvagePopulation(evaluatedPopulation, nextPopulation)
+                                  : nextPopulation;
+            if (reclaiming) {
+                reclaimDiscarded(session, evaluatedPopulation);
+            }
+            stats = rankAndReport(populationId, evaluatedPopulation, eliteCount);
+            long generationEnd = metrics.record(EngineMetrics.Phase.GENERATION, generationStart);
+            if (tracer != null) {
+                tracer.generationFinished(populationId,
+                                          generationIndex,
+                                          evaluatedPopulation.size(),
+                                          generationEnd - generationStart);
+            }
             satisfiedConditions = EvolutionUtils.shouldContinue(stats, conditions);
+            if (session.isGenerationCutShort() && satisfiedConditions == null) {
+                // Stopped by a deadline that no condition reports as satisfied yet.
+                satisfiedConditions = Collections.emptyList();
+            }
+        }
+        session.setSatisfiedTerminationConditions(satisfiedConditions);
+        if (evaluatedPopulation instanceof IndexedPopulation) {
+            // Already sorted, but the caller expects a list that can be modified.
+            evaluatedPopulation = new ArrayList<EvaluatedCandidate<T>>(evaluatedPopulation);
+        } else if (partialRanking) {
+            // The caller expects the final population to be completely sorted.
+            EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, isNaturalFitness());
         }
-        this.satisfiedTerminationConditions = satisfiedConditions;
         return evaluatedPopulation;
     }
     
@@ -264,19 +490,31 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
 			throw new IllegalArgumentException("At least one TerminationCondition must be specified.");
 		}
 		
-		if (candidates == null || candidates.isEmpty()) {
-			candidates = new ArrayList<ExpressedCandidate<T>>();
-
-			satisfiedTerminationConditions = null;
-			startTime = System.currentTimeMillis();
+		EvolutionSession<T> session = sessions.get(populationId);
+		if (candidates == null || candidates.isEmpty() || session == null) {
+			if (candidates == null) {
+				candidates = new ArrayList<ExpressedCandidate<T>>();
+			}
+			// A new run of this population, or one this engine has no record of.
+			session = new EvolutionSession<T>(populationId, conditions);
 		}
-		
-		if (currentGeneration <= 0) {
-			currentGenerationIndex = 0;
-		} else {
-			currentGenerationIndex = currentGeneration;
+		session.setTerminationConditions(conditions);
+		session.setSatisfiedTerminationConditions(null);
+		session.setGenerationIndex(Math.max(currentGeneration, 0));
+
+		EvolutionSession<T> previousSession = beginSession(session);
+		try {
+			return evolveExpressionStep(session, candidates, populationSize, eliteCount);
+		} finally {
+			finishSession(session, previousSession, session.getSatisfiedTerminationConditions() != null);
 		}
-		
+	}
+
+	private List<ExpressedCandidate<T>> evolveExpressionStep(EvolutionSession<T> session,
+														   List<ExpressedCandidate<T>> candidates,
+														   int populationSize,
+														   int eliteCount) {
+		long populationId = session.getPopulationId();
     	if (candidates.size() < populationSize) {
 
     		 List<T> population = candidateFactory.generateInitialPopulation(populationSize - candidates.size(),
@@ -285,16 +523,19 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
              List<ExpressedCandidate<T>> expressedCandidates = 
             		 		expressPopulation(population, populationId);
              
-             notifyPopulationExpressed(expressedCandidates, populationId);
-             
              candidates.addAll(expressedCandidates);
     	}
 
-		this.terminationConditions = conditions;
-
-    	++currentGenerationIndex;
-
-        return nextExpressionStep(candidates, eliteCount, populationId, rng);
+    	int generationIndex = session.nextGeneration();
+        EvolutionTracer tracer = Tracing.current();
+        if (tracer == null) {
+            return nextExpressionStep(candidates, eliteCount, populationId, rng);
+        }
+        tracer.generationStarted(populationId, generationIndex, candidates.size());
+        long start = System.nanoTime();
+        List<ExpressedCandidate<T>> nextCandidates = nextExpressionStep(candidates, eliteCount, populationId, rng);
+        tracer.generationFinished(populationId, generationIndex, nextCandidates.size(), System.nanoTime() - start);
+        return nextCandidates;
     }
 
     /**
@@ -310,11 +551,251 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
         List<ExpressedCandidate<T>> expressedCandidates = 
        		 		expressPopulation(population, populationId);
         
-        notifyPopulationExpressed(expressedCandidates, populationId);
-        
         return expressedCandidates;
     }
 
+    /**
+     * Marks candidates that the generation being evolved on the calling thread may
+     * discard.  At the end of the generation, each marked candidate that is not in the
+     * new population is passed to {@link ExpressionStrategy#destroy} and returned to the
+     * genome pool.  The engine marks the whole of the previous population, so sub-classes
+     * only need to mark offspring that they may throw away.  Does nothing unless a genome
+     * pool has been set.
+     * @param candidates Candidates that may be discarded.
+     * @see #setGenomePool(GenomePool)
+     */
+    protected void markDiscardable(List<EvaluatedCandidate<T>> candidates) {
+        EvolutionSession<T> session = currentSession.get();
+        if (genomePool != null && session != null) {
+            Map<T, Boolean> discardable = session.getDiscardable();
+            for (EvaluatedCandidate<T> candidate : candidates) {
+                discardable.put(candidate.getCandidate(), Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * Destroys and recycles the marked candidates that did not survive into the new
+     * population.  Identity is used throughout, since operators may pass a parent
+     * through unchanged and the same genome can then appear in both generations.
+     */
+    private void reclaimDiscarded(EvolutionSession<T> session, List<EvaluatedCandidate<T>> survivors) {
+        Map<T, Boolean> discardable = session.getDiscardable();
+        if (discardable.isEmpty()) {
+            return;
+        }
+        for (EvaluatedCandidate<T> candidate : survivors) {
+            discardable.remove(candidate.getCandidate());
+        }
+        // Evaluations that were abandoned may still be reading their candidates.
+        GenomePool<? super T> pool = isTimedEvaluation() ? null : genomePool;
+        for (T candidate : discardable.keySet()) {
+            if (expressionStrategy != null) {
+                expressionStrategy.destroy(candidate, session.getPopulationId());
+            }
+            if (pool != null) {
+                pool.recycle(candidate);
+            }
+        }
+        discardable.clear();
+    }
+
+    /**
+     * Indicates whether the generation currently being evolved should be abandoned,
+     * because in-flight cancellation is enabled (see {@link #setCancelInFlight(boolean)})
+     * and the time budget has run out or evolution has been aborted.  Sub-classes that
+     * wait for tasks of their own should check this and, if it is true, cancel the
+     * tasks and call {@link #generationCutShort()}.
+     * @return True if outstanding tasks should be cancelled.
+     */
+    protected boolean isStopRequested() {
+        EvolutionSession<T> session = currentSession.get();
+        return session != null && session.isStopRequested();
+    }
+
+    /**
+     * @return True if stop checks are armed for the evolution in progress on the calling thread.
+     */
+    private boolean isStopArmed() {
+        EvolutionSession<T> session = currentSession.get();
+        return session != null && session.isStopArmed();
+    }
+
+    /**
+     * Records that tasks for the current generation were cancelled, so that the
+     * population returned by {@link #nextEvolutionStep} is incomplete.
+     */
+    protected void generationCutShort() {
+        getSession().setGenerationCutShort(true);
+    }
+
+    /**
+     * Waits for a task to complete, unless in-flight cancellation is requested first.
+     * @param result The task to wait for.
+     * @param allResults All of the tasks for the current generation, which are cancelled
+     * if evolution must stop.
+     * @return True if the task has completed, false if the tasks were cancelled.
+     */
+    private <V> boolean awaitUnlessStopped(Future<V> result,
+                                           List<Future<V>> allResults) throws InterruptedException,
+                                                                              ExecutionException {
+        if (!isStopArmed()) {
+            return true;
+        }
+        while (!result.isDone()) {
+            if (isStopRequested()) {
+                generationCutShort();
+                cancelAll(allResults);
+                return false;
+            }
+            try {
+                result.get(STOP_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                // Check whether to stop, then carry on waiting.
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the tasks of a generation that is being abandoned, so that they do not
+     * keep the worker threads busy.
+     * @param tasks The tasks, some of which may be null.
+     */
+    protected static <V> void cancelAll(List<Future<V>> tasks) {
+        for (Future<V> task : tasks) {
+            if (task != null) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Ranks an evaluated population, gathers its statistics and notifies observers,
+     * timing each of these phases.
+     * @return The statistics.
+     */
+    private PopulationStats<T> rankAndReport(long populationId,
+                                             List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                             int eliteCount) {
+        long start = System.nanoTime();
+        rankPopulation(evaluatedPopulation, eliteCount);
+        start = metrics.record(EngineMetrics.Phase.SORT, start);
+        PopulationStats<T> stats = getPopulationStats(populationId,
+                                                      evaluatedPopulation,
+                                                      eliteCount);
+        start = metrics.record(EngineMetrics.Phase.STATISTICS, start);
+        // Notify observers of the state of the population.
+        notifyPopulationChange(stats);
+        metrics.record(EngineMetrics.Phase.NOTIFICATION, start);
+        return stats;
+    }
+
+    /**
+     * Combines a population with the part of the next generation that was evaluated
+     * before its evolution was cut short, keeping the fittest candidates.
+     * @param previousPopulation The last complete population.
+     * @param partialPopulation The evaluated part of the next generation.
+     * @return A population of the same size as the previous one.
+     */
+    private List<EvaluatedCandidate<T>> salvagePopulation(List<EvaluatedCandidate<T>> previousPopulation,
+                                                          List<EvaluatedCandidate<T>> partialPopulation) {
+        if (partialPopulation == previousPopulation) {
+            // Updated in place, so already a complete population.
+            return previousPopulation;
+        }
+        int populationSize = previousPopulation.size();
+        List<EvaluatedCandidate<T>> merged
+            = new ArrayList<EvaluatedCandidate<T>>(populationSize + partialPopulation.size());
+        // Candidates carried over unchanged (such as the elite) appear in both populations,
+        // so each occurrence in the new generation replaces one in the previous generation.
+        Map<T, Integer> carriedOver = new IdentityHashMap<T, Integer>();
+        for (EvaluatedCandidate<T> candidate : partialPopulation) {
+            Integer count = carriedOver.get(candidate.getCandidate());
+            carriedOver.put(candidate.getCandidate(), count == null ? 1 : count + 1);
+            merged.add(candidate);
+        }
+        for (EvaluatedCandidate<T> candidate : previousPopulation) {
+            Integer count = carriedOver.get(candidate.getCandidate());
+            if (count == null) {
+                merged.add(candidate);
+            } else if (count == 1) {
+                carriedOver.remove(candidate.getCandidate());
+            } else {
+                carriedOver.put(candidate.getCandidate(), count - 1);
+            }
+        }
+        EvolutionUtils.sortEvaluatedPopulation(merged, isNaturalFitness());
+        return new ArrayList<EvaluatedCandidate<T>>(merged.subList(0, Math.min(populationSize, merged.size())));
+    }
+
+    /**
+     * Indicates whether the configured fitness evaluator (plain or expressed)
+     * generates natural fitness scores.
+     * @return True if higher fitness scores mean fitter individuals.
+     */
+    protected boolean isNaturalFitness() {
+    	return fitnessEvaluator != null
+    			? fitnessEvaluator.isNatural()
+    			: expressedFitnessEvaluator.isNatural();
+    }
+
+    /**
+     * Gets data about the current (sorted) population at the end of a generation.
+     * Sub-classes that have already gathered fitness statistics while evaluating the
+     * population may over-ride this to avoid another pass over the population.
+     * @param populationId An identifier for the population.
+     * @param evaluatedPopulation The evaluated population, sorted fittest first.
+     * @param eliteCount The number of candidates preserved via elitism.
+     * @return Statistics about the current generation.
+     */
+    protected PopulationStats<T> getPopulationStats(long populationId,
+                                                    List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                    int eliteCount) {
+        return EvolutionUtils.getPopulationStats(populationId,
+                                                 evaluatedPopulation,
+                                                 isNaturalFitness(),
+                                                 eliteCount,
+                                                 getCurrentGenerationIndex(),
+                                                 getStartTime());
+    }
+
+    /**
+     * Puts an evaluated population into fitness order, fittest first.  If partial
+     * ranking is enabled (see {@link #setPartialRanking(boolean)}) only the fittest
+     * candidates that are actually needed (the best candidate, the elite and as many
+     * as the engine's selection requires) are ranked and the rest are left unordered.
+     * @param evaluatedPopulation The population to rank (in-place).
+     * @param eliteCount The number of candidates preserved via elitism.
+     */
+    protected void rankPopulation(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                  int eliteCount) {
+        if (evaluatedPopulation instanceof IndexedPopulation) {
+            // Always kept in order.
+            return;
+        }
+        if (partialRanking) {
+            int rankedCount = Math.max(getRankedCount(evaluatedPopulation.size(), eliteCount),
+                                       Math.max(eliteCount, 1));
+            EvolutionUtils.rankEvaluatedPopulation(evaluatedPopulation, rankedCount, isNaturalFitness());
+        } else {
+            EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, isNaturalFitness());
+        }
+    }
+
+    /**
+     * Works out how many of the fittest candidates the next evolution step requires
+     * to be in order when partial ranking is enabled.  Sub-classes should over-ride this
+     * to ask their {@link com.myrontuttle.sci.evolve.api.RankedSelectionStrategy}.  By
+     * default the whole population is ranked.
+     * @param populationSize The number of candidates in the population.
+     * @param eliteCount The number of candidates preserved via elitism.
+     * @return The number of fittest candidates to rank.
+     */
+    protected int getRankedCount(int populationSize, int eliteCount) {
+        return populationSize;
+    }
+
     /**
      * Indicates whether to include gene expression in evolution
      * @return Indicates gene expression use
@@ -363,6 +844,15 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
      */
     protected List<ExpressedCandidate<T>> expressPopulation(List<T> population, 
     														long populationId) {
+        long start = System.nanoTime();
+        try {
+            return expressPopulationUntimed(population, populationId);
+        } finally {
+            metrics.record(EngineMetrics.Phase.EXPRESSION, start);
+        }
+    }
+
+    private List<ExpressedCandidate<T>> expressPopulationUntimed(List<T> population, long populationId) {
         List<ExpressedCandidate<T>> expressedPopulation = 
         		new ArrayList<ExpressedCandidate<T>>(population.size());
         
@@ -371,6 +861,10 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
         if (singleThreaded) {
         	// Do fitness evaluations on the request thread.
             for (T candidate : population) {
+                if (isStopRequested()) {
+                    generationCutShort();
+                    break;
+                }
             	expressedPopulation.add(expressionStrategy.express(candidate, populationId));
             }
             notifyPopulationExpressed(expressedPopulation, populationId);
@@ -383,13 +877,17 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
                 		new ArrayList<Future<ExpressedCandidate<T>>>(population.size());
                 // Submit tasks for execution and wait until all threads have finished 
                 // expressions.
+                ExpressionWorker worker = getExpressionWorker();
                 for (T candidate : population) {
                     results.add(
-                    	getSharedExpressionWorker().submit(
+                    	worker.submit(
                     		new ExpressionTask<T>(expressionStrategy,
                                                   candidate, populationId)));
                 }
                 for (Future<ExpressedCandidate<T>> result : results) {
+                    if (!awaitUnlessStopped(result, results)) {
+                        break;
+                    }
                     expressedPopulation.add(result.get());
                 }
             } catch (ExecutionException ex) {
@@ -406,6 +904,83 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
         return expressedPopulation;
     }
 
+    /**
+     * Expresses a population and evaluates the expressed candidates.  Normally every
+     * candidate is expressed before any is evaluated.  If fused expression is enabled
+     * (see {@link #setFusedExpression(boolean)}) and evaluation is multi-threaded, each
+     * candidate is instead evaluated as soon as it has been expressed.
+     * @param population The population to express and evaluate.
+     * @param populationId The population these candidates belong to.
+     * @param previousPopulation The evaluated population that the candidates were bred
+     * from, or null if there is none.
+     * @return The evaluated population (a list of candidates with attached fitness
+     * scores).
+     */
+    protected List<EvaluatedCandidate<T>> expressAndEvaluatePopulation(List<T> population,
+                                                                       long populationId,
+                                                                       List<EvaluatedCandidate<T>> previousPopulation) {
+        if (!fusedExpression || singleThreaded) {
+            List<ExpressedCandidate<T>> expressedCandidates = expressPopulation(population, populationId);
+            return evaluateExpressedPopulation(expressedCandidates, previousPopulation);
+        }
+        long start = System.nanoTime();
+        try {
+            return expressAndEvaluateFused(population, populationId, previousPopulation);
+        } finally {
+            metrics.record(EngineMetrics.Phase.EVALUATION, start);
+        }
+    }
+
+    private List<EvaluatedCandidate<T>> expressAndEvaluateFused(List<T> population,
+                                                                long populationId,
+                                                                List<EvaluatedCandidate<T>> previousPopulation) {
+        Map<T, EvaluatedCandidate<T>> knownFitness = getKnownFitness(previousPopulation);
+        AtomicReferenceArray<ExpressedCandidate<T>> expressedCandidates
+            = new AtomicReferenceArray<ExpressedCandidate<T>>(population.size());
+        List<EvaluatedCandidate<T>> evaluatedPopulation = new ArrayList<EvaluatedCandidate<T>>(population.size());
+
+        List<Future<EvaluatedCandidate<T>>> results
+            = new ArrayList<Future<EvaluatedCandidate<T>>>(population.size());
+        expressionStrategy.beforeExpression(populationId);
+        try {
+            ExpressionWorker worker = getExpressionWorker();
+            for (int i = 0; i < population.size(); i++) {
+                T candidate = population.get(i);
+                results.add(worker.submit(new ExpressionEvaluationTask<T>(expressionStrategy,
+                                                                          metrics.timed(expressedFitnessEvaluator),
+                                                                          candidate,
+                                                                          populationId,
+                                                                          knownFitness.get(candidate),
+                                                                          expressedCandidates,
+                                                                          i)));
+            }
+            for (Future<EvaluatedCandidate<T>> result : results) {
+                if (!awaitUnlessStopped(result, results)) {
+                    break;
+                }
+                evaluatedPopulation.add(result.get());
+            }
+        } catch (ExecutionException ex) {
+            cancelAll(results);
+            throw new IllegalStateException("Expression task execution failed.", ex);
+        } catch (InterruptedException ex) {
+            cancelAll(results);
+            // Restore the interrupted status, allows methods further up the call-stack
+            // to abort processing if appropriate.
+            Thread.currentThread().interrupt();
+        } finally {
+            List<ExpressedCandidate<T>> expressedPopulation
+                = new ArrayList<ExpressedCandidate<T>>(population.size());
+            for (int i = 0; i < expressedCandidates.length(); i++) {
+                if (expressedCandidates.get(i) != null) {
+                    expressedPopulation.add(expressedCandidates.get(i));
+                }
+            }
+            notifyPopulationExpressed(expressedPopulation, populationId);
+        }
+        return evaluatedPopulation;
+    }
+
     /**
      * Takes a population, assigns a fitness score to each member and returns
      * the members with their scores attached, sorted in descending order of
@@ -417,39 +992,336 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
      * scores).
      */
     protected List<EvaluatedCandidate<T>> evaluatePopulation(List<T> population) {
+        return evaluatePopulation(population, null);
+    }
+
+    /**
+     * Evaluates a population that was bred from a previously evaluated population.  If
+     * fitness carry-over is enabled (see {@link #setFitnessCarryOver(boolean)}), any
+     * candidate that is the same object as a member of the previous population (e.g.
+     * an elite candidate, or a parent that an operator passed through unchanged) keeps
+     * its existing score instead of being evaluated again.
+     * @param population The population to evaluate.
+     * @param previousPopulation The evaluated population that the candidates were bred
+     * from, or null if there is none.
+     * @return The evaluated population (a list of candidates with attached fitness
+     * scores).
+     */
+    protected List<EvaluatedCandidate<T>> evaluatePopulation(List<T> population,
+                                                             List<EvaluatedCandidate<T>> previousPopulation) {
+        return evaluate(population, population, previousPopulation);
+    }
+
+    /**
+     * Evaluates some of the members of a population in the same way as
+     * {@link #evaluatePopulation(List, List)}, subject to the same timeout and in-flight
+     * cancellation, but passes each fitness evaluation the whole population rather than
+     * just the members being evaluated.
+     * @param candidates The members to evaluate.
+     * @param population The population that the members belong to.
+     * @return The evaluated members, in order, leaving out any whose evaluation was
+     * stopped.
+     */
+    protected List<EvaluatedCandidate<T>> evaluateMembers(List<T> candidates, List<T> population) {
+        return evaluate(candidates, population, null);
+    }
+
+    private List<EvaluatedCandidate<T>> evaluate(List<T> population,
+                                                 List<T> context,
+                                                 List<EvaluatedCandidate<T>> previousPopulation) {
+        long start = System.nanoTime();
+        try {
+            BatchFitnessEvaluator<? super T> batchEvaluator = getBatchFitnessEvaluator();
+            if (batchEvaluator != null) {
+                return evaluateInBatches(population, context, previousPopulation, metrics.<T>timed(batchEvaluator));
+            }
+            if (arrayPopulation && singleThreaded) {
+                return evaluateArrayPopulation(population, context, previousPopulation);
+            }
+            if (arrayPopulation && !isTimedEvaluation()) {
+                // Worker threads return primitive scores for a batch of candidates at a
+                // time, rather than an evaluated candidate object for each.
+                return evaluateInBatches(population,
+                                         context,
+                                         previousPopulation,
+                                         new BatchFitnessEvaluatorAdapter<T>(metrics.<T>timed(fitnessEvaluator)));
+            }
+            return evaluateIndividually(population, context, previousPopulation);
+        } finally {
+            metrics.record(EngineMetrics.Phase.EVALUATION, start);
+        }
+    }
+
+    private List<EvaluatedCandidate<T>> evaluateIndividually(List<T> population,
+                                                             List<T> context,
+                                                             List<EvaluatedCandidate<T>> previousPopulation) {
+        FitnessEvaluator<T> evaluator = metrics.timed(fitnessEvaluator);
         List<EvaluatedCandidate<T>> evaluatedPopulation = new ArrayList<EvaluatedCandidate<T>>(population.size());
+        Map<T, EvaluatedCandidate<T>> knownFitness = getKnownFitness(previousPopulation);
 
         if (singleThreaded)  {
         	// Do fitness evaluations on the request thread.
             for (T candidate : population) {
-                evaluatedPopulation.add(new EvaluatedCandidate<T>(candidate,
-                                                                  fitnessEvaluator.getFitness(candidate, population)));
+                EvaluatedCandidate<T> known = knownFitness.get(candidate);
+                if (known == null && isStopRequested()) {
+                    generationCutShort();
+                    break;
+                }
+                evaluatedPopulation.add(known != null
+                                        ? known
+                                        : new EvaluatedCandidate<T>(candidate,
+                                                                    evaluator.getFitness(candidate, context)));
             }
         } else {
             // Divide the required number of fitness evaluations equally among the
             // available processors and coordinate the threads so that we do not
             // proceed until all threads have finished processing.
+            List<Future<EvaluatedCandidate<T>>> futures = new ArrayList<Future<EvaluatedCandidate<T>>>(population.size());
             try {
-                List<T> unmodifiablePopulation = Collections.unmodifiableList(population);
-                List<Future<EvaluatedCandidate<T>>> results = new ArrayList<Future<EvaluatedCandidate<T>>>(population.size());
+                List<T> unmodifiablePopulation = Collections.unmodifiableList(context);
+                if (isTimedEvaluation()) {
+                    List<FitnessEvalutationTask<T>> tasks = new ArrayList<FitnessEvalutationTask<T>>(population.size());
+                    for (T candidate : population) {
+                        if (!knownFitness.containsKey(candidate)) {
+                            tasks.add(new FitnessEvalutationTask<T>(evaluator, candidate, unmodifiablePopulation));
+                        }
+                    }
+                    TimedEvaluation<T> evaluation = createTimedEvaluation();
+                    List<EvaluatedCandidate<T>> results = evaluation.evaluate(tasks);
+                    if (evaluation.isStopped()) {
+                        generationCutShort();
+                    }
+                    int next = 0;
+                    for (T candidate : population) {
+                        EvaluatedCandidate<T> evaluated = knownFitness.get(candidate);
+                        if (evaluated == null) {
+                            evaluated = results.get(next);
+                            if (evaluated == null && evaluation.isTimedOut(next)) {
+                                evaluated = new EvaluatedCandidate<T>(candidate, penaltyFitness);
+                            }
+                            ++next;
+                        }
+                        // Candidates whose evaluation was stopped are left out.
+                        if (evaluated != null) {
+                            evaluatedPopulation.add(evaluated);
+                        }
+                    }
+                    return arrayPopulation
+                           ? new ArrayPopulation<T>(evaluatedPopulation)
+                           : evaluatedPopulation;
+                }
                 // Submit tasks for execution and wait until all threads have finished fitness evaluations.
+                // Candidates with carried-over fitness have no task (a null placeholder).
+                FitnessEvaluationWorker worker = getFitnessEvaluationWorker();
                 for (T candidate : population) {
-                    results.add(getSharedWorker().submit(new FitnessEvalutationTask<T>(fitnessEvaluator,
-                                                                                       candidate,
-                                                                                       unmodifiablePopulation)));
+                    futures.add(knownFitness.containsKey(candidate)
+                                ? null
+                                : worker.submit(new FitnessEvalutationTask<T>(evaluator,
+                                                                             candidate,
+                                                                             unmodifiablePopulation)));
                 }
-                for (Future<EvaluatedCandidate<T>> result : results) {
-                    evaluatedPopulation.add(result.get());
+                for (int i = 0; i < futures.size(); i++) {
+                    Future<EvaluatedCandidate<T>> result = futures.get(i);
+                    evaluatedPopulation.add(result == null
+                                            ? knownFitness.get(population.get(i))
+                                            : result.get());
                 }
             } catch (ExecutionException ex) {
+                cancelAll(futures);
                 throw new IllegalStateException("Fitness evaluation task execution failed.", ex);
             } catch (InterruptedException ex) {
+                // The remaining results are no longer wanted.
+                cancelAll(futures);
                 // Restore the interrupted status, allows methods further up the call-stack
                 // to abort processing if appropriate.
                 Thread.currentThread().interrupt();
             }
         }
 
+        return arrayPopulation
+               ? new ArrayPopulation<T>(evaluatedPopulation)
+               : evaluatedPopulation;
+    }
+
+    /**
+     * Evaluates a population by dividing the candidates that need to be evaluated into
+     * batches.  When multi-threaded, each batch is a single task for the worker.
+     */
+    private List<EvaluatedCandidate<T>> evaluateInBatches(List<T> population,
+                                                          List<T> context,
+                                                          List<EvaluatedCandidate<T>> previousPopulation,
+                                                          BatchFitnessEvaluator<? super T> batchEvaluator) {
+        Map<T, EvaluatedCandidate<T>> knownFitness = getKnownFitness(previousPopulation);
+        List<T> pending = new ArrayList<T>(population.size());
+        for (T candidate : population) {
+            if (!knownFitness.containsKey(candidate)) {
+                pending.add(candidate);
+            }
+        }
+        List<T> unmodifiablePopulation = Collections.unmodifiableList(context);
+        int batchSize = getBatchSize(pending.size());
+        double[] scores = new double[pending.size()];
+        // The number of pending candidates, from the start, that have been scored.
+        int scored = 0;
+        if (singleThreaded) {
+        	// Do fitness evaluations on the request thread.
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                if (isStopRequested()) {
+                    generationCutShort();
+                    break;
+                }
+                int to = Math.min(from + batchSize, pending.size());
+                scored = copyScores(new BatchFitnessEvaluationTask<T>(batchEvaluator,
+                                                                      pending.subList(from, to),
+                                                                      unmodifiablePopulation).call(),
+                                    scores,
+                                    from);
+            }
+        } else {
+            List<Future<double[]>> results = new ArrayList<Future<double[]>>();
+            try {
+                FitnessEvaluationWorker worker = getFitnessEvaluationWorker();
+                for (int from = 0; from < pending.size(); from += batchSize) {
+                    int to = Math.min(from + batchSize, pending.size());
+                    results.add(worker.submit(new BatchFitnessEvaluationTask<T>(batchEvaluator,
+                                                                               pending.subList(from, to),
+                                                                               unmodifiablePopulation)));
+                }
+                for (Future<double[]> result : results) {
+                    if (!awaitUnlessStopped(result, results)) {
+                        break;
+                    }
+                    scored = copyScores(result.get(), scores, scored);
+                }
+            } catch (ExecutionException ex) {
+                cancelAll(results);
+                throw new IllegalStateException("Fitness evaluation task execution failed.", ex);
+            } catch (InterruptedException ex) {
+                // The remaining batches are no longer wanted.
+                cancelAll(results);
+                // Restore the interrupted status, allows methods further up the call-stack
+                // to abort processing if appropriate.
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Combine the new scores with the carried-over ones, stopping at the first
+        // candidate that was not scored if evaluation was interrupted.
+        ArrayPopulation<T> evaluatedArray = arrayPopulation ? new ArrayPopulation<T>(population.size()) : null;
+        List<EvaluatedCandidate<T>> evaluatedList = arrayPopulation
+                                                    ? null
+                                                    : new ArrayList<EvaluatedCandidate<T>>(population.size());
+        int next = 0;
+        for (T candidate : population) {
+            EvaluatedCandidate<T> known = knownFitness.get(candidate);
+            if (known == null && next == scored) {
+                break;
+            }
+            double fitness = known != null ? known.getFitness() : scores[next++];
+            if (evaluatedArray != null) {
+                evaluatedArray.add(candidate, fitness);
+            } else {
+                evaluatedList.add(known != null ? known : new EvaluatedCandidate<T>(candidate, fitness));
+            }
+        }
+        return evaluatedArray != null ? evaluatedArray : evaluatedList;
+    }
+
+    /**
+     * @return True if evaluations are subject to a timeout, speculative re-execution or
+     * in-flight cancellation.
+     */
+    private boolean isTimedEvaluation() {
+        return evaluationTimeoutNanos > 0 || speculativeEvaluation || isStopArmed();
+    }
+
+    /**
+     * Prepares to run evaluation tasks on the worker, applying the evaluation timeout,
+     * speculative re-execution and in-flight cancellation.
+     */
+    private TimedEvaluation<T> createTimedEvaluation() {
+        TimedEvaluation.StopCondition stopCondition = null;
+        if (isStopArmed()) {
+            stopCondition = new TimedEvaluation.StopCondition() {
+                public boolean isStopRequested() {
+                    return AbstractEvolutionEngine.this.isStopRequested();
+                }
+            };
+        }
+        return new TimedEvaluation<T>(getFitnessEvaluationWorker().<T>createCompletionService(),
+                                      evaluationTimeoutNanos,
+                                      speculativeEvaluation,
+                                      getWorkerThreadCount(),
+                                      stopCondition);
+    }
+
+    private static int copyScores(double[] batchScores, double[] scores, int offset) {
+        System.arraycopy(batchScores, 0, scores, offset, batchScores.length);
+        return offset + batchScores.length;
+    }
+
+    /**
+     * @return The evaluator to use for batch evaluation, or null if candidates are to be
+     * evaluated individually.
+     */
+    private BatchFitnessEvaluator<? super T> getBatchFitnessEvaluator() {
+        if (fitnessEvaluator instanceof BatchFitnessEvaluator) {
+            return (BatchFitnessEvaluator<? super T>) fitnessEvaluator;
+        }
+        if (fitnessEvaluator != null && evaluationBatchSize > 1) {
+            return new BatchFitnessEvaluatorAdapter<T>(fitnessEvaluator);
+        }
+        return null;
+    }
+
+    /**
+     * @param pendingCount The number of candidates to be evaluated.
+     * @return The number of candidates in each batch.
+     */
+    private int getBatchSize(int pendingCount) {
+        if (evaluationBatchSize > 0) {
+            return evaluationBatchSize;
+        }
+        if (singleThreaded) {
+            return Math.max(pendingCount, 1);
+        }
+        // A few batches per thread, so that threads that finish early can take up the slack.
+        int batchCount = getWorkerThreadCount() * 4;
+        return Math.max((pendingCount + batchCount - 1) / batchCount, 1);
+    }
+
+    /**
+     * @return The number of tasks that the fitness evaluation worker can run at once.
+     * For an executor supplied by the application this is assumed to be the number of
+     * available processors.
+     */
+    private synchronized int getWorkerThreadCount() {
+        return threadCount > 0
+               ? threadCount
+               : virtualThreadLimit > 0 ? virtualThreadLimit : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Evaluates a population on the request thread, writing the fitness scores straight
+     * into an {@link ArrayPopulation} so that no evaluated candidate objects are created.
+     */
+    private ArrayPopulation<T> evaluateArrayPopulation(List<T> population,
+                                                       List<T> context,
+                                                       List<EvaluatedCandidate<T>> previousPopulation) {
+        ArrayPopulation<T> evaluatedPopulation = new ArrayPopulation<T>(population.size());
+        Map<T, EvaluatedCandidate<T>> knownFitness = getKnownFitness(previousPopulation);
+        FitnessEvaluator<T> evaluator = metrics.timed(fitnessEvaluator);
+        for (T candidate : population) {
+            EvaluatedCandidate<T> known = knownFitness.get(candidate);
+            if (known == null && isStopRequested()) {
+                generationCutShort();
+                break;
+            }
+            evaluatedPopulation.add(candidate,
+                                    known != null
+                                    ? known.getFitness()
+                                    : evaluator.getFitness(candidate, context));
+        }
         return evaluatedPopulation;
     }
 
@@ -464,34 +1336,122 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
      * scores).
      */
     protected List<EvaluatedCandidate<T>> evaluateExpressedPopulation(List<ExpressedCandidate<T>> candidates) {
+        // Expression steps evaluate what the previous step bred, so carry fitness over
+        // from the last population evaluated this way.
+        EvolutionSession<T> session = getSession();
+        List<EvaluatedCandidate<T>> evaluatedPopulation
+            = evaluateExpressedPopulation(candidates, session.getLastExpressedEvaluation());
+        session.setLastExpressedEvaluation(fitnessCarryOver ? evaluatedPopulation : null);
+        return evaluatedPopulation;
+    }
 
+    /**
+     * Evaluates an expressed population that was bred from a previously evaluated
+     * population.  If fitness carry-over is enabled (see {@link #setFitnessCarryOver(boolean)}),
+     * any candidate whose genome is the same object as a member of the previous population
+     * keeps its existing score instead of being evaluated again.
+     * @param candidates The expressed population to evaluate.
+     * @param previousPopulation The evaluated population that the candidates were bred
+     * from, or null if there is none.
+     * @return The evaluated population (a list of candidates with attached fitness
+     * scores).
+     */
+    protected List<EvaluatedCandidate<T>> evaluateExpressedPopulation(List<ExpressedCandidate<T>> candidates,
+                                                                      List<EvaluatedCandidate<T>> previousPopulation) {
+        long start = System.nanoTime();
+        try {
+            return evaluateExpressedIndividually(candidates, previousPopulation);
+        } finally {
+            metrics.record(EngineMetrics.Phase.EVALUATION, start);
+        }
+    }
+
+    private List<EvaluatedCandidate<T>> evaluateExpressedIndividually(List<ExpressedCandidate<T>> candidates,
+                                                                      List<EvaluatedCandidate<T>> previousPopulation) {
+        ExpressedFitnessEvaluator<T> evaluator = metrics.timed(expressedFitnessEvaluator);
         List<EvaluatedCandidate<T>> evaluatedPopulation = new ArrayList<EvaluatedCandidate<T>>(candidates.size());
+        Map<T, EvaluatedCandidate<T>> knownFitness = getKnownFitness(previousPopulation);
 
         if (singleThreaded)  {
         	// Do fitness evaluations on the request thread.
             for (ExpressedCandidate<T> candidate : candidates) {
+                EvaluatedCandidate<T> known = knownFitness.get(candidate.getGenome());
+                if (known == null && isStopRequested()) {
+                    generationCutShort();
+                    break;
+                }
                 evaluatedPopulation.add(new EvaluatedCandidate<T>(candidate,
-                            expressedFitnessEvaluator.getFitness(candidate, candidates)));
+                            known != null
+                            ? known.getFitness()
+                            : evaluator.getFitness(candidate, candidates)));
             }
         } else {
             // Divide the required number of fitness evaluations equally among the
             // available processors and coordinate the threads so that we do not
             // proceed until all threads have finished processing.
+            List<Future<EvaluatedCandidate<T>>> futures = new ArrayList<Future<EvaluatedCandidate<T>>>(candidates.size());
             try {
                 List<ExpressedCandidate<T>> unmodifiablePopulation = Collections.unmodifiableList(candidates);
-                List<Future<EvaluatedCandidate<T>>> results = new ArrayList<Future<EvaluatedCandidate<T>>>(candidates.size());
+                if (isTimedEvaluation()) {
+                    List<ExpressedFitnessEvalutationTask<T>> tasks
+                        = new ArrayList<ExpressedFitnessEvalutationTask<T>>(candidates.size());
+                    for (ExpressedCandidate<T> candidate : candidates) {
+                        if (!knownFitness.containsKey(candidate.getGenome())) {
+                            tasks.add(new ExpressedFitnessEvalutationTask<T>(evaluator,
+                                                                             candidate,
+                                                                             unmodifiablePopulation));
+                        }
+                    }
+                    TimedEvaluation<T> evaluation = createTimedEvaluation();
+                    List<EvaluatedCandidate<T>> results = evaluation.evaluate(tasks);
+                    if (evaluation.isStopped()) {
+                        generationCutShort();
+                    }
+                    int next = 0;
+                    for (ExpressedCandidate<T> candidate : candidates) {
+                        EvaluatedCandidate<T> known = knownFitness.get(candidate.getGenome());
+                        if (known != null) {
+                            evaluatedPopulation.add(new EvaluatedCandidate<T>(candidate, known.getFitness()));
+                        } else {
+                            EvaluatedCandidate<T> result = results.get(next);
+                            if (result == null && evaluation.isTimedOut(next)) {
+                                result = new EvaluatedCandidate<T>(candidate, penaltyFitness);
+                            }
+                            ++next;
+                            // Candidates whose evaluation was stopped are left out.
+                            if (result != null) {
+                                evaluatedPopulation.add(result);
+                            }
+                        }
+                    }
+                    return evaluatedPopulation;
+                }
                 // Submit tasks for execution and wait until all threads have finished fitness evaluations.
+                // Candidates with carried-over fitness have no task (a null placeholder).
+                FitnessEvaluationWorker worker = getFitnessEvaluationWorker();
                 for (ExpressedCandidate<T> candidate : candidates) {
-                    results.add(getSharedWorker().submit(new ExpressedFitnessEvalutationTask<T>(expressedFitnessEvaluator,
-                                                                                       candidate,
-                                                                                       unmodifiablePopulation)));
+                    futures.add(knownFitness.containsKey(candidate.getGenome())
+                                ? null
+                                : worker.submit(new ExpressedFitnessEvalutationTask<T>(evaluator,
+                                                                                      candidate,
+                                                                                      unmodifiablePopulation)));
                 }
-                for (Future<EvaluatedCandidate<T>> result : results) {
-                    evaluatedPopulation.add(result.get());
+                for (int i = 0; i < futures.size(); i++) {
+                    Future<EvaluatedCandidate<T>> result = futures.get(i);
+                    if (result == null) {
+                        ExpressedCandidate<T> candidate = candidates.get(i);
+                        evaluatedPopulation.add(new EvaluatedCandidate<T>(candidate,
+                                                    knownFitness.get(candidate.getGenome()).getFitness()));
+                    } else {
+                        evaluatedPopulation.add(result.get());
+                    }
                 }
             } catch (ExecutionException ex) {
+                cancelAll(futures);
                 throw new IllegalStateException("Fitness evaluation task execution failed.", ex);
             } catch (InterruptedException ex) {
+                // The remaining results are no longer wanted.
+                cancelAll(futures);
                 // Restore the interrupted status, allows methods further up the call-stack
                 // to abort processing if appropriate.
                 Thread.currentThread().interrupt();
@@ -502,6 +1462,28 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
     }
 
 
+    /**
+     * Indexes the candidates of a previously evaluated population by identity so that
+     * their fitness scores can be carried over.  Identity rather than equality is used
+     * because only the very same object is guaranteed to be unchanged.
+     * @param previousPopulation The evaluated population that new candidates were bred
+     * from, or null if there is none.
+     * @return A map of candidate to evaluated candidate, which is empty if fitness
+     * carry-over is disabled or there is no previous population.
+     */
+    protected Map<T, EvaluatedCandidate<T>> getKnownFitness(List<EvaluatedCandidate<T>> previousPopulation) {
+        if (!fitnessCarryOver || previousPopulation == null) {
+            return Collections.emptyMap();
+        }
+        Map<T, EvaluatedCandidate<T>> knownFitness
+            = new IdentityHashMap<T, EvaluatedCandidate<T>>(previousPopulation.size());
+        for (EvaluatedCandidate<T> candidate : previousPopulation) {
+            knownFitness.put(candidate.getCandidate(), candidate);
+        }
+        return knownFitness;
+    }
+
+
     /**
      * <p>Returns a list of all {@link TerminationCondition}s that are satisfied by the current
      * state of the evolution engine.  Usually this list will contain only one item, but it
@@ -525,22 +1507,45 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
      */
     public List<TerminationCondition> getSatisfiedTerminationConditions()
     {
-        if (satisfiedTerminationConditions == null)
+        EvolutionSession<T> session = lastCompletedSession;
+        if (session == null)
         {
             throw new IllegalStateException("EvolutionEngine has not terminated.");
         }
         else
         {
-            return Collections.unmodifiableList(satisfiedTerminationConditions);
+            return Collections.unmodifiableList(session.getSatisfiedTerminationConditions());
         }
     }
 
 
+    /**
+     * Returns the termination conditions that ended the most recent evolution of a
+     * particular population.  Unlike {@link #getSatisfiedTerminationConditions()}, which
+     * reports on whichever population finished last, this is unaffected by other
+     * populations being evolved by the same engine at the same time.  The outcome of a
+     * run is only kept until {@value #FINISHED_SESSION_LIMIT} more runs have finished.
+     * @param populationId The ID of the population.
+     * @throws IllegalStateException If evolution of the population has not terminated,
+     * or its outcome is no longer kept.
+     * @return A list of satisfied conditions, which may be empty but is never null.
+     */
+    public List<TerminationCondition> getSatisfiedTerminationConditions(long populationId)
+    {
+        EvolutionSession<T> session = getSession(populationId);
+        if (session == null || session.getSatisfiedTerminationConditions() == null)
+        {
+            throw new IllegalStateException("Evolution of population " + populationId + " has not terminated.");
+        }
+        return Collections.unmodifiableList(session.getSatisfiedTerminationConditions());
+    }
+
+
     /**
      * Adds a listener to receive status updates on the evolution progress.
      * Updates are dispatched synchronously on the request thread.  Observers should
      * complete their processing and return in a timely manner to avoid holding up
-     * the evolution.
+     * the evolution, or be wrapped in an {@link AsyncEvolutionObserver}.
      * @param observer An evolution observer call-back.
      * @see #removeEvolutionObserver(EvolutionObserver)
      */
@@ -594,6 +1599,432 @@ public abstract class AbstractEvolutionEngine<T> implements EvolutionEngine<T>
         this.singleThreaded = singleThreaded;
     }
 
+    /**
+     * <p>By default every candidate in each new generation is evaluated, even if it
+     * is an elite candidate or was passed through the evolutionary operators unchanged.
+     * Enabling fitness carry-over re-uses the existing score of any candidate that is
+     * the very same object as a member of the population it was bred from, which saves
+     * a large fraction of the evaluations when elitism is used or operators are applied
+     * with a probability less than one.</p>
+     *
+     * <p>This is only valid if the fitness evaluator is deterministic, does not depend
+     * on the rest of the population, and candidates are never modified in place.</p>
+     * @param fitnessCarryOver True to re-use the fitness of candidates that survive
+     * unchanged from the previous population.
+     */
+    public void setFitnessCarryOver(boolean fitnessCarryOver) {
+        this.fitnessCarryOver = fitnessCarryOver;
+        if (!fitnessCarryOver) {
+            for (EvolutionSession<T> session : sessions.values()) {
+                session.setLastExpressedEvaluation(null);
+            }
+        }
+    }
+
+    /**
+     * @return True if the fitness of unchanged candidates is carried over between
+     * generations.
+     * @see #setFitnessCarryOver(boolean)
+     */
+    protected boolean isFitnessCarryOver() {
+        return fitnessCarryOver;
+    }
+
+    /**
+     * <p>By default the whole population is sorted at the end of every generation.
+     * Enabling partial ranking sorts only the fittest candidates that are needed (the
+     * best candidate, the elite and, if the selection strategy is a
+     * {@link com.myrontuttle.sci.evolve.api.RankedSelectionStrategy}, the candidates it
+     * needs in order) and leaves the rest of the population unordered.  For very large
+     * populations this saves much of the per-generation work outside of evaluation.
+     * The population returned at the end of evolution is always completely sorted.</p>
+     * @param partialRanking True to rank only as much of the population as necessary.
+     */
+    public void setPartialRanking(boolean partialRanking) {
+        this.partialRanking = partialRanking;
+    }
+
+    /**
+     * <p>By default each evaluated population is a list of {@link EvaluatedCandidate}
+     * objects.  Enabling array populations stores evaluated populations (for engines
+     * using a plain fitness evaluator) as an {@link ArrayPopulation} instead, in which
+     * fitness scores are kept in a primitive array.  Sorting, statistics and the
+     * built-in selection strategies then work on the arrays directly, which greatly
+     * reduces allocation for large populations.  The list API remains available as a
+     * view, but creates evaluated candidate objects on demand.</p>
+     *
+     * <p>Scores are written straight into the array when evaluating on the request
+     * thread, and when worker threads evaluate the population in batches.  With an
+     * evaluation timeout, speculative evaluation or in-flight cancellation, each candidate
+     * is still evaluated by its own task, which creates an evaluated candidate object.</p>
+     * @param arrayPopulation True to store evaluated populations as parallel arrays.
+     */
+    public void setArrayPopulation(boolean arrayPopulation) {
+        this.arrayPopulation = arrayPopulation;
+    }
+
+    /**
+     * <p>By default, when an expression strategy is used, the whole population is
+     * expressed before any candidate is evaluated, so the slowest expression holds up
+     * all of the evaluation work.  Enabling fused expression expresses and then evaluates
+     * each candidate in a single task on the expression worker, so each evaluation starts
+     * as soon as its own expression has finished.
+     * {@link ExpressionStrategy#candidatesExpressed} is still called once per population,
+     * after every candidate has been expressed and evaluated.</p>
+     *
+     * <p>Because the rest of the population may not have been expressed yet, the
+     * expressed fitness evaluator is given a population containing only the candidate
+     * being evaluated.  Fused expression is therefore only suitable for evaluators that
+     * score each candidate independently.  It has no effect when evaluation is
+     * single-threaded.</p>
+     * @param fusedExpression True to evaluate each candidate as soon as it is expressed.
+     */
+    public void setFusedExpression(boolean fusedExpression) {
+        this.fusedExpression = fusedExpression;
+    }
+
+    /**
+     * <p>Limits how long a single multi-threaded fitness evaluation may run, so that one
+     * pathological candidate cannot hold up the whole generation.  An evaluation that has
+     * been running for longer than the timeout is cancelled (its thread is interrupted)
+     * and the candidate is given the penalty fitness instead.  The penalty should be a
+     * score that marks the candidate as unfit: zero for natural fitness, a large value
+     * for non-natural fitness.</p>
+     *
+     * <p>The timeout is measured from when the evaluation starts running, not from when
+     * it is submitted.  Evaluations are handed to the worker only as its threads become
+     * free, so none waits in a bounded queue or is run on the engine's own thread, where
+     * it could not be timed out.  Timeouts do not apply to single-threaded or batched evaluation,
+     * nor to the pipelined and asynchronous modes.</p>
+     * @param timeout The longest an evaluation may run, or zero for no limit.
+     * @param unit The unit of the timeout.
+     * @param penaltyFitness The fitness score given to candidates whose evaluation times out.
+     */
+    public void setEvaluationTimeout(long timeout, TimeUnit unit, double penaltyFitness) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative.");
+        }
+        if (penaltyFitness < 0) {
+            throw new IllegalArgumentException("Penalty fitness must be greater than or equal to zero.");
+        }
+        this.penaltyFitness = penaltyFitness;
+        this.evaluationTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * <p>By default, {@link ElapsedTime} and {@link UserAbort} termination conditions are
+     * only checked between generations, so a long generation overshoots the time budget
+     * and an abort waits for the generation to finish.  Enabling in-flight cancellation
+     * makes the engine watch those conditions while a generation is being expressed and
+     * evaluated.  As soon as the time is up or evolution is aborted, outstanding tasks are
+     * cancelled and evolution returns straight away.  The returned population is the
+     * fittest of the last complete generation combined with whichever candidates of the
+     * new generation had already been evaluated.</p>
+     *
+     * <p>The initial population is always evaluated in full.  Tasks that do not respond
+     * to interruption continue in the background, but their results are discarded.
+     * Cancellation does not apply to the pipelined generational mode or to the
+     * asynchronous steady-state engine.</p>
+     * @param cancelInFlight True to cancel outstanding tasks when the time budget runs
+     * out or evolution is aborted.
+     */
+    public void setCancelInFlight(boolean cancelInFlight) {
+        this.cancelInFlight = cancelInFlight;
+    }
+
+    /**
+     * <p>Enables speculative re-execution of straggling evaluations.  Once some worker
+     * threads have become idle, any evaluation that has been running for more than twice
+     * the median time of the evaluations that have completed is started again on an idle
+     * thread, and whichever attempt finishes first provides the candidate's fitness.  The
+     * other attempt is cancelled.  This reduces the time that each generation spends
+     * waiting for its slowest evaluations, at the cost of some duplicated work.</p>
+     *
+     * <p>Speculative evaluation is only valid if the fitness evaluator is deterministic and
+     * can safely evaluate the same candidate twice at once.  It applies in the same cases
+     * as {@link #setEvaluationTimeout(long, TimeUnit, double)}.</p>
+     * @param speculativeEvaluation True to re-run straggling evaluations.
+     */
+    public void setSpeculativeEvaluation(boolean speculativeEvaluation) {
+        this.speculativeEvaluation = speculativeEvaluation;
+    }
+
+    /**
+     * <p>Enables reclamation of discarded candidates.  At the end of each generation,
+     * every candidate of the previous population that is not part of the new one is
+     * passed to {@link ExpressionStrategy#destroy} (if the engine has an expression
+     * strategy) and its genome is returned to the pool.  Factories and operators that
+     * share the pool, such as {@link com.myrontuttle.sci.evolve.operators.IntArrayMutation},
+     * then build new candidates in the recycled genomes, so that a steady run allocates
+     * very little.</p>
+     *
+     * <p>A recycled genome is overwritten, so nothing may keep a reference to a candidate
+     * after it has left the population: observers that keep the best candidate (including
+     * an {@link AsyncEvolutionObserver}, which delivers updates later) should copy it, and
+     * fitness evaluators must not cache candidates by identity.  A
+     * {@link ContentCachingFitnessEvaluator}, which copies the genomes it keeps, can be
+     * used instead of a {@link CachingFitnessEvaluator}.  Genomes are not recycled while
+     * evaluations may be timed out or cancelled, since an abandoned evaluation may still
+     * be reading its candidate, but discarded candidates are still destroyed.  Candidates
+     * of the final population are never reclaimed.</p>
+     * @param genomePool The pool to which discarded genomes are returned, or null to stop
+     * reclaiming candidates.
+     * @throws IllegalArgumentException If a pool is specified and the engine's fitness
+     * evaluator is a {@link CachingFitnessEvaluator}, which would return the score of a
+     * recycled genome's previous contents, or its expression strategy is a
+     * {@link CachingExpressionStrategy}, whose cached expressions keep their genomes.
+     */
+    public void setGenomePool(GenomePool<? super T> genomePool) {
+        if (genomePool != null && fitnessEvaluator instanceof CachingFitnessEvaluator) {
+            throw new IllegalArgumentException("Genomes cannot be recycled while fitness is cached by identity.");
+        }
+        if (genomePool != null && expressionStrategy instanceof CachingExpressionStrategy) {
+            throw new IllegalArgumentException("Genomes cannot be recycled while expressions are cached.");
+        }
+        this.genomePool = genomePool;
+    }
+
+    /**
+     * @return The pool to which discarded genomes are returned, or null if candidates are
+     * not reclaimed.
+     */
+    public GenomePool<? super T> getGenomePool() {
+        return genomePool;
+    }
+
+    /**
+     * <p>Sets the number of candidates evaluated together as a single task.  If the
+     * fitness evaluator is a {@link BatchFitnessEvaluator}, each batch is scored by one
+     * call to {@link BatchFitnessEvaluator#getFitnessScores}.  An ordinary fitness
+     * evaluator is adapted to evaluate each batch one candidate at a time, which still
+     * saves creating a task per candidate when fitness evaluation is very cheap.</p>
+     *
+     * <p>By default (a batch size of zero), a batch fitness evaluator is given a few
+     * batches per worker thread, or the whole population when evaluating on the request
+     * thread, and an ordinary fitness evaluator is given one task per candidate.  Batching
+     * does not apply to expressed fitness evaluators.</p>
+     * @param evaluationBatchSize The number of candidates in each batch, or zero to size
+     * batches automatically.
+     */
+    public void setEvaluationBatchSize(int evaluationBatchSize) {
+        if (evaluationBatchSize < 0) {
+            throw new IllegalArgumentException("Batch size must not be negative.");
+        }
+        this.evaluationBatchSize = evaluationBatchSize;
+    }
+
+    /**
+     * @return True if only the fittest part of each population is put in order.
+     * @see #setPartialRanking(boolean)
+     */
+    protected boolean isPartialRanking() {
+        return partialRanking;
+    }
+
+    /**
+     * @return True if fitness evaluations are performed synchronously on the request thread.
+     * @see #setSingleThreaded(boolean)
+     */
+    protected boolean isSingleThreaded() {
+        return singleThreaded;
+    }
+
+    /**
+     * Makes this engine perform multi-threaded fitness evaluations and expressions with an
+     * executor managed by the application, instead of the thread pool shared by all engines.
+     * The executor is not shut down when the engine is {@link #close() closed}.
+     * @param executorService The executor to use, or null to revert to the shared pool.
+     * @throws IllegalStateException If the engine is evolving a population.
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        FitnessEvaluationWorker oldWorker;
+        ExpressionWorker oldExpressionWorker;
+        synchronized (this) {
+            checkNoRunInProgress();
+            oldWorker = engineWorker;
+            oldExpressionWorker = engineExpressionWorker;
+            engineWorker = null;
+            engineExpressionWorker = null;
+            this.executorService = executorService;
+            this.threadCount = 0;
+            this.virtualThreadLimit = 0;
+        }
+        shutDownWorkers(oldWorker, oldExpressionWorker);
+    }
+
+    /**
+     * <p>Makes this engine perform multi-threaded fitness evaluations and expressions with
+     * its own pools of daemon threads instead of the pool shared by all engines, which has
+     * one thread per processor and an unbounded work queue.  This allows several engines
+     * in one JVM to be sized so that together they do not oversubscribe the processors.</p>
+     *
+     * <p>Each pool's work queue holds at most {@code queueCapacity} tasks.  When it is full,
+     * further tasks are performed on the engine's own thread.  The pools are created when
+     * first needed and shut down by {@link #close()}.</p>
+     * @param threadCount The number of threads in each pool.
+     * @param queueCapacity The maximum number of tasks waiting for a thread in each pool.
+     * @throws IllegalStateException If the engine is evolving a population.
+     */
+    public void setThreadPool(int threadCount, int queueCapacity) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive.");
+        }
+        FitnessEvaluationWorker oldWorker;
+        ExpressionWorker oldExpressionWorker;
+        synchronized (this) {
+            checkNoRunInProgress();
+            oldWorker = engineWorker;
+            oldExpressionWorker = engineExpressionWorker;
+            engineWorker = null;
+            engineExpressionWorker = null;
+            this.executorService = null;
+            this.threadCount = threadCount;
+            this.queueCapacity = queueCapacity;
+            this.virtualThreadLimit = 0;
+        }
+        shutDownWorkers(oldWorker, oldExpressionWorker);
+    }
+
+    /**
+     * <p>Makes this engine run each multi-threaded fitness evaluation and expression on a
+     * new virtual thread, rather than on a pool with one platform thread per processor.
+     * This suits expression strategies and fitness evaluators that spend most of their
+     * time blocked on databases, files or the network, since a blocked virtual thread
+     * does not occupy an operating system thread.  Virtual threads require Java 21 or
+     * later; on older runtimes each task gets an ordinary daemon thread, so the limit
+     * should then be kept modest.</p>
+     *
+     * <p>At most {@code maxConcurrency} evaluations, and separately at most that many
+     * expressions, are in progress at once.  The threads are released by {@link #close()}.</p>
+     * @param maxConcurrency The maximum number of tasks of each kind in progress at once.
+     * @see com.myrontuttle.sci.evolve.util.concurrent.ConfigurableThreadFactory#isVirtualThreadSupported()
+     * @throws IllegalStateException If the engine is evolving a population.
+     */
+    public void setVirtualThreads(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Maximum concurrency must be positive.");
+        }
+        FitnessEvaluationWorker oldWorker;
+        ExpressionWorker oldExpressionWorker;
+        synchronized (this) {
+            checkNoRunInProgress();
+            oldWorker = engineWorker;
+            oldExpressionWorker = engineExpressionWorker;
+            engineWorker = null;
+            engineExpressionWorker = null;
+            this.executorService = null;
+            this.threadCount = 0;
+            this.virtualThreadLimit = maxConcurrency;
+        }
+        shutDownWorkers(oldWorker, oldExpressionWorker);
+    }
+
+    /**
+     * Shuts down any threads created for this engine by {@link #setThreadPool(int, int)} or
+     * {@link #setVirtualThreads(int)}, and waits for the tasks already submitted to them to
+     * complete.  An executor supplied by {@link #setExecutorService(ExecutorService)} and the
+     * pool shared by all engines are not affected.  The engine can still be used after it
+     * has been closed, in which case new pools are created with the same configuration.
+     * If the calling thread is interrupted while waiting, it stops waiting and its
+     * interrupt status is set.
+     * @throws IllegalStateException If the engine is evolving a population.
+     */
+    public void close() {
+        FitnessEvaluationWorker oldWorker;
+        ExpressionWorker oldExpressionWorker;
+        synchronized (this) {
+            checkNoRunInProgress();
+            oldWorker = engineWorker;
+            oldExpressionWorker = engineExpressionWorker;
+            engineWorker = null;
+            engineExpressionWorker = null;
+        }
+        shutDownWorkers(oldWorker, oldExpressionWorker);
+    }
+
+    private void checkNoRunInProgress() {
+        if (activeRuns > 0) {
+            throw new IllegalStateException("The thread pool cannot be changed while a population is evolving.");
+        }
+    }
+
+    /**
+     * Shuts down workers that are no longer used and waits for them to finish.  Called
+     * without holding the engine's lock, since the tasks may need it.
+     */
+    private static void shutDownWorkers(FitnessEvaluationWorker worker, ExpressionWorker expressionWorker) {
+        if (worker != null) {
+            worker.shutdown();
+        }
+        if (expressionWorker != null) {
+            expressionWorker.shutdown();
+        }
+        try {
+            if (worker != null) {
+                worker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            if (expressionWorker != null) {
+                expressionWorker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The worker that multi-threaded fitness evaluations would use, or null if
+     * it has not been created yet.
+     */
+    synchronized FitnessEvaluationWorker peekFitnessEvaluationWorker() {
+        if (executorService == null && threadCount == 0 && virtualThreadLimit == 0) {
+            synchronized (AbstractEvolutionEngine.class) {
+                return concurrentWorker;
+            }
+        }
+        return engineWorker;
+    }
+
+    /**
+     * @return The multi-threaded worker used by this engine for fitness evaluations.
+     */
+    protected synchronized FitnessEvaluationWorker getFitnessEvaluationWorker() {
+        if (executorService == null && threadCount == 0 && virtualThreadLimit == 0) {
+            return getSharedWorker();
+        }
+        if (engineWorker == null) {
+            if (executorService != null) {
+                engineWorker = new FitnessEvaluationWorker(executorService);
+            } else if (virtualThreadLimit > 0) {
+                engineWorker = FitnessEvaluationWorker.newVirtualThreadWorker(virtualThreadLimit);
+            } else {
+                engineWorker = new FitnessEvaluationWorker(threadCount, queueCapacity);
+            }
+        }
+        return engineWorker;
+    }
+
+    /**
+     * @return The multi-threaded worker used by this engine for expressions.
+     */
+    protected synchronized ExpressionWorker getExpressionWorker() {
+        if (executorService == null && threadCount == 0 && virtualThreadLimit == 0) {
+            return getSharedExpressionWorker();
+        }
+        if (engineExpressionWorker == null) {
+            if (executorService != null) {
+                engineExpressionWorker = new ExpressionWorker(executorService);
+            } else if (virtualThreadLimit > 0) {
+                engineExpressionWorker = ExpressionWorker.newVirtualThreadWorker(virtualThreadLimit);
+            } else {
+                engineExpressionWorker = new ExpressionWorker(threadCount, queueCapacity);
+            }
+        }
+        return engineExpressionWorker;
+    }
+
     /**
      * Lazily create the multi-threaded worker for expressions.
      */
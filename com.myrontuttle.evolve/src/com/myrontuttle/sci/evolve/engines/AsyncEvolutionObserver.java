@@ -0,0 +1,344 @@
+package com.myrontuttle.sci.evolve.engines;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.myrontuttle.sci.evolve.api.EvolutionObserver;
+import com.myrontuttle.sci.evolve.api.PopulationStats;
+import com.myrontuttle.sci.evolve.islands.IslandEvolutionObserver;
+import com.myrontuttle.sci.evolve.util.concurrent.ConfigurableThreadFactory;
+
+/**
+ * <p>An observer that passes updates on to another observer on a thread of its own, so
+ * that a slow observer (a logger or a user interface, for example) never holds up
+ * evolution.  Updates wait in a bounded buffer.  When the buffer is full, the
+ * {@link OverflowPolicy} decides which update is discarded.  The number of updates
+ * delivered, dropped and coalesced is counted so that losses can be monitored.</p>
+ *
+ * <p>The observer can be registered with an evolution engine or with an
+ * {@link com.myrontuttle.sci.evolve.islands.IslandEvolution}.  Island updates are only
+ * passed on if the wrapped observer is an {@link IslandEvolutionObserver}.  Updates are
+ * delivered in order, one at a time, on a single daemon thread that is started when the
+ * first update arrives.  Call {@link #close()} to stop the thread once the updates that
+ * are already buffered have been delivered.</p>
+ *
+ * @param <T> The type of entity being evolved.
+ * @author Myron Tuttle
+ */
+public final class AsyncEvolutionObserver<T> implements IslandEvolutionObserver<T>, AutoCloseable {
+
+    /**
+     * What to do with an update that arrives when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the update that has just arrived. */
+        DROP_NEWEST,
+        /** Discard the oldest buffered update to make room. */
+        DROP_OLDEST,
+        /**
+         * Replace any buffered update from the same population (or island) with the new
+         * one, so that only the latest state of each population waits for delivery.  If
+         * there is no such update and the buffer is full, the oldest update is discarded.
+         */
+        COALESCE
+    }
+
+    private static final int DEFAULT_CAPACITY = 16;
+    // Island index of updates for the population as a whole.
+    private static final int GLOBAL = -1;
+
+    private final EvolutionObserver<? super T> observer;
+    private final IslandEvolutionObserver<? super T> islandObserver;
+    private final OverflowPolicy policy;
+    private final ThreadFactory threadFactory;
+
+    // A ring buffer of pending updates, guarded by the lock.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition updateAvailable = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final PopulationStats<? extends T>[] pendingStats;
+    private final int[] pendingIslands;
+    private int head = 0;
+    private int count = 0;
+    private boolean dispatching = false;
+    private boolean closed = false;
+    private Thread dispatcher = null;
+
+    private final AtomicLong deliveredCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+
+    /**
+     * Creates an asynchronous observer that buffers up to 16 updates and coalesces
+     * updates from the same population when the buffer is full.
+     * @param observer The observer to pass updates on to.
+     */
+    public AsyncEvolutionObserver(EvolutionObserver<? super T> observer) {
+        this(observer, DEFAULT_CAPACITY, OverflowPolicy.COALESCE);
+    }
+
+    /**
+     * @param observer The observer to pass updates on to.
+     * @param capacity The maximum number of updates waiting for delivery.
+     * @param policy What to do with updates that arrive when the buffer is full.
+     */
+    public AsyncEvolutionObserver(EvolutionObserver<? super T> observer,
+                                  int capacity,
+                                  OverflowPolicy policy) {
+        this(observer,
+             capacity,
+             policy,
+             new ConfigurableThreadFactory("AsyncEvolutionObserver", Thread.NORM_PRIORITY, true));
+    }
+
+    /**
+     * @param observer The observer to pass updates on to.
+     * @param capacity The maximum number of updates waiting for delivery.
+     * @param policy What to do with updates that arrive when the buffer is full.
+     * @param threadFactory Creates the thread that delivers the updates.
+     */
+    @SuppressWarnings("unchecked")
+    public AsyncEvolutionObserver(EvolutionObserver<? super T> observer,
+                                  int capacity,
+                                  OverflowPolicy policy,
+                                  ThreadFactory threadFactory) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Overflow policy must be specified.");
+        }
+        this.observer = observer;
+        this.islandObserver = observer instanceof IslandEvolutionObserver
+                              ? (IslandEvolutionObserver<? super T>) observer
+                              : null;
+        this.policy = policy;
+        this.threadFactory = threadFactory;
+        this.pendingStats = (PopulationStats<? extends T>[]) new PopulationStats<?>[capacity];
+        this.pendingIslands = new int[capacity];
+    }
+
+
+    /**
+     * Buffers a population update for delivery.  Never blocks.
+     */
+    public void populationUpdate(PopulationStats<? extends T> stats) {
+        enqueue(GLOBAL, stats);
+    }
+
+
+    /**
+     * Buffers an island update for delivery, unless the wrapped observer is not
+     * interested in island updates.  Never blocks.
+     */
+    public void islandPopulationUpdate(int islandIndex, PopulationStats<? extends T> data) {
+        if (islandObserver != null) {
+            enqueue(islandIndex, data);
+        }
+    }
+
+
+    private void enqueue(int islandIndex, PopulationStats<? extends T> stats) {
+        lock.lock();
+        try {
+            if (closed) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            if (policy == OverflowPolicy.COALESCE) {
+                for (int i = 0; i < count; i++) {
+                    int slot = (head + i) % pendingStats.length;
+                    if (pendingIslands[slot] == islandIndex
+                        && pendingStats[slot].getPopulationId() == stats.getPopulationId()) {
+                        pendingStats[slot] = stats;
+                        coalescedCount.incrementAndGet();
+                        return;
+                    }
+                }
+            }
+            if (count == pendingStats.length) {
+                droppedCount.incrementAndGet();
+                if (policy == OverflowPolicy.DROP_NEWEST) {
+                    return;
+                }
+                take();
+            }
+            int slot = (head + count) % pendingStats.length;
+            pendingStats[slot] = stats;
+            pendingIslands[slot] = islandIndex;
+            ++count;
+            if (dispatcher == null) {
+                startDispatcher();
+            }
+            updateAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Starts a thread to deliver the buffered updates.  Must be called with the lock held.
+     */
+    private void startDispatcher() {
+        dispatcher = threadFactory.newThread(new Dispatcher());
+        dispatcher.start();
+    }
+
+
+    /**
+     * Removes the oldest update from the buffer.  Must be called with the lock held.
+     * @return The slot that the update occupied, which stays valid until the next update
+     * is buffered.
+     */
+    private int take() {
+        int slot = head;
+        head = (head + 1) % pendingStats.length;
+        --count;
+        return slot;
+    }
+
+
+    /**
+     * Waits until every buffered update has been delivered.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the timeout.
+     * @return True if all updates were delivered, false if the time ran out first.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (count > 0 || dispatching) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = idle.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Stops accepting updates.  Updates that are already buffered are still delivered,
+     * after which the delivery thread exits.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            updateAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * @return The number of updates passed on to the wrapped observer.
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+
+    /**
+     * @return The number of updates discarded because the buffer was full or the
+     * observer was closed.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+
+    /**
+     * @return The number of updates that replaced an older buffered update from the
+     * same population.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+
+    /**
+     * @return The number of updates for which the wrapped observer threw an exception.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+
+    /**
+     * Delivers buffered updates until the observer is closed and the buffer is empty.
+     */
+    private final class Dispatcher implements Runnable {
+        public void run() {
+            while (true) {
+                PopulationStats<? extends T> stats;
+                int islandIndex;
+                lock.lock();
+                try {
+                    while (count == 0 && !closed) {
+                        try {
+                            updateAvailable.await();
+                        } catch (InterruptedException ex) {
+                            closed = true;
+                        }
+                    }
+                    if (count == 0) {
+                        dispatcher = null;
+                        idle.signalAll();
+                        return;
+                    }
+                    int slot = take();
+                    stats = pendingStats[slot];
+                    islandIndex = pendingIslands[slot];
+                    pendingStats[slot] = null;
+                    dispatching = true;
+                } finally {
+                    lock.unlock();
+                }
+                boolean survived = false;
+                try {
+                    if (islandIndex == GLOBAL) {
+                        observer.populationUpdate(stats);
+                    } else {
+                        islandObserver.islandPopulationUpdate(islandIndex, stats);
+                    }
+                    deliveredCount.incrementAndGet();
+                    survived = true;
+                } catch (RuntimeException ex) {
+                    // A misbehaving observer must not stop delivery of later updates.
+                    failedCount.incrementAndGet();
+                    survived = true;
+                } finally {
+                    lock.lock();
+                    try {
+                        dispatching = false;
+                        if (!survived) {
+                            // An Error ends this thread, so another must deliver the rest.
+                            failedCount.incrementAndGet();
+                            dispatcher = null;
+                            if (count > 0) {
+                                startDispatcher();
+                            }
+                        }
+                        if (count == 0) {
+                            idle.signalAll();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+    }
+}
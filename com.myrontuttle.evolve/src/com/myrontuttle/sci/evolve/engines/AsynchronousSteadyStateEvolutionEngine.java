@@ -0,0 +1,234 @@
+package com.myrontuttle.sci.evolve.engines;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.myrontuttle.sci.evolve.api.CandidateFactory;
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
+import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
+import com.myrontuttle.sci.evolve.api.SelectionStrategy;
+import com.myrontuttle.sci.evolve.api.TerminationCondition;
+import com.myrontuttle.sci.evolve.eval.FitnessEvalutationTask;
+import com.myrontuttle.sci.evolve.util.GenomePool;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
+
+/**
+ * <p>A barrier-free variant of {@link SteadyStateEvolutionEngine} that keeps a fixed
+ * number of fitness evaluations in flight on the fitness evaluation worker threads.
+ * As soon as any evaluation completes, the evaluated offspring is inserted into the
+ * population using the replacement policy ({@link #doReplacement}) and a new
+ * offspring is bred from the current population and submitted to refill the slot.
+ * This keeps every worker busy even when evaluation times vary widely, rather than
+ * waiting for the slowest offspring of each iteration.</p>
+ *
+ * <p>Each iteration of the algorithm consumes every evaluation that has completed
+ * since the previous iteration (waiting for at least one).  Evaluations that are still
+ * in flight when the evolution terminates are cancelled.</p>
+ *
+ * <p>Since offspring are evaluated while the population continues to change, each
+ * offspring is evaluated in the context of its siblings only rather than the whole
+ * population.  This engine should therefore only be used with fitness evaluators that
+ * ignore the population argument.  If the engine is single-threaded, or candidate
+ * expression is used, it behaves exactly like {@link SteadyStateEvolutionEngine}.</p>
+ *
+ * @param <T> The type of entity that is to be evolved.
+ * @see SteadyStateEvolutionEngine
+ * @author Myron Tuttle
+ */
+public class AsynchronousSteadyStateEvolutionEngine<T> extends SteadyStateEvolutionEngine<T> {
+
+    private final FitnessEvaluator<? super T> fitnessEvaluator;
+    private final int evaluationsInFlight;
+
+    // The evaluations of the run on each thread, so that populations can be evolved at once.
+    private final ThreadLocal<InFlight> inFlight = new ThreadLocal<InFlight>();
+
+    /**
+     * Create an asynchronous steady-state evolution engine.
+     * @param candidateFactory Factory used to create the initial population that is
+     * iteratively evolved.
+     * @param evolutionScheme The evolutionary operator that creates offspring from the
+     * selected parents.
+     * @param fitnessEvaluator The fitness function.  It should not depend on the
+     * population argument.
+     * @param selectionStrategy The strategy for selecting which candidate(s) will be
+     * the parent(s) when evolving individuals.
+     * @param selectionSize How many parent candidates are required by the evolution scheme.
+     * @param forceSingleCandidateUpdate If true, only one (randomly chosen) offspring is
+     * kept from each application of the evolution scheme.
+     * @param evaluationsInFlight The number of fitness evaluations to keep running at
+     * once.  Typically this is at least the number of worker threads.
+     * @param rng The source of randomness used by all stochastic processes (including
+     * evolutionary operators and selection strategies).
+     */
+    public AsynchronousSteadyStateEvolutionEngine(CandidateFactory<T> candidateFactory,
+                                                  EvolutionaryOperator<T> evolutionScheme,
+                                                  FitnessEvaluator<? super T> fitnessEvaluator,
+                                                  SelectionStrategy<? super T> selectionStrategy,
+                                                  int selectionSize,
+                                                  boolean forceSingleCandidateUpdate,
+                                                  int evaluationsInFlight,
+                                                  Random rng) {
+        super(candidateFactory,
+              evolutionScheme,
+              fitnessEvaluator,
+              selectionStrategy,
+              selectionSize,
+              forceSingleCandidateUpdate,
+              rng);
+        if (evaluationsInFlight <= 0) {
+            throw new IllegalArgumentException("Evaluations in flight must be positive.");
+        }
+        this.fitnessEvaluator = fitnessEvaluator;
+        this.evaluationsInFlight = evaluationsInFlight;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>Any evaluations still in flight when the evolution terminates are cancelled.</p>
+     */
+    @Override
+    public List<EvaluatedCandidate<T>> evolvePopulation(long populationId,
+                                                        int populationSize,
+                                                        int eliteCount,
+                                                        Collection<T> seedCandidates,
+                                                        TerminationCondition... conditions) {
+        InFlight previous = inFlight.get();
+        InFlight evaluations = new InFlight();
+        inFlight.set(evaluations);
+        try {
+            return super.evolvePopulation(populationId,
+                                          populationSize,
+                                          eliteCount,
+                                          seedCandidates,
+                                          conditions);
+        } finally {
+            evaluations.cancel();
+            if (previous == null) {
+                inFlight.remove();
+            } else {
+                inFlight.set(previous);
+            }
+        }
+    }
+
+
+    /**
+     * Not supported.  Offspring that are still being evaluated may share their genome
+     * with a parent that has since been replaced, so no replaced candidate can safely be
+     * recycled.
+     * @throws IllegalArgumentException If a pool is specified.
+     */
+    @Override
+    public void setGenomePool(GenomePool<? super T> genomePool) {
+        if (genomePool != null) {
+            throw new IllegalArgumentException("Genomes cannot be recycled by an asynchronous engine.");
+        }
+        super.setGenomePool(null);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<EvaluatedCandidate<T>> nextEvolutionStep(long populationId,
+                                                            List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                            int eliteCount,
+                                                            Random rng) {
+        InFlight evaluations = inFlight.get();
+        if (isSingleThreaded() || includeExpression() || evaluations == null) {
+            return super.nextEvolutionStep(populationId, evaluatedPopulation, eliteCount, rng);
+        }
+        if (evaluations.completionService == null) {
+            evaluations.completionService = getFitnessEvaluationWorker().createCompletionService();
+        }
+        // The indexed population stays ranked as each offspring is inserted.
+        IndexedPopulation<T> population = getIndexedPopulation(evaluatedPopulation);
+
+        // Top up the evaluations in flight (only necessary on the first iteration, or if
+        // the operator produced fewer offspring than expected).
+        while (evaluations.outstanding.size() < evaluationsInFlight) {
+            breedAndSubmit(evaluations, population, rng);
+        }
+
+        try {
+            // Wait for at least one evaluation, then take any others that have finished too.
+            Future<EvaluatedCandidate<T>> completed = evaluations.completionService.take();
+            while (completed != null) {
+                evaluations.outstanding.remove(completed);
+                doReplacement(population,
+                              Collections.singletonList(completed.get()),
+                              eliteCount,
+                              rng);
+                breedAndSubmit(evaluations, population, rng);
+                completed = evaluations.completionService.poll();
+            }
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Fitness evaluation task execution failed.", ex);
+        } catch (InterruptedException ex) {
+            // Restore the interrupted status, allows methods further up the call-stack
+            // to abort processing if appropriate.
+            Thread.currentThread().interrupt();
+        }
+        return population;
+    }
+
+
+    /**
+     * Selects parents from the current population, applies the evolution scheme and
+     * submits the offspring for evaluation.
+     */
+    private void breedAndSubmit(InFlight evaluations,
+                                List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                Random rng) {
+        long start = System.nanoTime();
+        List<T> parents = getSelectionStrategy().select(evaluatedPopulation,
+                                                        isNaturalFitness(),
+                                                        getSelectionSize(),
+                                                        rng);
+        start = getMetrics().record(EngineMetrics.Phase.SELECTION, start);
+        List<T> offspring = getEvolutionScheme().apply(parents, rng);
+        getMetrics().record(EngineMetrics.Phase.BREEDING, start);
+        if (offspring.size() > 1 && isForceSingleCandidateUpdate()) {
+            offspring = Collections.singletonList(offspring.get(rng.nextInt(offspring.size())));
+        }
+        List<T> siblings = Collections.unmodifiableList(new ArrayList<T>(offspring));
+        FitnessEvaluator<T> evaluator = getMetrics().timed(fitnessEvaluator);
+        for (T candidate : siblings) {
+            evaluations.outstanding.add(evaluations.completionService.submit(
+                new FitnessEvalutationTask<T>(evaluator, candidate, siblings)));
+        }
+    }
+
+
+    /**
+     * The evaluations submitted by one run of the engine.
+     */
+    private final class InFlight {
+        private CompletionService<EvaluatedCandidate<T>> completionService;
+        private final Set<Future<EvaluatedCandidate<T>>> outstanding
+            = Collections.newSetFromMap(new IdentityHashMap<Future<EvaluatedCandidate<T>>, Boolean>());
+
+        /**
+         * Cancels any evaluations that are still running and discards their results.
+         */
+        void cancel() {
+            for (Future<EvaluatedCandidate<T>> future : outstanding) {
+                future.cancel(true);
+            }
+            outstanding.clear();
+            completionService = null;
+        }
+    }
+}
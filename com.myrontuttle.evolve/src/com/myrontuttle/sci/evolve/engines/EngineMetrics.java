@@ -0,0 +1,316 @@
+package com.myrontuttle.sci.evolve.engines;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.myrontuttle.sci.evolve.api.BatchFitnessEvaluator;
+import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.api.ExpressedFitnessEvaluator;
+import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
+import com.myrontuttle.sci.evolve.eval.FitnessEvaluationWorker;
+import com.myrontuttle.sci.evolve.operators.EvolutionPipeline;
+import com.myrontuttle.sci.evolve.util.LatencyHistogram;
+
+/**
+ * <p>Timings recorded by an evolution engine: how long each phase of each generation
+ * takes, how long individual fitness evaluations take and, when the engine's
+ * evolutionary operator is an {@link EvolutionPipeline}, how long each stage of the
+ * pipeline takes.  Everything is recorded in lock-free {@link LatencyHistogram}s at the
+ * cost of a few clock reads per generation and two per evaluation, so the metrics are
+ * always on.</p>
+ *
+ * <p>The metrics can be read with {@link #snapshot()}, which also samples the depth of
+ * the engine's work queue and how busy its worker threads are, or published to JMX with
+ * {@link #registerMBean(String)}.  Recording continues across runs until
+ * {@link #reset()} is called.</p>
+ *
+ * @see AbstractEvolutionEngine#getMetrics()
+ * @author Myron Tuttle
+ */
+public final class EngineMetrics implements EngineMetricsMXBean {
+
+    /**
+     * The phases of evolution that are timed.
+     */
+    public enum Phase {
+        /** Creating the initial population. */
+        INITIAL_POPULATION,
+        /** Choosing the candidates to breed from. */
+        SELECTION,
+        /** Applying the evolutionary operators to the selected candidates. */
+        BREEDING,
+        /** Expressing candidates, when the engine uses an expression strategy. */
+        EXPRESSION,
+        /**
+         * Evaluating fitness.  With fused expression this also includes expression,
+         * because the two overlap.
+         */
+        EVALUATION,
+        /** Putting the evaluated population into fitness order. */
+        SORT,
+        /** Gathering population statistics. */
+        STATISTICS,
+        /** Notifying evolution observers. */
+        NOTIFICATION,
+        /** A whole generation after the initial population, from breeding to notification. */
+        GENERATION
+    }
+
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final AbstractEvolutionEngine<?> engine;
+    private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+    private final LatencyHistogram evaluationLatency = new LatencyHistogram();
+    private volatile ObjectName objectName = null;
+
+    EngineMetrics(AbstractEvolutionEngine<?> engine) {
+        this.engine = engine;
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+
+    /**
+     * Records the duration of one occurrence of a phase.
+     * @param phase The phase that has just finished.
+     * @param startNanos The value of {@link System#nanoTime()} when the phase started.
+     * @return The current value of {@link System#nanoTime()}, which can be used as the
+     * start time of the next phase.
+     */
+    public long record(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        phases[phase.ordinal()].record(now - startNanos);
+        return now;
+    }
+
+
+    /**
+     * @param phase A phase of evolution.
+     * @return The live histogram of the phase's durations.
+     */
+    public LatencyHistogram getPhase(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+
+    /**
+     * @return The live histogram of the durations of individual fitness evaluations.
+     */
+    public LatencyHistogram getEvaluationLatency() {
+        return evaluationLatency;
+    }
+
+
+    /**
+     * Takes a copy of the metrics, and samples the state of the engine's fitness
+     * evaluation worker.
+     * @return A snapshot of the metrics.
+     */
+    public MetricsSnapshot snapshot() {
+        Map<Phase, LatencyHistogram> phaseCopies = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            phaseCopies.put(phase, phases[phase.ordinal()].copy());
+        }
+        EvolutionaryOperator<?> scheme = engine.getEvolutionScheme();
+        Map<String, LatencyHistogram> stageLatencies = scheme instanceof EvolutionPipeline
+                                                       ? ((EvolutionPipeline<?>) scheme).getStageLatencies()
+                                                       : Collections.<String, LatencyHistogram>emptyMap();
+        FitnessEvaluationWorker worker = engine.isSingleThreaded() ? null : engine.peekFitnessEvaluationWorker();
+        return new MetricsSnapshot(phaseCopies,
+                                   evaluationLatency.copy(),
+                                   stageLatencies,
+                                   worker == null ? -1 : worker.getQueueDepth(),
+                                   worker == null ? -1 : worker.getActiveCount(),
+                                   worker == null ? -1 : worker.getThreadCount());
+    }
+
+
+    /**
+     * Discards all recorded timings.
+     */
+    public void reset() {
+        for (LatencyHistogram phase : phases) {
+            phase.reset();
+        }
+        evaluationLatency.reset();
+    }
+
+
+    /**
+     * Publishes the metrics to the platform MBean server.
+     * @param name A name that distinguishes this engine from others in the same JVM.
+     * @return The name under which the metrics are registered.
+     * @throws JMException If the metrics cannot be registered, for example because the
+     * name is already in use.
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException {
+        if (objectName != null) {
+            throw new IllegalStateException("Metrics are already registered as " + objectName);
+        }
+        ObjectName newName = new ObjectName("com.myrontuttle.sci.evolve:type=EvolutionEngine,name="
+                                            + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+        objectName = newName;
+        return newName;
+    }
+
+
+    /**
+     * Removes the metrics from the platform MBean server.  Does nothing if they are not
+     * registered.
+     * @throws JMException If the metrics cannot be unregistered.
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            objectName = null;
+        }
+    }
+
+
+    public long getGenerationCount() {
+        return phases[Phase.GENERATION.ordinal()].getCount();
+    }
+
+
+    public Map<String, Double> getPhaseTotalMillis() {
+        Map<String, Double> totals = new LinkedHashMap<String, Double>();
+        for (Phase phase : Phase.values()) {
+            totals.put(phase.name(), phases[phase.ordinal()].getTotalNanos() / NANOS_PER_MILLI);
+        }
+        return totals;
+    }
+
+
+    public Map<String, Double> getPhaseMeanMillis() {
+        Map<String, Double> means = new LinkedHashMap<String, Double>();
+        for (Phase phase : Phase.values()) {
+            means.put(phase.name(), phases[phase.ordinal()].getMeanNanos() / NANOS_PER_MILLI);
+        }
+        return means;
+    }
+
+
+    public long getEvaluationCount() {
+        return evaluationLatency.getCount();
+    }
+
+
+    public double getMeanEvaluationMillis() {
+        return evaluationLatency.getMeanNanos() / NANOS_PER_MILLI;
+    }
+
+
+    public double getMedianEvaluationMillis() {
+        return evaluationLatency.getPercentileNanos(50) / NANOS_PER_MILLI;
+    }
+
+
+    public double getEvaluation99thPercentileMillis() {
+        return evaluationLatency.getPercentileNanos(99) / NANOS_PER_MILLI;
+    }
+
+
+    public double getMaxEvaluationMillis() {
+        return evaluationLatency.getMaxNanos() / NANOS_PER_MILLI;
+    }
+
+
+    public int getWorkerQueueDepth() {
+        return snapshot().getWorkerQueueDepth();
+    }
+
+
+    public double getWorkerUtilisation() {
+        return snapshot().getWorkerUtilisation();
+    }
+
+
+    /**
+     * Wraps a fitness evaluator so that each evaluation is timed.
+     */
+    <S> FitnessEvaluator<S> timed(final FitnessEvaluator<? super S> evaluator) {
+        return new FitnessEvaluator<S>() {
+            public double getFitness(S candidate, List<? extends S> population) {
+                long start = System.nanoTime();
+                try {
+                    return evaluator.getFitness(candidate, population);
+                } finally {
+                    evaluationLatency.record(System.nanoTime() - start);
+                }
+            }
+
+            public boolean isNatural() {
+                return evaluator.isNatural();
+            }
+        };
+    }
+
+
+    /**
+     * Wraps a batch fitness evaluator so that each batch is timed.  Each candidate in
+     * the batch is recorded as taking the average time per candidate.
+     */
+    <S> BatchFitnessEvaluator<S> timed(final BatchFitnessEvaluator<? super S> evaluator) {
+        return new BatchFitnessEvaluator<S>() {
+            public double[] getFitnessScores(List<? extends S> candidates, List<? extends S> population) {
+                long start = System.nanoTime();
+                try {
+                    return evaluator.getFitnessScores(candidates, population);
+                } finally {
+                    if (!candidates.isEmpty()) {
+                        evaluationLatency.record((System.nanoTime() - start) / candidates.size(),
+                                                 candidates.size());
+                    }
+                }
+            }
+
+            public double getFitness(S candidate, List<? extends S> population) {
+                long start = System.nanoTime();
+                try {
+                    return evaluator.getFitness(candidate, population);
+                } finally {
+                    evaluationLatency.record(System.nanoTime() - start);
+                }
+            }
+
+            public boolean isNatural() {
+                return evaluator.isNatural();
+            }
+        };
+    }
+
+
+    /**
+     * Wraps an expressed fitness evaluator so that each evaluation is timed.
+     */
+    <S> ExpressedFitnessEvaluator<S> timed(final ExpressedFitnessEvaluator<S> evaluator) {
+        return new ExpressedFitnessEvaluator<S>() {
+            public double getFitness(ExpressedCandidate<S> candidate, List<ExpressedCandidate<S>> population) {
+                long start = System.nanoTime();
+                try {
+                    return evaluator.getFitness(candidate, population);
+                } finally {
+                    evaluationLatency.record(System.nanoTime() - start);
+                }
+            }
+
+            public boolean isNatural() {
+                return evaluator.isNatural();
+            }
+        };
+    }
+}
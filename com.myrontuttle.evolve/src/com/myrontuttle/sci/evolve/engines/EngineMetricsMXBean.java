@@ -0,0 +1,67 @@
+package com.myrontuttle.sci.evolve.engines;
+
+import java.util.Map;
+
+/**
+ * The management interface through which {@link EngineMetrics} are published to JMX.
+ * Times are reported in milliseconds.
+ * @see EngineMetrics#registerMBean(String)
+ * @author Myron Tuttle
+ */
+public interface EngineMetricsMXBean {
+
+    /**
+     * @return The number of generations evolved, not counting initial populations.
+     */
+    long getGenerationCount();
+
+    /**
+     * @return The total time spent in each phase, keyed by phase name.
+     */
+    Map<String, Double> getPhaseTotalMillis();
+
+    /**
+     * @return The mean time per occurrence of each phase, keyed by phase name.
+     */
+    Map<String, Double> getPhaseMeanMillis();
+
+    /**
+     * @return The number of fitness evaluations timed.
+     */
+    long getEvaluationCount();
+
+    /**
+     * @return The mean time taken by a fitness evaluation.
+     */
+    double getMeanEvaluationMillis();
+
+    /**
+     * @return An upper bound on the median time taken by a fitness evaluation.
+     */
+    double getMedianEvaluationMillis();
+
+    /**
+     * @return An upper bound on the 99th percentile of the time taken by a fitness evaluation.
+     */
+    double getEvaluation99thPercentileMillis();
+
+    /**
+     * @return The longest time taken by a fitness evaluation.
+     */
+    double getMaxEvaluationMillis();
+
+    /**
+     * @return The number of evaluations waiting for a worker thread, or -1 if unknown.
+     */
+    int getWorkerQueueDepth();
+
+    /**
+     * @return The fraction of worker threads that are busy, or -1 if unknown.
+     */
+    double getWorkerUtilisation();
+
+    /**
+     * Discards all recorded timings.
+     */
+    void reset();
+}
@@ -0,0 +1,203 @@
+package com.myrontuttle.sci.evolve.engines;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.api.TerminationCondition;
+import com.myrontuttle.sci.evolve.termination.ElapsedTime;
+import com.myrontuttle.sci.evolve.termination.UserAbort;
+
+/**
+ * <p>The state of one run of an evolution engine for one population: the generation
+ * number, the start time, the termination conditions and those that have been
+ * satisfied.  The engine itself only holds configuration, so a single engine can evolve
+ * several populations at once (on separate threads) as long as each has a different
+ * population ID.</p>
+ *
+ * <p>A session is created when evolution of a population starts and is kept by the
+ * engine until the population is evolved again or the session is discarded with
+ * {@link AbstractEvolutionEngine#endSession(long)}.</p>
+ *
+ * @param <T> The type of entity evolved in the session.
+ * @see AbstractEvolutionEngine#getSession(long)
+ * @author Myron Tuttle
+ */
+public final class EvolutionSession<T> {
+
+    private final long populationId;
+    private final long startTime;
+
+    private volatile int generationIndex = 0;
+    private volatile TerminationCondition[] terminationConditions;
+    private volatile List<TerminationCondition> satisfiedTerminationConditions;
+
+    // The most recent fully evaluated population of an expression step, from which
+    // fitness scores are carried over to the next step.
+    private List<EvaluatedCandidate<T>> lastExpressedEvaluation;
+
+    // Candidates that will be reclaimed at the end of the current generation unless they
+    // survive into the next one.  Kept for the whole session so that it is only
+    // allocated once.
+    private final Map<T, Boolean> discardable = new IdentityHashMap<T, Boolean>();
+
+    // While a generation is being evolved with in-flight cancellation, the time at which
+    // evolution must stop and the abort conditions to watch.
+    private boolean stopArmed = false;
+    private long stopDeadlineNanos = Long.MAX_VALUE;
+    private List<UserAbort> userAborts = Collections.emptyList();
+    // Set when tasks for the current generation have been cancelled.
+    private boolean generationCutShort = false;
+
+    EvolutionSession(long populationId, TerminationCondition[] terminationConditions) {
+        this.populationId = populationId;
+        this.startTime = System.currentTimeMillis();
+        this.terminationConditions = terminationConditions;
+    }
+
+
+    /**
+     * @return The ID of the population evolved in this session.
+     */
+    public long getPopulationId() {
+        return populationId;
+    }
+
+
+    /**
+     * @return The time at which the session started, in milliseconds since the epoch.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+
+    /**
+     * @return The number of the generation being evolved, starting from zero for the
+     * initial population.
+     */
+    public int getGenerationIndex() {
+        return generationIndex;
+    }
+
+
+    /**
+     * @return The termination conditions of the most recent evolution request.
+     */
+    public TerminationCondition[] getTerminationConditions() {
+        return terminationConditions;
+    }
+
+
+    /**
+     * @return The satisfied termination conditions, or null if evolution of the
+     * population has not yet terminated.
+     */
+    public List<TerminationCondition> getSatisfiedTerminationConditions() {
+        return satisfiedTerminationConditions;
+    }
+
+
+    void setGenerationIndex(int generationIndex) {
+        this.generationIndex = generationIndex;
+    }
+
+
+    int nextGeneration() {
+        return ++generationIndex;
+    }
+
+
+    void setTerminationConditions(TerminationCondition[] terminationConditions) {
+        this.terminationConditions = terminationConditions;
+    }
+
+
+    void setSatisfiedTerminationConditions(List<TerminationCondition> satisfiedTerminationConditions) {
+        this.satisfiedTerminationConditions = satisfiedTerminationConditions == null
+                                              ? null
+                                              : new ArrayList<TerminationCondition>(satisfiedTerminationConditions);
+    }
+
+
+    List<EvaluatedCandidate<T>> getLastExpressedEvaluation() {
+        return lastExpressedEvaluation;
+    }
+
+
+    void setLastExpressedEvaluation(List<EvaluatedCandidate<T>> lastExpressedEvaluation) {
+        this.lastExpressedEvaluation = lastExpressedEvaluation;
+    }
+
+
+    Map<T, Boolean> getDiscardable() {
+        return discardable;
+    }
+
+
+    /**
+     * Starts watching the {@link ElapsedTime} and {@link UserAbort} termination conditions
+     * so that in-flight tasks can be cancelled as soon as one is satisfied.
+     */
+    void armStop() {
+        long remainingMillis = Long.MAX_VALUE;
+        List<UserAbort> aborts = new ArrayList<UserAbort>();
+        for (TerminationCondition condition : terminationConditions) {
+            if (condition instanceof ElapsedTime) {
+                long elapsed = System.currentTimeMillis() - startTime;
+                remainingMillis = Math.min(remainingMillis,
+                                           ((ElapsedTime) condition).getMaxDuration() - elapsed);
+            } else if (condition instanceof UserAbort) {
+                aborts.add((UserAbort) condition);
+            }
+        }
+        stopDeadlineNanos = remainingMillis == Long.MAX_VALUE
+                            ? Long.MAX_VALUE
+                            : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remainingMillis);
+        userAborts = aborts;
+        stopArmed = true;
+    }
+
+
+    void disarmStop() {
+        stopArmed = false;
+    }
+
+
+    boolean isStopArmed() {
+        return stopArmed;
+    }
+
+
+    /**
+     * @return True if stop checks are armed and the time is up or evolution has been aborted.
+     */
+    boolean isStopRequested() {
+        if (!stopArmed) {
+            return false;
+        }
+        if (stopDeadlineNanos != Long.MAX_VALUE && System.nanoTime() - stopDeadlineNanos >= 0) {
+            return true;
+        }
+        for (UserAbort abort : userAborts) {
+            if (abort.isAborted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    boolean isGenerationCutShort() {
+        return generationCutShort;
+    }
+
+
+    void setGenerationCutShort(boolean generationCutShort) {
+        this.generationCutShort = generationCutShort;
+    }
+}
@@ -106,6 +106,25 @@ public class EvolutionStrategyEngine<T> extends AbstractEvolutionEngine<T>
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected EvolutionaryOperator<T> getEvolutionScheme() {
+        return evolutionScheme;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>Parents are chosen at random, so only the fittest candidate needs to be ranked.</p>
+     */
+    @Override
+    protected int getRankedCount(int populationSize, int eliteCount) {
+        return 0;
+    }
+
+
     /**
      * This method performs a single step/iteration of the evolutionary process.
      * @param evaluatedPopulation The population at the beginning of the process.
@@ -124,38 +143,47 @@ public class EvolutionStrategyEngine<T> extends AbstractEvolutionEngine<T>
         assert eliteCount == 0 : "Explicit elitism is not supported for an ES, eliteCount should be 0.";
         
         // Select candidates that will be operated on to create the offspring.
+        long start = System.nanoTime();
         int offspringCount = offspringMultiplier * evaluatedPopulation.size();
         List<T> parents = new ArrayList<T>(offspringCount);
         for (int i = 0; i < offspringCount; i++)
         {
             parents.add(evaluatedPopulation.get(rng.nextInt(evaluatedPopulation.size())).getCandidate());
         }
+        start = getMetrics().record(EngineMetrics.Phase.SELECTION, start);
 
         // Then evolve the parents.
         List<T> offspring = evolutionScheme.apply(parents, rng);
+        getMetrics().record(EngineMetrics.Phase.BREEDING, start);
 
         List<EvaluatedCandidate<T>> evaluatedOffspring;
         if (includeExpression()) {
 
-            // Express each candidate in the population
-            List<ExpressedCandidate<T>> expressedCandidates = 
-            					expressPopulation(offspring, 0);
-            
-            //Calculate the fitness scores for each member of the expressed population.
-            evaluatedOffspring = evaluateExpressedPopulation(expressedCandidates);
+            // Express each candidate in the population and calculate the fitness scores
+            // for each member of the expressed population.
+            evaluatedOffspring = expressAndEvaluatePopulation(offspring, 0, evaluatedPopulation);
         } else {
 
             //Calculate the fitness scores for each member of the population.
-        	evaluatedOffspring = evaluatePopulation(offspring);
+        	evaluatedOffspring = evaluatePopulation(offspring, evaluatedPopulation);
         }
         
         if (plusSelection) // Plus-selection means parents are considered for survival as well as offspring.
         {
             evaluatedOffspring.addAll(evaluatedPopulation);
         }
-        EvolutionUtils.sortEvaluatedPopulation(evaluatedOffspring, fitnessEvaluator.isNatural());
-        // Retain the fittest of the candidates that are eligible for survival.
-        return evaluatedOffspring.subList(0, evaluatedPopulation.size());
+        // Retain the fittest of the candidates that are eligible for survival.  They only
+        // need to be sorted here if partial ranking is disabled.
+        if (isPartialRanking()) {
+            EvolutionUtils.selectFittest(evaluatedOffspring,
+                                         evaluatedPopulation.size(),
+                                         isNaturalFitness());
+        } else {
+            EvolutionUtils.sortEvaluatedPopulation(evaluatedOffspring, isNaturalFitness());
+        }
+        // Fewer offspring than usual are available if the generation was cut short.
+        return evaluatedOffspring.subList(0, Math.min(evaluatedPopulation.size(),
+                                                      evaluatedOffspring.size()));
     }
 
 	@Override
@@ -167,7 +195,7 @@ public class EvolutionStrategyEngine<T> extends AbstractEvolutionEngine<T>
 		List<EvaluatedCandidate<T>> evaluatedPopulation = 
 				evaluateExpressedPopulation(candidates);
 
-        EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, expressedFitnessEvaluator.isNatural());
+        rankPopulation(evaluatedPopulation, eliteCount);
         PopulationStats<T> stats = EvolutionUtils.getPopulationStats(populationId,
         										  evaluatedPopulation,
         										  expressedFitnessEvaluator.isNatural(),
@@ -208,7 +236,7 @@ public class EvolutionStrategyEngine<T> extends AbstractEvolutionEngine<T>
             
             return newExpressedCandidates;
         } else {
-            this.satisfiedTerminationConditions = satisfiedConditions;
+            setSatisfiedTerminationConditions(satisfiedConditions);
         	return candidates;
         }
 	}
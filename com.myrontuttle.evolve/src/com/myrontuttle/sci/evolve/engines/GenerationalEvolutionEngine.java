@@ -16,11 +16,22 @@
 package com.myrontuttle.sci.evolve.engines;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import java.util.Random;
 
+import org.uncommons.maths.statistics.DataSet;
+
 import com.myrontuttle.sci.evolve.api.CandidateFactory;
 import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
 import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
@@ -31,9 +42,13 @@ import com.myrontuttle.sci.evolve.api.SelectionStrategy;
 import com.myrontuttle.sci.evolve.api.TerminationCondition;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
 import com.myrontuttle.sci.evolve.api.PopulationStats;
+import com.myrontuttle.sci.evolve.eval.FitnessEvalutationTask;
 import com.myrontuttle.sci.evolve.eval.NullFitnessEvaluator;
 import com.myrontuttle.sci.evolve.interactive.InteractiveSelection;
+import com.myrontuttle.sci.evolve.operators.EvolutionPipeline;
+import com.myrontuttle.sci.evolve.selection.TournamentSelection;
 import com.myrontuttle.sci.evolve.util.EvolutionUtils;
+import com.myrontuttle.sci.evolve.util.LazyPopulation;
 
 /**
  * <p>This class implements a general-purpose generational evolutionary algorithm.
@@ -45,6 +60,14 @@ import com.myrontuttle.sci.evolve.util.EvolutionUtils;
  * threads. All of the host's available processing units are used (i.e. on a quad-core
  * machine there will be four fitness evaluation worker threads).</p>
  *
+ * <p>In pipelined mode (see {@link #setPipelined(boolean)}) the selected candidates are
+ * bred in chunks and each chunk of offspring is handed to the worker threads as soon as
+ * it has been created, so breeding overlaps with fitness evaluation.  Results are
+ * gathered in the order that they complete and the sorting and statistics for the new
+ * generation are accumulated while the remaining evaluations are still in progress.
+ * Each candidate is evaluated against its own chunk rather than the whole generation,
+ * so this mode is only suitable for fitness evaluators that ignore the population.</p>
+ *
  * <p>If multi-threading is disabled, all work is performed synchronously on the
  * request thread.  This strategy is suitable for restricted/managed environments where
  * it is not permitted for applications to manage their own threads.  If there are no
@@ -63,6 +86,20 @@ public class GenerationalEvolutionEngine<T> extends AbstractEvolutionEngine<T>
     private final ExpressedFitnessEvaluator<T> expressedFitnessEvaluator;
     private final SelectionStrategy<? super T> selectionStrategy;
 
+    private volatile boolean pipelined = false;
+    private volatile int pipelineChunkSize = 0;
+    private volatile boolean priorityEvaluation = false;
+    private volatile boolean lazyEvaluation = false;
+
+    // Fitness statistics gathered while the most recent pipelined generation on each
+    // thread was being evaluated, and the population that they describe.
+    private final ThreadLocal<PipelinedGeneration<T>> pipelinedGeneration
+        = new ThreadLocal<PipelinedGeneration<T>>();
+    // The parents already chosen for the next generation by the most recent lazy
+    // generation on each thread, and the population that they were chosen from.
+    private final ThreadLocal<LazyGeneration<T>> lazyGeneration
+        = new ThreadLocal<LazyGeneration<T>>();
+
     /**
      * Creates a new evolution engine by specifying the various components required by
      * a generational evolutionary algorithm.
@@ -138,6 +175,12 @@ public class GenerationalEvolutionEngine<T> extends AbstractEvolutionEngine<T>
     						List<EvaluatedCandidate<T>> evaluatedPopulation,
                                                             int eliteCount,
                                                             Random rng) {
+        if (lazyEvaluation && !includeExpression()) {
+            return nextLazyStep(evaluatedPopulation, eliteCount, rng);
+        }
+        if (pipelined && !isSingleThreaded() && !includeExpression()) {
+            return nextPipelinedStep(evaluatedPopulation, eliteCount, rng);
+        }
         List<T> population = new ArrayList<T>(evaluatedPopulation.size());
 
         // First perform any elitist selection.
@@ -149,30 +192,395 @@ public class GenerationalEvolutionEngine<T> extends AbstractEvolutionEngine<T>
         }
         // Then select candidates that will be operated on to create the evolved
         // portion of the next generation.
-        population.addAll(selectionStrategy.select(evaluatedPopulation,
-                                                   fitnessEvaluator.isNatural(),
-                                                   evaluatedPopulation.size() - eliteCount,
-                                                   rng));
+        long start = System.nanoTime();
+        List<? extends T> selected = selectionStrategy.select(evaluatedPopulation,
+                                                              isNaturalFitness(),
+                                                              evaluatedPopulation.size() - eliteCount,
+                                                              rng);
+        start = getMetrics().record(EngineMetrics.Phase.SELECTION, start);
+        population.addAll(selected);
         // Then evolve the population.
         population = evolutionScheme.apply(population, rng);
-        // When the evolution is finished, add the elite to the population.
-        population.addAll(elite);
+        getMetrics().record(EngineMetrics.Phase.BREEDING, start);
+        if (priorityEvaluation) {
+            population = prioritise(population, selected, evaluatedPopulation, elite);
+        } else {
+            // When the evolution is finished, add the elite to the population.
+            population.addAll(elite);
+        }
         
         if (includeExpression()) {
 
-            // Express each candidate in the population
-            List<ExpressedCandidate<T>> expressedCandidates = 
-            					expressPopulation(population, populationId);
-            
-            //Calculate the fitness scores for each member of the expressed population.
-            return evaluateExpressedPopulation(expressedCandidates);
+            // Express each candidate in the population and calculate the fitness scores
+            // for each member of the expressed population.
+            return expressAndEvaluatePopulation(population, populationId, evaluatedPopulation);
         } else {
 
             //Calculate the fitness scores for each member of the population.
-        	return evaluatePopulation(population);
+        	return evaluatePopulation(population, evaluatedPopulation);
+        }
+    }
+
+    /**
+     * Puts the elite first, followed by the offspring in order of the rank of the parent
+     * in the same position of the selected list.  If the evolution scheme does not keep
+     * offspring in the positions of their parents, the offspring are left in the order
+     * that they were bred.
+     */
+    private List<T> prioritise(List<T> offspring,
+                               List<? extends T> selected,
+                               List<EvaluatedCandidate<T>> evaluatedPopulation,
+                               List<T> elite) {
+        List<T> prioritised = new ArrayList<T>(offspring.size() + elite.size());
+        prioritised.addAll(elite);
+        if (offspring.size() != selected.size() || !EvolutionPipeline.preservesPositions(evolutionScheme)) {
+            prioritised.addAll(offspring);
+            return prioritised;
+        }
+        Map<T, Integer> ranks = new IdentityHashMap<T, Integer>(evaluatedPopulation.size() * 2);
+        int rank = 0;
+        for (EvaluatedCandidate<T> candidate : evaluatedPopulation) {
+            if (!ranks.containsKey(candidate.getCandidate())) {
+                ranks.put(candidate.getCandidate(), rank);
+            }
+            ++rank;
+        }
+        final int[] parentRanks = new int[offspring.size()];
+        Integer[] positions = new Integer[offspring.size()];
+        for (int i = 0; i < positions.length; i++) {
+            Integer parentRank = ranks.get(selected.get(i));
+            parentRanks[i] = parentRank == null ? Integer.MAX_VALUE : parentRank;
+            positions[i] = i;
+        }
+        // Object arrays are sorted stably, so offspring of the same parent keep their order.
+        Arrays.sort(positions, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(parentRanks[a], parentRanks[b]);
+            }
+        });
+        for (Integer position : positions) {
+            prioritised.add(offspring.get(position));
+        }
+        return prioritised;
+    }
+
+    /**
+     * Performs a generation in which only the offspring that the selection strategy looks
+     * at are evaluated.  The offspring are put in a {@link LazyPopulation} and the parents
+     * of the following generation are selected from it straight away, so the candidates
+     * that are evaluated are those that take part in selection (plus the elite, whose
+     * fitness is already known).  They are the population that is returned, and the
+     * parents are kept for the next call.  If evaluation is stopped before selection is
+     * finished, no parents are kept.
+     */
+    private List<EvaluatedCandidate<T>> nextLazyStep(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                     int eliteCount,
+                                                     Random rng) {
+        LazyGeneration<T> previous = lazyGeneration.get();
+        lazyGeneration.remove();
+        boolean continuing = previous != null && previous.population == evaluatedPopulation;
+        int populationSize = continuing ? previous.populationSize : evaluatedPopulation.size();
+
+        Map<T, EvaluatedCandidate<T>> knownFitness
+            = new IdentityHashMap<T, EvaluatedCandidate<T>>(getKnownFitness(evaluatedPopulation));
+        List<T> nextGeneration = new ArrayList<T>(populationSize);
+        Iterator<EvaluatedCandidate<T>> iterator = evaluatedPopulation.iterator();
+        while (nextGeneration.size() < eliteCount) {
+            EvaluatedCandidate<T> elite = iterator.next();
+            nextGeneration.add(elite.getCandidate());
+            knownFitness.put(elite.getCandidate(), elite);
+        }
+
+        long start = System.nanoTime();
+        List<T> selected;
+        if (continuing) {
+            selected = previous.parents;
+        } else {
+            // The first generation, or one that was cut short, has no parents chosen yet.
+            selected = selectionStrategy.select(evaluatedPopulation,
+                                                isNaturalFitness(),
+                                                populationSize - eliteCount,
+                                                rng);
+            start = getMetrics().record(EngineMetrics.Phase.SELECTION, start);
+        }
+        nextGeneration.addAll(evolutionScheme.apply(new ArrayList<T>(selected), rng));
+        getMetrics().record(EngineMetrics.Phase.BREEDING, start);
+
+        // Members are evaluated in the same way as a whole population, which also records
+        // the time spent evaluating them.
+        LazyPopulation.Evaluator<T> evaluator = new LazyPopulation.Evaluator<T>() {
+            public List<EvaluatedCandidate<T>> evaluate(List<T> candidates, List<T> population) {
+                return evaluateMembers(candidates, population);
+            }
+        };
+        LazyPopulation<T> population = new LazyPopulation<T>(nextGeneration, knownFitness, evaluator);
+        List<T> parents;
+        try {
+            parents = selectionStrategy.select(population,
+                                               isNaturalFitness(),
+                                               nextGeneration.size() - eliteCount,
+                                               rng);
+        } catch (CancellationException ex) {
+            // Evaluation was stopped, so the generation is incomplete.
+            parents = null;
+        }
+        List<EvaluatedCandidate<T>> evaluated = population.getEvaluatedCandidates();
+        if (parents != null) {
+            lazyGeneration.set(new LazyGeneration<T>(evaluated, parents, nextGeneration.size()));
+        }
+        return evaluated;
+    }
+
+
+    /**
+     * Performs a generation in which breeding, fitness evaluation and the ranking of the
+     * new generation overlap.  The elite are submitted for evaluation first, then the
+     * selected candidates are evolved one chunk at a time with each chunk of offspring
+     * submitted as soon as it is created.  Results are consumed in completion order;
+     * each run of completed candidates is sorted and added to the fitness statistics
+     * while the slower evaluations are still running, so that ranking the final
+     * population only requires merging pre-sorted runs.
+     */
+    private List<EvaluatedCandidate<T>> nextPipelinedStep(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                          int eliteCount,
+                                                          Random rng) {
+        CompletionService<EvaluatedCandidate<T>> completionService
+            = getFitnessEvaluationWorker().createCompletionService();
+        List<Future<EvaluatedCandidate<T>>> tasks = new ArrayList<Future<EvaluatedCandidate<T>>>();
+        Map<T, EvaluatedCandidate<T>> knownFitness = getKnownFitness(evaluatedPopulation);
+        List<EvaluatedCandidate<T>> carriedOver = new ArrayList<EvaluatedCandidate<T>>();
+
+        // The elite need no breeding so they can start evaluating immediately.
+        List<T> elite = new ArrayList<T>(eliteCount);
+        Iterator<EvaluatedCandidate<T>> iterator = evaluatedPopulation.iterator();
+        while (elite.size() < eliteCount) {
+            elite.add(iterator.next().getCandidate());
+        }
+        submitForEvaluation(elite, knownFitness, carriedOver, completionService, tasks);
+
+        List<T> selection = selectionStrategy.select(evaluatedPopulation,
+                                                     isNaturalFitness(),
+                                                     evaluatedPopulation.size() - eliteCount,
+                                                     rng);
+        int chunkSize = getPipelineChunkSize(selection.size());
+        for (int start = 0; start < selection.size(); start += chunkSize) {
+            List<T> chunk = selection.subList(start, Math.min(start + chunkSize, selection.size()));
+            submitForEvaluation(evolutionScheme.apply(chunk, rng),
+                                knownFitness,
+                                carriedOver,
+                                completionService,
+                                tasks);
+        }
+        int submitted = tasks.size();
+
+        // Candidates with carried-over fitness form the first sorted run.
+        List<EvaluatedCandidate<T>> nextPopulation
+            = new ArrayList<EvaluatedCandidate<T>>(submitted + carriedOver.size());
+        DataSet statistics = new DataSet(submitted + carriedOver.size());
+        for (EvaluatedCandidate<T> candidate : carriedOver) {
+            nextPopulation.add(candidate);
+            statistics.addValue(candidate.getFitness());
+        }
+        EvolutionUtils.sortEvaluatedPopulation(nextPopulation, isNaturalFitness());
+        int runStart = nextPopulation.size();
+        try {
+            for (int i = 0; i < submitted; i++) {
+                EvaluatedCandidate<T> candidate = completionService.take().get();
+                nextPopulation.add(candidate);
+                statistics.addValue(candidate.getFitness());
+                if (nextPopulation.size() - runStart == chunkSize) {
+                    EvolutionUtils.sortEvaluatedPopulation(nextPopulation.subList(runStart, nextPopulation.size()),
+                                                           isNaturalFitness());
+                    runStart = nextPopulation.size();
+                }
+            }
+        } catch (ExecutionException ex) {
+            cancelAll(tasks);
+            throw new IllegalStateException("Fitness evaluation task execution failed.", ex);
+        } catch (InterruptedException ex) {
+            // Restore the interrupted status and keep the last complete generation since
+            // the new one has not been fully evaluated.
+            cancelAll(tasks);
+            Thread.currentThread().interrupt();
+            return evaluatedPopulation;
+        }
+        pipelinedGeneration.set(new PipelinedGeneration<T>(nextPopulation, statistics));
+        return nextPopulation;
+    }
+
+
+    /**
+     * Submits each candidate for evaluation as a separate task.  Pipelined evaluation
+     * starts before the whole generation has been bred, so each candidate is evaluated
+     * in the context of the offspring it was bred with rather than the full population.
+     * Candidates with a known fitness score are added to the carried-over list instead.
+     * The submitted tasks are added to the list of tasks.
+     */
+    private void submitForEvaluation(List<T> candidates,
+                                     Map<T, EvaluatedCandidate<T>> knownFitness,
+                                     List<EvaluatedCandidate<T>> carriedOver,
+                                     CompletionService<EvaluatedCandidate<T>> completionService,
+                                     List<Future<EvaluatedCandidate<T>>> tasks) {
+        List<T> unmodifiableCandidates = Collections.unmodifiableList(candidates);
+        FitnessEvaluator<T> evaluator = getMetrics().timed(fitnessEvaluator);
+        for (T candidate : candidates) {
+            EvaluatedCandidate<T> known = knownFitness.get(candidate);
+            if (known != null) {
+                carriedOver.add(known);
+            } else {
+                tasks.add(completionService.submit(new FitnessEvalutationTask<T>(evaluator,
+                                                                                 candidate,
+                                                                                 unmodifiableCandidates)));
+            }
+        }
+    }
+
+
+    /**
+     * Works out how many selected candidates to breed at a time in pipelined mode.  Unless
+     * a chunk size has been set explicitly, the selection is split so that there are a few
+     * chunks for each available processor.  Chunks always contain an even number of
+     * candidates so that cross-over operators can pair up every parent.
+     */
+    private int getPipelineChunkSize(int selectionSize) {
+        int chunkSize = pipelineChunkSize;
+        if (chunkSize <= 0) {
+            chunkSize = selectionSize / (4 * Runtime.getRuntime().availableProcessors());
+        }
+        chunkSize = Math.max(2, chunkSize);
+        return chunkSize % 2 == 0 ? chunkSize : chunkSize + 1;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>After a pipelined generation the fitness statistics have already been gathered
+     * during evaluation, so they are re-used rather than traversing the population again.</p>
+     */
+    @Override
+    protected PopulationStats<T> getPopulationStats(long populationId,
+                                                    List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                    int eliteCount) {
+        PipelinedGeneration<T> generation = pipelinedGeneration.get();
+        if (generation != null && evaluatedPopulation == generation.population) {
+            pipelinedGeneration.remove();
+            return EvolutionUtils.getPopulationStats(populationId,
+                                                     evaluatedPopulation,
+                                                     generation.statistics,
+                                                     isNaturalFitness(),
+                                                     eliteCount,
+                                                     getCurrentGenerationIndex(),
+                                                     getStartTime());
+        }
+        return super.getPopulationStats(populationId, evaluatedPopulation, eliteCount);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>Candidates other than the elite are chosen by the selection strategy, so the
+     * strategy determines how much of the population needs to be ranked.</p>
+     */
+    @Override
+    protected int getRankedCount(int populationSize, int eliteCount) {
+        return EvolutionUtils.getRankedCount(selectionStrategy,
+                                             populationSize,
+                                             populationSize - eliteCount);
+    }
+
+
+    /**
+     * <p>Enables or disables priority evaluation.  When enabled, the elite are evaluated
+     * first, then the offspring of the fittest parents, and so on down the rankings.  If a
+     * generation is cut short (see {@link #setCancelInFlight(boolean)}) the candidates that
+     * were evaluated are then the ones most likely to be useful.</p>
+     *
+     * <p>The parent of each offspring is taken to be the selected candidate in the same
+     * position, which only holds if every operator in the evolution scheme is element-wise
+     * (see {@link EvolutionPipeline#preservesPositions(EvolutionaryOperator)}).  Cross-overs
+     * and {@link com.myrontuttle.sci.evolve.operators.SplitEvolution} shuffle the selection,
+     * so with them, or if an operator changes the number of candidates, only the elite are
+     * moved to the front and the offspring are evaluated in the order that they were bred.
+     * Priority evaluation does not apply in pipelined mode.</p>
+     * @param priorityEvaluation True to evaluate the offspring of the fittest parents first.
+     */
+    public void setPriorityEvaluation(boolean priorityEvaluation) {
+        this.priorityEvaluation = priorityEvaluation;
+    }
+
+    /**
+     * <p>Enables or disables lazy evaluation, in which offspring are only evaluated if the
+     * selection strategy looks at them.  With {@link
+     * com.myrontuttle.sci.evolve.selection.TournamentSelection}, each generation's
+     * tournaments are drawn before any candidate is evaluated, and then just the
+     * candidates that were drawn are evaluated, together, in the same way as a whole
+     * population (on the worker threads, subject to any evaluation timeout).  Each binary
+     * tournament selection misses roughly one candidate in seven, which need never be
+     * evaluated.  Other selection strategies look at every candidate, and some rely on
+     * the population being sorted, so lazy evaluation requires tournament selection.</p>
+     *
+     * <p>The parents of each generation are chosen as soon as it is bred, so the
+     * population passed to evolution observers and termination conditions, and returned
+     * at the end, contains only the candidates that were evaluated (which always include
+     * the elite).  Candidates that were not evaluated could have been fitter than any that
+     * were.  Lazy evaluation has no effect if the engine uses candidate expression, and
+     * takes precedence over pipelining.</p>
+     * @param lazyEvaluation True to evaluate only the offspring that selection looks at.
+     * @throws IllegalStateException If lazy evaluation is enabled for an engine that
+     * does not use {@link TournamentSelection}.
+     */
+    public void setLazyEvaluation(boolean lazyEvaluation) {
+        if (lazyEvaluation && !(selectionStrategy instanceof TournamentSelection)) {
+            throw new IllegalStateException("Lazy evaluation requires tournament selection.");
         }
+        this.lazyEvaluation = lazyEvaluation;
     }
 
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected EvolutionaryOperator<T> getEvolutionScheme()
+    {
+        return evolutionScheme;
+    }
+
+
+    /**
+     * <p>Enables or disables pipelined generations, in which offspring are streamed to the
+     * fitness evaluation worker threads as soon as they are bred rather than after the
+     * whole generation has been created.  Pipelining has no effect if the engine is
+     * single-threaded or uses candidate expression.</p>
+     *
+     * <p>Because evaluation starts before the whole generation exists, the
+     * {@code population} argument that the fitness evaluator receives is not the
+     * generation but only the chunk of offspring bred alongside the candidate (see
+     * {@link #setPipelineChunkSize(int)}).  A fitness evaluator whose scores depend on the
+     * rest of the population, for example one that implements fitness sharing or rewards
+     * novelty, therefore gives different scores when pipelining is switched on.  Only
+     * enable pipelining with fitness evaluators that ignore the population argument.</p>
+     * @param pipelined True to overlap breeding with fitness evaluation.
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+
+    /**
+     * Sets the number of selected candidates that are bred together and submitted
+     * for evaluation as one chunk in pipelined mode.
+     * @param pipelineChunkSize The number of candidates per chunk, or zero to size
+     * chunks automatically according to the number of available processors.
+     */
+    public void setPipelineChunkSize(int pipelineChunkSize) {
+        if (pipelineChunkSize < 0) {
+            throw new IllegalArgumentException("Chunk size must be non-negative.");
+        }
+        this.pipelineChunkSize = pipelineChunkSize;
+    }
+
+
 	@Override
 	protected List<ExpressedCandidate<T>> nextExpressionStep(
 			List<ExpressedCandidate<T>> candidates, 
@@ -182,7 +590,7 @@ public class GenerationalEvolutionEngine<T> extends AbstractEvolutionEngine<T>
 		List<EvaluatedCandidate<T>> evaluatedPopulation = 
 				evaluateExpressedPopulation(candidates);
 
-        EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, expressedFitnessEvaluator.isNatural());
+        rankPopulation(evaluatedPopulation, eliteCount);
         PopulationStats<T> stats = EvolutionUtils.getPopulationStats(
         										  populationId,
         										  evaluatedPopulation,
@@ -222,8 +630,44 @@ public class GenerationalEvolutionEngine<T> extends AbstractEvolutionEngine<T>
             
     		return newExpressedCandidates;
         } else {
-            this.satisfiedTerminationConditions = satisfiedConditions;
+            setSatisfiedTerminationConditions(satisfiedConditions);
         	return candidates;
         }
 	}
+
+
+    /**
+     * The evaluated part of a population evolved in lazy mode, with the parents of the
+     * next generation that were selected from it.
+     */
+    private static final class LazyGeneration<T>
+    {
+        private final List<EvaluatedCandidate<T>> population;
+        private final List<T> parents;
+        private final int populationSize;
+
+        LazyGeneration(List<EvaluatedCandidate<T>> population, List<T> parents, int populationSize)
+        {
+            this.population = population;
+            this.parents = parents;
+            this.populationSize = populationSize;
+        }
+    }
+
+
+    /**
+     * A population evolved in pipelined mode, with the statistics gathered while it was
+     * being evaluated.
+     */
+    private static final class PipelinedGeneration<T>
+    {
+        private final List<EvaluatedCandidate<T>> population;
+        private final DataSet statistics;
+
+        PipelinedGeneration(List<EvaluatedCandidate<T>> population, DataSet statistics)
+        {
+            this.population = population;
+            this.statistics = statistics;
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package com.myrontuttle.sci.evolve.engines;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.myrontuttle.sci.evolve.util.LatencyHistogram;
+
+/**
+ * An immutable copy of an engine's {@link EngineMetrics} at a point in time.
+ * @see EngineMetrics#snapshot()
+ * @author Myron Tuttle
+ */
+public final class MetricsSnapshot {
+
+    private final Map<EngineMetrics.Phase, LatencyHistogram> phases;
+    private final LatencyHistogram evaluationLatency;
+    private final Map<String, LatencyHistogram> stageLatencies;
+    private final int workerQueueDepth;
+    private final int workerActiveCount;
+    private final int workerThreadCount;
+
+    MetricsSnapshot(Map<EngineMetrics.Phase, LatencyHistogram> phases,
+                    LatencyHistogram evaluationLatency,
+                    Map<String, LatencyHistogram> stageLatencies,
+                    int workerQueueDepth,
+                    int workerActiveCount,
+                    int workerThreadCount) {
+        this.phases = Collections.unmodifiableMap(new EnumMap<EngineMetrics.Phase, LatencyHistogram>(phases));
+        this.evaluationLatency = evaluationLatency;
+        this.stageLatencies = Collections.unmodifiableMap(stageLatencies);
+        this.workerQueueDepth = workerQueueDepth;
+        this.workerActiveCount = workerActiveCount;
+        this.workerThreadCount = workerThreadCount;
+    }
+
+
+    /**
+     * @return The number of generations evolved, not counting initial populations.
+     */
+    public long getGenerationCount() {
+        return phases.get(EngineMetrics.Phase.GENERATION).getCount();
+    }
+
+
+    /**
+     * @param phase A phase of evolution.
+     * @return The durations of the phase.
+     */
+    public LatencyHistogram getPhase(EngineMetrics.Phase phase) {
+        return phases.get(phase);
+    }
+
+
+    /**
+     * @return The durations of individual fitness evaluations.
+     */
+    public LatencyHistogram getEvaluationLatency() {
+        return evaluationLatency;
+    }
+
+
+    /**
+     * @return The durations of each stage of the engine's evolution pipeline, in pipeline
+     * order, or an empty map if its evolutionary operator is not an
+     * {@link com.myrontuttle.sci.evolve.operators.EvolutionPipeline}.
+     */
+    public Map<String, LatencyHistogram> getStageLatencies() {
+        return stageLatencies;
+    }
+
+
+    /**
+     * @return The number of evaluations that were waiting for a worker thread, or -1 if
+     * unknown (because evaluation is single-threaded, no worker has been created yet, or
+     * the worker's executor does not report it).
+     */
+    public int getWorkerQueueDepth() {
+        return workerQueueDepth;
+    }
+
+
+    /**
+     * @return The number of worker threads that were running evaluations, or -1 if unknown.
+     */
+    public int getWorkerActiveCount() {
+        return workerActiveCount;
+    }
+
+
+    /**
+     * @return The number of worker threads, or -1 if unknown.
+     */
+    public int getWorkerThreadCount() {
+        return workerThreadCount;
+    }
+
+
+    /**
+     * @return The fraction of worker threads that were busy, or -1 if unknown.
+     */
+    public double getWorkerUtilisation() {
+        return workerThreadCount > 0 && workerActiveCount >= 0
+               ? (double) workerActiveCount / workerThreadCount
+               : -1;
+    }
+}
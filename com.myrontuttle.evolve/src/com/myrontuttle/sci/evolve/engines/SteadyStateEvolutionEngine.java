@@ -15,6 +15,7 @@
 //=============================================================================
 package com.myrontuttle.sci.evolve.engines;
 
+import java.util.Collections;
 import java.util.List;
 
 import java.util.Random;
@@ -29,7 +30,10 @@ import com.myrontuttle.sci.evolve.api.SelectionStrategy;
 import com.myrontuttle.sci.evolve.api.TerminationCondition;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
 import com.myrontuttle.sci.evolve.api.PopulationStats;
+import com.myrontuttle.sci.evolve.replacement.ReplaceRandomBelowElite;
+import com.myrontuttle.sci.evolve.replacement.ReplacementStrategy;
 import com.myrontuttle.sci.evolve.util.EvolutionUtils;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
 
 /**
  * An implementation of steady-state evolution, which is a type of evolutionary algorithm
@@ -37,6 +41,10 @@ import com.myrontuttle.sci.evolve.util.EvolutionUtils;
  * differs from {@link GenerationalEvolutionEngine} in which the entire population is evolved in
  * parallel.
  *
+ * The population is held in an {@link IndexedPopulation} between iterations so that
+ * each iteration only costs O(log n) per replaced individual rather than a full sort.
+ * Which individuals are replaced is decided by a {@link ReplacementStrategy}.
+ *
  * @param <T> The type of entity that is to be evolved.
  * @see GenerationalEvolutionEngine
  * @see EvolutionStrategyEngine
@@ -51,6 +59,8 @@ public class SteadyStateEvolutionEngine<T> extends AbstractEvolutionEngine<T>
     private final int selectionSize;
     private final boolean forceSingleCandidateUpdate;
 
+    private volatile ReplacementStrategy replacementStrategy = new ReplaceRandomBelowElite();
+
     /**
      * Create a steady-state evolution strategy in which one or more (usually just one) evolved
      * offspring replace randomly-chosen individuals.
@@ -126,38 +136,139 @@ public class SteadyStateEvolutionEngine<T> extends AbstractEvolutionEngine<T>
                                                             int eliteCount,
                                                             Random rng)
     {
-        EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, fitnessEvaluator.isNatural());
-        List<T> selectedCandidates = selectionStrategy.select(evaluatedPopulation,
-                                                              fitnessEvaluator.isNatural(),
+        // The indexed population is always ranked, so there is no need to sort it.
+        IndexedPopulation<T> population = getIndexedPopulation(evaluatedPopulation);
+        long start = System.nanoTime();
+        List<T> selectedCandidates = selectionStrategy.select(population,
+                                                              isNaturalFitness(),
                                                               selectionSize,
                                                               rng);
+        start = getMetrics().record(EngineMetrics.Phase.SELECTION, start);
+        List<T> bred = evolutionScheme.apply(selectedCandidates, rng);
+        getMetrics().record(EngineMetrics.Phase.BREEDING, start);
         
         List<EvaluatedCandidate<T>> offspring;
         if (includeExpression()) {
 
-            // Express selected candidates in the population
-            List<ExpressedCandidate<T>> expressedCandidates = 
-            		expressPopulation(evolutionScheme.apply(selectedCandidates, rng), populationId);
-            
-            //Calculate the fitness scores for each member of the expressed population.
-            offspring = evaluateExpressedPopulation(expressedCandidates);
+            // Express selected candidates in the population and calculate the fitness
+            // scores for each member of the expressed population.
+            offspring = expressAndEvaluatePopulation(bred, populationId, population);
         } else {
 
             //Calculate the fitness scores for the selected candidates.
-            offspring = evaluatePopulation(evolutionScheme.apply(selectedCandidates, rng));
+            offspring = evaluatePopulation(bred, population);
+        }
+
+        // Offspring that are not kept by the replacement can be reclaimed too.
+        markDiscardable(offspring);
+        doReplacement(population, offspring, eliteCount, rng);
+
+        return population;
+    }
+
+
+    /**
+     * Gets the population as an {@link IndexedPopulation}, building one (in O(n log n)
+     * time) only if it is not one already.
+     * @param evaluatedPopulation The current population.
+     * @return The population, ranked and indexed.
+     */
+    protected IndexedPopulation<T> getIndexedPopulation(List<EvaluatedCandidate<T>> evaluatedPopulation) {
+        if (evaluatedPopulation instanceof IndexedPopulation
+            && ((IndexedPopulation<T>) evaluatedPopulation).isNatural() == isNaturalFitness()) {
+            return (IndexedPopulation<T>) evaluatedPopulation;
+        }
+        return new IndexedPopulation<T>(evaluatedPopulation, isNaturalFitness());
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>The statistics of an indexed population are maintained as it changes, so they
+     * are gathered without traversing the population.</p>
+     */
+    @Override
+    protected PopulationStats<T> getPopulationStats(long populationId,
+                                                    List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                    int eliteCount) {
+        if (evaluatedPopulation instanceof IndexedPopulation) {
+            IndexedPopulation<T> population = (IndexedPopulation<T>) evaluatedPopulation;
+            EvaluatedCandidate<T> best = population.get(0);
+            return new PopulationStats<T>(populationId,
+                                          best.getCandidate(),
+                                          best.getFitness(),
+                                          population.getMeanFitness(),
+                                          population.getFitnessStandardDeviation(),
+                                          isNaturalFitness(),
+                                          population.size(),
+                                          eliteCount,
+                                          getCurrentGenerationIndex(),
+                                          System.currentTimeMillis() - getStartTime());
+        }
+        return super.getPopulationStats(populationId, evaluatedPopulation, eliteCount);
+    }
+
+
+    /**
+     * Sets the strategy that decides which members of the population are displaced by
+     * new offspring.  The default is {@link ReplaceRandomBelowElite}.
+     * @param replacementStrategy The replacement strategy to use.
+     */
+    public void setReplacementStrategy(ReplacementStrategy replacementStrategy) {
+        if (replacementStrategy == null) {
+            throw new IllegalArgumentException("Replacement strategy must not be null.");
         }
+        this.replacementStrategy = replacementStrategy;
+    }
+
 
-        doReplacement(evaluatedPopulation, offspring, eliteCount, rng);
+    /**
+     * {@inheritDoc}
+     * <p>Parents are chosen by the selection strategy, so the strategy determines how
+     * much of the population needs to be ranked.</p>
+     */
+    @Override
+    protected int getRankedCount(int populationSize, int eliteCount) {
+        return EvolutionUtils.getRankedCount(selectionStrategy, populationSize, selectionSize);
+    }
+
+
+    /**
+     * @return The evolutionary operator that creates offspring from the selected parents.
+     */
+    protected EvolutionaryOperator<T> getEvolutionScheme() {
+        return evolutionScheme;
+    }
+
+    /**
+     * @return The strategy used to select parents.
+     */
+    protected SelectionStrategy<? super T> getSelectionStrategy() {
+        return selectionStrategy;
+    }
 
-        return evaluatedPopulation;
+    /**
+     * @return How many parents are selected for each application of the evolution scheme.
+     */
+    protected int getSelectionSize() {
+        return selectionSize;
+    }
+
+    /**
+     * @return True if only one of the offspring created by each application of the
+     * evolution scheme is kept.
+     */
+    protected boolean isForceSingleCandidateUpdate() {
+        return forceSingleCandidateUpdate;
     }
 
 
     /**
      * Add the offspring to the population, removing the same number of existing individuals to make
      * space for them.
-     * This method randomly chooses which individuals should be replaced, but it can be over-ridden
-     * in sub-classes if alternative behaviour is required.
+     * If the population is an {@link IndexedPopulation} the configured {@link ReplacementStrategy}
+     * chooses which individuals are replaced, otherwise they are chosen at random.  This method
+     * can be over-ridden in sub-classes if alternative behaviour is required.
      * @param existingPopulation The full popultation, sorted in descending order of fitness.
      * @param newCandidates The (unsorted) newly-created individual(s) that should replace existing members
      * of the population.
@@ -174,10 +285,14 @@ public class SteadyStateEvolutionEngine<T> extends AbstractEvolutionEngine<T>
         // evolved individuals, so just pick one at random and use that.
         if (newCandidates.size() > 1 && forceSingleCandidateUpdate)
         {
-            // Replace a randomly selected individual, but not one of the "elite" individuals at the
-            // beginning of the sorted population.
-            existingPopulation.set(rng.nextInt(existingPopulation.size() - eliteCount) + eliteCount,
-                                   newCandidates.get(rng.nextInt(newCandidates.size())));
+            newCandidates = Collections.singletonList(newCandidates.get(rng.nextInt(newCandidates.size())));
+        }
+        if (existingPopulation instanceof IndexedPopulation)
+        {
+            replacementStrategy.replace((IndexedPopulation<T>) existingPopulation,
+                                        newCandidates,
+                                        eliteCount,
+                                        rng);
         }
         else
         {
@@ -199,7 +314,7 @@ public class SteadyStateEvolutionEngine<T> extends AbstractEvolutionEngine<T>
 		List<EvaluatedCandidate<T>> evaluatedPopulation = 
 				evaluateExpressedPopulation(candidates);
     	
-        EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, expressedFitnessEvaluator.isNatural());
+        rankPopulation(evaluatedPopulation, eliteCount);
         PopulationStats<T> stats = EvolutionUtils.getPopulationStats(
         										  populationId,
         										  evaluatedPopulation,
@@ -214,7 +329,7 @@ public class SteadyStateEvolutionEngine<T> extends AbstractEvolutionEngine<T>
         List<TerminationCondition> satisfiedConditions = EvolutionUtils.shouldContinue(stats, getTerminationConditions());
         if (satisfiedConditions == null) {
 
-            EvolutionUtils.sortEvaluatedPopulation(evaluatedPopulation, expressedFitnessEvaluator.isNatural());
+            rankPopulation(evaluatedPopulation, eliteCount);
             List<T> selectedCandidates = selectionStrategy.select(evaluatedPopulation,
             													expressedFitnessEvaluator.isNatural(),
                                                                 selectionSize,
@@ -230,7 +345,7 @@ public class SteadyStateEvolutionEngine<T> extends AbstractEvolutionEngine<T>
             
     		return candidates;
         } else {
-            this.satisfiedTerminationConditions = satisfiedConditions;
+            setSatisfiedTerminationConditions(satisfiedConditions);
         	return candidates;
         }
 	}
@@ -0,0 +1,337 @@
+package com.myrontuttle.sci.evolve.engines;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+
+/**
+ * <p>Runs a set of fitness evaluation tasks and waits for them in a way that bounds how
+ * long any single evaluation can hold up the rest of the population.  Used by
+ * {@link AbstractEvolutionEngine} when evaluation timeouts or speculative evaluation
+ * are enabled.</p>
+ *
+ * <p>An evaluation that has been running for longer than the timeout is cancelled
+ * (its thread is interrupted) and given no result.  In speculative mode, once some of
+ * the worker threads are idle, any evaluation that has been running for more than
+ * twice the median duration of the completed evaluations is started again, and the
+ * result of whichever attempt finishes first is used.</p>
+ *
+ * <p>If a {@link StopCondition} is given, it is checked while waiting, and as soon as it
+ * is satisfied all outstanding evaluations are cancelled and the results gathered so far
+ * are returned.</p>
+ *
+ * <p>Tasks are handed to the completion service no faster than its threads can start
+ * them, so the calling thread never blocks in a submission, or runs a task itself
+ * because a bounded queue is full, while it should be checking for timeouts.  A task
+ * that a rejection policy such as
+ * {@link com.myrontuttle.sci.evolve.util.concurrent.SubmitterRunsPolicy} runs on the
+ * calling thread returns without evaluating anything and is submitted again later.  An
+ * evaluation that ignores being cancelled may still hold up submission by keeping its
+ * thread busy.</p>
+ * @param <T> The type of evolved entity.
+ * @author Myron Tuttle
+ */
+final class TimedEvaluation<T> {
+
+    // How many times slower than the median an evaluation must be before it is re-run.
+    private static final double SPECULATION_FACTOR = 2;
+    // Longest interval between checks for timed-out or straggling evaluations.
+    private static final long MAX_CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final CompletionService<EvaluatedCandidate<T>> completionService;
+    private final long timeoutNanos;
+    private final boolean speculative;
+    private final int threadCount;
+    private final StopCondition stopCondition;
+
+    private final Map<Future<EvaluatedCandidate<T>>, Attempt> attempts
+        = new IdentityHashMap<Future<EvaluatedCandidate<T>>, Attempt>();
+    private final List<Long> durations = new ArrayList<Long>();
+    // The median of the first medianSampleCount durations.
+    private long medianDuration = 0;
+    private int medianSampleCount = 0;
+    private int timeoutCount = 0;
+    private int speculationCount = 0;
+    private boolean[] timedOut = new boolean[0];
+    private boolean stopped = false;
+    // The thread that submits the tasks, which must not run any of them.
+    private Thread submitter;
+
+    /**
+     * @param completionService The service that runs the evaluation tasks.
+     * @param timeoutNanos The longest an evaluation may run, in nanoseconds, or zero
+     * for no limit.
+     * @param speculative True to re-run straggling evaluations on idle threads.
+     * @param threadCount The number of threads available to the completion service.
+     * @param stopCondition Checked while waiting for evaluations to finish, or null if
+     * every evaluation must be waited for.
+     */
+    TimedEvaluation(CompletionService<EvaluatedCandidate<T>> completionService,
+                    long timeoutNanos,
+                    boolean speculative,
+                    int threadCount,
+                    StopCondition stopCondition) {
+        this.completionService = completionService;
+        this.timeoutNanos = timeoutNanos;
+        this.speculative = speculative;
+        this.threadCount = threadCount;
+        this.stopCondition = stopCondition;
+    }
+
+
+    /**
+     * Runs the tasks and waits until each has either completed or timed out, or until
+     * the stop condition is satisfied.
+     * @param tasks The evaluation tasks.
+     * @return The result of each task, in the same order as the tasks, with null in
+     * place of any evaluation that timed out or was stopped.
+     * @throws InterruptedException If the calling thread is interrupted, in which case
+     * all outstanding evaluations are cancelled.
+     * @throws ExecutionException If an evaluation fails.
+     */
+    List<EvaluatedCandidate<T>> evaluate(List<? extends Callable<EvaluatedCandidate<T>>> tasks)
+        throws InterruptedException, ExecutionException {
+        int count = tasks.size();
+        List<EvaluatedCandidate<T>> results = new ArrayList<EvaluatedCandidate<T>>(Collections.<EvaluatedCandidate<T>>nCopies(count, null));
+        boolean[] finished = new boolean[count];
+        boolean[] speculated = new boolean[count];
+        timedOut = new boolean[count];
+        int remaining = count;
+        Deque<Integer> unsubmitted = new ArrayDeque<Integer>(count);
+        for (int i = 0; i < count; i++) {
+            unsubmitted.add(i);
+        }
+        submitter = Thread.currentThread();
+        try {
+            long checkInterval = timeoutNanos > 0
+                                 ? Math.max(Math.min(timeoutNanos / 4, MAX_CHECK_INTERVAL), 1)
+                                 : MAX_CHECK_INTERVAL;
+            while (remaining > 0) {
+                // Keep one task per thread in progress.
+                while (attempts.size() < threadCount && !unsubmitted.isEmpty()) {
+                    int index = unsubmitted.peekFirst();
+                    if (submit(index, tasks.get(index)) == null) {
+                        break;
+                    }
+                    unsubmitted.removeFirst();
+                }
+                Future<EvaluatedCandidate<T>> future = completionService.poll(checkInterval, TimeUnit.NANOSECONDS);
+                while (future != null) {
+                    Attempt attempt = attempts.remove(future);
+                    // Attempts that have been cancelled are no longer tracked.
+                    if (attempt != null && !finished[attempt.index]) {
+                        try {
+                            results.set(attempt.index, future.get());
+                            durations.add(System.nanoTime() - attempt.startNanos);
+                            finished[attempt.index] = true;
+                            --remaining;
+                            cancel(attempt.index);
+                        } catch (CancellationException ex) {
+                            // Superseded by another attempt.
+                        }
+                    }
+                    future = completionService.poll();
+                }
+                if (remaining == 0) {
+                    break;
+                }
+                if (stopCondition != null && stopCondition.isStopRequested()) {
+                    stopped = true;
+                    break;
+                }
+                long now = System.nanoTime();
+                List<Attempt> running = getRunningAttempts();
+                if (timeoutNanos > 0) {
+                    for (Attempt attempt : running) {
+                        if (!finished[attempt.index] && now - attempt.startNanos > timeoutNanos) {
+                            finished[attempt.index] = true;
+                            timedOut[attempt.index] = true;
+                            --remaining;
+                            ++timeoutCount;
+                            cancel(attempt.index);
+                        }
+                    }
+                }
+                // Speculation needs an idle thread, which there only is near the end of the tasks.
+                int idleThreads = threadCount - attempts.size();
+                if (speculative && idleThreads > 0 && !durations.isEmpty()) {
+                    long threshold = (long) (SPECULATION_FACTOR * median());
+                    for (Attempt attempt : running) {
+                        if (idleThreads <= 0) {
+                            break;
+                        }
+                        if (!finished[attempt.index] && !speculated[attempt.index]
+                            && now - attempt.startNanos > threshold) {
+                            speculated[attempt.index] = true;
+                            ++speculationCount;
+                            --idleThreads;
+                            submit(attempt.index, attempt.task);
+                        }
+                    }
+                }
+            }
+        } finally {
+            // Nothing left running is needed, whether we finished normally or not.
+            for (Future<EvaluatedCandidate<T>> future : attempts.keySet()) {
+                future.cancel(true);
+            }
+            attempts.clear();
+        }
+        return results;
+    }
+
+
+    /**
+     * @return The number of evaluations that timed out.
+     */
+    int getTimeoutCount() {
+        return timeoutCount;
+    }
+
+
+    /**
+     * @param index The position of a task.
+     * @return True if the task's evaluation was cancelled because it timed out.
+     */
+    boolean isTimedOut(int index) {
+        return timedOut[index];
+    }
+
+
+    /**
+     * @return True if waiting was cut short by the stop condition.
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+
+    /**
+     * @return The number of evaluations that were started a second time.
+     */
+    int getSpeculationCount() {
+        return speculationCount;
+    }
+
+
+    /**
+     * @return The submitted attempt, or null if it was run on the calling thread and so
+     * needs to be submitted again.
+     */
+    private Attempt submit(int index, Callable<EvaluatedCandidate<T>> task) {
+        Attempt attempt = new Attempt(index, task);
+        attempt.future = completionService.submit(attempt);
+        if (attempt.ranOnSubmitter) {
+            return null;
+        }
+        attempts.put(attempt.future, attempt);
+        return attempt;
+    }
+
+
+    private void cancel(int index) {
+        List<Future<EvaluatedCandidate<T>>> cancelled = new ArrayList<Future<EvaluatedCandidate<T>>>();
+        for (Map.Entry<Future<EvaluatedCandidate<T>>, Attempt> entry : attempts.entrySet()) {
+            if (entry.getValue().index == index) {
+                cancelled.add(entry.getKey());
+            }
+        }
+        for (Future<EvaluatedCandidate<T>> future : cancelled) {
+            attempts.remove(future);
+            future.cancel(true);
+        }
+    }
+
+
+    /**
+     * @return The attempts that are still running, longest-running first.
+     */
+    private List<Attempt> getRunningAttempts() {
+        List<Attempt> running = new ArrayList<Attempt>(attempts.size());
+        for (Attempt attempt : attempts.values()) {
+            // An attempt that has just finished is collected on the next poll.
+            if (attempt.started && !attempt.future.isDone()) {
+                running.add(attempt);
+            }
+        }
+        Collections.sort(running, new Comparator<Attempt>() {
+            public int compare(Attempt attempt1, Attempt attempt2) {
+                return Long.compare(attempt1.startNanos, attempt2.startNanos);
+            }
+        });
+        return running;
+    }
+
+
+    /**
+     * @return The median duration of the evaluations that have finished, which is only
+     * worked out again once more have finished.
+     */
+    private long median() {
+        if (medianSampleCount == durations.size()) {
+            return medianDuration;
+        }
+        long[] sorted = new long[durations.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = durations.get(i);
+        }
+        Arrays.sort(sorted);
+        medianDuration = sorted[sorted.length / 2];
+        medianSampleCount = sorted.length;
+        return medianDuration;
+    }
+
+
+    /**
+     * Signals that the evaluations still outstanding are no longer wanted.
+     */
+    interface StopCondition {
+        /**
+         * @return True if evaluation should stop now.
+         */
+        boolean isStopRequested();
+    }
+
+
+    /**
+     * One execution of an evaluation task, which records when it started running.
+     */
+    private final class Attempt implements Callable<EvaluatedCandidate<T>> {
+        private final int index;
+        private final Callable<EvaluatedCandidate<T>> task;
+        private Future<EvaluatedCandidate<T>> future;
+        private volatile boolean started = false;
+        private volatile long startNanos;
+        private volatile boolean ranOnSubmitter = false;
+
+        Attempt(int index, Callable<EvaluatedCandidate<T>> task) {
+            this.index = index;
+            this.task = task;
+        }
+
+        public EvaluatedCandidate<T> call() throws Exception {
+            if (Thread.currentThread() == submitter) {
+                // Rejected by the executor and run in place, where nothing could time it out.
+                ranOnSubmitter = true;
+                return null;
+            }
+            startNanos = System.nanoTime();
+            started = true;
+            return task.call();
+        }
+    }
+}
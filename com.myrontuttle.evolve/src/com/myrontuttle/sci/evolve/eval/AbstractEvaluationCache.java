@@ -0,0 +1,104 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Base class for the caches of fitness scores and expressions, which keeps their
+ * statistics and publishes them to JMX.  The cache must be built with statistics
+ * recording turned on.
+ * @author Myron Tuttle
+ */
+public abstract class AbstractEvaluationCache implements EvaluationCacheMXBean {
+
+    private final Cache<?, ?> cache;
+    private volatile ObjectName objectName = null;
+
+    /**
+     * @param cache The cache whose statistics are reported.
+     */
+    protected AbstractEvaluationCache(Cache<?, ?> cache) {
+        this.cache = cache;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>A look-up that waited while another thread worked out the same result counts as
+     * a hit.</p>
+     */
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+
+    public long getMissCount() {
+        return cache.stats().loadCount();
+    }
+
+
+    public double getHitRate() {
+        CacheStats stats = cache.stats();
+        long lookups = stats.hitCount() + stats.loadCount();
+        return lookups == 0 ? 1 : (double) stats.hitCount() / lookups;
+    }
+
+
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+
+    public long getSize() {
+        return cache.size();
+    }
+
+
+    /**
+     * Discards all cached results.  The statistics are not reset.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+
+    /**
+     * Publishes the cache's statistics to the platform MBean server.
+     * @param name A name that distinguishes this cache from others in the same JVM.
+     * @return The name under which the statistics are registered.
+     * @throws JMException If the statistics cannot be registered, for example because the
+     * name is already in use.
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException {
+        if (objectName != null) {
+            throw new IllegalStateException("Cache is already registered as " + objectName);
+        }
+        ObjectName newName = new ObjectName("com.myrontuttle.sci.evolve:type=EvaluationCache,name="
+                                            + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+        objectName = newName;
+        return newName;
+    }
+
+
+    /**
+     * Removes the cache's statistics from the platform MBean server.  Does nothing if they
+     * are not registered.
+     * @throws JMException If the statistics cannot be unregistered.
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            objectName = null;
+        }
+    }
+}
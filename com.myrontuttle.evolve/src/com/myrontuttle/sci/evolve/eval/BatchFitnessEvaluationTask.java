@@ -0,0 +1,59 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.myrontuttle.sci.evolve.api.BatchFitnessEvaluator;
+import com.myrontuttle.sci.evolve.util.EvolutionTracer;
+import com.myrontuttle.sci.evolve.util.Tracing;
+
+/**
+ * Callable task for evaluating a batch of candidates in parallel with other batches.
+ * @param <T> The type of entity for which fitness is calculated.
+ * @author Myron Tuttle
+ */
+public class BatchFitnessEvaluationTask<T> implements Callable<double[]> {
+    private final BatchFitnessEvaluator<? super T> fitnessEvaluator;
+    private final List<T> candidates;
+    private final List<T> population;
+
+    /**
+     * Creates a task for performing fitness evaluations.
+     * @param fitnessEvaluator The fitness function used to determine candidate fitness.
+     * @param candidates The candidates to evaluate.
+     * @param population The entire current population.  This will include all
+     * of the candidates to evaluate along with any other individuals that are
+     * not being evaluated by this task.
+     */
+    public BatchFitnessEvaluationTask(BatchFitnessEvaluator<? super T> fitnessEvaluator,
+                                      List<T> candidates,
+                                      List<T> population) {
+        this.fitnessEvaluator = fitnessEvaluator;
+        this.candidates = candidates;
+        this.population = population;
+    }
+
+
+    public double[] call() {
+        EvolutionTracer tracer = Tracing.current();
+        if (tracer == null) {
+            return evaluate();
+        }
+        long start = System.nanoTime();
+        try {
+            return evaluate();
+        } finally {
+            tracer.evaluationFinished(candidates.size(), System.nanoTime() - start);
+        }
+    }
+
+
+    private double[] evaluate() {
+        double[] scores = fitnessEvaluator.getFitnessScores(candidates, population);
+        if (scores.length != candidates.size()) {
+            throw new IllegalStateException("Batch fitness evaluator returned " + scores.length
+                                            + " scores for " + candidates.size() + " candidates.");
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,45 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.util.List;
+
+import com.myrontuttle.sci.evolve.api.BatchFitnessEvaluator;
+import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
+
+/**
+ * Adapts an ordinary {@link FitnessEvaluator} so that it can be used wherever a
+ * {@link BatchFitnessEvaluator} is expected, by evaluating each candidate in a batch
+ * in turn.
+ * @param <T> The type of evolvable entity that can be evaluated.
+ * @author Myron Tuttle
+ */
+public class BatchFitnessEvaluatorAdapter<T> implements BatchFitnessEvaluator<T> {
+    private final FitnessEvaluator<? super T> delegate;
+
+    /**
+     * @param delegate The fitness evaluator that scores individual candidates.
+     */
+    public BatchFitnessEvaluatorAdapter(FitnessEvaluator<? super T> delegate) {
+        this.delegate = delegate;
+    }
+
+
+    public double[] getFitnessScores(List<? extends T> candidates,
+                                     List<? extends T> population) {
+        double[] scores = new double[candidates.size()];
+        int i = 0;
+        for (T candidate : candidates) {
+            scores[i++] = delegate.getFitness(candidate, population);
+        }
+        return scores;
+    }
+
+
+    public double getFitness(T candidate, List<? extends T> population) {
+        return delegate.getFitness(candidate, population);
+    }
+
+
+    public boolean isNatural() {
+        return delegate.isNatural();
+    }
+}
@@ -0,0 +1,111 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.base.Equivalence;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.api.ExpressedFitnessEvaluator;
+
+/**
+ * <p>A wrapper that caches the results of an {@link ExpressedFitnessEvaluator} by the
+ * content of the genomes of the expressed candidates, in the same way that
+ * {@link ContentCachingFitnessEvaluator} caches the results of a plain fitness
+ * evaluator: the cache is bounded by the total weight of the genomes it holds, stores
+ * copies of them, and lets only one thread at a time evaluate any genome.</p>
+ *
+ * <p>An expressed fitness evaluator is not told which population a candidate belongs
+ * to, so a genome has one cached score however many populations it appears in.  If the
+ * expression strategy expresses a genome differently in different populations, each
+ * population needs its own instance of this evaluator.  As with other caches, fitness
+ * evaluations must be isolated and repeatable.</p>
+ *
+ * @param <T> The type of evolved entity whose expressions are evaluated.
+ * @see com.myrontuttle.sci.evolve.express.CachingExpressionStrategy
+ * @author Myron Tuttle
+ */
+public class CachingExpressedFitnessEvaluator<T> extends AbstractEvaluationCache
+                                                 implements ExpressedFitnessEvaluator<T> {
+
+    private final ExpressedFitnessEvaluator<T> delegate;
+    private final GenomeEquivalence<? super T> equivalence;
+    private final Cache<Equivalence.Wrapper<T>, Double> cache;
+
+    /**
+     * Creates a caching evaluator that wraps the specified evaluator.
+     * @param delegate The evaluator that performs the actual calculations.
+     * @param equivalence Decides which genomes are the same, and how much memory each
+     * takes up.  {@link GenomeEquivalence#content()} suits all of the built-in genome types.
+     * @param maximumWeight The maximum total weight of the genomes held in the cache.
+     */
+    public CachingExpressedFitnessEvaluator(ExpressedFitnessEvaluator<T> delegate,
+                                            final GenomeEquivalence<? super T> equivalence,
+                                            long maximumWeight) {
+        this(delegate, equivalence, CacheBuilder.newBuilder()
+                                                .maximumWeight(maximumWeight)
+                                                .weigher(new Weigher<Equivalence.Wrapper<T>, Double>() {
+                                                    public int weigh(Equivalence.Wrapper<T> key, Double fitness) {
+                                                        return equivalence.weigh(key.get());
+                                                    }
+                                                })
+                                                .recordStats()
+                                                .<Equivalence.Wrapper<T>, Double>build());
+    }
+
+
+    private CachingExpressedFitnessEvaluator(ExpressedFitnessEvaluator<T> delegate,
+                                             GenomeEquivalence<? super T> equivalence,
+                                             Cache<Equivalence.Wrapper<T>, Double> cache) {
+        super(cache);
+        this.delegate = delegate;
+        this.equivalence = equivalence;
+        this.cache = cache;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If a candidate whose genome has the same content has already been evaluated, its
+     * score is returned without delegating to the wrapped evaluator.</p>
+     */
+    public double getFitness(final ExpressedCandidate<T> candidate,
+                             final List<ExpressedCandidate<T>> population) {
+        T genome = candidate.getGenome();
+        Double fitness = cache.getIfPresent(equivalence.wrap(genome));
+        if (fitness != null) {
+            return fitness;
+        }
+        // Look again, with a copy to keep, so that only one thread evaluates the genome.
+        @SuppressWarnings("unchecked")
+        T copy = (T) equivalence.copyOf(genome);
+        try {
+            return cache.get(equivalence.wrap(copy), new Callable<Double>() {
+                public Double call() {
+                    return delegate.getFitness(candidate, population);
+                }
+            });
+        } catch (UncheckedExecutionException ex) {
+            throw (RuntimeException) ex.getCause();
+        } catch (ExecutionError ex) {
+            throw (Error) ex.getCause();
+        } catch (ExecutionException ex) {
+            // The delegate does not throw checked exceptions.
+            throw new IllegalStateException("Fitness evaluation failed.", ex);
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isNatural() {
+        return delegate.isNatural();
+    }
+}
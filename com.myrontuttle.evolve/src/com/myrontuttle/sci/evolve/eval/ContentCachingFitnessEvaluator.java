@@ -0,0 +1,114 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.base.Equivalence;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
+
+/**
+ * <p>A wrapper that caches the results of a {@link FitnessEvaluator} by the content of
+ * the candidates rather than by their identity.  {@link CachingFitnessEvaluator} only
+ * recognises a candidate that survives unchanged from one generation to the next, so it
+ * misses copies: the same genome bred twice, or a clone of an array or
+ * {@link org.uncommons.maths.binary.BitString} genome.  This cache hashes and compares
+ * genomes with a {@link GenomeEquivalence}, which for arrays means element by element.</p>
+ *
+ * <p>The cache is bounded by the total {@link GenomeEquivalence#weigh weight} of the
+ * genomes it holds, and discards the least recently used results when it is full.  It
+ * is safe to use from several threads at once, and if two threads ask for the fitness of
+ * the same genome at the same time only one of them evaluates it while the other waits
+ * for the result.  Hits, misses and evictions are counted, and can be published to JMX
+ * with {@link #registerMBean(String)}.</p>
+ *
+ * <p>As with {@link CachingFitnessEvaluator}, caching is only valid when fitness
+ * evaluations are isolated and repeatable, so the wrapped evaluator must ignore the
+ * population that it is given.</p>
+ *
+ * @param <T> The type of evolvable entity that can be evaluated.
+ * @author Myron Tuttle
+ */
+public class ContentCachingFitnessEvaluator<T> extends AbstractEvaluationCache implements FitnessEvaluator<T> {
+
+    private final FitnessEvaluator<T> delegate;
+    private final GenomeEquivalence<? super T> equivalence;
+    private final Cache<Equivalence.Wrapper<T>, Double> cache;
+
+    /**
+     * Creates a caching fitness evaluator that wraps the specified evaluator.
+     * @param delegate The fitness evaluator that performs the actual calculations.
+     * @param equivalence Decides which genomes are the same, and how much memory each
+     * takes up.  {@link GenomeEquivalence#content()} suits all of the built-in genome types.
+     * @param maximumWeight The maximum total weight of the genomes held in the cache.
+     */
+    public ContentCachingFitnessEvaluator(FitnessEvaluator<T> delegate,
+                                          final GenomeEquivalence<? super T> equivalence,
+                                          long maximumWeight) {
+        this(delegate, equivalence, CacheBuilder.newBuilder()
+                                                .maximumWeight(maximumWeight)
+                                                .weigher(new Weigher<Equivalence.Wrapper<T>, Double>() {
+                                                    public int weigh(Equivalence.Wrapper<T> key, Double fitness) {
+                                                        return equivalence.weigh(key.get());
+                                                    }
+                                                })
+                                                .recordStats()
+                                                .<Equivalence.Wrapper<T>, Double>build());
+    }
+
+
+    private ContentCachingFitnessEvaluator(FitnessEvaluator<T> delegate,
+                                           GenomeEquivalence<? super T> equivalence,
+                                           Cache<Equivalence.Wrapper<T>, Double> cache) {
+        super(cache);
+        this.delegate = delegate;
+        this.equivalence = equivalence;
+        this.cache = cache;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation performs a cache look-up every time it is invoked.  If a
+     * genome with the same content has already been evaluated, its score is returned
+     * without delegating to the wrapped evaluator.  Otherwise a copy of the candidate is
+     * stored in the cache with its score.</p>
+     */
+    public double getFitness(final T candidate, final List<? extends T> population) {
+        Double fitness = cache.getIfPresent(equivalence.wrap(candidate));
+        if (fitness != null) {
+            return fitness;
+        }
+        // Look again, with a copy to keep, so that only one thread evaluates the genome.
+        @SuppressWarnings("unchecked")
+        T copy = (T) equivalence.copyOf(candidate);
+        try {
+            return cache.get(equivalence.wrap(copy), new Callable<Double>() {
+                public Double call() {
+                    return delegate.getFitness(candidate, population);
+                }
+            });
+        } catch (UncheckedExecutionException ex) {
+            throw (RuntimeException) ex.getCause();
+        } catch (ExecutionError ex) {
+            throw (Error) ex.getCause();
+        } catch (ExecutionException ex) {
+            // The delegate does not throw checked exceptions.
+            throw new IllegalStateException("Fitness evaluation failed.", ex);
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isNatural() {
+        return delegate.isNatural();
+    }
+}
@@ -0,0 +1,36 @@
+package com.myrontuttle.sci.evolve.eval;
+
+/**
+ * The management interface through which the statistics of an evaluation cache are
+ * published to JMX.
+ * @see AbstractEvaluationCache#registerMBean(String)
+ * @author Myron Tuttle
+ */
+public interface EvaluationCacheMXBean {
+
+    /**
+     * @return The number of look-ups that found a cached result.
+     */
+    long getHitCount();
+
+    /**
+     * @return The number of look-ups that had to evaluate the candidate.
+     */
+    long getMissCount();
+
+    /**
+     * @return The fraction of look-ups that found a cached result, or 1 if there have been
+     * no look-ups.
+     */
+    double getHitRate();
+
+    /**
+     * @return The number of results discarded to keep the cache within its bound.
+     */
+    long getEvictionCount();
+
+    /**
+     * @return The number of results held in the cache.
+     */
+    long getSize();
+}
@@ -6,6 +6,8 @@ import java.util.concurrent.Callable;
 import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
 import com.myrontuttle.sci.evolve.api.ExpressedFitnessEvaluator;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.EvolutionTracer;
+import com.myrontuttle.sci.evolve.util.Tracing;
 
 /**
  * Callable task for performing parallel fitness evaluations.
@@ -35,6 +37,20 @@ public class ExpressedFitnessEvalutationTask<T> implements Callable<EvaluatedCan
 
 
     public EvaluatedCandidate<T> call() {
+        EvolutionTracer tracer = Tracing.current();
+        if (tracer == null) {
+            return evaluate();
+        }
+        long start = System.nanoTime();
+        try {
+            return evaluate();
+        } finally {
+            tracer.evaluationFinished(1, System.nanoTime() - start);
+        }
+    }
+
+
+    private EvaluatedCandidate<T> evaluate() {
         return new EvaluatedCandidate<T>(candidate,
                                          fitnessEvaluator.getFitness(candidate, population));
     }
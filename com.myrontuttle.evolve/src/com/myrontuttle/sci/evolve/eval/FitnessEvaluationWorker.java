@@ -15,6 +15,11 @@
 //=============================================================================
 package com.myrontuttle.sci.evolve.eval;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -22,7 +27,9 @@ import java.util.concurrent.TimeUnit;
 
 import com.myrontuttle.sci.evolve.api.EvolutionEngine;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.concurrent.BoundedThreadPerTaskExecutor;
 import com.myrontuttle.sci.evolve.util.concurrent.ConfigurableThreadFactory;
+import com.myrontuttle.sci.evolve.util.concurrent.SubmitterRunsPolicy;
 import com.myrontuttle.sci.evolve.util.id.IDSource;
 import com.myrontuttle.sci.evolve.util.id.IntSequenceIDSource;
 import com.myrontuttle.sci.evolve.util.id.StringPrefixIDSource;
@@ -33,6 +40,10 @@ import com.myrontuttle.sci.evolve.util.id.StringPrefixIDSource;
  * the evolution engine to permit the possibility of creating multiple instances
  * across several machines, all fed by a single shared work queue, using Terracotta
  * (http://www.terracotta.org) or similar.
+ *
+ * <p>A worker either owns a thread pool, which is released by {@link #shutdown()}, or
+ * wraps an {@link ExecutorService} supplied by the application, whose lifecycle remains
+ * the application's responsibility.</p>
  * @author Daniel Dyer
  */
 public class FitnessEvaluationWorker {
@@ -44,13 +55,16 @@ public class FitnessEvaluationWorker {
     /**
      * Share this field to use Terracotta to distribute fitness evaluations.
      */
-    private final LinkedBlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<Runnable>();
+    private final BlockingQueue<Runnable> workQueue;
 
 
     /**
      * Thread pool that performs concurrent fitness evaluations.
      */
-    private final ThreadPoolExecutor executor;
+    private final ExecutorService executor;
+
+    // True if the executor was created by this worker and must be shut down by it.
+    private final boolean ownsExecutor;
 
 
     /**
@@ -61,20 +75,90 @@ public class FitnessEvaluationWorker {
     }
 
 
+    /**
+     * Creates a FitnessEvaluationWorker with its own pool of daemon threads and a bounded
+     * work queue.  When the queue is full, evaluations are performed on the thread that
+     * submits them, which slows the submitting engine down rather than letting the backlog
+     * of tasks grow without limit.
+     * @param threadCount The number of worker threads.
+     * @param queueCapacity The maximum number of evaluations waiting for a thread.
+     */
+    public FitnessEvaluationWorker(int threadCount, int queueCapacity) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive.");
+        }
+        this.workQueue = new ArrayBlockingQueue<Runnable>(queueCapacity);
+        ThreadPoolExecutor pool = createPool(threadCount, workQueue, true);
+        pool.setRejectedExecutionHandler(new SubmitterRunsPolicy());
+        this.executor = pool;
+        this.ownsExecutor = true;
+    }
+
+
+    /**
+     * Creates a FitnessEvaluationWorker that submits evaluations to an executor managed by
+     * the application.  {@link #shutdown()} has no effect on the executor.
+     * @param executor The executor that performs fitness evaluations.
+     */
+    public FitnessEvaluationWorker(ExecutorService executor) {
+        this(executor, false);
+    }
+
+
+    private FitnessEvaluationWorker(ExecutorService executor, boolean ownsExecutor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must not be null.");
+        }
+        this.workQueue = null;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+
+    /**
+     * Creates a worker that runs each of its evaluations on a new virtual thread, for tasks
+     * that spend most of their time waiting on I/O.  On Java runtimes without virtual
+     * threads, ordinary daemon threads are used instead.
+     * @param maxConcurrency The maximum number of evaluations in progress at once.  Further
+     * submissions wait until one of them completes.
+     * @return A worker that owns its threads and is released by {@link #shutdown()}.
+     */
+    public static FitnessEvaluationWorker newVirtualThreadWorker(int maxConcurrency) {
+        ConfigurableThreadFactory threadFactory
+            = ConfigurableThreadFactory.virtualThreadFactory(WORKER_ID_SOURCE.nextID());
+        return new FitnessEvaluationWorker(new BoundedThreadPerTaskExecutor(threadFactory, maxConcurrency), true);
+    }
+
+
     /**
      * @param daemonWorkerThreads If true, any worker threads created will be daemon threads.
      */
     private FitnessEvaluationWorker(boolean daemonWorkerThreads) {
+        this.workQueue = new LinkedBlockingQueue<Runnable>();
+        this.executor = createPool(Runtime.getRuntime().availableProcessors(),
+                                   workQueue,
+                                   daemonWorkerThreads);
+        this.ownsExecutor = true;
+    }
+
+
+    private static ThreadPoolExecutor createPool(int threadCount,
+                                                 BlockingQueue<Runnable> workQueue,
+                                                 boolean daemonWorkerThreads) {
         ConfigurableThreadFactory threadFactory = new ConfigurableThreadFactory(WORKER_ID_SOURCE.nextID(),
                                                                                 Thread.NORM_PRIORITY,
                                                                                 daemonWorkerThreads);
-        this.executor = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(),
-                                               Runtime.getRuntime().availableProcessors(),
-                                               60,
-                                               TimeUnit.SECONDS,
-                                               workQueue,
-                                               threadFactory);
-        executor.prestartAllCoreThreads();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount,
+                                                         threadCount,
+                                                         60,
+                                                         TimeUnit.SECONDS,
+                                                         workQueue,
+                                                         threadFactory);
+        pool.prestartAllCoreThreads();
+        return pool;
     }
 
 
@@ -86,6 +170,88 @@ public class FitnessEvaluationWorker {
         return executor.submit(task);
     }
 
+    public <T> Future<double[]> submit(BatchFitnessEvaluationTask<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Creates a completion service backed by this worker's thread pool so that callers
+     * can consume evaluation results in the order in which they finish rather than the
+     * order in which they were submitted.
+     * @param <T> The type of entity for which fitness is calculated.
+     * @return A new completion service that shares this worker's threads.
+     */
+    public <T> CompletionService<EvaluatedCandidate<T>> createCompletionService() {
+        return new ExecutorCompletionService<EvaluatedCandidate<T>>(executor);
+    }
+
+    /**
+     * Stops the worker's own thread pool once any evaluations already submitted have
+     * completed.  Does nothing if the worker wraps an executor supplied by the application.
+     */
+    public void shutdown() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * Waits for the worker's own thread pool to finish the evaluations submitted before it
+     * was {@link #shutdown() shut down}.  Returns immediately if the worker wraps an
+     * executor supplied by the application.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the timeout.
+     * @return True if the thread pool has terminated, false if the timeout elapsed first.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return !ownsExecutor || executor.awaitTermination(timeout, unit);
+    }
+
+
+    /**
+     * @return The number of tasks waiting for a thread, or -1 if the worker's executor
+     * does not report it.
+     */
+    public int getQueueDepth() {
+        return executor instanceof ThreadPoolExecutor
+               ? ((ThreadPoolExecutor) executor).getQueue().size()
+               : -1;
+    }
+
+
+    /**
+     * @return The approximate number of threads running tasks, or -1 if the worker's
+     * executor does not report it.
+     */
+    public int getActiveCount() {
+        return executor instanceof ThreadPoolExecutor
+               ? ((ThreadPoolExecutor) executor).getActiveCount()
+               : -1;
+    }
+
+
+    /**
+     * @return The number of threads in the worker's pool, or -1 if the worker's executor
+     * does not report it.
+     */
+    public int getThreadCount() {
+        return executor instanceof ThreadPoolExecutor
+               ? ((ThreadPoolExecutor) executor).getPoolSize()
+               : -1;
+    }
+
+
+    /**
+     * @return True if this worker's thread pool has been shut down.  Always false for a
+     * worker that wraps an executor supplied by the application.
+     */
+    public boolean isShutdown() {
+        return ownsExecutor && executor.isShutdown();
+    }
+
+
     /**
      * Entry-point for running this class standalone, as an additional node for fitness evaluations.
      * If this method is invoked without using Terracotta (or similar) to share the work queue, the
@@ -107,7 +273,7 @@ public class FitnessEvaluationWorker {
      */
     @Override
     protected void finalize() throws Throwable {
-        executor.shutdown();
+        shutdown();
         super.finalize();
     }
 }
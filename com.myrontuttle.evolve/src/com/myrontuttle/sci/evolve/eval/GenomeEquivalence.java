@@ -0,0 +1,451 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.List;
+
+import org.uncommons.maths.binary.BitString;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Equivalence;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+/**
+ * <p>Decides when two genomes have the same content, and so must have the same fitness
+ * score, for a {@link ContentCachingFitnessEvaluator}.  As well as hashing and comparing
+ * genomes, a strategy estimates how much memory a genome takes up, so that the cache can
+ * be bounded by size rather than by count, and takes a copy of any genome that is stored
+ * in the cache, so that a genome that is later changed in place (by being recycled
+ * through a {@link com.myrontuttle.sci.evolve.util.GenomePool}, for example) cannot
+ * corrupt the cache.  A strategy is also a {@link Funnel}, which feeds the content of a
+ * genome to a hash function so that a {@link PersistentFitnessCache} can recognise it in
+ * another run.</p>
+ *
+ * <p>The built-in strategies cover arrays (including arrays of primitives, which Java
+ * compares by identity), {@link BitString}s, {@link String}s and {@link List}s.  Other
+ * genome types can be supported by extending this class.</p>
+ *
+ * @param <T> The type of genome compared.
+ * @author Myron Tuttle
+ */
+public abstract class GenomeEquivalence<T> extends Equivalence<T> implements Funnel<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final GenomeEquivalence<Object> ARRAYS = new GenomeEquivalence<Object>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean doEquivalent(Object a, Object b) {
+            return Arrays.deepEquals(new Object[]{a}, new Object[]{b});
+        }
+
+        @Override
+        protected int doHash(Object genome) {
+            return Arrays.deepHashCode(new Object[]{genome});
+        }
+
+        @Override
+        public int weigh(Object genome) {
+            return arrayLength(genome);
+        }
+
+        @Override
+        public Object copyOf(Object genome) {
+            return copyArray(genome);
+        }
+
+        @Override
+        public void funnel(Object genome, PrimitiveSink sink) {
+            funnelArray(genome, sink);
+        }
+
+        @Override
+        public boolean canFunnel(Class<?> genomeType) {
+            return genomeType.isArray()
+                   && (genomeType.getComponentType().isPrimitive() || CONTENT.canFunnel(genomeType.getComponentType()));
+        }
+
+        @Override
+        public String toString() {
+            return "GenomeEquivalence.arrays()";
+        }
+    };
+
+    private static final GenomeEquivalence<BitString> BIT_STRINGS = new GenomeEquivalence<BitString>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean doEquivalent(BitString a, BitString b) {
+            return a.equals(b);
+        }
+
+        @Override
+        protected int doHash(BitString genome) {
+            return genome.hashCode();
+        }
+
+        @Override
+        public int weigh(BitString genome) {
+            return 1 + genome.getLength() / 32;
+        }
+
+        @Override
+        public BitString copyOf(BitString genome) {
+            return genome.clone();
+        }
+
+        @Override
+        public void funnel(BitString genome, PrimitiveSink sink) {
+            sink.putByte((byte) 'B').putString(genome.toString(), Charsets.US_ASCII);
+        }
+
+        @Override
+        public boolean canFunnel(Class<?> genomeType) {
+            return BitString.class.isAssignableFrom(genomeType);
+        }
+
+        @Override
+        public String toString() {
+            return "GenomeEquivalence.bitStrings()";
+        }
+    };
+
+    private static final GenomeEquivalence<String> STRINGS = new GenomeEquivalence<String>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean doEquivalent(String a, String b) {
+            return a.equals(b);
+        }
+
+        @Override
+        protected int doHash(String genome) {
+            return genome.hashCode();
+        }
+
+        @Override
+        public int weigh(String genome) {
+            return 1 + genome.length() / 2;
+        }
+
+        @Override
+        public void funnel(String genome, PrimitiveSink sink) {
+            sink.putByte((byte) 'S').putInt(genome.length()).putString(genome, Charsets.UTF_8);
+        }
+
+        @Override
+        public boolean canFunnel(Class<?> genomeType) {
+            return genomeType == String.class;
+        }
+
+        @Override
+        public String toString() {
+            return "GenomeEquivalence.strings()";
+        }
+    };
+
+    private static final GenomeEquivalence<List<?>> LISTS = new GenomeEquivalence<List<?>>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean doEquivalent(List<?> a, List<?> b) {
+            return Arrays.deepEquals(a.toArray(), b.toArray());
+        }
+
+        @Override
+        protected int doHash(List<?> genome) {
+            return Arrays.deepHashCode(genome.toArray());
+        }
+
+        @Override
+        public int weigh(List<?> genome) {
+            return Math.max(1, genome.size());
+        }
+
+        @Override
+        public List<?> copyOf(List<?> genome) {
+            // The elements are assumed to be immutable, as the list operators treat them.
+            return Arrays.asList(genome.toArray());
+        }
+
+        @Override
+        public void funnel(List<?> genome, PrimitiveSink sink) {
+            sink.putByte((byte) 'L').putInt(genome.size());
+            for (Object element : genome) {
+                CONTENT.funnel(element, sink);
+            }
+        }
+
+        @Override
+        public boolean canFunnel(Class<?> genomeType) {
+            // The types of the elements are not known until the genomes are seen.
+            return List.class.isAssignableFrom(genomeType);
+        }
+
+        @Override
+        public String toString() {
+            return "GenomeEquivalence.lists()";
+        }
+    };
+
+    private static final GenomeEquivalence<Object> CONTENT = new GenomeEquivalence<Object>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean doEquivalent(Object a, Object b) {
+            return forGenome(a).equivalent(a, b);
+        }
+
+        @Override
+        protected int doHash(Object genome) {
+            return forGenome(genome).hash(genome);
+        }
+
+        @Override
+        public int weigh(Object genome) {
+            return forGenome(genome).weigh(genome);
+        }
+
+        @Override
+        public Object copyOf(Object genome) {
+            return forGenome(genome).copyOf(genome);
+        }
+
+        @Override
+        public void funnel(Object genome, PrimitiveSink sink) {
+            if (genome == null) {
+                sink.putByte((byte) 'N');
+            } else {
+                forGenome(genome).funnel(genome, sink);
+            }
+        }
+
+        @Override
+        public boolean canFunnel(Class<?> genomeType) {
+            return forType(genomeType).canFunnel(genomeType);
+        }
+
+        @Override
+        public String toString() {
+            return "GenomeEquivalence.content()";
+        }
+    };
+
+    // Genomes with no built-in strategy of their own.
+    private static final GenomeEquivalence<Object> OTHER = new GenomeEquivalence<Object>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean doEquivalent(Object a, Object b) {
+            return a.equals(b);
+        }
+
+        @Override
+        protected int doHash(Object genome) {
+            return genome.hashCode();
+        }
+
+        @Override
+        public int weigh(Object genome) {
+            return 1;
+        }
+
+        @Override
+        public void funnel(Object genome, PrimitiveSink sink) {
+            if (genome instanceof Number || genome instanceof Boolean || genome instanceof Character
+                || genome instanceof Enum) {
+                // The string forms of these types do not change from one run to the next.
+                sink.putByte((byte) 'O').putString(genome.getClass().getName(), Charsets.UTF_8)
+                    .putByte((byte) 0).putString(genome.toString(), Charsets.UTF_8);
+            } else {
+                super.funnel(genome, sink);
+            }
+        }
+
+        @Override
+        public boolean canFunnel(Class<?> genomeType) {
+            // Genomes declared as objects may turn out to be of any type.
+            return genomeType == Object.class || Number.class.isAssignableFrom(genomeType)
+                   || genomeType == Boolean.class || genomeType == Character.class
+                   || Enum.class.isAssignableFrom(genomeType);
+        }
+    };
+
+
+    /**
+     * @return A strategy for genomes that are arrays, of objects or of primitives, which
+     * compares them element by element (and nested arrays likewise).  Each element counts
+     * as one unit of weight.
+     */
+    public static GenomeEquivalence<Object> arrays() {
+        return ARRAYS;
+    }
+
+
+    /**
+     * @return A strategy for {@link BitString} genomes, which compares them bit by bit.
+     * Each 32 bits count as one unit of weight.
+     */
+    public static GenomeEquivalence<BitString> bitStrings() {
+        return BIT_STRINGS;
+    }
+
+
+    /**
+     * @return A strategy for {@link String} genomes.  Each two characters count as one
+     * unit of weight.
+     */
+    public static GenomeEquivalence<String> strings() {
+        return STRINGS;
+    }
+
+
+    /**
+     * @return A strategy for {@link List} genomes, which compares them element by element
+     * (comparing elements that are arrays by content).  Each element counts as one unit of
+     * weight.
+     */
+    public static GenomeEquivalence<List<?>> lists() {
+        return LISTS;
+    }
+
+
+    /**
+     * @return A strategy for any genome, which uses the built-in strategy for arrays,
+     * {@link BitString}s, {@link String}s or {@link List}s as appropriate, and otherwise
+     * relies on the genome's own {@link Object#equals(Object)} and
+     * {@link Object#hashCode()} methods, counting it as one unit of weight.
+     */
+    public static GenomeEquivalence<Object> content() {
+        return CONTENT;
+    }
+
+
+    /**
+     * Estimates the memory taken up by a genome, in units of about four bytes, not counting
+     * the fixed overhead of an object.
+     * @param genome A genome.
+     * @return A positive weight.
+     */
+    public abstract int weigh(T genome);
+
+
+    /**
+     * Makes a copy of a genome to store in a cache, so that the cache is not affected if
+     * the original is changed in place later.  This implementation returns the genome
+     * itself, which is only correct for immutable genomes.
+     * @param genome A genome.
+     * @return A genome equivalent to the specified one that will not change.
+     */
+    public T copyOf(T genome) {
+        return genome;
+    }
+
+
+    /**
+     * Feeds the content of a genome to a hash function, in a form that is the same in
+     * every run, so that genomes that are equivalent have the same hash.  This
+     * implementation throws an {@link UnsupportedOperationException}, so a strategy for a
+     * new genome type must override it, and {@link #canFunnel(Class)}, before it can be
+     * used with a persistent cache.
+     * @param genome A genome.
+     * @param sink The input of the hash function.
+     */
+    public void funnel(T genome, PrimitiveSink sink) {
+        throw new UnsupportedOperationException("No persistent form for genomes of type "
+                                                + genome.getClass().getName());
+    }
+
+
+    /**
+     * Indicates whether {@link #funnel(Object, PrimitiveSink)} can feed genomes of a type
+     * to a hash function, so that a {@link PersistentFitnessCache} can refuse a genome type
+     * when it is opened rather than when the first genome is evaluated.  A type that can
+     * hold other genomes, such as {@link Object} or {@link List}, is accepted if genomes of
+     * that type might be funnelled.  This implementation returns false.
+     * @param genomeType The declared type of the genomes.
+     * @return True if genomes of the type can be funnelled.
+     */
+    public boolean canFunnel(Class<?> genomeType) {
+        return false;
+    }
+
+
+    private static GenomeEquivalence<Object> forGenome(Object genome) {
+        return forType(genome.getClass());
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static GenomeEquivalence<Object> forType(Class<?> type) {
+        if (type.isArray()) {
+            return ARRAYS;
+        } else if (BitString.class.isAssignableFrom(type)) {
+            return (GenomeEquivalence<Object>) (GenomeEquivalence<?>) BIT_STRINGS;
+        } else if (String.class == type) {
+            return (GenomeEquivalence<Object>) (GenomeEquivalence<?>) STRINGS;
+        } else if (List.class.isAssignableFrom(type)) {
+            return (GenomeEquivalence<Object>) (GenomeEquivalence<?>) LISTS;
+        }
+        return OTHER;
+    }
+
+
+    private static int arrayLength(Object array) {
+        if (array instanceof Object[]) {
+            int weight = 1;
+            for (Object element : (Object[]) array) {
+                weight += element != null && element.getClass().isArray() ? arrayLength(element) : 1;
+            }
+            return weight;
+        }
+        int length = Array.getLength(array);
+        return array instanceof long[] || array instanceof double[] ? 1 + 2 * length : 1 + length;
+    }
+
+
+    private static void funnelArray(Object array, PrimitiveSink sink) {
+        Class<?> type = array.getClass().getComponentType();
+        int length = Array.getLength(array);
+        sink.putByte((byte) 'A').putString(type.getName(), Charsets.UTF_8).putByte((byte) 0).putInt(length);
+        if (array instanceof int[]) {
+            for (int value : (int[]) array) {
+                sink.putInt(value);
+            }
+        } else if (array instanceof double[]) {
+            for (double value : (double[]) array) {
+                sink.putDouble(value);
+            }
+        } else if (array instanceof byte[]) {
+            sink.putBytes((byte[]) array);
+        } else if (array instanceof Object[]) {
+            for (Object element : (Object[]) array) {
+                CONTENT.funnel(element, sink);
+            }
+        } else {
+            // The other primitive types, which are rarely used for genomes.
+            for (int i = 0; i < length; i++) {
+                sink.putString(String.valueOf(Array.get(array, i)), Charsets.UTF_8).putByte((byte) 0);
+            }
+        }
+    }
+
+
+    private static Object copyArray(Object array) {
+        if (array instanceof Object[]) {
+            Object[] copy = ((Object[]) array).clone();
+            for (int i = 0; i < copy.length; i++) {
+                if (copy[i] != null && copy[i].getClass().isArray()) {
+                    copy[i] = copyArray(copy[i]);
+                }
+            }
+            return copy;
+        }
+        int length = Array.getLength(array);
+        Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+}
@@ -0,0 +1,383 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.api.ExpressedFitnessEvaluator;
+import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
+
+/**
+ * <p>A fitness cache that is kept in a file, so that fitness scores survive from one run
+ * to the next and can be shared by several runs, in the same JVM or in different
+ * processes on the same host, that evaluate the same kind of genome in the same way.
+ * This is worthwhile when each evaluation takes much longer than reading a file, such as
+ * a back-test over historical data.  The cache is used by wrapping an evaluator with
+ * {@link #wrap(FitnessEvaluator)} or {@link #wrap(ExpressedFitnessEvaluator)}.</p>
+ *
+ * <p>The file holds an open-addressing hash table, with linear probing, that is mapped
+ * into memory.  Genomes are identified by a 128-bit hash of their content, computed with
+ * a {@link GenomeEquivalence}, and only the hash and the fitness score are stored, so
+ * each entry takes 24 bytes whatever the size of the genome.  The table does not grow:
+ * once it is three-quarters full, new scores are no longer stored, although the scores
+ * already stored are still used.</p>
+ *
+ * <p>The file starts with a header that records the format version, the size of the
+ * table and a fingerprint of the fitness evaluator, chosen by the caller.  The
+ * fingerprint should change whenever a change to the evaluator or its data would change
+ * the scores: when a file whose header does not match is opened, the table is emptied,
+ * and any other run still using the file with the old fingerprint stops using it.
+ * Looking up a score takes no locks.  Storing a score takes an exclusive lock on part of
+ * the file, so that concurrent processes do not overwrite each other's entries.  Because
+ * a JVM cannot lock the same file twice, runs in the same JVM should share one
+ * instance rather than each opening the file.  An evaluation that is interrupted (by
+ * being cancelled, for example) while it waits for the lock does not store its score,
+ * but later scores are stored as usual.</p>
+ *
+ * <p>Caching is only valid when fitness evaluations are isolated and repeatable, so the
+ * wrapped evaluators must ignore the population that they are given.</p>
+ *
+ * @param <T> The type of genome whose fitness scores are cached.
+ * @author Myron Tuttle
+ */
+public final class PersistentFitnessCache<T> implements Closeable {
+
+    private static final long MAGIC = 0x45564F4C56454643L; // "EVOLVEFC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int FINGERPRINT_OFFSET = 16;
+    private static final int SIZE_OFFSET = 24;
+    private static final int ENTRY_SIZE = 24;
+    // Enough to keep the whole file within a single mapping.
+    private static final int MAXIMUM_CAPACITY = 1 << 26;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final GenomeEquivalence<? super T> genomes;
+    private final long fingerprint;
+    private final File path;
+    // Guarded by this object.  The file is reopened if an interrupt closes it.
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private final MappedByteBuffer table;
+    // Held while an entry is written or its score read, so that a thread that sees the
+    // key of an entry stored by another thread also sees the score.
+    private final Object entryLock = new Object();
+    private final int capacity;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Opens a cache file, creating it if it does not exist.
+     * @param file The file that holds the cache.
+     * @param capacity The number of entries in the table if the file has to be created or
+     * emptied.  The capacity of an existing file is kept.  Only three-quarters of the
+     * entries are used.
+     * @param fingerprint Identifies the fitness evaluator, and the version of it, whose
+     * scores are cached.
+     * @param genomeType The type of genome whose scores are cached.
+     * @param genomes Computes the content hashes of genomes.
+     * {@link GenomeEquivalence#content()} suits all of the built-in genome types.
+     * @throws IOException If the file cannot be opened or mapped.
+     * @throws IllegalArgumentException If the capacity is out of range, or if the
+     * content hashes of genomes of the specified type cannot be computed (see
+     * {@link GenomeEquivalence#canFunnel(Class)}).
+     */
+    public PersistentFitnessCache(File file,
+                                  int capacity,
+                                  long fingerprint,
+                                  Class<? super T> genomeType,
+                                  GenomeEquivalence<? super T> genomes) throws IOException {
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAXIMUM_CAPACITY);
+        }
+        if (!genomes.canFunnel(genomeType)) {
+            throw new IllegalArgumentException("No persistent form for genomes of type " + genomeType.getName());
+        }
+        this.genomes = genomes;
+        this.fingerprint = fingerprint;
+        this.path = file;
+        this.file = new RandomAccessFile(file, "rw");
+        this.channel = this.file.getChannel();
+        try {
+            FileLock lock = channel.lock();
+            try {
+                this.capacity = prepare(capacity);
+                this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(this.capacity));
+            } finally {
+                lock.release();
+            }
+        } catch (IOException ex) {
+            this.file.close();
+            throw ex;
+        } catch (RuntimeException ex) {
+            this.file.close();
+            throw ex;
+        }
+    }
+
+
+    /**
+     * Checks the header of the file, and writes a new header and an empty table if it
+     * does not match.  Must be called with the file locked.
+     * @return The capacity of the table.
+     */
+    private int prepare(int requestedCapacity) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() >= HEADER_SIZE) {
+            channel.read(header, 0);
+            int existingCapacity = header.getInt(CAPACITY_OFFSET);
+            if (header.getLong(MAGIC_OFFSET) == MAGIC
+                && header.getInt(VERSION_OFFSET) == VERSION
+                && header.getLong(FINGERPRINT_OFFSET) == fingerprint
+                && existingCapacity > 0 && existingCapacity <= MAXIMUM_CAPACITY
+                && channel.size() >= fileSize(existingCapacity)) {
+                return existingCapacity;
+            }
+        }
+        // A new file, or one that belongs to a different evaluator or format.  The file is
+        // never shrunk, because other processes may have it mapped.
+        if (channel.size() < fileSize(requestedCapacity)) {
+            file.setLength(fileSize(requestedCapacity));
+        }
+        // The header is rewritten without the magic number before the table is emptied,
+        // so that runs still using the file stop reading it first, and so that a file
+        // left half-emptied is recognised as invalid.
+        header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(CAPACITY_OFFSET, requestedCapacity);
+        header.putLong(FINGERPRINT_OFFSET, fingerprint);
+        header.putInt(SIZE_OFFSET, 0);
+        channel.write(header, 0);
+        ByteBuffer zeros = ByteBuffer.allocate(64 * ENTRY_SIZE);
+        for (long position = HEADER_SIZE; position < fileSize(requestedCapacity); position += zeros.capacity()) {
+            zeros.clear();
+            zeros.limit((int) Math.min(zeros.capacity(), fileSize(requestedCapacity) - position));
+            channel.write(zeros, position);
+        }
+        ByteBuffer magic = ByteBuffer.allocate(8);
+        magic.putLong(0, MAGIC);
+        channel.write(magic, MAGIC_OFFSET);
+        return requestedCapacity;
+    }
+
+
+    private static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) capacity * ENTRY_SIZE;
+    }
+
+
+    /**
+     * Wraps a fitness evaluator so that its scores are looked up in, and added to, this
+     * cache.
+     * @param evaluator An evaluator whose scores depend only on the candidate.
+     * @return A caching evaluator.
+     */
+    public FitnessEvaluator<T> wrap(final FitnessEvaluator<? super T> evaluator) {
+        return new FitnessEvaluator<T>() {
+            public double getFitness(T candidate, List<? extends T> population) {
+                long[] key = hash(candidate);
+                double fitness = lookUp(key);
+                if (Double.isNaN(fitness)) {
+                    fitness = evaluator.getFitness(candidate, population);
+                    store(key, fitness);
+                }
+                return fitness;
+            }
+
+            public boolean isNatural() {
+                return evaluator.isNatural();
+            }
+        };
+    }
+
+
+    /**
+     * Wraps an expressed fitness evaluator so that its scores are looked up in, and added
+     * to, this cache.  Candidates are identified by their genomes, so each genome must
+     * always be expressed in the same way.
+     * @param evaluator An evaluator whose scores depend only on the candidate.
+     * @return A caching evaluator.
+     */
+    public ExpressedFitnessEvaluator<T> wrap(final ExpressedFitnessEvaluator<T> evaluator) {
+        return new ExpressedFitnessEvaluator<T>() {
+            public double getFitness(ExpressedCandidate<T> candidate, List<ExpressedCandidate<T>> population) {
+                long[] key = hash(candidate.getGenome());
+                double fitness = lookUp(key);
+                if (Double.isNaN(fitness)) {
+                    fitness = evaluator.getFitness(candidate, population);
+                    store(key, fitness);
+                }
+                return fitness;
+            }
+
+            public boolean isNatural() {
+                return evaluator.isNatural();
+            }
+        };
+    }
+
+
+    /**
+     * @return The number of look-ups that found a stored score.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+
+    /**
+     * @return The number of look-ups that did not find a stored score.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+
+    /**
+     * @return The number of scores stored in the file, by all of the runs that share it.
+     */
+    public int getSize() {
+        return table.getInt(SIZE_OFFSET);
+    }
+
+
+    /**
+     * @return The number of entries in the table.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    /**
+     * Writes any changes to the file and closes it.  Evaluators that use the cache must
+     * not be used afterwards.
+     * @throws IOException If the file cannot be closed.
+     */
+    public synchronized void close() throws IOException {
+        table.force();
+        file.close();
+    }
+
+
+    private long[] hash(T genome) {
+        ByteBuffer bytes = ByteBuffer.wrap(HASH.hashObject(genome, genomes).asBytes());
+        long high = bytes.getLong();
+        // A zero marks an empty entry, so no genome may hash to it.
+        return new long[]{high == 0 ? 1 : high, bytes.getLong()};
+    }
+
+
+    /**
+     * @return The stored score for the specified key, or NaN if there is none.
+     */
+    private double lookUp(long[] key) {
+        int entry = isCurrent() ? find(key) : -1;
+        if (entry >= 0 && table.getLong(entry) != 0) {
+            double fitness;
+            synchronized (entryLock) {
+                fitness = table.getDouble(entry + 16);
+            }
+            hitCount.incrementAndGet();
+            return fitness;
+        }
+        missCount.incrementAndGet();
+        return Double.NaN;
+    }
+
+
+    /**
+     * @return The offset of the entry that holds the key, or of the empty entry where it
+     * belongs, or -1 if the table is full.
+     */
+    private int find(long[] key) {
+        int slot = (int) ((key[1] & Long.MAX_VALUE) % capacity);
+        for (int i = 0; i < capacity; i++) {
+            int entry = HEADER_SIZE + slot * ENTRY_SIZE;
+            long high = table.getLong(entry);
+            if (high == 0 || (high == key[0] && table.getLong(entry + 8) == key[1])) {
+                return entry;
+            }
+            slot = slot + 1 == capacity ? 0 : slot + 1;
+        }
+        return -1;
+    }
+
+
+    /**
+     * @return False if another run has since emptied the file for a different evaluator,
+     * or is emptying it.
+     */
+    private boolean isCurrent() {
+        return table.getLong(FINGERPRINT_OFFSET) == fingerprint && table.getLong(MAGIC_OFFSET) == MAGIC;
+    }
+
+
+    private synchronized void store(long[] key, double fitness) {
+        if (Double.isNaN(fitness) || table.getInt(SIZE_OFFSET) * 4L >= capacity * 3L) {
+            return;
+        }
+        // An interrupt closes a channel that is in use (the engine interrupts evaluations
+        // that it cancels), so a pending interrupt is held back until the lock is released.
+        boolean interrupted = Thread.interrupted();
+        try {
+            FileLock lock = channel.lock(0, HEADER_SIZE, false);
+            try {
+                // Another run may have stored the score, or filled the table, meanwhile.
+                int size = table.getInt(SIZE_OFFSET);
+                int entry = isCurrent() ? find(key) : -1;
+                if (entry < 0 || table.getLong(entry) != 0 || size * 4L >= capacity * 3L) {
+                    return;
+                }
+                synchronized (entryLock) {
+                    // The first half of the key goes last, because it marks the entry as used.
+                    table.putDouble(entry + 16, fitness);
+                    table.putLong(entry + 8, key[1]);
+                    table.putLong(entry, key[0]);
+                    table.putInt(SIZE_OFFSET, size + 1);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (ClosedByInterruptException ex) {
+            // Interrupted while waiting for another process to release the lock.  The score
+            // is not stored, but the mapping is unaffected, so reopening the file is enough
+            // for later scores to be stored.
+            reopen();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Fitness score could not be stored in " + path, ex);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * Replaces a channel that has been closed by an interrupt.
+     */
+    private void reopen() {
+        try {
+            file = new RandomAccessFile(path, "rw");
+            channel = file.getChannel();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Fitness cache " + path + " could not be reopened.", ex);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.myrontuttle.sci.evolve.express;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.base.Equivalence;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.api.ExpressionStrategy;
+import com.myrontuttle.sci.evolve.eval.AbstractEvaluationCache;
+import com.myrontuttle.sci.evolve.eval.GenomeEquivalence;
+
+/**
+ * <p>A wrapper that caches the expressions made by an {@link ExpressionStrategy}, so that
+ * a candidate that survives from one generation to the next (an elite, for example), or
+ * a genome that is bred again, is not expressed again.  Expressions are cached by the
+ * content of the genome, compared with a {@link GenomeEquivalence}, and by population,
+ * so a genome in two populations is expressed once for each.  The cache holds a bounded
+ * number of expressions and discards the least recently used when it is full.  As with
+ * {@link com.myrontuttle.sci.evolve.eval.ContentCachingFitnessEvaluator}, if two threads
+ * express the same genome at the same time only one of them does the work.</p>
+ *
+ * <p>Because an expression may be handed out again after its candidate has left the
+ * population, the cache decides when expressions are destroyed: {@link #destroy} does
+ * nothing, and the wrapped strategy's {@code destroy} method is instead called, with the
+ * genome of the expression, once an expression has left the cache and is no longer in
+ * its population.  An expression that is evicted while its candidate is still in the
+ * population is destroyed after the next generation of that population has been
+ * expressed without it (see {@link #candidatesExpressed}).  Call {@link #clear()} when
+ * the expressions are no longer needed, such as at the end of a run, to destroy all of
+ * them.</p>
+ *
+ * <p>The cache keeps a copy of each genome as its key, made by the
+ * {@link GenomeEquivalence}, but a cached expression keeps the genome that it was made
+ * from, which then becomes a member of every population that the expression is handed
+ * out to.  An engine that recycles genomes through a
+ * {@link com.myrontuttle.sci.evolve.util.GenomePool} therefore refuses to use this
+ * strategy.  Caching is only valid when the wrapped strategy always expresses a genome in
+ * the same way within a population.</p>
+ *
+ * @param <T> The type of evolved entity that is expressed.
+ * @author Myron Tuttle
+ */
+public class CachingExpressionStrategy<T> extends AbstractEvaluationCache implements ExpressionStrategy<T> {
+
+    private final ExpressionStrategy<T> delegate;
+    private final GenomeEquivalence<? super T> equivalence;
+    private final Cache<ExpressionKey<T>, ExpressedCandidate<T>> cache;
+    private final DeferredDestruction<T> evicted;
+
+    /**
+     * Creates a caching expression strategy that wraps the specified strategy.
+     * @param delegate The expression strategy that does the actual work.
+     * @param equivalence Decides which genomes are the same.
+     * {@link GenomeEquivalence#content()} suits all of the built-in genome types.
+     * @param maximumSize The maximum number of expressions held in the cache.
+     */
+    public CachingExpressionStrategy(ExpressionStrategy<T> delegate,
+                                     GenomeEquivalence<? super T> equivalence,
+                                     long maximumSize) {
+        this(delegate, equivalence, maximumSize, new DeferredDestruction<T>(delegate));
+    }
+
+
+    private CachingExpressionStrategy(ExpressionStrategy<T> delegate,
+                                      GenomeEquivalence<? super T> equivalence,
+                                      long maximumSize,
+                                      DeferredDestruction<T> evicted) {
+        this(delegate, equivalence, CacheBuilder.newBuilder()
+                                                .maximumSize(maximumSize)
+                                                .removalListener(evicted)
+                                                .recordStats()
+                                                .<ExpressionKey<T>, ExpressedCandidate<T>>build(), evicted);
+    }
+
+
+    private CachingExpressionStrategy(ExpressionStrategy<T> delegate,
+                                      GenomeEquivalence<? super T> equivalence,
+                                      Cache<ExpressionKey<T>, ExpressedCandidate<T>> cache,
+                                      DeferredDestruction<T> evicted) {
+        super(cache);
+        this.delegate = delegate;
+        this.equivalence = equivalence;
+        this.cache = cache;
+        this.evicted = evicted;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If a genome with the same content has already been expressed for the same
+     * population, and the expression is still in the cache, that expression is returned
+     * without delegating to the wrapped strategy.</p>
+     */
+    public ExpressedCandidate<T> express(final T candidate, final long populationId) {
+        ExpressedCandidate<T> expression = cache.getIfPresent(new ExpressionKey<T>(equivalence.wrap(candidate),
+                                                                                   populationId));
+        if (expression != null) {
+            return expression;
+        }
+        // Look again, with a copy to keep, so that only one thread expresses the genome.
+        @SuppressWarnings("unchecked")
+        T copy = (T) equivalence.copyOf(candidate);
+        try {
+            return cache.get(new ExpressionKey<T>(equivalence.wrap(copy), populationId),
+                             new Callable<ExpressedCandidate<T>>() {
+                                 public ExpressedCandidate<T> call() {
+                                     return delegate.express(candidate, populationId);
+                                 }
+                             });
+        } catch (UncheckedExecutionException ex) {
+            throw (RuntimeException) ex.getCause();
+        } catch (ExecutionError ex) {
+            throw (Error) ex.getCause();
+        } catch (ExecutionException ex) {
+            // The delegate does not throw checked exceptions.
+            throw new IllegalStateException("Expression failed.", ex);
+        }
+    }
+
+
+    public int getGenomeLength(long populationId) {
+        return delegate.getGenomeLength(populationId);
+    }
+
+
+    public void beforeExpression(long populationId) {
+        delegate.beforeExpression(populationId);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Expressions of the population that were evicted from the cache, and that are not
+     * among the expressed candidates, are destroyed.</p>
+     */
+    public void candidatesExpressed(List<ExpressedCandidate<T>> expressedCandidates, long populationId) {
+        delegate.candidatesExpressed(expressedCandidates, populationId);
+        evicted.destroyUnused(expressedCandidates, populationId);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation does nothing, because the candidate's expression may still
+     * be in the cache.  Expressions are destroyed when they leave the cache.</p>
+     */
+    public void destroy(T candidate, long populationId) {
+        // Destroyed once evicted and no longer in the population.
+    }
+
+
+    /**
+     * Discards all cached expressions, and destroys them and any evicted expressions that
+     * have not been destroyed yet.  The statistics are not reset.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        evicted.destroyAll();
+    }
+
+
+    /**
+     * Passes expressions that leave the cache to the strategy that made them, holding
+     * back those that were evicted until their population no longer includes them.
+     */
+    private static final class DeferredDestruction<T>
+        implements RemovalListener<ExpressionKey<T>, ExpressedCandidate<T>> {
+        private final ExpressionStrategy<T> strategy;
+        // Evicted expressions that have not been destroyed, by population.
+        private final Map<Long, List<ExpressedCandidate<T>>> pending = new HashMap<Long, List<ExpressedCandidate<T>>>();
+
+        DeferredDestruction(ExpressionStrategy<T> strategy) {
+            this.strategy = strategy;
+        }
+
+        public void onRemoval(RemovalNotification<ExpressionKey<T>, ExpressedCandidate<T>> removal) {
+            long populationId = removal.getKey().populationId;
+            if (removal.wasEvicted()) {
+                // The expression may have just been handed out.
+                defer(Collections.singletonList(removal.getValue()), populationId);
+            } else {
+                strategy.destroy(removal.getValue().getGenome(), populationId);
+            }
+        }
+
+        /**
+         * Destroys the evicted expressions of a population that are not among its members.
+         */
+        void destroyUnused(List<ExpressedCandidate<T>> members, long populationId) {
+            List<ExpressedCandidate<T>> expressions;
+            synchronized (this) {
+                expressions = pending.remove(populationId);
+            }
+            if (expressions == null) {
+                return;
+            }
+            Set<ExpressedCandidate<T>> inUse
+                = Collections.newSetFromMap(new IdentityHashMap<ExpressedCandidate<T>, Boolean>());
+            inUse.addAll(members);
+            List<ExpressedCandidate<T>> kept = new ArrayList<ExpressedCandidate<T>>();
+            for (ExpressedCandidate<T> expression : expressions) {
+                if (inUse.contains(expression)) {
+                    kept.add(expression);
+                } else {
+                    strategy.destroy(expression.getGenome(), populationId);
+                }
+            }
+            defer(kept, populationId);
+        }
+
+        /**
+         * Destroys all of the evicted expressions.
+         */
+        void destroyAll() {
+            Map<Long, List<ExpressedCandidate<T>>> expressions;
+            synchronized (this) {
+                expressions = new HashMap<Long, List<ExpressedCandidate<T>>>(pending);
+                pending.clear();
+            }
+            for (Map.Entry<Long, List<ExpressedCandidate<T>>> entry : expressions.entrySet()) {
+                for (ExpressedCandidate<T> expression : entry.getValue()) {
+                    strategy.destroy(expression.getGenome(), entry.getKey());
+                }
+            }
+        }
+
+        private synchronized void defer(List<ExpressedCandidate<T>> expressions, long populationId) {
+            if (expressions.isEmpty()) {
+                return;
+            }
+            List<ExpressedCandidate<T>> list = pending.get(populationId);
+            if (list == null) {
+                list = new ArrayList<ExpressedCandidate<T>>();
+                pending.put(populationId, list);
+            }
+            list.addAll(expressions);
+        }
+    }
+
+
+    /**
+     * Identifies the expression of a genome for a population.
+     */
+    private static final class ExpressionKey<T> {
+        private final Equivalence.Wrapper<T> genome;
+        private final long populationId;
+
+        ExpressionKey(Equivalence.Wrapper<T> genome, long populationId) {
+            this.genome = genome;
+            this.populationId = populationId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ExpressionKey)) {
+                return false;
+            }
+            ExpressionKey<?> other = (ExpressionKey<?>) o;
+            return populationId == other.populationId && genome.equals(other.genome);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * genome.hashCode() + (int) (populationId ^ (populationId >>> 32));
+        }
+    }
+}
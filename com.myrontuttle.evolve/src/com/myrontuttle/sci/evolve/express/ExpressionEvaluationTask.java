@@ -0,0 +1,86 @@
+package com.myrontuttle.sci.evolve.express;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.api.ExpressedFitnessEvaluator;
+import com.myrontuttle.sci.evolve.api.ExpressionStrategy;
+import com.myrontuttle.sci.evolve.util.EvolutionTracer;
+import com.myrontuttle.sci.evolve.util.Tracing;
+
+/**
+ * Callable task that expresses a candidate and then evaluates it straight away on the
+ * same thread, so that evaluation of one candidate does not wait for the expression of
+ * the rest of the population.  The expressed candidate is also stored in a shared array
+ * so that the whole expressed population can be passed to
+ * {@link ExpressionStrategy#candidatesExpressed} once every task has finished.
+ * @param <T> The type of entity that is expressed
+ * @author Myron Tuttle
+ */
+public class ExpressionEvaluationTask<T> implements Callable<EvaluatedCandidate<T>> {
+    private final ExpressionStrategy<T> expressionStrategy;
+    private final ExpressedFitnessEvaluator<T> fitnessEvaluator;
+    private final T candidate;
+    private final long populationId;
+    private final EvaluatedCandidate<T> knownFitness;
+    private final AtomicReferenceArray<ExpressedCandidate<T>> expressedCandidates;
+    private final int index;
+
+    /**
+     * Creates a task for expressing and evaluating a candidate.
+     * @param expressionStrategy The strategy used to express the candidate.
+     * @param fitnessEvaluator The fitness function used to determine candidate fitness.
+     * @param candidate The candidate to express and evaluate.
+     * @param populationId The population this candidate belongs to.
+     * @param knownFitness The candidate's existing fitness if it is carried over from
+     * a previous population, in which case it is expressed but not evaluated again.
+     * Null if the candidate must be evaluated.
+     * @param expressedCandidates The array in which to store the expressed candidate.
+     * @param index The position of the candidate in the population.
+     */
+    public ExpressionEvaluationTask(ExpressionStrategy<T> expressionStrategy,
+                                    ExpressedFitnessEvaluator<T> fitnessEvaluator,
+                                    T candidate,
+                                    long populationId,
+                                    EvaluatedCandidate<T> knownFitness,
+                                    AtomicReferenceArray<ExpressedCandidate<T>> expressedCandidates,
+                                    int index) {
+        this.expressionStrategy = expressionStrategy;
+        this.fitnessEvaluator = fitnessEvaluator;
+        this.candidate = candidate;
+        this.populationId = populationId;
+        this.knownFitness = knownFitness;
+        this.expressedCandidates = expressedCandidates;
+        this.index = index;
+    }
+
+
+    public EvaluatedCandidate<T> call() {
+        EvolutionTracer tracer = Tracing.current();
+        if (tracer == null) {
+            return expressAndEvaluate();
+        }
+        long start = System.nanoTime();
+        try {
+            return expressAndEvaluate();
+        } finally {
+            tracer.expressionFinished(populationId, System.nanoTime() - start);
+        }
+    }
+
+
+    private EvaluatedCandidate<T> expressAndEvaluate() {
+        ExpressedCandidate<T> expressed = expressionStrategy.express(candidate, populationId);
+        expressedCandidates.set(index, expressed);
+        if (knownFitness != null) {
+            return knownFitness;
+        }
+        // The rest of the population may not have been expressed yet.
+        return new EvaluatedCandidate<T>(expressed,
+                                         fitnessEvaluator.getFitness(expressed,
+                                                                     Collections.singletonList(expressed)));
+    }
+}
@@ -4,6 +4,8 @@ import java.util.concurrent.Callable;
 
 import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
 import com.myrontuttle.sci.evolve.api.ExpressionStrategy;
+import com.myrontuttle.sci.evolve.util.EvolutionTracer;
+import com.myrontuttle.sci.evolve.util.Tracing;
 
 /**
  * Callable task for performing parallel expressions.
@@ -32,6 +34,15 @@ public class ExpressionTask<T> implements Callable<ExpressedCandidate<T>> {
     }
 
     public ExpressedCandidate<T> call() {
-        return expressionStrategy.express(candidate, populationId);
+        EvolutionTracer tracer = Tracing.current();
+        if (tracer == null) {
+            return expressionStrategy.express(candidate, populationId);
+        }
+        long start = System.nanoTime();
+        try {
+            return expressionStrategy.express(candidate, populationId);
+        } finally {
+            tracer.expressionFinished(populationId, System.nanoTime() - start);
+        }
     }
 }
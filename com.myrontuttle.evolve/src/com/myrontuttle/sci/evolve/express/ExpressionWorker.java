@@ -1,13 +1,19 @@
 package com.myrontuttle.sci.evolve.express;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
 import com.myrontuttle.sci.evolve.api.EvolutionEngine;
 import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.util.concurrent.BoundedThreadPerTaskExecutor;
 import com.myrontuttle.sci.evolve.util.concurrent.ConfigurableThreadFactory;
+import com.myrontuttle.sci.evolve.util.concurrent.SubmitterRunsPolicy;
 import com.myrontuttle.sci.evolve.util.id.IDSource;
 import com.myrontuttle.sci.evolve.util.id.IntSequenceIDSource;
 import com.myrontuttle.sci.evolve.util.id.StringPrefixIDSource;
@@ -18,48 +24,123 @@ import com.myrontuttle.sci.evolve.util.id.StringPrefixIDSource;
  * the evolution engine to permit the possibility of creating multiple instances
  * across several machines, all fed by a single shared work queue, using Terracotta
  * (http://www.terracotta.org) or similar.
+ *
+ * <p>As with {@link com.myrontuttle.sci.evolve.eval.FitnessEvaluationWorker}, a worker
+ * either owns a thread pool, released by {@link #shutdown()}, or wraps an
+ * {@link ExecutorService} managed by the application.</p>
  * @author Myron Tuttle
  */
 public class ExpressionWorker {
 	
     // Provide each worker instance with a unique name with which to prefix its threads.
-    private static final IDSource<String> WORKER_ID_SOURCE = new StringPrefixIDSource("FitnessEvaluationWorker",
-                                                                                      new IntSequenceIDSource());
+    private static final IDSource<String> WORKER_ID_SOURCE = new StringPrefixIDSource("ExpressionWorker",
+                                                                                   new IntSequenceIDSource());
 
     /**
-     * Share this field to use Terracotta to distribute fitness evaluations.
+     * Share this field to use Terracotta to distribute expressions.
      */
-    private final LinkedBlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<Runnable>();
+    private final BlockingQueue<Runnable> workQueue;
 
 
     /**
-     * Thread pool that performs concurrent fitness evaluations.
+     * Thread pool that performs concurrent expressions.
      */
-    private final ThreadPoolExecutor executor;
+    private final ExecutorService executor;
+
+    // True if the executor was created by this worker and must be shut down by it.
+    private final boolean ownsExecutor;
 
 
     /**
-     * Creates a FitnessEvaluationWorker that uses daemon threads.
+     * Creates an ExpressionWorker that uses daemon threads.
      */
     public ExpressionWorker() {
         this(true);
     }
 
 
+    /**
+     * Creates an ExpressionWorker with its own pool of daemon threads and a bounded work
+     * queue.  When the queue is full, expressions are performed on the submitting thread.
+     * @param threadCount The number of worker threads.
+     * @param queueCapacity The maximum number of expressions waiting for a thread.
+     */
+    public ExpressionWorker(int threadCount, int queueCapacity) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive.");
+        }
+        this.workQueue = new ArrayBlockingQueue<Runnable>(queueCapacity);
+        ThreadPoolExecutor pool = createPool(threadCount, workQueue, true);
+        pool.setRejectedExecutionHandler(new SubmitterRunsPolicy());
+        this.executor = pool;
+        this.ownsExecutor = true;
+    }
+
+
+    /**
+     * Creates an ExpressionWorker that submits expressions to an executor managed by the
+     * application.  {@link #shutdown()} has no effect on the executor.
+     * @param executor The executor that performs expressions.
+     */
+    public ExpressionWorker(ExecutorService executor) {
+        this(executor, false);
+    }
+
+
+    private ExpressionWorker(ExecutorService executor, boolean ownsExecutor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must not be null.");
+        }
+        this.workQueue = null;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+
+    /**
+     * Creates a worker that runs each of its expressions on a new virtual thread, for tasks
+     * that spend most of their time waiting on I/O.  On Java runtimes without virtual
+     * threads, ordinary daemon threads are used instead.
+     * @param maxConcurrency The maximum number of expressions in progress at once.  Further
+     * submissions wait until one of them completes.
+     * @return A worker that owns its threads and is released by {@link #shutdown()}.
+     */
+    public static ExpressionWorker newVirtualThreadWorker(int maxConcurrency) {
+        ConfigurableThreadFactory threadFactory
+            = ConfigurableThreadFactory.virtualThreadFactory(WORKER_ID_SOURCE.nextID());
+        return new ExpressionWorker(new BoundedThreadPerTaskExecutor(threadFactory, maxConcurrency), true);
+    }
+
+
     /**
      * @param daemonWorkerThreads If true, any worker threads created will be daemon threads.
      */
     private ExpressionWorker(boolean daemonWorkerThreads) {
+        this.workQueue = new LinkedBlockingQueue<Runnable>();
+        this.executor = createPool(Runtime.getRuntime().availableProcessors(),
+                                   workQueue,
+                                   daemonWorkerThreads);
+        this.ownsExecutor = true;
+    }
+
+
+    private static ThreadPoolExecutor createPool(int threadCount,
+                                                 BlockingQueue<Runnable> workQueue,
+                                                 boolean daemonWorkerThreads) {
         ConfigurableThreadFactory threadFactory = new ConfigurableThreadFactory(WORKER_ID_SOURCE.nextID(),
                                                                                 Thread.NORM_PRIORITY,
                                                                                 daemonWorkerThreads);
-        this.executor = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(),
-                                               Runtime.getRuntime().availableProcessors(),
-                                               60,
-                                               TimeUnit.SECONDS,
-                                               workQueue,
-                                               threadFactory);
-        executor.prestartAllCoreThreads();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount,
+                                                         threadCount,
+                                                         60,
+                                                         TimeUnit.SECONDS,
+                                                         workQueue,
+                                                         threadFactory);
+        pool.prestartAllCoreThreads();
+        return pool;
     }
 
 
@@ -67,6 +148,44 @@ public class ExpressionWorker {
         return executor.submit(task);
     }
 
+    public <T> Future<EvaluatedCandidate<T>> submit(ExpressionEvaluationTask<T> task) {
+        return executor.submit(task);
+    }
+
+
+    /**
+     * Stops the worker's own thread pool once any expressions already submitted have
+     * completed.  Does nothing if the worker wraps an executor supplied by the application.
+     */
+    public void shutdown() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * Waits for the worker's own thread pool to finish the expressions submitted before it
+     * was {@link #shutdown() shut down}.  Returns immediately if the worker wraps an
+     * executor supplied by the application.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the timeout.
+     * @return True if the thread pool has terminated, false if the timeout elapsed first.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return !ownsExecutor || executor.awaitTermination(timeout, unit);
+    }
+
+
+    /**
+     * @return True if this worker's thread pool has been shut down.  Always false for a
+     * worker that wraps an executor supplied by the application.
+     */
+    public boolean isShutdown() {
+        return ownsExecutor && executor.isShutdown();
+    }
+
 
     /**
      * Entry-point for running this class standalone, as an additional node for expressions.
@@ -89,7 +208,7 @@ public class ExpressionWorker {
      */
     @Override
     protected void finalize() throws Throwable {
-        executor.shutdown();
+        shutdown();
         super.finalize();
     }
 }
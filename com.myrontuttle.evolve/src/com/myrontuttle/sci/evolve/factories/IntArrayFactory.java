@@ -5,6 +5,9 @@ package com.myrontuttle.sci.evolve.factories;
 
 import java.util.Random;
 
+import com.myrontuttle.sci.evolve.util.GenomePool;
+import com.myrontuttle.sci.evolve.util.SplittableRNG;
+
 /**
  * General purpose candidate factory for generating bit strings for
  * genetic algorithms.
@@ -17,6 +20,7 @@ public class IntArrayFactory extends AbstractCandidateFactory<int[]> {
     private final int lowerBound;
     private final int[] upperBounds;
     private final int[] lowerBounds;
+    private GenomePool<int[]> genomePool = null;
 
     /**
      * @param length The length of all integer arrays created by this factory.
@@ -95,6 +99,16 @@ public class IntArrayFactory extends AbstractCandidateFactory<int[]> {
     	}
     }
 
+    /**
+     * Makes new candidates out of arrays taken from a pool of recycled genomes, when one
+     * of the right length is available.  Only random candidates are affected; seed
+     * candidates are used as they are.
+     * @param genomePool The pool of recycled arrays, or null to always allocate new ones.
+     */
+    public void setGenomePool(GenomePool<int[]> genomePool) {
+        this.genomePool = genomePool;
+    }
+
 	/**
      * Generates a random integer array.
      * @param rng The source of randomness for setting the integers.
@@ -104,9 +118,14 @@ public class IntArrayFactory extends AbstractCandidateFactory<int[]> {
 	@Override
 	public int[] generateRandomCandidate(Random rng) {
 		
-		int[] candidate = new int[length];
+		int[] candidate = genomePool == null ? null : genomePool.takeArray(length);
+		if (candidate == null) {
+			candidate = new int[length];
+		}
 		if (upperBounds == null || lowerBounds == null) {
-			if (lowerBound == 0) {
+			if (lowerBound == 0 && rng instanceof SplittableRNG) {
+				((SplittableRNG) rng).nextInts(candidate, upperBound);
+			} else if (lowerBound == 0) {
 				for (int i=0; i<length; i++) {
 					candidate[i] = rng.nextInt(upperBound);
 				}
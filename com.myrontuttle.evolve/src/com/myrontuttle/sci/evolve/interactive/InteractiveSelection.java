@@ -119,7 +119,7 @@ public class InteractiveSelection<T> implements SelectionStrategy<T>
             // Pick candidates at random (without replacement).
             List<S> group = new ArrayList<S>(groupSize);
             List<EvaluatedCandidate<S>> candidates = new ArrayList<EvaluatedCandidate<S>>(population);
-            Collections.shuffle(candidates);
+            Collections.shuffle(candidates, rng);
             for (int j = 0; j < groupSize; j++)
             {
                 group.add(candidates.get(j).getCandidate());
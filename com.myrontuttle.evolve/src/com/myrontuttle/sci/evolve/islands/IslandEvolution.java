@@ -40,7 +40,11 @@ import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
 import com.myrontuttle.sci.evolve.api.PopulationStats;
 import com.myrontuttle.sci.evolve.engines.GenerationalEvolutionEngine;
 import com.myrontuttle.sci.evolve.termination.GenerationCount;
+import com.myrontuttle.sci.evolve.termination.Stagnation;
+import com.myrontuttle.sci.evolve.util.EvolutionTracer;
 import com.myrontuttle.sci.evolve.util.EvolutionUtils;
+import com.myrontuttle.sci.evolve.util.SplittableRNG;
+import com.myrontuttle.sci.evolve.util.Tracing;
 
 /**
  * An implementation of island evolution in which multiple independent populations are evolved in
@@ -74,7 +78,9 @@ public class IslandEvolution<T>
      * used on each island.
      * @param fitnessEvaluator The fitness function used on each island.
      * @param selectionStrategy The selection strategy used on each island.
-     * @param rng A source of randomness, used by all islands.
+     * @param rng A source of randomness, used by all islands.  If it is a
+     * {@link SplittableRNG}, each island is given a stream of its own, so that islands do
+     * not share a generator across threads and runs with the same seed give the same results.
      * @see #IslandEvolution(List, Migration, boolean, Random) 
      */
     public IslandEvolution(int islandCount,
@@ -174,7 +180,7 @@ public class IslandEvolution<T>
                                                                                        evolutionScheme,
                                                                                        fitnessEvaluator,
                                                                                        selectionStrategy,
-                                                                                       rng);
+                                                                                       SplittableRNG.streamOf(rng, i));
             island.setSingleThreaded(true); // Don't need fine-grained concurrency when each island is on a separate thread.
             islands.add(island);
         }
@@ -195,7 +201,7 @@ public class IslandEvolution<T>
                                                                                        expressedFitnessEvaluator,
                                                                                        expressionStrategy,
                                                                                        selectionStrategy,
-                                                                                       rng);
+                                                                                       SplittableRNG.streamOf(rng, i));
             island.setSingleThreaded(true); // Don't need fine-grained concurrency when each island is on a separate thread.
             islands.add(island);
         }
@@ -251,6 +257,8 @@ public class IslandEvolution<T>
                                                                                         eliteCount,
                                                                                         epochLength,
                                                                                         islandPopulations);
+            EvolutionTracer tracer = Tracing.current();
+            long epochStart = System.nanoTime();
             try
             {
                 List<Future<List<EvaluatedCandidate<T>>>> futures = threadPool.invokeAll(islandEpochs);
@@ -265,7 +273,20 @@ public class IslandEvolution<T>
                     evaluatedPopulations.add(evaluatedIslandPopulation);
                 }
 
-                migration.migrate(evaluatedPopulations, migrantCount, rng);
+                if (tracer == null)
+                {
+                    migration.migrate(evaluatedPopulations, migrantCount, rng);
+                }
+                else
+                {
+                    long migrationStart = System.nanoTime();
+                    tracer.epochFinished(populationId, currentEpochIndex, islands.size(), migrationStart - epochStart);
+                    migration.migrate(evaluatedPopulations, migrantCount, rng);
+                    tracer.migrationFinished(populationId,
+                                             currentEpochIndex,
+                                             migrantCount,
+                                             System.nanoTime() - migrationStart);
+                }
 
                 EvolutionUtils.sortEvaluatedPopulation(evaluatedCombinedPopulation, naturalFitness);
                 stats = EvolutionUtils.getPopulationStats(populationId,
@@ -294,6 +315,13 @@ public class IslandEvolution<T>
             satisfiedConditions = EvolutionUtils.shouldContinue(stats, conditions);
         }
         threadPool.shutdownNow();
+        for (TerminationCondition condition : conditions)
+        {
+            if (condition instanceof Stagnation)
+            {
+                ((Stagnation) condition).endRun(populationId);
+            }
+        }
 
         this.satisfiedTerminationConditions = satisfiedConditions;
         return evaluatedCombinedPopulation.get(0).getCandidate();
@@ -381,9 +409,10 @@ public class IslandEvolution<T>
      * updates from each individual island at the end of each generation, and updates for
      * the combined global population at the end of each epoch.</p>
      *
-     * <p>Updates are dispatched synchronously on the request thread.  Observers should
-     * complete their processing and return in a timely manner to avoid holding up
-     * the evolution.</p>
+     * <p>Updates are dispatched synchronously on the request thread, and island updates
+     * on the islands' threads.  Observers should complete their processing and return in
+     * a timely manner to avoid holding up the evolution, or be wrapped in an
+     * {@link com.myrontuttle.sci.evolve.engines.AsyncEvolutionObserver}.</p>
      *
      * @param observer The callback that will be notified at the end of each generation and epoch.
      *
@@ -55,7 +55,7 @@ public class RandomMigration implements Migration
                 migrants.add(island.remove(island.size() - 1));
             }
         }
-        Collections.shuffle(migrants);
+        Collections.shuffle(migrants, rng);
         Iterator<EvaluatedCandidate<T>> iterator = migrants.iterator();
         for (List<EvaluatedCandidate<T>> island : islandPopulations)
         {
@@ -24,8 +24,6 @@ import org.uncommons.maths.number.ConstantGenerator;
 import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.random.Probability;
 
-import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
-
 /**
  * Generic base class for cross-over implementations.  Supports all
  * cross-over processes that operate on a pair of parent candidates.
@@ -33,7 +31,7 @@ import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
  * this cross-over implementation.
  * @author Daniel Dyer
  */
-public abstract class AbstractCrossover<T> implements EvolutionaryOperator<T>
+public abstract class AbstractCrossover<T> implements PartitionableOperator<T>
 {
     private final NumberGenerator<Integer> crossoverPointsVariable;
     private final NumberGenerator<Probability> crossoverProbabilityVariable;
@@ -182,4 +180,13 @@ public abstract class AbstractCrossover<T> implements EvolutionaryOperator<T>
                                     T parent2,
                                     int numberOfCrossoverPoints,
                                     Random rng);
+
+
+    /**
+     * @return 2, since parents are mated in pairs.
+     */
+    public int getGroupSize()
+    {
+        return 2;
+    }
 }
@@ -23,15 +23,13 @@ import org.uncommons.maths.number.ConstantGenerator;
 import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.random.Probability;
 
-import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
-
 /**
  * Mutation of individual bits in a {@link BitString} according to some
  * probability.
  * @see org.uncommons.maths.binary.BitString
  * @author Daniel Dyer
  */
-public class BitStringMutation implements EvolutionaryOperator<BitString>
+public class BitStringMutation implements PartitionableOperator<BitString>
 {
     private final NumberGenerator<Probability> mutationProbability;
     private final NumberGenerator<Integer> mutationCount;
@@ -98,4 +96,13 @@ public class BitStringMutation implements EvolutionaryOperator<BitString>
         }
         return bitString;
     }
+
+
+    /**
+     * @return 1, since each candidate is mutated independently.
+     */
+    public int getGroupSize()
+    {
+        return 1;
+    }
 }
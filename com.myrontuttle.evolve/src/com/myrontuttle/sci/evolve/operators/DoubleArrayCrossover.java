@@ -21,6 +21,8 @@ import java.util.Random;
 import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.random.Probability;
 
+import com.myrontuttle.sci.evolve.util.GenomePool;
+
 /**
  * Cross-over with a configurable number of points (fixed or random) for
  * arrays of primitive doubles.
@@ -28,6 +30,8 @@ import org.uncommons.maths.random.Probability;
  */
 public class DoubleArrayCrossover extends AbstractCrossover<double[]>
 {
+    private GenomePool<double[]> genomePool = null;
+
     /**
      * Default is single-point cross-over, applied to all parents.
      */
@@ -94,6 +98,18 @@ public class DoubleArrayCrossover extends AbstractCrossover<double[]>
     }
 
 
+    /**
+     * Makes the offspring out of arrays taken from a pool of recycled genomes, when
+     * one of the right length is available.  Set the same pool on the evolution engine so
+     * that discarded candidates are returned to it.
+     * @param genomePool The pool of recycled arrays, or null to always allocate new ones.
+     */
+    public void setGenomePool(GenomePool<double[]> genomePool)
+    {
+        this.genomePool = genomePool;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -107,25 +123,34 @@ public class DoubleArrayCrossover extends AbstractCrossover<double[]>
         {
             throw new IllegalArgumentException("Cannot perform cross-over with different length parents.");
         }
-        double[] offspring1 = new double[parent1.length];
+        double[] offspring1 = newArray(parent1.length);
         System.arraycopy(parent1, 0, offspring1, 0, parent1.length);
-        double[] offspring2 = new double[parent2.length];
+        double[] offspring2 = newArray(parent2.length);
         System.arraycopy(parent2, 0, offspring2, 0, parent2.length);
         // Apply as many cross-overs as required.
-        double[] temp = new double[parent1.length];
         for (int i = 0; i < numberOfCrossoverPoints; i++)
         {
             // Cross-over index is always greater than zero and less than
             // the length of the parent so that we always pick a point that
             // will result in a meaningful cross-over.
             int crossoverIndex = (1 + rng.nextInt(parent1.length - 1));
-            System.arraycopy(offspring1, 0, temp, 0, crossoverIndex);
-            System.arraycopy(offspring2, 0, offspring1, 0, crossoverIndex);
-            System.arraycopy(temp, 0, offspring2, 0, crossoverIndex);
+            for (int j = 0; j < crossoverIndex; j++)
+            {
+                double temp = offspring1[j];
+                offspring1[j] = offspring2[j];
+                offspring2[j] = temp;
+            }
         }
         List<double[]> result = new ArrayList<double[]>(2);
         result.add(offspring1);
         result.add(offspring2);
         return result;
     }
+
+
+    private double[] newArray(int length)
+    {
+        double[] array = genomePool == null ? null : genomePool.takeArray(length);
+        return array != null ? array : new double[length];
+    }
 }
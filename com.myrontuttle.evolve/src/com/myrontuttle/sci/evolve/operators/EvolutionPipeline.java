@@ -16,10 +16,18 @@
 package com.myrontuttle.sci.evolve.operators;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
+import com.myrontuttle.sci.evolve.util.LatencyHistogram;
+import com.myrontuttle.sci.evolve.util.SplittableRNG;
 
 /**
  * <p>A compound evolutionary operator that applies multiple operators (of the
@@ -28,12 +36,28 @@ import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
  * <p>By combining EvolutionPipeline operators with {@link SplitEvolution} operators,
  * elaborate evolutionary schemes can be constructed.</p>
  *
+ * <p>A pipeline can also be made {@link #setParallel(ForkJoinPool) parallel}, so that
+ * operators that work on each candidate or pair of candidates independently (those that
+ * implement {@link PartitionableOperator}) are applied to chunks of the selection on
+ * several threads.  Other operators are still applied to the whole selection on the
+ * calling thread.</p>
+ *
  * @param <T> The type of evolved candidate that this pipeline operates on.
  * @author Daniel Dyer
  */
 public class EvolutionPipeline<T> implements EvolutionaryOperator<T>
 {
+    /**
+     * The number of candidates in each chunk of a parallel pipeline, unless otherwise
+     * specified.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+
     private final List<EvolutionaryOperator<T>> pipeline;
+    // Time spent in each operator, in pipeline order.
+    private final LatencyHistogram[] stageLatencies;
+    private volatile ForkJoinPool forkJoinPool = null;
+    private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
 
 
     /**
@@ -49,6 +73,49 @@ public class EvolutionPipeline<T> implements EvolutionaryOperator<T>
             throw new IllegalArgumentException("Pipeline must contain at least one operator.");
         }
         this.pipeline = new ArrayList<EvolutionaryOperator<T>>(pipeline);
+        this.stageLatencies = new LatencyHistogram[pipeline.size()];
+        for (int i = 0; i < stageLatencies.length; i++)
+        {
+            stageLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+
+    /**
+     * <p>Applies partitionable operators to chunks of the selection in parallel.  Each
+     * chunk is given its own stream of random numbers, derived from the pipeline's source
+     * of randomness and the position of the chunk, so for a given seed the results do not
+     * depend on how many threads there are or on the order in which chunks are processed.
+     * They are not the same as the results of the sequential pipeline, though.</p>
+     *
+     * <p>Pair-wise operators only pair candidates within the same chunk, so the selection
+     * is shuffled before it is split up.  The operators' number generators (for example
+     * mutation probabilities) are shared by the chunks, so they must be thread-safe.</p>
+     * @param forkJoinPool The pool on which to apply the operators, or null to apply
+     * everything on the calling thread (the default).
+     */
+    public void setParallel(ForkJoinPool forkJoinPool)
+    {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+
+    /**
+     * Sets the number of candidates in each chunk of a parallel pipeline.  Smaller chunks
+     * spread the work more evenly, larger chunks have less overhead.  The chunk size
+     * determines which random numbers each candidate gets, so changing it changes the
+     * results.
+     * @param chunkSize The number of candidates per chunk, which is rounded up to a
+     * multiple of each operator's group size.  Selections no bigger than this are not
+     * split up.
+     */
+    public void setChunkSize(int chunkSize)
+    {
+        if (chunkSize <= 0)
+        {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        this.chunkSize = chunkSize;
     }
 
 
@@ -61,11 +128,122 @@ public class EvolutionPipeline<T> implements EvolutionaryOperator<T>
      */
     public List<T> apply(List<T> selectedCandidates, Random rng)
     {
+        ForkJoinPool pool = forkJoinPool;
+        int size = chunkSize;
         List<T> population = selectedCandidates;
-        for (EvolutionaryOperator<T> operator : pipeline)
+        long start = System.nanoTime();
+        for (int i = 0; i < stageLatencies.length; i++)
         {
-            population = operator.apply(population, rng);
+            EvolutionaryOperator<T> operator = pipeline.get(i);
+            population = pool != null && operator instanceof PartitionableOperator && population.size() > size
+                         ? applyInChunks((PartitionableOperator<T>) operator, population, rng, pool, size)
+                         : operator.apply(population, rng);
+            long end = System.nanoTime();
+            stageLatencies[i].record(end - start);
+            start = end;
         }
         return population;
     }
+
+
+    /**
+     * Determines whether an operator leaves each result in the position of the candidate
+     * that it came from, so that the i<sup>th</sup> result descends from the i<sup>th</sup>
+     * candidate.  That is the case for element-wise {@link PartitionableOperator}s and for
+     * pipelines made up only of them.  Other operators, such as cross-overs and
+     * {@link SplitEvolution}, shuffle the candidates.
+     * @param operator The operator to check.
+     * @return True if the operator is known to preserve positions.
+     */
+    public static boolean preservesPositions(EvolutionaryOperator<?> operator)
+    {
+        if (operator instanceof EvolutionPipeline)
+        {
+            for (EvolutionaryOperator<?> stage : ((EvolutionPipeline<?>) operator).pipeline)
+            {
+                if (!preservesPositions(stage))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return operator instanceof PartitionableOperator
+               && ((PartitionableOperator<?>) operator).getGroupSize() == 1;
+    }
+
+
+    private static <T> List<T> applyInChunks(final PartitionableOperator<T> operator,
+                                             List<T> population,
+                                             Random rng,
+                                             ForkJoinPool pool,
+                                             int chunkSize)
+    {
+        int groupSize = Math.max(operator.getGroupSize(), 1);
+        List<T> input = population;
+        if (groupSize > 1)
+        {
+            input = new ArrayList<T>(population);
+            Collections.shuffle(input, rng);
+        }
+        int alignedSize = (chunkSize + groupSize - 1) / groupSize * groupSize;
+        // One draw from the pipeline's source of randomness per stage, however many chunks.
+        SplittableRNG streams = rng instanceof SplittableRNG
+                                ? ((SplittableRNG) rng).split()
+                                : new SplittableRNG(rng.nextLong());
+
+        List<ForkJoinTask<List<T>>> tasks = new ArrayList<ForkJoinTask<List<T>>>();
+        for (int from = 0, chunk = 0; from < input.size(); from += alignedSize, chunk++)
+        {
+            final List<T> candidates = Collections.unmodifiableList(input.subList(from, Math.min(from + alignedSize,
+                                                                                                  input.size())));
+            final Random chunkRNG = streams.stream(chunk);
+            tasks.add(pool.submit(new Callable<List<T>>()
+            {
+                public List<T> call()
+                {
+                    return operator.apply(candidates, chunkRNG);
+                }
+            }));
+        }
+        List<T> result = new ArrayList<T>(population.size());
+        boolean joined = false;
+        try
+        {
+            for (ForkJoinTask<List<T>> task : tasks)
+            {
+                result.addAll(task.join());
+            }
+            joined = true;
+        }
+        finally
+        {
+            if (!joined)
+            {
+                // A chunk failed, so the chunks that have not started yet are not needed.
+                for (ForkJoinTask<List<T>> task : tasks)
+                {
+                    task.cancel(true);
+                }
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Reports how long each operator in the pipeline takes per application.  The times
+     * are recorded every time the pipeline is applied, by any thread.
+     * @return A map from a description of each stage (its position in the pipeline and
+     * the class of its operator) to a copy of its histogram, in pipeline order.
+     */
+    public Map<String, LatencyHistogram> getStageLatencies()
+    {
+        Map<String, LatencyHistogram> latencies = new LinkedHashMap<String, LatencyHistogram>();
+        for (int i = 0; i < stageLatencies.length; i++)
+        {
+            latencies.put(i + ":" + pipeline.get(i).getClass().getSimpleName(), stageLatencies[i].copy());
+        }
+        return latencies;
+    }
 }
@@ -19,8 +19,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
-import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
-
 /**
  * Evolutionary operator that simply returns the selected candidates unaltered.
  * This can be useful when combined with {@link SplitEvolution} so that a
@@ -29,7 +27,7 @@ import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
  * @param <T> The type of evolvable entity that this operator is used with.
  * @author Daniel Dyer
  */
-public class IdentityOperator<T> implements EvolutionaryOperator<T>
+public class IdentityOperator<T> implements PartitionableOperator<T>
 {
     /**
      * Returns the selected candidates unaltered.
@@ -42,4 +40,13 @@ public class IdentityOperator<T> implements EvolutionaryOperator<T>
     {
         return new ArrayList<T>(selectedCandidates);
     }
+
+
+    /**
+     * @return 1, since each candidate is passed through independently.
+     */
+    public int getGroupSize()
+    {
+        return 1;
+    }
 }
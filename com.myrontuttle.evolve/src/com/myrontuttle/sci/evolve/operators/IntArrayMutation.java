@@ -7,18 +7,19 @@ import org.uncommons.maths.number.ConstantGenerator;
 import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.random.Probability;
 
-import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
 import com.myrontuttle.sci.evolve.factories.IntArrayFactory;
+import com.myrontuttle.sci.evolve.util.GenomePool;
 
 /**
  * Mutation of individual integers in an array according to some
  * probability.
  * @author Myron Tuttle
  */
-public class IntArrayMutation implements EvolutionaryOperator<int[]> {
+public class IntArrayMutation implements PartitionableOperator<int[]> {
 	
     private final IntArrayFactory factory;
     private final NumberGenerator<Probability> mutationProbability;
+    private GenomePool<int[]> genomePool = null;
 
     /**
      * Creates a mutation operator that is applied with the given
@@ -57,6 +58,17 @@ public class IntArrayMutation implements EvolutionaryOperator<int[]> {
     }
 
 
+    /**
+     * Makes the mutated arrays out of arrays taken from a pool of recycled genomes, when
+     * one of the right length is available.  Set the same pool on the evolution engine so
+     * that discarded candidates are returned to it.
+     * @param genomePool The pool of recycled arrays, or null to always allocate new ones.
+     */
+    public void setGenomePool(GenomePool<int[]> genomePool) {
+        this.genomePool = genomePool;
+    }
+
+
     public List<int[]> apply(List<int[]> selectedCandidates, Random rng) {
         List<int[]> mutatedPopulation = new ArrayList<int[]>(selectedCandidates.size());
         for (int[] c : selectedCandidates)
@@ -76,7 +88,11 @@ public class IntArrayMutation implements EvolutionaryOperator<int[]> {
      * @return The mutated array.
      */
     private int[] mutateArray(int[] c, Random rng) {
-    	int[] mutated = c.clone();
+    	int[] mutated = genomePool == null ? null : genomePool.takeArray(c.length);
+    	if (mutated == null) {
+    		mutated = new int[c.length];
+    	}
+    	System.arraycopy(c, 0, mutated, 0, c.length);
     	
     	for (int i=0; i<c.length; i++) {
     		if (mutationProbability.nextValue().nextEvent(rng)) {
@@ -86,4 +102,12 @@ public class IntArrayMutation implements EvolutionaryOperator<int[]> {
     	
         return mutated;
     }
+
+
+    /**
+     * @return 1, since each candidate is mutated independently.
+     */
+    public int getGroupSize() {
+        return 1;
+    }
 }
@@ -23,14 +23,12 @@ import org.uncommons.maths.number.ConstantGenerator;
 import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.random.Probability;
 
-import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
-
 /**
  * An evolutionary operator that randomly reverses a subsection of a list.
  * @author Daniel Dyer
  * @param <T> The type of entity being evolved.
  */
-public class ListInversion<T> implements EvolutionaryOperator<List<T>>
+public class ListInversion<T> implements PartitionableOperator<List<T>>
 {
     private final NumberGenerator<Probability> inversionProbability;
 
@@ -85,4 +83,13 @@ public class ListInversion<T> implements EvolutionaryOperator<List<T>>
         }
         return result;
     }
+
+
+    /**
+     * @return 1, since each candidate is mutated independently.
+     */
+    public int getGroupSize()
+    {
+        return 1;
+    }
 }
@@ -22,8 +22,6 @@ import java.util.Random;
 import org.uncommons.maths.number.ConstantGenerator;
 import org.uncommons.maths.number.NumberGenerator;
 
-import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
-
 /**
  * A special mutation implementation that instead of changing the
  * genes of the candidate, re-orders them.  A single mutation involves
@@ -36,7 +34,7 @@ import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
  * @param <T> The component type of the lists that are mutated.
  * @author Daniel Dyer
  */
-public class ListOrderMutation<T> implements EvolutionaryOperator<List<T>>
+public class ListOrderMutation<T> implements PartitionableOperator<List<T>>
 {
     private final NumberGenerator<Integer> mutationCountVariable;
     private final NumberGenerator<Integer> mutationAmountVariable;
@@ -103,4 +101,13 @@ public class ListOrderMutation<T> implements EvolutionaryOperator<List<T>>
         }
         return result;
     }
+
+
+    /**
+     * @return 1, since each candidate is mutated independently.
+     */
+    public int getGroupSize()
+    {
+        return 1;
+    }
 }
@@ -0,0 +1,29 @@
+package com.myrontuttle.sci.evolve.operators;
+
+import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
+
+/**
+ * <p>An evolutionary operator that works on small groups of consecutive candidates
+ * independently of the rest of the selection: element-wise operators such as mutations
+ * work on one candidate at a time, pair-wise operators such as crossovers on two.  A
+ * parallel {@link EvolutionPipeline} can therefore split the selection into chunks and
+ * apply the operator to each chunk on a different thread.</p>
+ *
+ * <p>Implementations must be safe to apply to several chunks at once, and should take
+ * all of their randomness from the source of randomness that they are given so that
+ * the results of a parallel pipeline are reproducible.</p>
+ *
+ * @param <T> The type of evolved candidate that the operator works on.
+ * @see EvolutionPipeline#setParallel(java.util.concurrent.ForkJoinPool)
+ * @author Myron Tuttle
+ */
+public interface PartitionableOperator<T> extends EvolutionaryOperator<T> {
+
+    /**
+     * @return The number of consecutive candidates that the operator works on together,
+     * 1 for an element-wise operator and 2 for a pair-wise operator.  Chunks are always a
+     * multiple of this size, except perhaps the last.  An element-wise operator must put
+     * the result for each candidate in the same position as the candidate.
+     */
+    int getGroupSize();
+}
@@ -23,7 +23,6 @@ import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.random.Probability;
 
 import com.myrontuttle.sci.evolve.api.CandidateFactory;
-import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
 
 /**
  * An evolutionary operator that replaces individuals with randomly-generated
@@ -34,7 +33,7 @@ import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
  * @param <T> The type of evolvable entity that this operator applies to. 
  * @author Daniel Dyer
  */
-public class Replacement<T> implements EvolutionaryOperator<T>
+public class Replacement<T> implements PartitionableOperator<T>
 {
     private final CandidateFactory<T> factory;
     private final NumberGenerator<Probability> replacementProbability;
@@ -94,4 +93,13 @@ public class Replacement<T> implements EvolutionaryOperator<T>
         }
         return output;
     }
+
+
+    /**
+     * @return 1, since each candidate is replaced independently.
+     */
+    public int getGroupSize()
+    {
+        return 1;
+    }
 }
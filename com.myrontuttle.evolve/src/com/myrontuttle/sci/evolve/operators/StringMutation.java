@@ -22,14 +22,12 @@ import org.uncommons.maths.number.ConstantGenerator;
 import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.random.Probability;
 
-import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
-
 /**
  * Mutation of individual characters in a string according to some
  * probability.
  * @author Daniel Dyer
  */
-public class StringMutation implements EvolutionaryOperator<String>
+public class StringMutation implements PartitionableOperator<String>
 {
     private final char[] alphabet;
     private final NumberGenerator<Probability> mutationProbability;
@@ -93,4 +91,13 @@ public class StringMutation implements EvolutionaryOperator<String>
         }
         return buffer.toString();
     }
+
+
+    /**
+     * @return 1, since each candidate is mutated independently.
+     */
+    public int getGroupSize()
+    {
+        return 1;
+    }
 }
@@ -0,0 +1,31 @@
+package com.myrontuttle.sci.evolve.replacement;
+
+import java.util.List;
+import java.util.Random;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
+
+/**
+ * Replaces randomly chosen members of the population, other than the elite, with the
+ * offspring.  This is the default replacement strategy of the steady-state engine.
+ * @author Myron Tuttle
+ */
+public class ReplaceRandomBelowElite implements ReplacementStrategy {
+
+    public <T> void replace(IndexedPopulation<T> population,
+                            List<EvaluatedCandidate<T>> offspring,
+                            int eliteCount,
+                            Random rng) {
+        for (EvaluatedCandidate<T> candidate : offspring) {
+            population.remove(eliteCount + rng.nextInt(population.size() - eliteCount));
+            population.add(candidate);
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return "Replace Random Below Elite";
+    }
+}
@@ -0,0 +1,32 @@
+package com.myrontuttle.sci.evolve.replacement;
+
+import java.util.List;
+import java.util.Random;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
+
+/**
+ * Replaces the least fit members of the population with the offspring.  Each offspring
+ * displaces whichever candidate is least fit at the time it is inserted, which may be an
+ * earlier offspring.
+ * @author Myron Tuttle
+ */
+public class ReplaceWorst implements ReplacementStrategy {
+
+    public <T> void replace(IndexedPopulation<T> population,
+                            List<EvaluatedCandidate<T>> offspring,
+                            int eliteCount,
+                            Random rng) {
+        for (EvaluatedCandidate<T> candidate : offspring) {
+            population.remove(population.size() - 1);
+            population.add(candidate);
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return "Replace Worst";
+    }
+}
@@ -0,0 +1,29 @@
+package com.myrontuttle.sci.evolve.replacement;
+
+import java.util.List;
+import java.util.Random;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
+
+/**
+ * Strategy interface for inserting evaluated offspring into a steady-state population,
+ * displacing the same number of existing members so that the population size does not
+ * change.  Implementations work on an {@link IndexedPopulation} so that each replacement
+ * takes O(log n) time rather than requiring the population to be re-sorted.
+ * @author Myron Tuttle
+ */
+public interface ReplacementStrategy {
+    /**
+     * Adds the offspring to the population, removing one existing member for each.
+     * @param <T> The type of evolved entity in the population.
+     * @param population The population, which is updated in-place.
+     * @param offspring The evaluated offspring to add.
+     * @param eliteCount The number of fittest candidates that must not be removed.
+     * @param rng Source of randomness for stochastic replacement strategies.
+     */
+    <T> void replace(IndexedPopulation<T> population,
+                     List<EvaluatedCandidate<T>> offspring,
+                     int eliteCount,
+                     Random rng);
+}
@@ -0,0 +1,52 @@
+package com.myrontuttle.sci.evolve.replacement;
+
+import java.util.List;
+import java.util.Random;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
+
+/**
+ * Replaces the loser of a tournament among randomly chosen members of the population
+ * (excluding the elite) with each offspring.  Larger tournaments make it more likely
+ * that the least fit candidates are replaced.  Since the population is ranked, the loser
+ * is simply the contestant with the highest rank, so no fitness comparisons are needed.
+ * @author Myron Tuttle
+ */
+public class TournamentReplacement implements ReplacementStrategy {
+
+    private final int tournamentSize;
+
+    /**
+     * @param tournamentSize The number of candidates that compete to survive.  Must
+     * be at least one.
+     */
+    public TournamentReplacement(int tournamentSize) {
+        if (tournamentSize < 1) {
+            throw new IllegalArgumentException("Tournament size must be at least 1.");
+        }
+        this.tournamentSize = tournamentSize;
+    }
+
+
+    public <T> void replace(IndexedPopulation<T> population,
+                            List<EvaluatedCandidate<T>> offspring,
+                            int eliteCount,
+                            Random rng) {
+        for (EvaluatedCandidate<T> candidate : offspring) {
+            int eligible = population.size() - eliteCount;
+            int loser = 0;
+            for (int i = 0; i < tournamentSize; i++) {
+                loser = Math.max(loser, rng.nextInt(eligible));
+            }
+            population.remove(eliteCount + loser);
+            population.add(candidate);
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return "Tournament Replacement (size = " + tournamentSize + ")";
+    }
+}
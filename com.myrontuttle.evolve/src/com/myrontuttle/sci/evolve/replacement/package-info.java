@@ -0,0 +1,6 @@
+/**
+ * Replacement strategies that decide which members of a steady-state population
+ * are displaced by new offspring.
+ * @author Myron Tuttle
+ */
+package com.myrontuttle.sci.evolve.replacement;
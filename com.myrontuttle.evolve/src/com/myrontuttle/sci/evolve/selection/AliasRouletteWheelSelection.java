@@ -0,0 +1,149 @@
+package com.myrontuttle.sci.evolve.selection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.api.RankedSelectionStrategy;
+import com.myrontuttle.sci.evolve.util.ArrayPopulation;
+
+/**
+ * <p>Fitness-proportionate selection with the same probabilities as
+ * {@link RouletteWheelSelection}, but using Vose's alias method: the wheel is turned into
+ * a table in O(n) time, after which each selection takes constant time (one random index
+ * and one random comparison) instead of a binary search.  This pays off when many
+ * candidates are selected from a large population in each generation.</p>
+ *
+ * <p>As with {@link RouletteWheelSelection}, a non-natural score of zero (a perfect
+ * solution) gets an infinite share of the wheel.  If there are several perfect solutions
+ * they are selected with equal probability.</p>
+ *
+ * @author Myron Tuttle
+ */
+public class AliasRouletteWheelSelection implements RankedSelectionStrategy<Object>, WeightedSelectionStrategy {
+
+    /**
+     * Selects the required number of candidates from the population with the probability
+     * of selecting any particular candidate being proportional to that candidate's
+     * fitness score.  Selection is with replacement.
+     * @param <S> The type of the evolved objects in the population.
+     * @param population The candidates to select from.
+     * @param naturalFitnessScores True if higher fitness scores indicate fitter
+     * individuals, false if lower fitness scores indicate fitter individuals.
+     * @param selectionSize The number of selections to make.
+     * @param rng A source of randomness.
+     * @return The selected candidates.
+     */
+    public <S> List<S> select(List<EvaluatedCandidate<S>> population,
+                              boolean naturalFitnessScores,
+                              int selectionSize,
+                              Random rng) {
+        return selectByWeight(population,
+                              SelectionWeights.fitnessScores(population),
+                              naturalFitnessScores,
+                              selectionSize,
+                              rng);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>The weights are converted in place into the probability column of the alias
+     * table.</p>
+     */
+    public <S> List<S> selectByWeight(List<EvaluatedCandidate<S>> population,
+                                      double[] weights,
+                                      boolean naturalWeights,
+                                      int selectionSize,
+                                      Random rng) {
+        int size = population.size();
+        // The alias column and the work list used to build it share one buffer.
+        int[] aliases = SelectionWeights.getIndexBuffer(2 * size);
+        buildTable(weights, aliases, size, naturalWeights);
+
+        List<S> selection = new ArrayList<S>(selectionSize);
+        for (int i = 0; i < selectionSize; i++) {
+            int column = rng.nextInt(size);
+            int index = rng.nextDouble() < weights[column] ? column : aliases[column];
+            selection.add(ArrayPopulation.candidateAt(population, index));
+        }
+        return selection;
+    }
+
+
+    /**
+     * Converts the first n scores, in place, into the probability column of an alias
+     * table and fills in the alias column, which is the first n elements of the aliases
+     * array.  The next n elements are used as a work list.
+     */
+    private static void buildTable(double[] probabilities, int[] aliases, int n, boolean naturalFitness) {
+        double total = 0;
+        int perfectCount = 0;
+        for (int i = 0; i < n; i++) {
+            double weight = RouletteWheelSelection.getAdjustedFitness(probabilities[i], naturalFitness);
+            probabilities[i] = weight;
+            if (Double.isInfinite(weight)) {
+                ++perfectCount;
+            } else {
+                total += weight;
+            }
+        }
+        if (perfectCount > 0 || total <= 0) {
+            // Only perfect solutions can be selected or, if the wheel is empty, all alike.
+            for (int i = 0; i < n; i++) {
+                probabilities[i] = perfectCount == 0 || Double.isInfinite(probabilities[i]) ? 1 : 0;
+            }
+            total = perfectCount > 0 ? perfectCount : n;
+        }
+
+        // Columns with less than their share are stacked from the front of the work list,
+        // columns with more than their share from the back.
+        int[] work = aliases;
+        int small = n;
+        int large = 2 * n;
+        for (int i = 0; i < n; i++) {
+            probabilities[i] = probabilities[i] * n / total;
+            aliases[i] = i;
+            if (probabilities[i] < 1) {
+                work[small++] = i;
+            } else {
+                work[--large] = i;
+            }
+        }
+        while (small > n && large < 2 * n) {
+            int lesser = work[--small];
+            int greater = work[large++];
+            // The lesser column is topped up from the greater one.
+            aliases[lesser] = greater;
+            probabilities[greater] += probabilities[lesser] - 1;
+            if (probabilities[greater] < 1) {
+                work[small++] = greater;
+            } else {
+                work[--large] = greater;
+            }
+        }
+        // Anything left over is only short of, or over, its share by rounding error.
+        while (small > n) {
+            probabilities[work[--small]] = 1;
+        }
+        while (large < 2 * n) {
+            probabilities[work[large++]] = 1;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>Alias selection does not depend on the order of the population.</p>
+     */
+    public int getRankedCount(int populationSize, int selectionSize) {
+        return 0;
+    }
+
+
+    @Override
+    public String toString() {
+        return "Alias Roulette Wheel Selection";
+    }
+}
@@ -0,0 +1,222 @@
+package com.myrontuttle.sci.evolve.selection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.api.RankedSelectionStrategy;
+import com.myrontuttle.sci.evolve.util.FenwickSampler;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
+
+/**
+ * <p>Fitness-proportionate selection with the same probabilities as
+ * {@link RouletteWheelSelection}, for populations that change only a little between
+ * selections, as in steady-state evolution.  The wheel is kept from one selection to the
+ * next in a {@link FenwickSampler}, and each spin of the wheel takes O(log n) time.</p>
+ *
+ * <p>When selecting from the same {@link IndexedPopulation} as last time (as the
+ * steady-state engine does), the population reports which candidates have joined and
+ * left it since then, and only their slots are re-weighted, in O(log n) time each.  Any
+ * other population is compared with the wheel member by member, by identity, which takes
+ * O(n) time but still only re-weights the slots that have changed.</p>
+ *
+ * <p>Because the wheel belongs to one population, each population (each island, for
+ * example) should have its own instance of this strategy.  Sharing an instance is safe
+ * but every selection then has to compare the whole population with the wheel.
+ * Likewise, the saving depends on the population holding on to its
+ * {@link EvaluatedCandidate} objects rather than creating them afresh.</p>
+ *
+ * @author Myron Tuttle
+ */
+public class DynamicRouletteWheelSelection implements RankedSelectionStrategy<Object> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<EvaluatedCandidate<?>, Integer> slots = new IdentityHashMap<EvaluatedCandidate<?>, Integer>();
+    private final FenwickSampler wheel = new FenwickSampler(INITIAL_CAPACITY);
+    private EvaluatedCandidate<?>[] owners = new EvaluatedCandidate<?>[INITIAL_CAPACITY];
+    // How many times each slot's candidate appears in the population.
+    private int[] multiplicities = new int[INITIAL_CAPACITY];
+    // The selection in which each slot's candidate was last seen.
+    private int[] lastSeen = new int[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+    private int usedSlots = 0;
+    private int selectionCount = 0;
+    private boolean naturalFitness = true;
+    // The indexed population that the wheel was last brought up to date with, and its
+    // version at the time.
+    private IndexedPopulation<?> trackedPopulation = null;
+    private long trackedVersion = 0;
+
+
+    /**
+     * Selects the required number of candidates from the population with the probability
+     * of selecting any particular candidate being proportional to that candidate's
+     * fitness score.  Selection is with replacement.
+     * @param <S> The type of the evolved objects in the population.
+     * @param population The candidates to select from.
+     * @param naturalFitnessScores True if higher fitness scores indicate fitter
+     * individuals, false if lower fitness scores indicate fitter individuals.
+     * @param selectionSize The number of selections to make.
+     * @param rng A source of randomness.
+     * @return The selected candidates.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <S> List<S> select(List<EvaluatedCandidate<S>> population,
+                                           boolean naturalFitnessScores,
+                                           int selectionSize,
+                                           Random rng) {
+        if (naturalFitnessScores != naturalFitness) {
+            reset();
+            naturalFitness = naturalFitnessScores;
+        }
+        update(population);
+
+        List<S> selection = new ArrayList<S>(selectionSize);
+        for (int i = 0; i < selectionSize; i++) {
+            int slot = wheel.sample(rng);
+            selection.add(slot < 0
+                          // Every weight is zero, so all candidates are alike.
+                          ? population.get(rng.nextInt(population.size())).getCandidate()
+                          : (S) owners[slot].getCandidate());
+        }
+        return selection;
+    }
+
+
+    /**
+     * Brings the wheel up to date with the population.
+     */
+    private <S> void update(List<EvaluatedCandidate<S>> population) {
+        if (population == trackedPopulation) {
+            IndexedPopulation<S> indexed = (IndexedPopulation<S>) population;
+            List<EvaluatedCandidate<S>> added = new ArrayList<EvaluatedCandidate<S>>();
+            List<EvaluatedCandidate<S>> removed = new ArrayList<EvaluatedCandidate<S>>();
+            if (indexed.getChangesSince(trackedVersion, added, removed)) {
+                // Additions first, so that a candidate removed and added again keeps its slot.
+                for (EvaluatedCandidate<S> candidate : added) {
+                    Integer slot = slots.get(candidate);
+                    int index = slot == null ? allocate(candidate) : slot;
+                    ++multiplicities[index];
+                    reweigh(index);
+                }
+                for (EvaluatedCandidate<S> candidate : removed) {
+                    int index = slots.get(candidate);
+                    if (--multiplicities[index] == 0) {
+                        release(index);
+                    } else {
+                        reweigh(index);
+                    }
+                }
+                trackedVersion = indexed.getVersion();
+                return;
+            }
+        }
+        compare(population);
+        if (population instanceof IndexedPopulation) {
+            trackedPopulation = (IndexedPopulation<?>) population;
+            trackedVersion = trackedPopulation.getVersion();
+        } else {
+            trackedPopulation = null;
+        }
+    }
+
+
+    /**
+     * Brings the wheel up to date by comparing it with every member of the population.
+     */
+    private void compare(List<? extends EvaluatedCandidate<?>> population) {
+        if (++selectionCount == 0) {
+            // Zero means never seen, so skip it when the counter wraps around.
+            Arrays.fill(lastSeen, 0);
+            selectionCount = 1;
+        }
+        for (EvaluatedCandidate<?> candidate : population) {
+            Integer slot = slots.get(candidate);
+            int index = slot == null ? allocate(candidate) : slot;
+            if (lastSeen[index] != selectionCount) {
+                lastSeen[index] = selectionCount;
+                multiplicities[index] = 0;
+            }
+            ++multiplicities[index];
+        }
+        for (int i = 0; i < usedSlots; i++) {
+            if (owners[i] == null) {
+                continue;
+            }
+            if (lastSeen[i] != selectionCount) {
+                release(i);
+            } else {
+                // Does nothing unless the candidate is new or its multiplicity has changed.
+                reweigh(i);
+            }
+        }
+    }
+
+
+    private void reweigh(int slot) {
+        wheel.setWeight(slot, multiplicities[slot] * RouletteWheelSelection.getAdjustedFitness(owners[slot].getFitness(),
+                                                                                               naturalFitness));
+    }
+
+
+    private int allocate(EvaluatedCandidate<?> candidate) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = usedSlots++;
+            if (slot == owners.length) {
+                int capacity = owners.length * 2;
+                owners = Arrays.copyOf(owners, capacity);
+                multiplicities = Arrays.copyOf(multiplicities, capacity);
+                lastSeen = Arrays.copyOf(lastSeen, capacity);
+                freeSlots = Arrays.copyOf(freeSlots, capacity);
+                wheel.ensureCapacity(capacity);
+            }
+        }
+        owners[slot] = candidate;
+        multiplicities[slot] = 0;
+        lastSeen[slot] = 0;
+        slots.put(candidate, slot);
+        return slot;
+    }
+
+
+    private void release(int slot) {
+        wheel.setWeight(slot, 0);
+        slots.remove(owners[slot]);
+        owners[slot] = null;
+        freeSlots[freeCount++] = slot;
+    }
+
+
+    private void reset() {
+        wheel.clear();
+        slots.clear();
+        Arrays.fill(owners, null);
+        freeCount = 0;
+        usedSlots = 0;
+        trackedPopulation = null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>Roulette wheel selection does not depend on the order of the population.</p>
+     */
+    public int getRankedCount(int populationSize, int selectionSize) {
+        return 0;
+    }
+
+
+    @Override
+    public String toString() {
+        return "Dynamic Roulette Wheel Selection";
+    }
+}
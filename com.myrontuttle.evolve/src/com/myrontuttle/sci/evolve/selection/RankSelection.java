@@ -22,6 +22,7 @@ import java.util.Random;
 
 import com.myrontuttle.sci.evolve.api.SelectionStrategy;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.ArrayPopulation;
 
 /**
  * <p>A selection strategy that is similar to fitness-proportionate selection
@@ -32,7 +33,9 @@ import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
  * <p>Rank selection is implemented in terms of a mapping function ({@link
  * #mapRankToScore(int, int)}) and delegation to a fitness-proportionate selector.  The
  * mapping function converts ranks into relative fitness scores that are used to
- * drive the delegate selector.</p>
+ * drive the delegate selector.  If the delegate is a {@link WeightedSelectionStrategy},
+ * the scores are passed to it in a reusable array, so no re-scored population has to be
+ * built.</p>
  * @author Daniel Dyer
  */
 public class RankSelection implements SelectionStrategy<Object>
@@ -70,6 +73,33 @@ public class RankSelection implements SelectionStrategy<Object>
                               int selectionSize,
                               Random rng)
     {
+        if (delegate instanceof WeightedSelectionStrategy)
+        {
+            // Pass the rank scores straight to the delegate, without re-scoring the population.
+            double[] weights = SelectionWeights.getBuffer(population.size());
+            for (int i = 0; i < population.size(); i++)
+            {
+                weights[i] = mapRankToScore(i, population.size());
+            }
+            return ((WeightedSelectionStrategy) delegate).selectByWeight(population,
+                                                                         weights,
+                                                                         true,
+                                                                         selectionSize,
+                                                                         rng);
+        }
+
+        if (population instanceof ArrayPopulation)
+        {
+            // Build the ranked population without any per-candidate objects.
+            ArrayPopulation<S> rankedPopulation = new ArrayPopulation<S>(population.size());
+            for (int i = 0; i < population.size(); i++)
+            {
+                rankedPopulation.add(ArrayPopulation.candidateAt(population, i),
+                                     mapRankToScore(i, population.size()));
+            }
+            return delegate.select(rankedPopulation, true, selectionSize, rng);
+        }
+
         List<EvaluatedCandidate<S>> rankedPopulation = new ArrayList<EvaluatedCandidate<S>>(population.size());
         Iterator<EvaluatedCandidate<S>> iterator = population.iterator();
         int index = -1;
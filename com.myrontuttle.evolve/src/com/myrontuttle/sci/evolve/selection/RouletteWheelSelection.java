@@ -20,8 +20,9 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
-import com.myrontuttle.sci.evolve.api.SelectionStrategy;
+import com.myrontuttle.sci.evolve.api.RankedSelectionStrategy;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.ArrayPopulation;
 
 /**
  * <p>Implements selection of <i>n</i> candidates from a population by selecting
@@ -38,7 +39,7 @@ import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
  *
  * @author Daniel Dyer
  */
-public class RouletteWheelSelection implements SelectionStrategy<Object>
+public class RouletteWheelSelection implements RankedSelectionStrategy<Object>, WeightedSelectionStrategy
 {
     /**
      * Selects the required number of candidates from the population with
@@ -57,6 +58,24 @@ public class RouletteWheelSelection implements SelectionStrategy<Object>
                               boolean naturalFitnessScores,
                               int selectionSize,
                               Random rng)
+    {
+        return selectByWeight(population,
+                              SelectionWeights.fitnessScores(population),
+                              naturalFitnessScores,
+                              selectionSize,
+                              rng);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>The weights are converted in place into cumulative weights.</p>
+     */
+    public <S> List<S> selectByWeight(List<EvaluatedCandidate<S>> population,
+                                      double[] weights,
+                                      boolean naturalWeights,
+                                      int selectionSize,
+                                      Random rng)
     {
         // Record the cumulative fitness scores.  It doesn't matter whether the
         // population is sorted or not.  We will use these cumulative scores to work out
@@ -65,34 +84,43 @@ public class RouletteWheelSelection implements SelectionStrategy<Object>
         // numerical difference between an element and the previous one is directly
         // proportional to the probability of the corresponding candidate in the population
         // being selected.
-        double[] cumulativeFitnesses = new double[population.size()];
-        cumulativeFitnesses[0] = getAdjustedFitness(population.get(0).getFitness(),
-                                                    naturalFitnessScores);
-        for (int i = 1; i < population.size(); i++)
+        // The array of scores is converted in-place, so no per-candidate objects
+        // are needed.
+        int size = population.size();
+        double[] cumulativeFitnesses = weights;
+        cumulativeFitnesses[0] = getAdjustedFitness(cumulativeFitnesses[0],
+                                                    naturalWeights);
+        for (int i = 1; i < size; i++)
         {
-            double fitness = getAdjustedFitness(population.get(i).getFitness(),
-                                                naturalFitnessScores);
+            double fitness = getAdjustedFitness(cumulativeFitnesses[i],
+                                                naturalWeights);
             cumulativeFitnesses[i] = cumulativeFitnesses[i - 1] + fitness;
         }
 
         List<S> selection = new ArrayList<S>(selectionSize);
         for (int i = 0; i < selectionSize; i++)
         {
-            double randomFitness = rng.nextDouble() * cumulativeFitnesses[cumulativeFitnesses.length - 1];
-            int index = Arrays.binarySearch(cumulativeFitnesses, randomFitness);
+            double randomFitness = rng.nextDouble() * cumulativeFitnesses[size - 1];
+            int index = Arrays.binarySearch(cumulativeFitnesses, 0, size, randomFitness);
             if (index < 0)
             {
                 // Convert negative insertion point to array index.
                 index = Math.abs(index + 1);
             }
-            selection.add(population.get(index).getCandidate());
+            selection.add(ArrayPopulation.candidateAt(population, index));
         }
         return selection;
     }
 
 
-    private double getAdjustedFitness(double rawFitness,
-                                      boolean naturalFitness)
+    /**
+     * Converts a fitness score into a weight on the wheel: natural scores are used as they
+     * are, non-natural scores are inverted so that lower scores get more of the wheel.
+     * Shared with the other roulette wheel strategies so that they all weight candidates
+     * in the same way.
+     */
+    static double getAdjustedFitness(double rawFitness,
+                                     boolean naturalFitness)
     {
         if (naturalFitness)
         {
@@ -108,6 +136,16 @@ public class RouletteWheelSelection implements SelectionStrategy<Object>
     }
 
 
+    /**
+     * {@inheritDoc}
+     * <p>Roulette wheel selection does not depend on the order of the population.</p>
+     */
+    public int getRankedCount(int populationSize, int selectionSize)
+    {
+        return 0;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,71 @@
+package com.myrontuttle.sci.evolve.selection;
+
+import java.util.List;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.ArrayPopulation;
+
+/**
+ * <p>Reusable per-thread buffers for the scores passed to a
+ * {@link WeightedSelectionStrategy}, so that selecting from a population of a given size
+ * allocates nothing per candidate after the first selection on each thread.  A buffer
+ * grows to the largest population that it has been used for, and lives as long as its
+ * thread.</p>
+ *
+ * <p>Each thread has one buffer of each type, so a buffer must be finished with before
+ * anything else on the same thread asks for it again.  In particular, a
+ * {@link WeightedSelectionStrategy} that is given a weights buffer must not itself call
+ * {@link #getBuffer(int)} or {@link #fitnessScores(List)}.</p>
+ *
+ * @author Myron Tuttle
+ */
+public final class SelectionWeights {
+
+    private static final ThreadLocal<double[]> WEIGHTS = new ThreadLocal<double[]>();
+    private static final ThreadLocal<int[]> INDICES = new ThreadLocal<int[]>();
+
+    private SelectionWeights() {
+        // Prevents instantiation.
+    }
+
+
+    /**
+     * @param size The number of weights required.
+     * @return This thread's weights buffer, which is at least {@code size} long and may
+     * contain values from a previous selection.
+     */
+    public static double[] getBuffer(int size) {
+        double[] buffer = WEIGHTS.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new double[size];
+            WEIGHTS.set(buffer);
+        }
+        return buffer;
+    }
+
+
+    /**
+     * Copies the fitness scores of a population into this thread's weights buffer.
+     * @param population The evaluated population.
+     * @return The buffer, with the population's fitness scores, in population order, at
+     * the start.
+     */
+    public static double[] fitnessScores(List<? extends EvaluatedCandidate<?>> population) {
+        return ArrayPopulation.fitnessScores(population, getBuffer(population.size()));
+    }
+
+
+    /**
+     * @param size The number of indices required.
+     * @return This thread's buffer of indices, for the working storage of weighted
+     * selection strategies, which is at least {@code size} long.
+     */
+    static int[] getIndexBuffer(int size) {
+        int[] buffer = INDICES.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new int[size];
+            INDICES.set(buffer);
+        }
+        return buffer;
+    }
+}
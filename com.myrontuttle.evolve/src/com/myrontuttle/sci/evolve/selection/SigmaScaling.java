@@ -20,8 +20,10 @@ import java.util.List;
 import java.util.Random;
 import org.uncommons.maths.statistics.DataSet;
 
+import com.myrontuttle.sci.evolve.api.RankedSelectionStrategy;
 import com.myrontuttle.sci.evolve.api.SelectionStrategy;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.ArrayPopulation;
 
 /**
  * An alternative to straightforward fitness-proportionate selection such as that offered
@@ -30,10 +32,12 @@ import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
  * scores.  Early on in an evolutionary algorithm this helps to avoid premature convergence
  * caused by the dominance of one or two relatively fit candidates in a population of mostly
  * unfit individuals.  It also helps to amplify minor fitness differences in a more mature
- * population where the rate of improvement has slowed.
+ * population where the rate of improvement has slowed.  If the delegate is a
+ * {@link WeightedSelectionStrategy}, the scaled scores are passed to it in a reusable
+ * array, so no re-scored population has to be built.
  * @author Daniel Dyer
  */
-public class SigmaScaling implements SelectionStrategy<Object>
+public class SigmaScaling implements RankedSelectionStrategy<Object>
 {
     private final SelectionStrategy<Object> delegate;
 
@@ -66,10 +70,50 @@ public class SigmaScaling implements SelectionStrategy<Object>
                               int selectionSize,
                               Random rng)
     {
-        DataSet statistics = new DataSet(population.size());
-        for (EvaluatedCandidate<S> candidate : population)
+        if (delegate instanceof WeightedSelectionStrategy)
+        {
+            // Scale the scores in place and pass them straight to the delegate, without
+            // re-scoring the population.
+            int size = population.size();
+            double[] weights = SelectionWeights.fitnessScores(population);
+            double mean = 0;
+            for (int i = 0; i < size; i++)
+            {
+                mean += weights[i];
+            }
+            mean /= size;
+            double squaredDeviations = 0;
+            for (int i = 0; i < size; i++)
+            {
+                squaredDeviations += (weights[i] - mean) * (weights[i] - mean);
+            }
+            double standardDeviation = Math.sqrt(squaredDeviations / size);
+            for (int i = 0; i < size; i++)
+            {
+                weights[i] = getSigmaScaledFitness(weights[i], mean, standardDeviation);
+            }
+            return ((WeightedSelectionStrategy) delegate).selectByWeight(population,
+                                                                         weights,
+                                                                         naturalFitnessScores,
+                                                                         selectionSize,
+                                                                         rng);
+        }
+
+        double[] fitnessScores = ArrayPopulation.fitnessScores(population);
+        DataSet statistics = new DataSet(fitnessScores);
+
+        if (population instanceof ArrayPopulation)
         {
-            statistics.addValue(candidate.getFitness());
+            // Build the scaled population without any per-candidate objects.
+            ArrayPopulation<S> scaledPopulation = new ArrayPopulation<S>(fitnessScores.length);
+            for (int i = 0; i < fitnessScores.length; i++)
+            {
+                scaledPopulation.add(ArrayPopulation.candidateAt(population, i),
+                                     getSigmaScaledFitness(fitnessScores[i],
+                                                           statistics.getArithmeticMean(),
+                                                           statistics.getStandardDeviation()));
+            }
+            return delegate.select(scaledPopulation, naturalFitnessScores, selectionSize, rng);
         }
 
         List<EvaluatedCandidate<S>> scaledPopulation = new ArrayList<EvaluatedCandidate<S>>(population.size());
@@ -104,6 +148,19 @@ public class SigmaScaling implements SelectionStrategy<Object>
     }
 
 
+    /**
+     * {@inheritDoc}
+     * <p>Sigma scaling preserves the order of the population, so this is however
+     * much of the population the delegate selection strategy needs ranked.</p>
+     */
+    public int getRankedCount(int populationSize, int selectionSize)
+    {
+        return delegate instanceof RankedSelectionStrategy
+               ? ((RankedSelectionStrategy<?>) delegate).getRankedCount(populationSize, selectionSize)
+               : populationSize;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -19,8 +19,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
-import com.myrontuttle.sci.evolve.api.SelectionStrategy;
+import com.myrontuttle.sci.evolve.api.RankedSelectionStrategy;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.ArrayPopulation;
 
 /**
  * An alternative to {@link RouletteWheelSelection}
@@ -28,19 +29,33 @@ import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
  * each candidate is consistent with its expected frequency of selection.
  * @author Daniel Dyer
  */
-public class StochasticUniversalSampling implements SelectionStrategy<Object>
+public class StochasticUniversalSampling implements RankedSelectionStrategy<Object>, WeightedSelectionStrategy
 {
     public <S> List<S> select(List<EvaluatedCandidate<S>> population,
                               boolean naturalFitnessScores,
                               int selectionSize,
                               Random rng)
+    {
+        return selectByWeight(population,
+                              SelectionWeights.fitnessScores(population),
+                              naturalFitnessScores,
+                              selectionSize,
+                              rng);
+    }
+
+
+    public <S> List<S> selectByWeight(List<EvaluatedCandidate<S>> population,
+                                      double[] weights,
+                                      boolean naturalWeights,
+                                      int selectionSize,
+                                      Random rng)
     {
         // Calculate the sum of all fitness values.
+        int size = population.size();
         double aggregateFitness = 0;
-        for (EvaluatedCandidate<S> candidate : population)
+        for (int i = 0; i < size; i++)
         {
-            aggregateFitness += getAdjustedFitness(candidate.getFitness(),
-                                                   naturalFitnessScores);
+            aggregateFitness += getAdjustedFitness(weights[i], naturalWeights);
         }
 
         List<S> selection = new ArrayList<S>(selectionSize);
@@ -48,20 +63,20 @@ public class StochasticUniversalSampling implements SelectionStrategy<Object>
         double startOffset = rng.nextDouble();
         double cumulativeExpectation = 0;
         int index = 0;
-        for (EvaluatedCandidate<S> candidate : population)
+        for (int i = 0; i < size; i++)
         {
             // Calculate the number of times this candidate is expected to
             // be selected on average and add it to the cumulative total
             // of expected frequencies.
-            cumulativeExpectation += getAdjustedFitness(candidate.getFitness(),
-                                                        naturalFitnessScores) / aggregateFitness * selectionSize;
+            cumulativeExpectation += getAdjustedFitness(weights[i],
+                                                        naturalWeights) / aggregateFitness * selectionSize;
 
             // If f is the expected frequency, the candidate will be selected at
             // least as often as floor(f) and at most as often as ceil(f). The
             // actual count depends on the random starting offset.
             while (cumulativeExpectation > startOffset + index)
             {
-                selection.add(candidate.getCandidate());
+                selection.add(ArrayPopulation.candidateAt(population, i));
                 index++;
             }
         }
@@ -85,6 +100,16 @@ public class StochasticUniversalSampling implements SelectionStrategy<Object>
     }
 
 
+    /**
+     * {@inheritDoc}
+     * <p>Stochastic universal sampling does not depend on the order of the population.</p>
+     */
+    public int getRankedCount(int populationSize, int selectionSize)
+    {
+        return 0;
+    }
+
+
     /**
      * {@inheritDoc}
      */
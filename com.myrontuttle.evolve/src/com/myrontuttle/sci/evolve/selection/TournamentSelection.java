@@ -22,17 +22,21 @@ import org.uncommons.maths.number.ConstantGenerator;
 import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.random.Probability;
 
-import com.myrontuttle.sci.evolve.api.SelectionStrategy;
+import com.myrontuttle.sci.evolve.api.RankedSelectionStrategy;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.ArrayPopulation;
+import com.myrontuttle.sci.evolve.util.LazyPopulation;
 
 /**
  * Selection strategy that picks a pair of candidates at random and then
  * selects the fitter of the two candidates with probability p, where p
  * is the configured selection probability (therefore the probability of
- * the less fit candidate being selected is 1 - p).
+ * the less fit candidate being selected is 1 - p).  Given a {@link LazyPopulation}, all
+ * of the pairs are drawn first so that only the candidates that take part in a
+ * tournament are evaluated.
  * @author Daniel Dyer
  */
-public class TournamentSelection implements SelectionStrategy<Object>
+public class TournamentSelection implements RankedSelectionStrategy<Object>, WeightedSelectionStrategy
 {
     private final NumberGenerator<Probability> selectionProbability;
 
@@ -77,34 +81,120 @@ public class TournamentSelection implements SelectionStrategy<Object>
                               int selectionSize,
                               Random rng)
     {
+        if (population instanceof LazyPopulation)
+        {
+            return selectLazily((LazyPopulation<S>) population, naturalFitnessScores, selectionSize, rng);
+        }
         List<S> selection = new ArrayList<S>(selectionSize);
-        for (int i = 0; i < selectionSize; i++)
+        if (population instanceof ArrayPopulation)
         {
-            // Pick two candidates at random.
-            EvaluatedCandidate<S> candidate1 = population.get(rng.nextInt(population.size()));
-            EvaluatedCandidate<S> candidate2 = population.get(rng.nextInt(population.size()));
-
-            // Use a random value to decide wether to select the fitter individual or the weaker one.
-            boolean selectFitter = selectionProbability.nextValue().nextEvent(rng);
-            if (selectFitter == naturalFitnessScores)
+            // Read the two scores in place rather than creating evaluated candidates.
+            for (int i = 0; i < selectionSize; i++)
             {
-                // Select the fitter candidate.
-                selection.add(candidate2.getFitness() > candidate1.getFitness()
-                              ? candidate2.getCandidate()
-                              : candidate1.getCandidate());
+                int candidate1 = rng.nextInt(population.size());
+                int candidate2 = rng.nextInt(population.size());
+                boolean second = selectSecond(ArrayPopulation.fitnessAt(population, candidate1),
+                                              ArrayPopulation.fitnessAt(population, candidate2),
+                                              naturalFitnessScores,
+                                              rng);
+                selection.add(ArrayPopulation.candidateAt(population, second ? candidate2 : candidate1));
             }
-            else
+        }
+        else
+        {
+            // Only the two members in each tournament are read, so selecting a few
+            // candidates from a large population stays cheap.
+            for (int i = 0; i < selectionSize; i++)
             {
-                // Select the less fit candidate.
-                selection.add(candidate2.getFitness() > candidate1.getFitness()
-                              ? candidate1.getCandidate()
-                              : candidate2.getCandidate());
+                EvaluatedCandidate<S> candidate1 = population.get(rng.nextInt(population.size()));
+                EvaluatedCandidate<S> candidate2 = population.get(rng.nextInt(population.size()));
+                boolean second = selectSecond(candidate1.getFitness(),
+                                              candidate2.getFitness(),
+                                              naturalFitnessScores,
+                                              rng);
+                selection.add((second ? candidate2 : candidate1).getCandidate());
             }
         }
         return selection;
     }
 
 
+    public <S> List<S> selectByWeight(List<EvaluatedCandidate<S>> population,
+                                      double[] weights,
+                                      boolean naturalWeights,
+                                      int selectionSize,
+                                      Random rng)
+    {
+        List<S> selection = new ArrayList<S>(selectionSize);
+        for (int i = 0; i < selectionSize; i++)
+        {
+            // Pick two candidates at random.
+            int candidate1 = rng.nextInt(population.size());
+            int candidate2 = rng.nextInt(population.size());
+            boolean second = selectSecond(weights[candidate1], weights[candidate2], naturalWeights, rng);
+            selection.add(ArrayPopulation.candidateAt(population, second ? candidate2 : candidate1));
+        }
+        return selection;
+    }
+
+
+    /**
+     * Plays one tournament between two candidates with the given scores.
+     * @return True if the second candidate wins, false if the first does.
+     */
+    private boolean selectSecond(double score1,
+                                 double score2,
+                                 boolean naturalScores,
+                                 Random rng)
+    {
+        boolean secondIsFitter = score2 > score1;
+        // Use a random value to decide wether to select the fitter individual or the weaker one.
+        boolean selectFitter = selectionProbability.nextValue().nextEvent(rng);
+        return selectFitter == naturalScores ? secondIsFitter : !secondIsFitter;
+    }
+
+
+    /**
+     * Draws every tournament before looking at any candidate, so that only the candidates
+     * that take part are evaluated, and they are all evaluated together.
+     */
+    private <S> List<S> selectLazily(LazyPopulation<S> population,
+                                     boolean naturalFitnessScores,
+                                     int selectionSize,
+                                     Random rng)
+    {
+        int[] draws = new int[selectionSize * 2];
+        for (int i = 0; i < draws.length; i++)
+        {
+            draws[i] = rng.nextInt(population.size());
+        }
+        population.prefetch(draws);
+
+        List<S> selection = new ArrayList<S>(selectionSize);
+        for (int i = 0; i < selectionSize; i++)
+        {
+            EvaluatedCandidate<S> candidate1 = population.get(draws[2 * i]);
+            EvaluatedCandidate<S> candidate2 = population.get(draws[2 * i + 1]);
+            boolean second = selectSecond(candidate1.getFitness(),
+                                          candidate2.getFitness(),
+                                          naturalFitnessScores,
+                                          rng);
+            selection.add((second ? candidate2 : candidate1).getCandidate());
+        }
+        return selection;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>Tournament selection does not depend on the order of the population.</p>
+     */
+    public int getRankedCount(int populationSize, int selectionSize)
+    {
+        return 0;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -22,8 +22,9 @@ import java.util.Random;
 import org.uncommons.maths.number.ConstantGenerator;
 import org.uncommons.maths.number.NumberGenerator;
 
-import com.myrontuttle.sci.evolve.api.SelectionStrategy;
+import com.myrontuttle.sci.evolve.api.RankedSelectionStrategy;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.ArrayPopulation;
 
 /**
  * Implements selection of <i>n</i> candidates from a population by simply
@@ -31,12 +32,14 @@ import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
  * rest are discarded).  A candidate is never selected more than once.
  * @author Daniel Dyer
  */
-public class TruncationSelection implements SelectionStrategy<Object>
+public class TruncationSelection implements RankedSelectionStrategy<Object>
 {
     private static final DecimalFormat PERCENT_FORMAT = new DecimalFormat("#0.###%");
     private final NumberGenerator<Double> selectionRatio;
 
     private String description = "Truncation Selection";
+    // The selection ratio if it is constant, zero if it is variable.
+    private double fixedRatio = 0;
 
     /**
      * Creates a truncation selection strategy that is controlled by the
@@ -64,6 +67,7 @@ public class TruncationSelection implements SelectionStrategy<Object>
             throw new IllegalArgumentException("Selection ratio must be greater than 0 and less than 1.");
         }
         this.description = "Truncation Selection (" + PERCENT_FORMAT.format(selectionRatio) + ")";
+        this.fixedRatio = selectionRatio;
     }
 
 
@@ -100,13 +104,30 @@ public class TruncationSelection implements SelectionStrategy<Object>
             int count = Math.min(eligibleCount, selectionSize - selection.size());
             for (int i = 0; i < count; i++)
             {
-                selection.add(population.get(i).getCandidate());
+                selection.add(ArrayPopulation.candidateAt(population, i));
             }
         } while (selection.size() < selectionSize);
         return selection;
     }
 
 
+    /**
+     * {@inheritDoc}
+     * <p>With a constant selection ratio only the candidates that are eligible for
+     * selection need to be ranked.  If the ratio is variable the number of eligible
+     * candidates is not known in advance, so the whole population must be sorted.</p>
+     */
+    public int getRankedCount(int populationSize, int selectionSize)
+    {
+        if (fixedRatio == 0)
+        {
+            return populationSize;
+        }
+        int eligibleCount = (int) Math.round(fixedRatio * populationSize);
+        return Math.min(eligibleCount, selectionSize);
+    }
+
+
     /**
      * {@inheritDoc}
      */
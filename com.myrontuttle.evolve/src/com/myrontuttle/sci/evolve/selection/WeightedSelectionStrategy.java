@@ -0,0 +1,42 @@
+package com.myrontuttle.sci.evolve.selection;
+
+import java.util.List;
+import java.util.Random;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.api.SelectionStrategy;
+
+/**
+ * <p>A selection strategy that can select using scores supplied in an array instead of
+ * the fitness scores of the population.  Strategies that transform fitness scores before
+ * delegating to another strategy, such as {@link RankSelection} and {@link SigmaScaling},
+ * write the transformed scores into a reusable {@link SelectionWeights} buffer and pass
+ * it to a delegate that implements this interface, rather than building a new population
+ * of re-scored candidates for every selection.</p>
+ *
+ * @author Myron Tuttle
+ */
+public interface WeightedSelectionStrategy extends SelectionStrategy<Object> {
+
+    /**
+     * Selects candidates as {@link #select} would if the population's fitness scores were
+     * the specified weights.
+     * @param <S> The type of the evolved objects in the population.
+     * @param population The candidates to select from, in the order required by the
+     * strategy (see {@link SelectionStrategy#select}).
+     * @param weights The score of each candidate, in population order.  The array may be
+     * longer than the population, in which case the extra elements are ignored.  The
+     * strategy may overwrite the array, so it must not call anything that could reuse the
+     * same {@link SelectionWeights} buffer.
+     * @param naturalWeights True if higher weights indicate fitter individuals, false if
+     * lower weights do.
+     * @param selectionSize The number of selections to make.
+     * @param rng A source of randomness.
+     * @return The selected candidates.
+     */
+    <S> List<S> selectByWeight(List<EvaluatedCandidate<S>> population,
+                               double[] weights,
+                               boolean naturalWeights,
+                               int selectionSize,
+                               Random rng);
+}
@@ -40,6 +40,16 @@ public class ElapsedTime implements TerminationCondition
     }
 
 
+    /**
+     * @return The maximum period of time (in milliseconds) before evolution will be
+     * terminated.
+     */
+    public long getMaxDuration()
+    {
+        return maxDuration;
+    }
+
+
     /**
      * {@inheritDoc}
      * This implementation terminates evolution if the pre-configured maximum
@@ -15,12 +15,17 @@
 //=============================================================================
 package com.myrontuttle.sci.evolve.termination;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import com.myrontuttle.sci.evolve.api.TerminationCondition;
 import com.myrontuttle.sci.evolve.api.PopulationStats;
 
 /**
  * A {@link TerminationCondition} that halts evolution if no improvement in fitness
- * is observed within a specified number of generations.
+ * is observed within a specified number of generations.  Progress is tracked separately
+ * for each population ID, so one instance can be shared by populations that are evolved
+ * at the same time.
  * @author Daniel Dyer
  */
 public class Stagnation implements TerminationCondition
@@ -29,8 +34,7 @@ public class Stagnation implements TerminationCondition
     private final boolean naturalFitness;
     private final boolean usePopulationAverage;
 
-    private double bestFitness;
-    private int fittestGeneration;
+    private final ConcurrentMap<Long, Progress> progress = new ConcurrentHashMap<Long, Progress>();
 
     /**
      * Creates a {@link TerminationCondition} that will halt evolution after the
@@ -74,13 +78,31 @@ public class Stagnation implements TerminationCondition
     public boolean shouldTerminate(PopulationStats<?> PopulationStats)
     {
         double fitness = getFitness(PopulationStats);
-        if (PopulationStats.getGenerationNumber() == 0 || hasFitnessImproved(fitness))
+        Progress populationProgress = progress.get(PopulationStats.getPopulationId());
+        if (populationProgress == null)
+        {
+            populationProgress = new Progress();
+            progress.put(PopulationStats.getPopulationId(), populationProgress);
+        }
+        if (PopulationStats.getGenerationNumber() == 0 || hasFitnessImproved(fitness, populationProgress.bestFitness))
         {
-            bestFitness = fitness;
-            fittestGeneration = PopulationStats.getGenerationNumber();
+            populationProgress.bestFitness = fitness;
+            populationProgress.fittestGeneration = PopulationStats.getGenerationNumber();
         }
 
-        return PopulationStats.getGenerationNumber() - fittestGeneration >= generationLimit;
+        return PopulationStats.getGenerationNumber() - populationProgress.fittestGeneration >= generationLimit;
+    }
+
+
+    /**
+     * Discards the progress recorded for a population whose evolution has finished.
+     * Evolution engines call this when a run ends; it only needs to be called directly
+     * by code that checks this condition itself.
+     * @param populationId The ID of the population.
+     */
+    public void endRun(long populationId)
+    {
+        progress.remove(populationId);
     }
 
 
@@ -103,11 +125,23 @@ public class Stagnation implements TerminationCondition
      * Determine whether the population fitness is better than the best seen so far.
      * @param fitness The fitness of the current population (either best fitness or mean
      * fitness depending on how the termination condition is configured).
+     * @param bestFitness The best fitness seen so far for the population.
      * @return True if the fitness has improved in the current generation, false otherwise.
      */
-    private boolean hasFitnessImproved(double fitness)
+    private boolean hasFitnessImproved(double fitness, double bestFitness)
     {
         return (naturalFitness && fitness > bestFitness)
             || (!naturalFitness && fitness < bestFitness);
     }
+
+
+    /**
+     * The best fitness of a population and the generation in which it was reached.
+     * Each population is only evolved by one thread at a time.
+     */
+    private static final class Progress
+    {
+        private volatile double bestFitness;
+        private volatile int fittestGeneration;
+    }
 }
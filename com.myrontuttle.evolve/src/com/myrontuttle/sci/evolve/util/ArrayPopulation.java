@@ -0,0 +1,329 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.uncommons.maths.statistics.DataSet;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+
+/**
+ * <p>An evaluated population stored as parallel arrays rather than as a list of
+ * {@link EvaluatedCandidate} objects.  Fitness scores are held in a {@code double[]},
+ * candidates in an {@code Object[]}, and the ordering of the population in an
+ * {@code int[]} permutation of array slots.  Sorting only moves the primitive
+ * permutation, and statistics and selection strategies can read fitness scores
+ * directly via {@link #getFitness(int)} and {@link #getCandidate(int)}, so large
+ * populations no longer require an object per individual per generation.</p>
+ *
+ * <p>The population is also a {@link List} of evaluated candidates so that it can be
+ * used wherever the existing API expects one.  A candidate added as an evaluated
+ * candidate is returned as the same object by {@link #get(int)}.  For a candidate added
+ * with a primitive score the evaluated candidate is created the first time that it is
+ * requested and then kept, so code that is sensitive to allocation should use the
+ * primitive accessors instead.  As with {@link java.util.ArrayList}, removing a candidate
+ * takes time proportional to the number of candidates after it.</p>
+ *
+ * @param <T> The type of evolved entity in the population.
+ * @see com.myrontuttle.sci.evolve.engines.AbstractEvolutionEngine#setArrayPopulation(boolean)
+ * @author Myron Tuttle
+ */
+public final class ArrayPopulation<T> extends AbstractList<EvaluatedCandidate<T>> implements RandomAccess {
+
+    private double[] fitness;
+    private Object[] candidates;
+    // Evaluated candidate for each slot, created when first requested.
+    private Object[] evaluated;
+    // Maps each position in the population to the slot that holds the candidate.
+    private int[] order;
+    // Maps each slot to its position in the population (the inverse of order).
+    private int[] position;
+    // Scratch space for sorting, kept between sorts.
+    private int[] buffer;
+    private int size = 0;
+
+    /**
+     * Creates an empty population.
+     * @param capacity The number of candidates the population can hold before its
+     * arrays need to grow.
+     */
+    public ArrayPopulation(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.fitness = new double[capacity];
+        this.candidates = new Object[capacity];
+        this.evaluated = new Object[capacity];
+        this.order = new int[capacity];
+        this.position = new int[capacity];
+    }
+
+    /**
+     * Creates a population containing the specified candidates in the same order.
+     * @param evaluatedPopulation The candidates to copy.
+     */
+    public ArrayPopulation(List<EvaluatedCandidate<T>> evaluatedPopulation) {
+        this(evaluatedPopulation.size());
+        for (EvaluatedCandidate<T> candidate : evaluatedPopulation) {
+            add(candidate);
+        }
+    }
+
+
+    /**
+     * Appends a candidate to the end of the population.
+     * @param candidate The candidate.
+     * @param candidateFitness The candidate's fitness score.
+     */
+    public void add(T candidate, double candidateFitness) {
+        append(candidate, candidateFitness, null);
+    }
+
+
+    @Override
+    public boolean add(EvaluatedCandidate<T> candidate) {
+        append(candidate.getCandidate(), candidate.getFitness(), candidate);
+        return true;
+    }
+
+
+    private void append(T candidate, double candidateFitness, EvaluatedCandidate<T> evaluatedCandidate) {
+        if (size == fitness.length) {
+            int capacity = size * 2;
+            fitness = Arrays.copyOf(fitness, capacity);
+            candidates = Arrays.copyOf(candidates, capacity);
+            evaluated = Arrays.copyOf(evaluated, capacity);
+            order = Arrays.copyOf(order, capacity);
+            position = Arrays.copyOf(position, capacity);
+        }
+        fitness[size] = candidateFitness;
+        candidates[size] = candidate;
+        evaluated[size] = evaluatedCandidate;
+        order[size] = size;
+        position[size] = size;
+        ++size;
+        ++modCount;
+    }
+
+
+    /**
+     * @param index The position of the candidate in the population.
+     * @return The candidate at the specified position.
+     */
+    @SuppressWarnings("unchecked")
+    public T getCandidate(int index) {
+        checkIndex(index);
+        return (T) candidates[order[index]];
+    }
+
+
+    /**
+     * @param index The position of the candidate in the population.
+     * @return The fitness score of the candidate at the specified position.
+     */
+    public double getFitness(int index) {
+        checkIndex(index);
+        return fitness[order[index]];
+    }
+
+
+    /**
+     * Gets the candidate at the specified position with its fitness.  The evaluated
+     * candidate is created on the first request and returned again by later requests.
+     * @param index The position of the candidate in the population.
+     * @return An evaluated candidate with the candidate and its fitness.
+     */
+    @Override
+    public EvaluatedCandidate<T> get(int index) {
+        checkIndex(index);
+        int slot = order[index];
+        @SuppressWarnings("unchecked")
+        EvaluatedCandidate<T> candidate = (EvaluatedCandidate<T>) evaluated[slot];
+        if (candidate == null) {
+            @SuppressWarnings("unchecked")
+            T genome = (T) candidates[slot];
+            candidate = new EvaluatedCandidate<T>(genome, fitness[slot]);
+            evaluated[slot] = candidate;
+        }
+        return candidate;
+    }
+
+
+    @Override
+    public EvaluatedCandidate<T> set(int index, EvaluatedCandidate<T> candidate) {
+        EvaluatedCandidate<T> previous = get(index);
+        int slot = order[index];
+        candidates[slot] = candidate.getCandidate();
+        fitness[slot] = candidate.getFitness();
+        evaluated[slot] = candidate;
+        return previous;
+    }
+
+
+    @Override
+    public EvaluatedCandidate<T> remove(int index) {
+        EvaluatedCandidate<T> removed = get(index);
+        int slot = order[index];
+        System.arraycopy(order, index + 1, order, index, size - index - 1);
+        --size;
+        for (int i = index; i < size; i++) {
+            position[order[i]] = i;
+        }
+        // Keep the occupied slots contiguous by moving the candidate in the last slot
+        // into the one that has been freed.
+        if (slot != size) {
+            candidates[slot] = candidates[size];
+            fitness[slot] = fitness[size];
+            evaluated[slot] = evaluated[size];
+            order[position[size]] = slot;
+            position[slot] = position[size];
+        }
+        candidates[size] = null;
+        evaluated[size] = null;
+        ++modCount;
+        return removed;
+    }
+
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Sorts the population in descending order of fitness (descending order of fitness
+     * score for natural scores, ascending order of scores for non-natural scores).  The
+     * sort is stable, so the result is the same as sorting the equivalent list with
+     * {@link EvolutionUtils#sortEvaluatedPopulation}.
+     * Only the permutation of array slots is re-arranged.
+     * @param naturalFitness True if higher fitness scores mean fitter individuals, false otherwise.
+     */
+    public void sort(boolean naturalFitness) {
+        if (buffer == null || buffer.length < size) {
+            buffer = new int[order.length];
+        }
+        mergeSort(order, buffer, 0, size, naturalFitness);
+        for (int i = 0; i < size; i++) {
+            position[order[i]] = i;
+        }
+    }
+
+
+    /**
+     * @return Statistics about the fitness scores of the whole population.
+     */
+    public DataSet getFitnessStatistics() {
+        return new DataSet(Arrays.copyOf(fitness, size));
+    }
+
+
+    /**
+     * Gets the fitness scores of any evaluated population, in population order.  For an
+     * {@code ArrayPopulation} the scores are copied straight out of the fitness array
+     * without creating any evaluated candidate objects.
+     * @param population The evaluated population.
+     * @return An array of fitness scores.
+     */
+    public static double[] fitnessScores(List<? extends EvaluatedCandidate<?>> population) {
+        return fitnessScores(population, new double[population.size()]);
+    }
+
+
+    /**
+     * Copies the fitness scores of any evaluated population, in population order, into
+     * an existing array, such as a reusable buffer.
+     * @param population The evaluated population.
+     * @param scores The array to fill, which must be at least as long as the population.
+     * Any elements beyond the size of the population are left as they are.
+     * @return {@code scores}.
+     */
+    public static double[] fitnessScores(List<? extends EvaluatedCandidate<?>> population, double[] scores) {
+        if (scores.length < population.size()) {
+            throw new IllegalArgumentException("Array is too short for population of " + population.size());
+        }
+        if (population instanceof ArrayPopulation) {
+            ArrayPopulation<?> arrayPopulation = (ArrayPopulation<?>) population;
+            for (int i = 0; i < population.size(); i++) {
+                scores[i] = arrayPopulation.fitness[arrayPopulation.order[i]];
+            }
+        } else {
+            int i = 0;
+            for (EvaluatedCandidate<?> candidate : population) {
+                scores[i++] = candidate.getFitness();
+            }
+        }
+        return scores;
+    }
+
+
+    /**
+     * Gets the candidate at a position in any evaluated population, without creating an
+     * evaluated candidate object if the population is an {@code ArrayPopulation}.
+     * @param <S> The type of evolved entity in the population.
+     * @param population The evaluated population.
+     * @param index The position of the candidate.
+     * @return The candidate.
+     */
+    public static <S> S candidateAt(List<EvaluatedCandidate<S>> population, int index) {
+        if (population instanceof ArrayPopulation) {
+            return ((ArrayPopulation<S>) population).getCandidate(index);
+        }
+        return population.get(index).getCandidate();
+    }
+
+
+    /**
+     * Gets the fitness score at a position in any evaluated population, without creating
+     * an evaluated candidate object if the population is an {@code ArrayPopulation}.
+     * @param population The evaluated population.
+     * @param index The position of the candidate.
+     * @return The candidate's fitness score.
+     */
+    public static double fitnessAt(List<? extends EvaluatedCandidate<?>> population, int index) {
+        if (population instanceof ArrayPopulation) {
+            return ((ArrayPopulation<?>) population).getFitness(index);
+        }
+        return population.get(index).getFitness();
+    }
+
+
+    private void mergeSort(int[] slots, int[] scratch, int from, int to, boolean naturalFitness) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(slots, scratch, from, middle, naturalFitness);
+        mergeSort(slots, scratch, middle, to, naturalFitness);
+        if (!precedes(slots[middle], slots[middle - 1], naturalFitness)) {
+            // Already in order.
+            return;
+        }
+        System.arraycopy(slots, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && !precedes(scratch[right], scratch[left], naturalFitness))) {
+                slots[i] = scratch[left++];
+            } else {
+                slots[i] = scratch[right++];
+            }
+        }
+    }
+
+
+    /**
+     * @return True if the candidate in slot a must be placed before the candidate in slot b.
+     */
+    private boolean precedes(int a, int b, boolean naturalFitness) {
+        int comparison = Double.compare(fitness[a], fitness[b]);
+        return naturalFitness ? comparison > 0 : comparison < 0;
+    }
+
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.myrontuttle.sci.evolve.util;
+
+/**
+ * <p>Receives trace events from evolution engines, evaluation and expression tasks and
+ * island evolution, so that the phases of evolution can be lined up with other activity
+ * in the JVM (garbage collection and CPU load, for example).  A tracer is installed for
+ * the whole JVM with {@link Tracing#install(EvolutionTracer)}.  While none is installed,
+ * no events are created and nothing is timed.</p>
+ *
+ * <p>Events are reported on the thread that did the work, so a tracer can find the
+ * thread with {@link Thread#currentThread()}.  Tracers are called from many threads at
+ * once and must be thread-safe and quick.  On Java 11 and later,
+ * {@link FlightRecorderTracer} makes these events visible in Java Flight Recorder
+ * recordings.</p>
+ *
+ * @author Myron Tuttle
+ */
+public interface EvolutionTracer {
+
+    /**
+     * Called before a generation is created.
+     * @param populationId The population being evolved.
+     * @param generationIndex The index of the generation, starting at zero for the
+     * initial population.
+     * @param populationSize The size of the population that the generation is bred from,
+     * or the requested size of the initial population.
+     */
+    void generationStarted(long populationId, int generationIndex, int populationSize);
+
+    /**
+     * Called once a generation has been evaluated, ranked and reported to observers.
+     * @param populationId The population being evolved.
+     * @param generationIndex The index of the generation.
+     * @param populationSize The size of the new generation.
+     * @param durationNanos The time taken to create the generation.
+     */
+    void generationFinished(long populationId, int generationIndex, int populationSize, long durationNanos);
+
+    /**
+     * Called when a fitness evaluation task finishes, whether or not it succeeded.
+     * @param candidateCount The number of candidates evaluated by the task.
+     * @param durationNanos The time taken by the task.
+     */
+    void evaluationFinished(int candidateCount, long durationNanos);
+
+    /**
+     * Called when an expression task finishes, whether or not it succeeded.
+     * @param populationId The population that the expressed candidate belongs to.
+     * @param durationNanos The time taken by the task, including evaluation if the
+     * task also evaluates the expressed candidate.
+     */
+    void expressionFinished(long populationId, long durationNanos);
+
+    /**
+     * Called when every island has finished an epoch.
+     * @param populationId The population being evolved.
+     * @param epochIndex The index of the epoch, starting at zero.
+     * @param islandCount The number of islands.
+     * @param durationNanos The time taken for all of the islands to finish the epoch.
+     */
+    void epochFinished(long populationId, int epochIndex, int islandCount, long durationNanos);
+
+    /**
+     * Called when individuals have been migrated between islands.
+     * @param populationId The population being evolved.
+     * @param epochIndex The epoch at the end of which the migration happened.
+     * @param migrantCount The number of individuals migrated from each island.
+     * @param durationNanos The time taken by the migration.
+     */
+    void migrationFinished(long populationId, int epochIndex, int migrantCount, long durationNanos);
+}
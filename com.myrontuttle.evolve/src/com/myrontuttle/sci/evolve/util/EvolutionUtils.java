@@ -1,13 +1,19 @@
 package com.myrontuttle.sci.evolve.util;
 
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
 
 import org.uncommons.maths.statistics.DataSet;
 
+import com.google.common.collect.Ordering;
+
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
 import com.myrontuttle.sci.evolve.api.PopulationStats;
+import com.myrontuttle.sci.evolve.api.RankedSelectionStrategy;
+import com.myrontuttle.sci.evolve.api.SelectionStrategy;
 import com.myrontuttle.sci.evolve.api.TerminationCondition;
 
 public class EvolutionUtils {
@@ -56,6 +62,12 @@ public class EvolutionUtils {
     public static <T> void sortEvaluatedPopulation(List<EvaluatedCandidate<T>> evaluatedPopulation,
                                                    boolean naturalFitness)
     {
+        if (evaluatedPopulation instanceof ArrayPopulation)
+        {
+            // Sorts the primitive ordering without creating candidate objects.
+            ((ArrayPopulation<T>) evaluatedPopulation).sort(naturalFitness);
+            return;
+        }
         // Sort candidates in descending order according to fitness.
         if (naturalFitness) // Descending values for natural fitness.
         {
@@ -66,7 +78,146 @@ public class EvolutionUtils {
             Collections.sort(evaluatedPopulation);
         }
     }
-    
+
+
+    /**
+     * Ranks the fittest candidates of an evaluated population without sorting the
+     * rest of it.  On return the first {@code rankedCount} candidates are the fittest
+     * in the population, in descending order of fitness, and every other candidate is
+     * no fitter than them but in no particular order.  This takes linear time plus the
+     * time to sort the ranked prefix, rather than the time to sort the population.
+     * An {@link ArrayPopulation} is always sorted completely, since sorting its primitive
+     * ordering is cheaper than partitioning it through the list interface.
+     *
+     * @param evaluatedPopulation The population to be ranked (in-place).
+     * @param rankedCount The number of fittest candidates to put in order.
+     * @param naturalFitness True if higher fitness scores mean fitter individuals, false otherwise.
+     * @param <T> The type of entity that is being evolved.
+     */
+    public static <T> void rankEvaluatedPopulation(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                                   int rankedCount,
+                                                   boolean naturalFitness) {
+        if (rankedCount >= evaluatedPopulation.size()
+            || evaluatedPopulation instanceof ArrayPopulation
+            || !(evaluatedPopulation instanceof RandomAccess)) {
+            sortEvaluatedPopulation(evaluatedPopulation, naturalFitness);
+        } else if (rankedCount > 0) {
+            Comparator<EvaluatedCandidate<T>> order = getFitnessOrder(naturalFitness);
+            partition(evaluatedPopulation, rankedCount, order);
+            Collections.sort(evaluatedPopulation.subList(0, rankedCount), order);
+        }
+    }
+
+
+    /**
+     * Works out how many of the fittest candidates a selection strategy needs to be in
+     * order.  Strategies that do not implement {@link RankedSelectionStrategy} need the
+     * whole population to be sorted.
+     *
+     * @param selectionStrategy The strategy that will select from the population.
+     * @param populationSize The number of candidates in the population.
+     * @param selectionSize The number of individual selections that will be made.
+     * @return The number of fittest candidates that must be ranked.
+     */
+    public static int getRankedCount(SelectionStrategy<?> selectionStrategy,
+                                     int populationSize,
+                                     int selectionSize) {
+        if (selectionStrategy instanceof RankedSelectionStrategy) {
+            return ((RankedSelectionStrategy<?>) selectionStrategy).getRankedCount(populationSize,
+                                                                                   selectionSize);
+        }
+        return populationSize;
+    }
+
+
+    /**
+     * Moves the fittest candidates of an evaluated population to the front of it,
+     * without putting either those candidates or the rest of the population in order.
+     *
+     * @param evaluatedPopulation The population to be partitioned (in-place).
+     * @param count The number of fittest candidates to move to the front.
+     * @param naturalFitness True if higher fitness scores mean fitter individuals, false otherwise.
+     * @param <T> The type of entity that is being evolved.
+     */
+    public static <T> void selectFittest(List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                         int count,
+                                         boolean naturalFitness) {
+        if (count <= 0 || count >= evaluatedPopulation.size()) {
+            return;
+        }
+        if (evaluatedPopulation instanceof RandomAccess) {
+            partition(evaluatedPopulation, count, EvolutionUtils.<T>getFitnessOrder(naturalFitness));
+        } else {
+            sortEvaluatedPopulation(evaluatedPopulation, naturalFitness);
+        }
+    }
+
+
+    /**
+     * @return An ordering that puts the fittest candidates first.
+     */
+    private static <T> Comparator<EvaluatedCandidate<T>> getFitnessOrder(boolean naturalFitness) {
+        Ordering<EvaluatedCandidate<T>> ascending = Ordering.natural();
+        return naturalFitness ? ascending.reverse() : ascending;
+    }
+
+
+    /**
+     * Quickselect (Hoare partitioning with median-of-three pivots) so that the
+     * first {@code count} elements of the list precede all of the others according
+     * to the given order.  Only the part of the list that contains the boundary is
+     * partitioned at each step, so the expected running time is linear.
+     */
+    private static <E> void partition(List<E> list, int count, Comparator<? super E> order) {
+        int target = count - 1;
+        int left = 0;
+        int right = list.size() - 1;
+        while (right > left) {
+            E pivot = medianOfThree(list.get(left),
+                                    list.get((left + right) >>> 1),
+                                    list.get(right),
+                                    order);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (order.compare(list.get(i), pivot) < 0) {
+                    ++i;
+                }
+                while (order.compare(list.get(j), pivot) > 0) {
+                    --j;
+                }
+                if (i <= j) {
+                    Collections.swap(list, i, j);
+                    ++i;
+                    --j;
+                }
+            }
+            // Everything in [left, j] precedes everything in [i, right] and anything
+            // in between is equal to the pivot.
+            if (target <= j) {
+                right = j;
+            } else if (target >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+
+    private static <E> E medianOfThree(E a, E b, E c, Comparator<? super E> order) {
+        if (order.compare(a, b) < 0) {
+            if (order.compare(b, c) < 0) {
+                return b;
+            }
+            return order.compare(a, c) < 0 ? c : a;
+        }
+        if (order.compare(a, c) < 0) {
+            return a;
+        }
+        return order.compare(b, c) < 0 ? c : b;
+    }
+
 
     /**
      * Gets data about the current population, including the fittest candidate
@@ -88,17 +239,46 @@ public class EvolutionUtils {
                                 int eliteCount,
                                 int iterationNumber,
                                 long startTime)  {
-        DataSet stats = new DataSet(evaluatedPopulation.size());
-        for (EvaluatedCandidate<T> candidate : evaluatedPopulation) {
-            stats.addValue(candidate.getFitness());
-        }
+        DataSet stats = new DataSet(ArrayPopulation.fitnessScores(evaluatedPopulation));
+        return getPopulationStats(populationId,
+                                  evaluatedPopulation,
+                                  stats,
+                                  naturalFitness,
+                                  eliteCount,
+                                  iterationNumber,
+                                  startTime);
+    }
+
+    /**
+     * Gets data about the current population using fitness statistics that have
+     * already been gathered (for example, incrementally while the population was
+     * being evaluated), so that the population does not need to be traversed again.
+     *
+     * @param evaluatedPopulation Population of candidate solutions with their
+     * associated fitness scores, sorted so that the fittest candidate is first.
+     * @param fitnessStatistics The fitness scores of every member of the population.
+     * @param naturalFitness True if higher fitness scores mean fitter individuals, false otherwise.
+     * @param eliteCount The number of candidates preserved via elitism.
+     * @param iterationNumber The zero-based index of the current generation/epoch.
+     * @param startTime The time at which the evolution began, expressed as a number of milliseconds since
+     * 00:00 on 1st January 1970.
+     * @param <T> The type of entity that is being evolved.
+     * @return Statistics about the current generation of evolved individuals.
+     */
+    public static <T> PopulationStats<T> getPopulationStats(long populationId,
+                                List<EvaluatedCandidate<T>> evaluatedPopulation,
+                                DataSet fitnessStatistics,
+                                boolean naturalFitness,
+                                int eliteCount,
+                                int iterationNumber,
+                                long startTime)  {
         return new PopulationStats<T>(populationId,
         							 evaluatedPopulation.get(0).getCandidate(),
                                      evaluatedPopulation.get(0).getFitness(),
-                                     stats.getArithmeticMean(),
-                                     stats.getStandardDeviation(),
+                                     fitnessStatistics.getArithmeticMean(),
+                                     fitnessStatistics.getStandardDeviation(),
                                      naturalFitness,
-                                     stats.getSize(),
+                                     fitnessStatistics.getSize(),
                                      eliteCount,
                                      iterationNumber,
                                      System.currentTimeMillis() - startTime);
@@ -0,0 +1,224 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <p>A roulette wheel whose slots can be re-weighted one at a time.  The weights are held
+ * in a Fenwick tree (binary indexed tree), so changing a weight and spinning the wheel
+ * both take O(log n) time, where a cumulative array would have to be rebuilt in O(n)
+ * time after every change.  This suits steady-state evolution, in which only a few
+ * members of the population change between selections.</p>
+ *
+ * <p>An infinite weight, which is how a perfect non-natural fitness score is weighted,
+ * takes the whole wheel: while any slot has an infinite weight, only those slots are
+ * chosen, each with equal probability.  Because weights are updated by adding and
+ * subtracting differences, the tree is rebuilt from the weights after every n updates
+ * so that rounding errors cannot accumulate.</p>
+ *
+ * <p>Instances are not thread-safe.</p>
+ *
+ * @author Myron Tuttle
+ */
+public final class FenwickSampler {
+
+    private double[] weights;
+    // Both trees are 1-based: node i covers the (i & -i) slots ending at slot i - 1.
+    private double[] tree;
+    private int[] infiniteTree;
+    private int infiniteCount = 0;
+    private int updatesSinceRebuild = 0;
+
+    /**
+     * Creates a wheel in which every slot has a weight of zero.
+     * @param capacity The initial number of slots.
+     */
+    public FenwickSampler(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative.");
+        }
+        weights = new double[capacity];
+        tree = new double[capacity + 1];
+        infiniteTree = new int[capacity + 1];
+    }
+
+
+    /**
+     * @return The number of slots.
+     */
+    public int getCapacity() {
+        return weights.length;
+    }
+
+
+    /**
+     * Adds slots, with weights of zero, if there are fewer than the specified number.
+     * @param capacity The number of slots required.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > weights.length) {
+            weights = Arrays.copyOf(weights, Math.max(capacity, weights.length * 2));
+            tree = new double[weights.length + 1];
+            infiniteTree = new int[weights.length + 1];
+            rebuild();
+        }
+    }
+
+
+    /**
+     * @param slot The index of a slot.
+     * @return The weight of the slot.
+     */
+    public double getWeight(int slot) {
+        checkSlot(slot);
+        return weights[slot];
+    }
+
+
+    /**
+     * Changes the weight of a single slot in O(log n) time.
+     * @param slot The index of the slot.
+     * @param weight The new weight, which may be zero or positive infinity but must not
+     * be negative.
+     */
+    public void setWeight(int slot, double weight) {
+        checkSlot(slot);
+        if (!(weight >= 0)) {
+            throw new IllegalArgumentException("Weight must be non-negative: " + weight);
+        }
+        double oldWeight = weights[slot];
+        if (oldWeight == weight) {
+            return;
+        }
+        weights[slot] = weight;
+        if (++updatesSinceRebuild > weights.length) {
+            rebuild();
+            return;
+        }
+        boolean wasInfinite = Double.isInfinite(oldWeight);
+        boolean isInfinite = Double.isInfinite(weight);
+        if (wasInfinite != isInfinite) {
+            int delta = isInfinite ? 1 : -1;
+            infiniteCount += delta;
+            for (int i = slot + 1; i < infiniteTree.length; i += i & -i) {
+                infiniteTree[i] += delta;
+            }
+        }
+        double delta = (isInfinite ? 0 : weight) - (wasInfinite ? 0 : oldWeight);
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+
+    /**
+     * @return The sum of the weights of all slots, which is infinite if any slot has an
+     * infinite weight.
+     */
+    public double getTotalWeight() {
+        if (infiniteCount > 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double total = 0;
+        for (int i = weights.length; i > 0; i -= i & -i) {
+            total += tree[i];
+        }
+        return total;
+    }
+
+
+    /**
+     * Sets the weight of every slot to zero.
+     */
+    public void clear() {
+        Arrays.fill(weights, 0);
+        rebuild();
+    }
+
+
+    /**
+     * Chooses a slot at random with probability proportional to its weight, in O(log n)
+     * time.
+     * @param rng A source of randomness.
+     * @return The index of the chosen slot, or -1 if every slot has a weight of zero.
+     */
+    public int sample(Random rng) {
+        if (infiniteCount > 0) {
+            return findInfinite(rng.nextInt(infiniteCount));
+        }
+        double total = getTotalWeight();
+        if (total <= 0) {
+            return -1;
+        }
+        while (true) {
+            int slot = find(rng.nextDouble() * total);
+            // Rounding may, very rarely, land beyond the last slot or on an empty one.
+            if (slot < weights.length && weights[slot] > 0) {
+                return slot;
+            }
+        }
+    }
+
+
+    /**
+     * Finds the slot whose share of the wheel contains the specified point.
+     */
+    private int find(double point) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(weights.length); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] <= point) {
+                position = next;
+                point -= tree[next];
+            }
+        }
+        return position;
+    }
+
+
+    /**
+     * Finds the slot with the specified rank among the slots with infinite weights.
+     */
+    private int findInfinite(int rank) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(weights.length); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < infiniteTree.length && infiniteTree[next] <= rank) {
+                position = next;
+                rank -= infiniteTree[next];
+            }
+        }
+        return position;
+    }
+
+
+    /**
+     * Builds both trees from the weights in O(n) time.
+     */
+    private void rebuild() {
+        infiniteCount = 0;
+        for (int i = 0; i < weights.length; i++) {
+            boolean infinite = Double.isInfinite(weights[i]);
+            tree[i + 1] = infinite ? 0 : weights[i];
+            infiniteTree[i + 1] = infinite ? 1 : 0;
+            if (infinite) {
+                ++infiniteCount;
+            }
+        }
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+                infiniteTree[parent] += infiniteTree[i];
+            }
+        }
+        updatesSinceRebuild = 0;
+    }
+
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= weights.length) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " of " + weights.length);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.myrontuttle.sci.evolve.util.reflection.ReflectionUtils;
+
+/**
+ * <p>An {@link EvolutionTracer} that commits each trace event to Java Flight Recorder,
+ * so that generations, tasks, epochs and migrations appear in flight recordings
+ * alongside garbage collection and CPU load.  Events are recorded in the "Evolution"
+ * category under names beginning {@code com.myrontuttle.sci.evolve.}, and record the
+ * thread that did the work and, in an "elapsed" field, how long it took.  They are
+ * disabled by default, so a recording must enable them (for example, with
+ * {@code jdk.jfr.Recording.enable(String)}).</p>
+ *
+ * <p>Flight Recorder's API only exists on Java 11 and later, so the event types are
+ * defined through {@code jdk.jfr.EventFactory} by reflection and this class can be
+ * loaded on any Java version.  Use {@link #isAvailable()} to find out whether it can be
+ * used.  While no recording has the events enabled, each event costs one reflective
+ * check.</p>
+ *
+ * <p>To trace evolution, install the tracer with
+ * {@code Tracing.install(FlightRecorderTracer.getInstance())}.</p>
+ *
+ * @author Myron Tuttle
+ */
+public final class FlightRecorderTracer implements EvolutionTracer {
+
+    private static final String PREFIX = "com.myrontuttle.sci.evolve.";
+
+    // jdk.jfr methods, looked up reflectively so that the framework still runs on Java
+    // versions without Flight Recorder.  Null if not supported.
+    private static final Method NEW_EVENT;
+    private static final Method IS_ENABLED;
+    private static final Method SET;
+    private static final Method COMMIT;
+
+    private static final EventKind GENERATION_STARTED;
+    private static final EventKind GENERATION_FINISHED;
+    private static final EventKind EVALUATION_FINISHED;
+    private static final EventKind EXPRESSION_FINISHED;
+    private static final EventKind EPOCH_FINISHED;
+    private static final EventKind MIGRATION_FINISHED;
+
+    private static final FlightRecorderTracer INSTANCE;
+    static {
+        Method newEvent = null;
+        Method isEnabled = null;
+        Method set = null;
+        Method commit = null;
+        EventKind[] kinds = null;
+        try {
+            Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            newEvent = factoryClass.getMethod("newEvent");
+            isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            set = eventClass.getMethod("set", int.class, Object.class);
+            commit = eventClass.getMethod("commit");
+            EventTypeBuilder builder = new EventTypeBuilder(factoryClass);
+            kinds = new EventKind[]{
+                builder.define("GenerationStarted", "Generation Started",
+                               long.class, "populationId", int.class, "generationIndex",
+                               int.class, "populationSize"),
+                builder.define("GenerationFinished", "Generation Finished",
+                               long.class, "populationId", int.class, "generationIndex",
+                               int.class, "populationSize", long.class, "elapsed"),
+                builder.define("EvaluationFinished", "Evaluation Finished",
+                               int.class, "candidateCount", long.class, "elapsed"),
+                builder.define("ExpressionFinished", "Expression Finished",
+                               long.class, "populationId", long.class, "elapsed"),
+                builder.define("EpochFinished", "Epoch Finished",
+                               long.class, "populationId", int.class, "epochIndex",
+                               int.class, "islandCount", long.class, "elapsed"),
+                builder.define("MigrationFinished", "Migration Finished",
+                               long.class, "populationId", int.class, "epochIndex",
+                               int.class, "migrantCount", long.class, "elapsed")
+            };
+        } catch (ReflectiveOperationException ex) {
+            // Flight Recorder is not available (or not accessible) on this JVM.
+            kinds = null;
+        }
+        boolean available = kinds != null;
+        NEW_EVENT = available ? newEvent : null;
+        IS_ENABLED = available ? isEnabled : null;
+        SET = available ? set : null;
+        COMMIT = available ? commit : null;
+        GENERATION_STARTED = available ? kinds[0] : null;
+        GENERATION_FINISHED = available ? kinds[1] : null;
+        EVALUATION_FINISHED = available ? kinds[2] : null;
+        EXPRESSION_FINISHED = available ? kinds[3] : null;
+        EPOCH_FINISHED = available ? kinds[4] : null;
+        MIGRATION_FINISHED = available ? kinds[5] : null;
+        INSTANCE = available ? new FlightRecorderTracer() : null;
+    }
+
+
+    private FlightRecorderTracer() {
+        // Use getInstance(), so that the event types are only registered once.
+    }
+
+
+    /**
+     * @return True if this JVM has Java Flight Recorder, false otherwise.
+     */
+    public static boolean isAvailable() {
+        return INSTANCE != null;
+    }
+
+
+    /**
+     * @return The tracer.
+     * @throws UnsupportedOperationException If this JVM does not have Java Flight
+     * Recorder.
+     */
+    public static FlightRecorderTracer getInstance() {
+        if (INSTANCE == null) {
+            throw new UnsupportedOperationException("Java Flight Recorder is not available.");
+        }
+        return INSTANCE;
+    }
+
+
+    public void generationStarted(long populationId, int generationIndex, int populationSize) {
+        GENERATION_STARTED.commit(populationId, generationIndex, populationSize);
+    }
+
+
+    public void generationFinished(long populationId, int generationIndex, int populationSize, long durationNanos) {
+        GENERATION_FINISHED.commit(populationId, generationIndex, populationSize, durationNanos);
+    }
+
+
+    public void evaluationFinished(int candidateCount, long durationNanos) {
+        EVALUATION_FINISHED.commit(candidateCount, durationNanos);
+    }
+
+
+    public void expressionFinished(long populationId, long durationNanos) {
+        EXPRESSION_FINISHED.commit(populationId, durationNanos);
+    }
+
+
+    public void epochFinished(long populationId, int epochIndex, int islandCount, long durationNanos) {
+        EPOCH_FINISHED.commit(populationId, epochIndex, islandCount, durationNanos);
+    }
+
+
+    public void migrationFinished(long populationId, int epochIndex, int migrantCount, long durationNanos) {
+        MIGRATION_FINISHED.commit(populationId, epochIndex, migrantCount, durationNanos);
+    }
+
+
+    /**
+     * A Flight Recorder event type and the factory that creates its events.
+     */
+    private static final class EventKind {
+        private final Object factory;
+        private final Object eventType;
+
+        EventKind(Object factory, Object eventType) {
+            this.factory = factory;
+            this.eventType = eventType;
+        }
+
+        /**
+         * Creates and commits an event, unless no recording has the event type enabled.
+         * @param values The value of each field, in the order that the fields were defined.
+         */
+        void commit(Object... values) {
+            if (!ReflectionUtils.<Boolean>invokeUnchecked(IS_ENABLED, eventType)) {
+                return;
+            }
+            Object event = ReflectionUtils.invokeUnchecked(NEW_EVENT, factory);
+            for (int i = 0; i < values.length; i++) {
+                ReflectionUtils.invokeUnchecked(SET, event, i, values[i]);
+            }
+            ReflectionUtils.invokeUnchecked(COMMIT, event);
+        }
+    }
+
+
+    /**
+     * Defines event types through {@code jdk.jfr.EventFactory.create}.  Only used while
+     * the class is initialised.
+     */
+    private static final class EventTypeBuilder {
+        private final Method create;
+        private final Method getEventType;
+        private final Constructor<?> annotationElement;
+        private final Constructor<?> valueDescriptor;
+        private final Class<? extends Annotation> nameAnnotation;
+        private final Class<? extends Annotation> labelAnnotation;
+        private final Class<? extends Annotation> categoryAnnotation;
+        private final Class<? extends Annotation> stackTraceAnnotation;
+        private final Class<? extends Annotation> timespanAnnotation;
+
+        EventTypeBuilder(Class<?> factoryClass) throws ReflectiveOperationException {
+            create = factoryClass.getMethod("create", List.class, List.class);
+            getEventType = factoryClass.getMethod("getEventType");
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+            valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class,
+                                                                                      String.class,
+                                                                                      List.class);
+            nameAnnotation = annotation("jdk.jfr.Name");
+            labelAnnotation = annotation("jdk.jfr.Label");
+            categoryAnnotation = annotation("jdk.jfr.Category");
+            stackTraceAnnotation = annotation("jdk.jfr.StackTrace");
+            timespanAnnotation = annotation("jdk.jfr.Timespan");
+        }
+
+        /**
+         * @param typesAndNames The type and name of each field, alternately.  Fields
+         * called "elapsed" are recorded as a number of nanoseconds.  They cannot be called
+         * "duration", which every event already has.
+         */
+        EventKind define(String name, String label, Object... typesAndNames) throws ReflectiveOperationException {
+            List<Object> annotations = Arrays.asList(element(nameAnnotation, PREFIX + name),
+                                                     element(labelAnnotation, label),
+                                                     element(categoryAnnotation, new String[]{"Evolution"}),
+                                                     element(stackTraceAnnotation, false));
+            List<Object> fields = new ArrayList<Object>(typesAndNames.length / 2);
+            for (int i = 0; i < typesAndNames.length; i += 2) {
+                String fieldName = (String) typesAndNames[i + 1];
+                List<Object> fieldAnnotations = "elapsed".equals(fieldName)
+                                                ? Collections.singletonList(element(timespanAnnotation, "NANOSECONDS"))
+                                                : Collections.<Object>emptyList();
+                fields.add(valueDescriptor.newInstance(typesAndNames[i], fieldName, fieldAnnotations));
+            }
+            Object factory = create.invoke(null, annotations, fields);
+            return new EventKind(factory, getEventType.invoke(factory));
+        }
+
+        private Object element(Class<? extends Annotation> annotationType, Object value) throws ReflectiveOperationException {
+            return annotationElement.newInstance(annotationType, value);
+        }
+
+        private static Class<? extends Annotation> annotation(String className) throws ClassNotFoundException {
+            return Class.forName(className).asSubclass(Annotation.class);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.lang.reflect.Array;
+
+/**
+ * <p>A bounded, thread-safe pool of genomes that are no longer part of any population,
+ * so that their storage can be reused for new candidates instead of being left for the
+ * garbage collector.  An engine with a pool (see
+ * {@link com.myrontuttle.sci.evolve.engines.AbstractEvolutionEngine#setGenomePool})
+ * recycles the candidates it discards, and factories and operators that are given the
+ * same pool take their new genomes from it.</p>
+ *
+ * <p>A genome taken from the pool holds whatever the discarded candidate held, so the
+ * taker must overwrite all of it.  Pools of arrays may hold arrays of different lengths,
+ * so a taker that needs a particular length should use {@link #takeArray(int)}, which
+ * leaves arrays of other lengths in the pool for takers that need them.  The pool only
+ * stores references and never allocates after it has been created.</p>
+ *
+ * @param <T> The type of genome held by the pool.
+ * @author Myron Tuttle
+ */
+public final class GenomePool<T> {
+
+    private final Object[] genomes;
+    private int size = 0;
+    private long recycledCount = 0;
+    private long reusedCount = 0;
+
+    /**
+     * @param capacity The maximum number of genomes held by the pool.  Genomes that are
+     * recycled while the pool is full are left for the garbage collector.  A capacity of
+     * about the population size is enough to make steady operation allocation-free.
+     */
+    public GenomePool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.genomes = new Object[capacity];
+    }
+
+
+    /**
+     * Removes a genome from the pool.
+     * @return A genome whose contents must be overwritten before use, or null if the pool
+     * is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T take() {
+        if (size == 0) {
+            return null;
+        }
+        T genome = (T) genomes[--size];
+        genomes[size] = null;
+        ++reusedCount;
+        return genome;
+    }
+
+
+    /**
+     * Removes an array genome of a particular length from the pool.  Genomes of other
+     * lengths stay in the pool.  This takes time proportional to the number of genomes
+     * in the pool if none of them fits.
+     * @param length The length of array required.
+     * @return An array genome whose contents must be overwritten before use, or null if
+     * the pool has no array of the length required.
+     * @throws IllegalArgumentException If a genome in the pool is not an array.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T takeArray(int length) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (Array.getLength(genomes[i]) == length) {
+                T genome = (T) genomes[i];
+                genomes[i] = genomes[--size];
+                genomes[size] = null;
+                ++reusedCount;
+                return genome;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns a genome to the pool.  The caller must not use the genome again, and it
+     * must not be referenced by any candidate that is still in use.
+     * @param genome The genome to recycle.
+     * @return True if the genome was added to the pool, false if the pool was full.
+     */
+    public synchronized boolean recycle(T genome) {
+        if (genome == null || size == genomes.length) {
+            return false;
+        }
+        genomes[size++] = genome;
+        ++recycledCount;
+        return true;
+    }
+
+
+    /**
+     * @return The number of genomes waiting in the pool.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+
+    /**
+     * @return The maximum number of genomes held by the pool.
+     */
+    public int getCapacity() {
+        return genomes.length;
+    }
+
+
+    /**
+     * @return The number of genomes that have been added to the pool.
+     */
+    public synchronized long getRecycledCount() {
+        return recycledCount;
+    }
+
+
+    /**
+     * @return The number of genomes that have been taken from the pool.
+     */
+    public synchronized long getReusedCount() {
+        return reusedCount;
+    }
+}
@@ -0,0 +1,458 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+
+/**
+ * <p>An evaluated population that is always kept in descending order of fitness
+ * (descending order of fitness score for natural scores, ascending order of scores
+ * for non-natural scores).  Candidates are held in an order-statistics tree (a treap
+ * in which each node records the size of its sub-tree) so that inserting a candidate,
+ * removing the candidate at a given rank and looking up a candidate by rank all take
+ * O(log n) time, rather than the O(n log n) of re-sorting a list.</p>
+ *
+ * <p>The population is a read-only {@link java.util.List} view in rank order so it can
+ * be passed straight to selection strategies.  It is modified only through
+ * {@link #add(EvaluatedCandidate)}, which inserts a candidate at the position dictated
+ * by its fitness rather than at the end, and {@link #remove(int)}.  Candidates with
+ * equal fitness are kept in the order that they were added.</p>
+ *
+ * <p>Looking a candidate up by rank walks the tree, so a loop that calls {@link #get(int)}
+ * for every member would take O(n log n) time.  Once the population has been read by rank
+ * more than a few times without being modified, the candidates are therefore copied into
+ * an array in rank order, and subsequent look-ups take constant time until the next
+ * modification.  Iterating over the population always takes linear time.</p>
+ *
+ * <p>The mean and variance of the fitness scores are maintained, using Welford's method,
+ * as candidates are added and removed so that population statistics do not require a
+ * traversal and do not lose precision when the scores are large compared with their
+ * spread.</p>
+ *
+ * <p>Code that keeps its own view of the population, such as
+ * {@link com.myrontuttle.sci.evolve.selection.DynamicRouletteWheelSelection}, can note
+ * the population's {@link #getVersion() version} and later find out which candidates
+ * have been added and removed since then with {@link #getChangesSince}, instead of
+ * comparing every member.</p>
+ *
+ * @param <T> The type of evolved entity in the population.
+ * @author Myron Tuttle
+ */
+public final class IndexedPopulation<T> extends AbstractList<EvaluatedCandidate<T>> {
+
+    private final boolean naturalFitness;
+
+    private Node<T> root;
+    // Insertion sequence number, used to order candidates with equal fitness.
+    private long sequence = 0;
+    // State of the xorshift generator for node priorities.  A fixed seed keeps the
+    // shape of the tree (and therefore the run) reproducible.
+    private int priorityState = 0x9E3779B9;
+
+    // Mean of the fitness scores and sum of squared differences from it.
+    private double fitnessMean = 0;
+    private double fitnessSquaredDeviations = 0;
+
+    // Candidates in rank order, valid while rankedModCount equals modCount.
+    private Object[] ranked = null;
+    private int rankedModCount = 0;
+    private int readsSinceModification = 0;
+
+    private static final int RANKED_ARRAY_THRESHOLD = 16;
+
+    // The most recent additions and removals, recorded in a ring once the version has
+    // been asked for.  Versions before journalStart are not covered.
+    private Object[] changes = null;
+    private boolean[] changeAdded = null;
+    private long changeCount = 0;
+    private long journalStart = 0;
+
+    private static final int MIN_JOURNAL_CAPACITY = 64;
+
+    /**
+     * Creates an empty population.
+     * @param naturalFitness True if higher fitness scores mean fitter individuals,
+     * false otherwise.
+     */
+    public IndexedPopulation(boolean naturalFitness) {
+        this.naturalFitness = naturalFitness;
+    }
+
+    /**
+     * Creates a population containing the specified candidates.
+     * @param evaluatedPopulation The candidates, in any order.
+     * @param naturalFitness True if higher fitness scores mean fitter individuals,
+     * false otherwise.
+     */
+    public IndexedPopulation(Collection<EvaluatedCandidate<T>> evaluatedPopulation,
+                             boolean naturalFitness) {
+        this(naturalFitness);
+        for (EvaluatedCandidate<T> candidate : evaluatedPopulation) {
+            add(candidate);
+        }
+    }
+
+
+    /**
+     * @return True if higher fitness scores mean fitter individuals.
+     */
+    public boolean isNatural() {
+        return naturalFitness;
+    }
+
+
+    /**
+     * Inserts a candidate at the position determined by its fitness.  Unlike
+     * {@link java.util.List#add(Object)}, the candidate is not appended to the end.
+     * @param candidate The candidate to add.
+     * @return Always true.
+     */
+    @Override
+    public boolean add(EvaluatedCandidate<T> candidate) {
+        root = insert(root, new Node<T>(candidate, sequence++, nextPriority()));
+        double fitness = candidate.getFitness();
+        double delta = fitness - fitnessMean;
+        fitnessMean += delta / size();
+        fitnessSquaredDeviations += delta * (fitness - fitnessMean);
+        recordChange(candidate, true);
+        ++modCount;
+        return true;
+    }
+
+
+    /**
+     * Removes the candidate with the specified rank.
+     * @param index The rank of the candidate to remove (zero is the fittest).
+     * @return The removed candidate.
+     */
+    @Override
+    public EvaluatedCandidate<T> remove(int index) {
+        checkIndex(index);
+        EvaluatedCandidate<T> removed = find(index);
+        root = removeAt(root, index);
+        if (root == null) {
+            fitnessMean = 0;
+            fitnessSquaredDeviations = 0;
+        } else {
+            // Reverse the update made when the candidate was added.
+            double fitness = removed.getFitness();
+            double delta = fitness - fitnessMean;
+            fitnessMean -= delta / size();
+            fitnessSquaredDeviations = Math.max(0, fitnessSquaredDeviations - delta * (fitness - fitnessMean));
+        }
+        recordChange(removed, false);
+        ++modCount;
+        return removed;
+    }
+
+
+    /**
+     * @param index The rank of the candidate (zero is the fittest).
+     * @return The candidate with the specified rank.
+     */
+    @Override
+    public EvaluatedCandidate<T> get(int index) {
+        checkIndex(index);
+        if (rankedModCount != modCount) {
+            ranked = null;
+            rankedModCount = modCount;
+            readsSinceModification = 0;
+        }
+        if (ranked == null && ++readsSinceModification > RANKED_ARRAY_THRESHOLD) {
+            ranked = toArray();
+        }
+        if (ranked != null) {
+            @SuppressWarnings("unchecked")
+            EvaluatedCandidate<T> candidate = (EvaluatedCandidate<T>) ranked[index];
+            return candidate;
+        }
+        return find(index);
+    }
+
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+
+    @Override
+    public void clear() {
+        root = null;
+        fitnessMean = 0;
+        fitnessSquaredDeviations = 0;
+        // The removed candidates are not recorded, so no earlier version is covered.
+        journalStart = ++changeCount;
+        ++modCount;
+    }
+
+
+    /**
+     * Identifies the current contents of the population.  The first call starts a record
+     * of the most recent changes, which are at least as many as the size of the population
+     * at that time.
+     * @return A number that changes whenever a candidate is added or removed.
+     */
+    public long getVersion() {
+        if (changes == null) {
+            int capacity = Math.max(MIN_JOURNAL_CAPACITY, 2 * size());
+            changes = new Object[capacity];
+            changeAdded = new boolean[capacity];
+            journalStart = changeCount;
+        }
+        return changeCount;
+    }
+
+
+    /**
+     * Reports the candidates that have been added to and removed from the population
+     * since it had a particular version.  Nothing is reported if the changes are no
+     * longer all recorded, in which case the whole population must be examined.
+     * @param version A version returned by {@link #getVersion()}.
+     * @param added Receives each candidate added since that version, in the order added.
+     * @param removed Receives each candidate removed since that version, in the order
+     * removed.
+     * @return True if the changes were reported, false if they are not known.
+     */
+    public boolean getChangesSince(long version,
+                                   Collection<? super EvaluatedCandidate<T>> added,
+                                   Collection<? super EvaluatedCandidate<T>> removed) {
+        if (changes == null
+            || version < journalStart
+            || version < changeCount - changes.length
+            || version > changeCount) {
+            return false;
+        }
+        for (long i = version; i < changeCount; i++) {
+            int slot = (int) (i % changes.length);
+            @SuppressWarnings("unchecked")
+            EvaluatedCandidate<T> candidate = (EvaluatedCandidate<T>) changes[slot];
+            if (changeAdded[slot]) {
+                added.add(candidate);
+            } else {
+                removed.add(candidate);
+            }
+        }
+        return true;
+    }
+
+
+    private void recordChange(EvaluatedCandidate<T> candidate, boolean add) {
+        if (changes != null) {
+            int slot = (int) (changeCount % changes.length);
+            changes[slot] = candidate;
+            changeAdded[slot] = add;
+        }
+        ++changeCount;
+    }
+
+
+    /**
+     * Looks up a candidate by walking the tree, in O(log n) time.
+     */
+    private EvaluatedCandidate<T> find(int index) {
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.candidate;
+            }
+        }
+    }
+
+
+    /**
+     * Iterates over the population in rank order in linear time.
+     */
+    @Override
+    public Iterator<EvaluatedCandidate<T>> iterator() {
+        return new Iterator<EvaluatedCandidate<T>>() {
+            private final Deque<Node<T>> path = new ArrayDeque<Node<T>>();
+            private final int expectedModCount = modCount;
+            {
+                pushLeft(root);
+            }
+
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            public EvaluatedCandidate<T> next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<T> node = path.pop();
+                pushLeft(node.right);
+                return node.candidate;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("Use IndexedPopulation.remove(int).");
+            }
+
+            private void pushLeft(Node<T> node) {
+                while (node != null) {
+                    path.push(node);
+                    node = node.left;
+                }
+            }
+        };
+    }
+
+
+    /**
+     * @return The arithmetic mean of the fitness scores of the population.
+     */
+    public double getMeanFitness() {
+        return fitnessMean;
+    }
+
+
+    /**
+     * @return The population standard deviation of the fitness scores.
+     */
+    public double getFitnessStandardDeviation() {
+        return Math.sqrt(fitnessSquaredDeviations / size());
+    }
+
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+
+    /**
+     * @return True if node a ranks before node b.
+     */
+    private boolean precedes(Node<T> a, Node<T> b) {
+        double fitnessA = a.candidate.getFitness();
+        double fitnessB = b.candidate.getFitness();
+        if (fitnessA != fitnessB) {
+            return naturalFitness ? fitnessA > fitnessB : fitnessA < fitnessB;
+        }
+        return a.sequence < b.sequence;
+    }
+
+
+    private Node<T> insert(Node<T> node, Node<T> newNode) {
+        if (node == null) {
+            return newNode;
+        }
+        if (precedes(newNode, node)) {
+            node.left = insert(node.left, newNode);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, newNode);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+
+    private Node<T> removeAt(Node<T> node, int index) {
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            node.left = removeAt(node.left, index);
+        } else if (index > leftSize) {
+            node.right = removeAt(node.right, index - leftSize - 1);
+        } else {
+            return merge(node.left, node.right);
+        }
+        node.update();
+        return node;
+    }
+
+
+    /**
+     * Joins two treaps where every node of the first ranks before every node of the second.
+     */
+    private Node<T> merge(Node<T> first, Node<T> second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            first.update();
+            return first;
+        } else {
+            second.left = merge(first, second.left);
+            second.update();
+            return second;
+        }
+    }
+
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        return left;
+    }
+
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        return right;
+    }
+
+
+    private int nextPriority() {
+        priorityState ^= priorityState << 13;
+        priorityState ^= priorityState >>> 17;
+        priorityState ^= priorityState << 5;
+        return priorityState;
+    }
+
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+
+    private static final class Node<T> {
+        private final EvaluatedCandidate<T> candidate;
+        private final long sequence;
+        private final int priority;
+        private int size = 1;
+        private Node<T> left;
+        private Node<T> right;
+
+        Node(EvaluatedCandidate<T> candidate, long sequence, int priority) {
+            this.candidate = candidate;
+            this.sequence = sequence;
+            this.priority = priority;
+        }
+
+        void update() {
+            size = 1 + size(left) + size(right);
+        }
+    }
+}
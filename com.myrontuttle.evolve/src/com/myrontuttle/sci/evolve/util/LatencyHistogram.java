@@ -0,0 +1,157 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A histogram of durations, in nanoseconds, that can be updated by many threads at
+ * once without locking.  Durations are counted in power-of-two buckets, so recording a
+ * duration is a handful of atomic increments and percentiles are accurate to within a
+ * factor of two, which is enough to see where time goes.</p>
+ *
+ * <p>Reads are not synchronised with concurrent updates, so a histogram that is being
+ * updated may be momentarily inconsistent (the count may not yet include a duration
+ * that has been added to the total, for example).  Use {@link #copy()} to take a
+ * snapshot for reporting.</p>
+ *
+ * @author Myron Tuttle
+ */
+public final class LatencyHistogram {
+
+    // Bucket i holds durations in [2^(i-1), 2^i), with bucket 0 holding zero.
+    private static final int BUCKET_COUNT = 65;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong totalNanos = new AtomicLong(0);
+    private final AtomicLong maxNanos = new AtomicLong(0);
+
+
+    /**
+     * Records a single duration.
+     * @param nanos The duration in nanoseconds.  Negative durations are counted as zero.
+     */
+    public void record(long nanos) {
+        record(nanos, 1);
+    }
+
+
+    /**
+     * Records several occurrences of the same duration, for example the average time
+     * per candidate of a batch of evaluations.
+     * @param nanos The duration in nanoseconds.  Negative durations are counted as zero.
+     * @param occurrences The number of times that the duration occurred.
+     */
+    public void record(long nanos, int occurrences) {
+        if (occurrences <= 0) {
+            return;
+        }
+        nanos = Math.max(nanos, 0);
+        buckets.addAndGet(bucketIndex(nanos), occurrences);
+        count.addAndGet(occurrences);
+        totalNanos.addAndGet(nanos * occurrences);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+
+    /**
+     * @return The number of durations recorded.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+
+    /**
+     * @return The sum of all of the recorded durations, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+
+    /**
+     * @return The longest recorded duration, in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+
+    /**
+     * @return The arithmetic mean of the recorded durations in nanoseconds, or zero if
+     * nothing has been recorded.
+     */
+    public double getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) totalNanos.get() / n;
+    }
+
+
+    /**
+     * Estimates a percentile of the recorded durations.
+     * @param percentile The percentile, between 0 and 100.
+     * @return An upper bound, accurate to within a factor of two, on the duration in
+     * nanoseconds below which the specified percentage of durations fall.  Zero if
+     * nothing has been recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(percentile / 100 * n), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+
+    /**
+     * @return A new histogram with the same contents as this one at the time of copying.
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy.buckets.set(i, buckets.get(i));
+        }
+        copy.count.set(count.get());
+        copy.totalNanos.set(totalNanos.get());
+        copy.maxNanos.set(maxNanos.get());
+        return copy;
+    }
+
+
+    /**
+     * Discards all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+
+    private static int bucketIndex(long nanos) {
+        return 64 - Long.numberOfLeadingZeros(nanos);
+    }
+
+
+    private static long upperBound(int bucketIndex) {
+        return bucketIndex >= 63 ? Long.MAX_VALUE : (1L << bucketIndex) - 1;
+    }
+}
@@ -0,0 +1,155 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+
+/**
+ * <p>A population whose fitness scores are only worked out when they are asked for.
+ * Getting a candidate evaluates it, unless it has already been evaluated, and remembers
+ * the result.  A selection strategy that knows in advance which candidates it will look
+ * at can call {@link #prefetch(int[])} first so that they are all evaluated at once,
+ * which lets the engine evaluate them in parallel.</p>
+ *
+ * <p>This lets a selection strategy that only compares some of the population, such as
+ * {@link com.myrontuttle.sci.evolve.selection.TournamentSelection}, avoid evaluating
+ * candidates that it never looks at.  Operations that look at the whole population,
+ * such as iterating over it, evaluate every candidate, one at a time.  The population is
+ * in no particular order, so it must not be given to a selection strategy that relies
+ * on the population being sorted.</p>
+ *
+ * <p>Instances are not thread-safe.</p>
+ *
+ * @param <T> The type of evolved entity in the population.
+ * @see com.myrontuttle.sci.evolve.engines.GenerationalEvolutionEngine#setLazyEvaluation(boolean)
+ * @author Myron Tuttle
+ */
+public final class LazyPopulation<T> extends AbstractList<EvaluatedCandidate<T>> {
+
+    private final List<T> candidates;
+    private final EvaluatedCandidate<T>[] evaluated;
+    private final Evaluator<T> evaluator;
+    private int evaluationCount = 0;
+
+    /**
+     * @param candidates The members of the population.
+     * @param knownFitness Members whose fitness is already known, which are not evaluated
+     * again.
+     * @param evaluator Evaluates the other members.
+     */
+    public LazyPopulation(List<T> candidates,
+                          Map<T, EvaluatedCandidate<T>> knownFitness,
+                          Evaluator<T> evaluator) {
+        this.candidates = Collections.unmodifiableList(new ArrayList<T>(candidates));
+        @SuppressWarnings("unchecked")
+        EvaluatedCandidate<T>[] array = (EvaluatedCandidate<T>[]) new EvaluatedCandidate<?>[candidates.size()];
+        this.evaluated = array;
+        this.evaluator = evaluator;
+        for (int i = 0; i < evaluated.length; i++) {
+            evaluated[i] = knownFitness.get(this.candidates.get(i));
+        }
+    }
+
+
+    /**
+     * Gets a member of the population, evaluating it first if it has not been evaluated.
+     * @param index The position of the member.
+     * @return The member and its fitness score.
+     * @throws CancellationException If the member could not be evaluated because
+     * evaluation was stopped.
+     */
+    @Override
+    public EvaluatedCandidate<T> get(int index) {
+        if (evaluated[index] == null) {
+            prefetch(new int[]{index});
+            if (evaluated[index] == null) {
+                throw new CancellationException("Fitness evaluation was stopped.");
+            }
+        }
+        return evaluated[index];
+    }
+
+
+    @Override
+    public int size() {
+        return evaluated.length;
+    }
+
+
+    /**
+     * Evaluates, all at once, those of the specified members that have not already been
+     * evaluated.  Each member is evaluated only once however many times it appears.  If
+     * evaluation is stopped, some of the members may be left unevaluated.
+     * @param indices The positions of the members that are about to be needed.
+     */
+    public void prefetch(int[] indices) {
+        List<Integer> pending = new ArrayList<Integer>();
+        List<T> pendingCandidates = new ArrayList<T>();
+        boolean[] requested = new boolean[evaluated.length];
+        for (int index : indices) {
+            if (evaluated[index] == null && !requested[index]) {
+                requested[index] = true;
+                pending.add(index);
+                pendingCandidates.add(candidates.get(index));
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        // The results are in the same order as the requested members, but any that were
+        // not evaluated are left out.
+        int next = 0;
+        for (EvaluatedCandidate<T> result : evaluator.evaluate(pendingCandidates, candidates)) {
+            while (pendingCandidates.get(next) != result.getCandidate()) {
+                ++next;
+            }
+            evaluated[pending.get(next++)] = result;
+            ++evaluationCount;
+        }
+    }
+
+
+    /**
+     * @return The members of the population that have been evaluated so far (including
+     * those whose fitness was already known), in population order, in a new list.
+     */
+    public List<EvaluatedCandidate<T>> getEvaluatedCandidates() {
+        List<EvaluatedCandidate<T>> list = new ArrayList<EvaluatedCandidate<T>>(evaluated.length);
+        for (EvaluatedCandidate<T> candidate : evaluated) {
+            if (candidate != null) {
+                list.add(candidate);
+            }
+        }
+        return list;
+    }
+
+
+    /**
+     * @return The number of fitness evaluations that this population has performed.
+     */
+    public int getEvaluationCount() {
+        return evaluationCount;
+    }
+
+
+    /**
+     * Works out the fitness of members of a lazy population, usually by handing them to
+     * an evolution engine.
+     * @param <T> The type of evolved entity.
+     */
+    public interface Evaluator<T> {
+        /**
+         * @param candidates The members to evaluate.
+         * @param population The whole population, in the context of which each member is
+         * evaluated.
+         * @return The evaluated members, in the same order as they were given, leaving
+         * out any whose evaluation was stopped.
+         */
+        List<EvaluatedCandidate<T>> evaluate(List<T> candidates, List<T> population);
+    }
+}
@@ -18,7 +18,7 @@ import org.uncommons.maths.random.XORShiftRNG;
  *
  */
 public enum RNG {
-	AESCOUNTER, CELLULARAUTOMATON, CMWC4096, JAVA, MARSENNETWISTER, XORSHIFT;
+	AESCOUNTER, CELLULARAUTOMATON, CMWC4096, JAVA, MARSENNETWISTER, SPLITTABLE, XORSHIFT;
 	
 	public static Random getRNG(RNG rng) {
         switch (rng) {
@@ -36,6 +36,8 @@ public enum RNG {
         		return new JavaRNG();
         	case MARSENNETWISTER:
         		return new MersenneTwisterRNG();
+        	case SPLITTABLE:
+        		return new SplittableRNG();
         	case XORSHIFT:
         		return new XORShiftRNG();
         	default:
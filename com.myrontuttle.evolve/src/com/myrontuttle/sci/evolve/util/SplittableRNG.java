@@ -0,0 +1,313 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.Random;
+
+import org.uncommons.maths.random.DefaultSeedGenerator;
+import org.uncommons.maths.random.RepeatableRNG;
+import org.uncommons.maths.random.SeedException;
+import org.uncommons.maths.random.SeedGenerator;
+
+/**
+ * <p>A fast random number generator (the SplitMix64 algorithm) from which independent
+ * streams of random numbers can be derived.  Each island, worker or task can be given a
+ * stream of its own, so parallel components neither contend for a shared generator nor
+ * depend on the order in which threads happen to draw numbers: for a given seed, the
+ * results are the same from run to run.</p>
+ *
+ * <p>{@link #split()} derives a new stream from the next numbers of this one, so streams
+ * split in a fixed order are reproducible.  {@link #stream(long)} derives a numbered
+ * stream from the seed alone without advancing this generator, so the same number always
+ * gives the same stream no matter when or on which thread it is requested.  A derived
+ * stream's {@link #getSeed() seed} is 16 bytes rather than 8, since it also records the
+ * increment of the stream, and so can be logged to replay that stream on its own.</p>
+ *
+ * <p>Unlike {@link Random}, instances are not thread-safe.  Each thread should use its
+ * own stream.</p>
+ *
+ * @author Myron Tuttle
+ */
+public class SplittableRNG extends Random implements RepeatableRNG {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+    private static final int SEED_SIZE_BYTES = 8;
+    private static final int STREAM_SEED_SIZE_BYTES = 16;
+
+    // Not initialised in declarations, since Random's constructor calls setSeed first.
+    private long initialSeed;
+    private long seed;
+    private long gamma;
+
+    /**
+     * Creates a generator seeded from the default seeding strategy.
+     */
+    public SplittableRNG() {
+        this(DefaultSeedGenerator.getInstance().generateSeed(SEED_SIZE_BYTES));
+    }
+
+
+    /**
+     * Creates a generator seeded from the specified seed generator.
+     * @param seedGenerator The source of the seed.
+     * @throws SeedException If the seed generator fails.
+     */
+    public SplittableRNG(SeedGenerator seedGenerator) throws SeedException {
+        this(seedGenerator.generateSeed(SEED_SIZE_BYTES));
+    }
+
+
+    /**
+     * Creates a generator from an existing seed.
+     * @param seed An 8-byte seed, or a 16-byte seed from a derived stream.
+     */
+    public SplittableRNG(byte[] seed) {
+        this(toLong(seed), toGamma(seed));
+    }
+
+
+    /**
+     * Creates a generator from an existing seed.
+     * @param seed The seed.
+     */
+    public SplittableRNG(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+
+    private SplittableRNG(long seed, long gamma) {
+        super(seed);
+        this.initialSeed = seed;
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+
+    /**
+     * Derives a new generator from the next numbers of this one.  The two generators
+     * produce statistically independent streams.
+     * @return A new generator.
+     */
+    public SplittableRNG split() {
+        return new SplittableRNG(nextLong(), mixGamma(nextSeed()));
+    }
+
+
+    /**
+     * Derives a numbered stream from this generator's seed, without advancing this
+     * generator.  The same index always gives a generator that produces the same numbers,
+     * and different indices give independent streams.
+     * @param index The number of the stream, for example an island index or the position
+     * of a chunk of work.
+     * @return A new generator.
+     */
+    public SplittableRNG stream(long index) {
+        long base = initialSeed + (2 * index + 1) * GOLDEN_GAMMA * gamma;
+        return new SplittableRNG(mix64(base), mixGamma(base + GOLDEN_GAMMA));
+    }
+
+
+    /**
+     * Gives each of a number of parallel components a stream of its own if the source of
+     * randomness can be split, or the shared source otherwise.
+     * @param rng The source of randomness.
+     * @param index The number of the component.
+     * @return {@code rng.stream(index)} if {@code rng} is a {@link SplittableRNG},
+     * otherwise {@code rng} itself.
+     */
+    public static Random streamOf(Random rng, long index) {
+        return rng instanceof SplittableRNG ? ((SplittableRNG) rng).stream(index) : rng;
+    }
+
+
+    /**
+     * Fills an array with uniformly distributed doubles in the range [0, 1).  The values
+     * are the same as those of successive calls to {@link #nextDouble()}.
+     * @param values The array to fill.
+     */
+    public void nextDoubles(double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (mix64(nextSeed()) >>> 11) * DOUBLE_UNIT;
+        }
+    }
+
+
+    /**
+     * Fills an array with uniformly distributed ints.  The values are the same as those
+     * of successive calls to {@link #nextInt()}.
+     * @param values The array to fill.
+     */
+    public void nextInts(int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = mix32(nextSeed());
+        }
+    }
+
+
+    /**
+     * Fills an array with uniformly distributed ints in the range [0, bound).  The values
+     * are the same as those of successive calls to {@link #nextInt(int)}.
+     * @param values The array to fill.
+     * @param bound The exclusive upper bound, which must be positive.
+     */
+    public void nextInts(int[] values, int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive.");
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = boundedInt(bound);
+        }
+    }
+
+
+    @Override
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive.");
+        }
+        return boundedInt(bound);
+    }
+
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+
+    @Override
+    public double nextDouble() {
+        return (mix64(nextSeed()) >>> 11) * DOUBLE_UNIT;
+    }
+
+
+    @Override
+    public boolean nextBoolean() {
+        return mix32(nextSeed()) < 0;
+    }
+
+
+    @Override
+    protected int next(int bits) {
+        return mix32(nextSeed()) >>> (32 - bits);
+    }
+
+
+    /**
+     * Restarts the generator from a new seed.
+     * @param seed The new seed.
+     */
+    @Override
+    public void setSeed(long seed) {
+        this.initialSeed = seed;
+        this.seed = seed;
+        this.gamma = GOLDEN_GAMMA;
+    }
+
+
+    /**
+     * @return The seed from which this generator started: 8 bytes, or 16 bytes for a
+     * stream derived by {@link #split()} or {@link #stream(long)}.  Either way, a
+     * generator created from it produces the same numbers as this one did.
+     */
+    public byte[] getSeed() {
+        byte[] bytes = new byte[gamma == GOLDEN_GAMMA ? SEED_SIZE_BYTES : STREAM_SEED_SIZE_BYTES];
+        writeLong(initialSeed, bytes, 0);
+        if (bytes.length == STREAM_SEED_SIZE_BYTES) {
+            writeLong(gamma, bytes, SEED_SIZE_BYTES);
+        }
+        return bytes;
+    }
+
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+
+    /**
+     * Uses rejection so that every value in the range is equally likely.
+     */
+    private int boundedInt(int bound) {
+        int r = mix32(nextSeed());
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1) {
+            // Rejected, try again.
+        }
+        return r;
+    }
+
+
+    private static long toLong(byte[] seed) {
+        if (seed == null || (seed.length != SEED_SIZE_BYTES && seed.length != STREAM_SEED_SIZE_BYTES)) {
+            throw new IllegalArgumentException("SplittableRNG requires an 8-byte or 16-byte seed.");
+        }
+        return readLong(seed, 0);
+    }
+
+
+    /**
+     * @return The increment recorded in a 16-byte seed (which is always odd), or the
+     * default increment for an 8-byte seed.
+     */
+    private static long toGamma(byte[] seed) {
+        return seed.length == STREAM_SEED_SIZE_BYTES
+               ? readLong(seed, SEED_SIZE_BYTES) | 1L
+               : GOLDEN_GAMMA;
+    }
+
+
+    /**
+     * Reads a big-endian long.  {@code BinaryUtils.convertBytesToLong} is not used since
+     * it sign-extends each byte, so it does not read back every value written.
+     */
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < SEED_SIZE_BYTES; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+
+    private static void writeLong(long value, byte[] bytes, int offset) {
+        for (int i = 0; i < SEED_SIZE_BYTES; i++) {
+            bytes[offset + i] = (byte) (value >>> (8 * (SEED_SIZE_BYTES - 1 - i)));
+        }
+    }
+
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+
+    /**
+     * Makes an odd increment with enough bit transitions to give a good sequence.
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return n < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,33 @@
+package com.myrontuttle.sci.evolve.util;
+
+/**
+ * Holds the {@link EvolutionTracer} that is installed for the whole JVM, if any.
+ * Code that emits trace events reads {@link #current()} once and skips all timing when
+ * it is null, so tracing costs a single volatile read while it is disabled.
+ * @author Myron Tuttle
+ */
+public final class Tracing {
+
+    private static volatile EvolutionTracer tracer = null;
+
+    private Tracing() {
+        // Prevents instantiation.
+    }
+
+
+    /**
+     * Installs a tracer, replacing any tracer that is already installed.
+     * @param newTracer The tracer that will receive events, or null to disable tracing.
+     */
+    public static void install(EvolutionTracer newTracer) {
+        tracer = newTracer;
+    }
+
+
+    /**
+     * @return The installed tracer, or null if tracing is disabled.
+     */
+    public static EvolutionTracer current() {
+        return tracer;
+    }
+}
@@ -0,0 +1,157 @@
+package com.myrontuttle.sci.evolve.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>An executor that starts a new thread for every task, but never runs more than a
+ * fixed number of tasks at once.  A task submitted while the limit is reached waits, on
+ * the submitting thread, for one of the running tasks to finish.</p>
+ *
+ * <p>This is intended for use with a factory that creates virtual threads (see
+ * {@link ConfigurableThreadFactory#virtualThreadFactory(String)}), for tasks that spend
+ * most of their time blocked.  The limit then bounds the load placed on whatever the
+ * tasks are waiting for rather than the number of operating system threads.</p>
+ *
+ * <p>If the submitting thread is interrupted while it waits, the task is not run and the
+ * thread's interrupt status is left set.  For a task submitted through one of the
+ * {@code submit} methods, waiting for its result then throws
+ * {@link InterruptedException}, as it would if the interrupt had arrived during that
+ * wait, and the caller should cancel the task.  A plain {@link Runnable} passed to
+ * {@link #execute(Runnable)} is rejected instead, since nothing could report that it
+ * was not run.</p>
+ * @author Myron Tuttle
+ */
+public class BoundedThreadPerTaskExecutor extends AbstractExecutorService {
+
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+    // Threads that are running tasks, guarded by itself.
+    private final Set<Thread> running = Collections.newSetFromMap(new IdentityHashMap<Thread, Boolean>());
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param threadFactory The factory that creates a thread for each task.
+     * @param maxConcurrency The maximum number of tasks that may run at once.
+     */
+    public BoundedThreadPerTaskExecutor(ThreadFactory threadFactory, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Maximum concurrency must be positive.");
+        }
+        this.threadFactory = threadFactory;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+
+    public void execute(final Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor has been shut down.");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            if (task instanceof Future) {
+                // Left pending, so that the caller's wait for it sees the interrupt.
+                return;
+            }
+            throw new RejectedExecutionException("Interrupted while waiting to run task.", ex);
+        }
+        Thread thread = null;
+        boolean started = false;
+        try {
+            thread = threadFactory.newThread(new Runnable() {
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        finished(Thread.currentThread());
+                    }
+                }
+            });
+            synchronized (running) {
+                if (shutdown) {
+                    throw new RejectedExecutionException("Executor has been shut down.");
+                }
+                running.add(thread);
+            }
+            thread.start();
+            started = true;
+        } finally {
+            if (!started) {
+                synchronized (running) {
+                    running.remove(thread);
+                }
+                permits.release();
+            }
+        }
+    }
+
+
+    private void finished(Thread thread) {
+        synchronized (running) {
+            running.remove(thread);
+            permits.release();
+            running.notifyAll();
+        }
+    }
+
+
+    public void shutdown() {
+        synchronized (running) {
+            shutdown = true;
+            running.notifyAll();
+        }
+    }
+
+
+    /**
+     * Shuts down the executor and interrupts the threads running tasks.  Since tasks are
+     * never queued, the returned list is always empty.
+     */
+    public List<Runnable> shutdownNow() {
+        synchronized (running) {
+            shutdown();
+            for (Thread thread : running) {
+                thread.interrupt();
+            }
+        }
+        return new ArrayList<Runnable>(0);
+    }
+
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+
+    public boolean isTerminated() {
+        synchronized (running) {
+            return shutdown && running.isEmpty();
+        }
+    }
+
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (running) {
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(running, remaining);
+            }
+            return true;
+        }
+    }
+}
@@ -15,6 +15,8 @@
 //=============================================================================
 package com.myrontuttle.sci.evolve.util.concurrent;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.concurrent.ThreadFactory;
 
 import com.myrontuttle.sci.evolve.util.id.IDSource;
@@ -26,6 +28,12 @@ import com.myrontuttle.sci.evolve.util.id.StringPrefixIDSource;
  * {@link java.util.concurrent.ThreadPoolExecutor}.  The factory can be
  * configured to customise the names, priority and daemon status of created
  * threads.
+ *
+ * <p>On Java runtimes that support virtual threads (Java 21 and later), the factory can
+ * instead create virtual threads, which are cheap enough for thousands of tasks that
+ * spend most of their time blocked on I/O to run at once.  Virtual threads are always
+ * daemon threads with normal priority, so those settings do not apply to them.  On older
+ * runtimes, a factory asked for virtual threads creates ordinary daemon threads.</p>
  * @author Daniel Dyer
  */
 public class ConfigurableThreadFactory implements ThreadFactory
@@ -43,10 +51,53 @@ public class ConfigurableThreadFactory implements ThreadFactory
         }
     };
 
+    // Thread.ofVirtual() and Thread.Builder.unstarted(Runnable), looked up reflectively so
+    // that the framework still runs on older Java versions.  Null if not supported.
+    private static final Method OF_VIRTUAL;
+    private static final Method UNSTARTED;
+    static
+    {
+        Method ofVirtual = null;
+        Method unstarted = null;
+        try
+        {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+            // On Java 19 and 20 virtual threads are a preview feature.  The methods exist
+            // but fail unless preview features are enabled, so try creating a thread.
+            unstarted.invoke(ofVirtual.invoke(null), new Runnable()
+            {
+                public void run()
+                {
+                    // Never started.
+                }
+            });
+        }
+        catch (NoSuchMethodException ex)
+        {
+            ofVirtual = null;
+        }
+        catch (ClassNotFoundException ex)
+        {
+            ofVirtual = null;
+        }
+        catch (IllegalAccessException ex)
+        {
+            ofVirtual = null;
+        }
+        catch (InvocationTargetException ex)
+        {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        UNSTARTED = ofVirtual == null ? null : unstarted;
+    }
+
     
     private final IDSource<String> nameGenerator;
     private final int priority;
     private final boolean daemon;
+    private final boolean virtual;
     private final Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
 
     /**
@@ -74,14 +125,74 @@ public class ConfigurableThreadFactory implements ThreadFactory
                                      int priority,
                                      boolean daemon,
                                      Thread.UncaughtExceptionHandler uncaughtExceptionHandler)
+    {
+        this(namePrefix, priority, daemon, false, uncaughtExceptionHandler);
+    }
+
+
+    /**
+     * Creates a factory for virtual threads, or for daemon threads of normal priority if
+     * the Java runtime does not support virtual threads.
+     * @param namePrefix The String prefix used to assign identifiers to created threads.
+     * @param uncaughtExceptionHandler A strategy for dealing with uncaught exceptions.
+     * @return A factory that creates virtual threads where possible.
+     * @see #isVirtualThreadSupported()
+     */
+    public static ConfigurableThreadFactory virtualThreadFactory(String namePrefix,
+                                                                 Thread.UncaughtExceptionHandler uncaughtExceptionHandler)
+    {
+        return new ConfigurableThreadFactory(namePrefix,
+                                             Thread.NORM_PRIORITY,
+                                             true,
+                                             OF_VIRTUAL != null,
+                                             uncaughtExceptionHandler);
+    }
+
+
+    /**
+     * Creates a factory for virtual threads, or for daemon threads of normal priority if
+     * the Java runtime does not support virtual threads.  Uncaught exceptions are logged.
+     * @param namePrefix The String prefix used to assign identifiers to created threads.
+     * @return A factory that creates virtual threads where possible.
+     */
+    public static ConfigurableThreadFactory virtualThreadFactory(String namePrefix)
+    {
+        return virtualThreadFactory(namePrefix, DEFAULT_EXCEPTION_HANDLER);
+    }
+
+
+    private ConfigurableThreadFactory(String namePrefix,
+                                      int priority,
+                                      boolean daemon,
+                                      boolean virtual,
+                                      Thread.UncaughtExceptionHandler uncaughtExceptionHandler)
     {
         this.nameGenerator = new StringPrefixIDSource(namePrefix + '-', new IntSequenceIDSource());
         this.priority = priority;
         this.daemon = daemon;
+        this.virtual = virtual;
         this.uncaughtExceptionHandler = uncaughtExceptionHandler;
     }
 
 
+    /**
+     * @return True if the Java runtime supports virtual threads.
+     */
+    public static boolean isVirtualThreadSupported()
+    {
+        return OF_VIRTUAL != null;
+    }
+
+
+    /**
+     * @return True if this factory creates virtual threads.
+     */
+    public boolean isVirtual()
+    {
+        return virtual;
+    }
+
+
     /**
      * Creates a new thread configured according to this factory's parameters.
      * @param runnable The runnable to be executed by the new thread.
@@ -89,10 +200,35 @@ public class ConfigurableThreadFactory implements ThreadFactory
      */
     public Thread newThread(Runnable runnable)
     {
+        if (virtual)
+        {
+            Thread thread = newVirtualThread(runnable);
+            thread.setName(nameGenerator.nextID());
+            thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
+            return thread;
+        }
         Thread thread = new Thread(runnable, nameGenerator.nextID());
         thread.setPriority(priority);
         thread.setDaemon(daemon);
         thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
         return thread;
     }
+
+
+    private static Thread newVirtualThread(Runnable runnable)
+    {
+        try
+        {
+            // Thread builders are not thread-safe, so use a new one for each thread.
+            return (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), runnable);
+        }
+        catch (IllegalAccessException ex)
+        {
+            throw new IllegalStateException("Unable to create virtual thread.", ex);
+        }
+        catch (InvocationTargetException ex)
+        {
+            throw new IllegalStateException("Unable to create virtual thread.", ex.getCause());
+        }
+    }
 }
@@ -0,0 +1,24 @@
+package com.myrontuttle.sci.evolve.util.concurrent;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Handler for tasks that cannot be queued because a bounded work queue is full.  The
+ * task is run on the thread that submitted it, which throttles the submitter until the
+ * pool catches up.  Unlike {@link ThreadPoolExecutor.CallerRunsPolicy}, a task that is
+ * rejected because the pool has been shut down causes a
+ * {@link RejectedExecutionException} rather than being silently discarded, so a caller
+ * waiting on the task's future is never left blocked.
+ * @author Myron Tuttle
+ */
+public class SubmitterRunsPolicy implements RejectedExecutionHandler {
+
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Thread pool has been shut down.");
+        }
+        task.run();
+    }
+}
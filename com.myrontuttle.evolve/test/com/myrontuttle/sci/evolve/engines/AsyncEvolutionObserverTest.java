@@ -0,0 +1,232 @@
+package com.myrontuttle.sci.evolve.engines;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.api.EvolutionObserver;
+import com.myrontuttle.sci.evolve.api.PopulationStats;
+import com.myrontuttle.sci.evolve.islands.IslandEvolutionObserver;
+
+/**
+ * Unit test for the {@link AsyncEvolutionObserver} class.
+ * @author Myron Tuttle
+ */
+public class AsyncEvolutionObserverTest {
+
+    @Test
+    public void testDelivery() throws InterruptedException {
+        RecordingObserver recorder = new RecordingObserver(null);
+        AsyncEvolutionObserver<Integer> observer
+            = new AsyncEvolutionObserver<Integer>(recorder, 4, AsyncEvolutionObserver.OverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 3; i++) {
+            observer.populationUpdate(stats(0, i));
+        }
+        assert observer.awaitIdle(5, TimeUnit.SECONDS) : "Updates were not delivered.";
+        assert recorder.generations.equals(list(0, 1, 2)) : "Wrong updates: " + recorder.generations;
+        assert observer.getDeliveredCount() == 3 : "Wrong delivered count: " + observer.getDeliveredCount();
+        assert recorder.threads.size() == 1 && !recorder.threads.contains(Thread.currentThread().getName())
+            : "Updates should be delivered on a separate thread.";
+        observer.close();
+    }
+
+
+    /**
+     * A blocked observer must not block the caller, and updates that do not fit in the
+     * buffer are dropped according to the policy.
+     */
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingObserver recorder = new RecordingObserver(release);
+        AsyncEvolutionObserver<Integer> observer
+            = new AsyncEvolutionObserver<Integer>(recorder, 2, AsyncEvolutionObserver.OverflowPolicy.DROP_NEWEST);
+        observer.populationUpdate(stats(0, 0));
+        recorder.awaitBlocked();
+        for (int i = 1; i <= 5; i++) {
+            observer.populationUpdate(stats(0, i));
+        }
+        release.countDown();
+        assert observer.awaitIdle(5, TimeUnit.SECONDS) : "Updates were not delivered.";
+        assert recorder.generations.equals(list(0, 1, 2)) : "Wrong updates: " + recorder.generations;
+        assert observer.getDroppedCount() == 3 : "Wrong dropped count: " + observer.getDroppedCount();
+        observer.close();
+    }
+
+
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingObserver recorder = new RecordingObserver(release);
+        AsyncEvolutionObserver<Integer> observer
+            = new AsyncEvolutionObserver<Integer>(recorder, 2, AsyncEvolutionObserver.OverflowPolicy.DROP_OLDEST);
+        observer.populationUpdate(stats(0, 0));
+        recorder.awaitBlocked();
+        for (int i = 1; i <= 5; i++) {
+            observer.populationUpdate(stats(0, i));
+        }
+        release.countDown();
+        assert observer.awaitIdle(5, TimeUnit.SECONDS) : "Updates were not delivered.";
+        assert recorder.generations.equals(list(0, 4, 5)) : "Wrong updates: " + recorder.generations;
+        assert observer.getDroppedCount() == 3 : "Wrong dropped count: " + observer.getDroppedCount();
+        observer.close();
+    }
+
+
+    /**
+     * Only the latest buffered update of each population (and island) is delivered.
+     */
+    @Test
+    public void testCoalesce() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingObserver recorder = new RecordingObserver(release);
+        AsyncEvolutionObserver<Integer> observer
+            = new AsyncEvolutionObserver<Integer>(recorder, 4, AsyncEvolutionObserver.OverflowPolicy.COALESCE);
+        observer.populationUpdate(stats(0, 0));
+        recorder.awaitBlocked();
+        for (int i = 1; i <= 5; i++) {
+            observer.populationUpdate(stats(0, i));
+            observer.islandPopulationUpdate(1, stats(0, 10 + i));
+            observer.populationUpdate(stats(1, 20 + i));
+        }
+        release.countDown();
+        assert observer.awaitIdle(5, TimeUnit.SECONDS) : "Updates were not delivered.";
+        assert recorder.generations.equals(list(0, 5, 15, 25)) : "Wrong updates: " + recorder.generations;
+        assert observer.getCoalescedCount() == 12 : "Wrong coalesced count: " + observer.getCoalescedCount();
+        assert observer.getDroppedCount() == 0 : "No updates should be dropped.";
+        observer.close();
+    }
+
+
+    @Test
+    public void testClose() throws InterruptedException {
+        RecordingObserver recorder = new RecordingObserver(null);
+        AsyncEvolutionObserver<Integer> observer = new AsyncEvolutionObserver<Integer>(recorder);
+        observer.populationUpdate(stats(0, 0));
+        observer.close();
+        observer.populationUpdate(stats(0, 1));
+        assert observer.awaitIdle(5, TimeUnit.SECONDS) : "Buffered updates should still be delivered.";
+        assert recorder.generations.equals(list(0)) : "Wrong updates: " + recorder.generations;
+        assert observer.getDroppedCount() == 1 : "Updates after closing should be dropped.";
+    }
+
+
+    /**
+     * An observer that is not an {@link IslandEvolutionObserver} must only receive
+     * population updates.
+     */
+    @Test
+    public void testPlainObserverIgnoresIslandUpdates() throws InterruptedException {
+        final List<Integer> generations = Collections.synchronizedList(new ArrayList<Integer>());
+        AsyncEvolutionObserver<Integer> observer = new AsyncEvolutionObserver<Integer>(new EvolutionObserver<Integer>() {
+            public void populationUpdate(PopulationStats<? extends Integer> stats) {
+                generations.add(stats.getGenerationNumber());
+            }
+        });
+        observer.islandPopulationUpdate(0, stats(0, 1));
+        observer.populationUpdate(stats(0, 2));
+        assert observer.awaitIdle(5, TimeUnit.SECONDS) : "Updates were not delivered.";
+        assert generations.equals(list(2)) : "Island updates should not reach a plain observer.";
+        observer.close();
+    }
+
+
+    /**
+     * An Error thrown by the observer ends the delivery thread, but must neither leave
+     * the observer looking busy nor stop later updates from being delivered.
+     */
+    @Test
+    public void testObserverError() throws InterruptedException {
+        final List<Integer> generations = Collections.synchronizedList(new ArrayList<Integer>());
+        EvolutionObserver<Integer> failing = new EvolutionObserver<Integer>() {
+            public void populationUpdate(PopulationStats<? extends Integer> stats) {
+                if (stats.getGenerationNumber() == 0) {
+                    throw new AssertionError("Observer failure.");
+                }
+                generations.add(stats.getGenerationNumber());
+            }
+        };
+        ThreadFactory quietThreads = new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                    public void uncaughtException(Thread thread, Throwable ex) {
+                        // Expected.
+                    }
+                });
+                return thread;
+            }
+        };
+        AsyncEvolutionObserver<Integer> observer
+            = new AsyncEvolutionObserver<Integer>(failing, 4, AsyncEvolutionObserver.OverflowPolicy.DROP_NEWEST, quietThreads);
+        observer.populationUpdate(stats(0, 0));
+        observer.populationUpdate(stats(0, 1));
+        assert observer.awaitIdle(5, TimeUnit.SECONDS) : "Observer should become idle after an Error.";
+        observer.populationUpdate(stats(0, 2));
+        assert observer.awaitIdle(5, TimeUnit.SECONDS) : "Updates after an Error were not delivered.";
+        assert generations.equals(list(1, 2)) : "Wrong updates: " + generations;
+        assert observer.getFailedCount() == 1 : "Wrong failed count: " + observer.getFailedCount();
+        observer.close();
+    }
+
+
+    private static PopulationStats<Integer> stats(long populationId, int generation) {
+        return new PopulationStats<Integer>(populationId, 0, 0, 0, 0, true, 10, 0, generation, 0);
+    }
+
+
+    private static List<Integer> list(Integer... values) {
+        List<Integer> list = new ArrayList<Integer>();
+        Collections.addAll(list, values);
+        return list;
+    }
+
+
+    /**
+     * Records the generation numbers it receives, optionally blocking on the first
+     * update until released.
+     */
+    private static final class RecordingObserver implements IslandEvolutionObserver<Integer> {
+        private final List<Integer> generations = Collections.synchronizedList(new ArrayList<Integer>());
+        private final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        RecordingObserver(CountDownLatch release) {
+            this.release = release;
+        }
+
+        public void populationUpdate(PopulationStats<? extends Integer> stats) {
+            record(stats);
+        }
+
+        public void islandPopulationUpdate(int islandIndex, PopulationStats<? extends Integer> data) {
+            record(data);
+        }
+
+        private void record(PopulationStats<? extends Integer> stats) {
+            generations.add(stats.getGenerationNumber());
+            if (!threads.contains(Thread.currentThread().getName())) {
+                threads.add(Thread.currentThread().getName());
+            }
+            blocked.countDown();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            blocked.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.myrontuttle.sci.evolve.engines;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.FrameworkTestUtils;
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.eval.IntegerEvaluator;
+import com.myrontuttle.sci.evolve.factories.StubIntegerFactory;
+import com.myrontuttle.sci.evolve.operators.IntegerAdjuster;
+import com.myrontuttle.sci.evolve.selection.RouletteWheelSelection;
+import com.myrontuttle.sci.evolve.termination.GenerationCount;
+import com.myrontuttle.sci.evolve.util.GenomePool;
+
+/**
+ * Unit test for the {@link AsynchronousSteadyStateEvolutionEngine} class.
+ * @author Myron Tuttle
+ */
+public class AsynchronousSteadyStateEvolutionEngineTest {
+
+    /**
+     * Each iteration replaces non-elite candidates as evaluations complete, but must never
+     * change the population size or lose the elite.  Offspring are always worse than their
+     * parents here, so the fittest seed candidate must stay at the head of the population.
+     */
+    @Test
+    public void testElitismAndPopulationSize() {
+        AsynchronousSteadyStateEvolutionEngine<Integer> engine
+            = new AsynchronousSteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                  new IntegerAdjuster(-1),
+                                                                  new IntegerEvaluator(),
+                                                                  new RouletteWheelSelection(),
+                                                                  1,
+                                                                  true,
+                                                                  4,
+                                                                  FrameworkTestUtils.getRNG());
+        @SuppressWarnings("unchecked")
+        List<EvaluatedCandidate<Integer>> population = new ArrayList<EvaluatedCandidate<Integer>>(
+            Arrays.asList(new EvaluatedCandidate<Integer>(1, 1),
+                          new EvaluatedCandidate<Integer>(2, 2),
+                          new EvaluatedCandidate<Integer>(3, 3),
+                          new EvaluatedCandidate<Integer>(20, 20),
+                          new EvaluatedCandidate<Integer>(30, 30)));
+        for (int i = 0; i < 10; i++) {
+            population = engine.nextEvolutionStep(0, population, 2, FrameworkTestUtils.getRNG());
+            assert population.size() == 5 : "Population size should be unchanged.";
+            assert population.get(0).getCandidate() == 30 : "Fittest elite candidate lost.";
+        }
+    }
+
+
+    /**
+     * A full evolution run should terminate normally with a population of the requested size.
+     */
+    @Test
+    public void testEvolve() {
+        AsynchronousSteadyStateEvolutionEngine<Integer> engine
+            = new AsynchronousSteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                  new IntegerAdjuster(1),
+                                                                  new IntegerEvaluator(),
+                                                                  new RouletteWheelSelection(),
+                                                                  1,
+                                                                  false,
+                                                                  8,
+                                                                  FrameworkTestUtils.getRNG());
+        List<Integer> seeds = Arrays.asList(5, 7);
+        List<EvaluatedCandidate<Integer>> result = engine.evolvePopulation(0, 10, 1, seeds,
+                                                                           new GenerationCount(20));
+        assert result.size() == 10 : "Wrong population size: " + result.size();
+        assert result.get(0).getFitness() >= 7 : "Best candidate lost: " + result.get(0).getFitness();
+    }
+
+
+    /**
+     * Populations evolved at the same time by one engine must each keep their own
+     * evaluations in flight, and the engine must not keep their sessions in progress
+     * once they have finished.
+     */
+    @Test(timeOut = 30000)
+    public void testConcurrentEvolve() throws Exception {
+        final AsynchronousSteadyStateEvolutionEngine<Integer> engine
+            = new AsynchronousSteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                  new IntegerAdjuster(1),
+                                                                  new IntegerEvaluator(),
+                                                                  new RouletteWheelSelection(),
+                                                                  1,
+                                                                  false,
+                                                                  4,
+                                                                  FrameworkTestUtils.getRNG());
+        engine.setThreadPool(4, 16);
+        ExecutorService runs = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<List<EvaluatedCandidate<Integer>>>> results
+                = new ArrayList<Future<List<EvaluatedCandidate<Integer>>>>();
+            for (int i = 0; i < 3; i++) {
+                final long populationId = i;
+                results.add(runs.submit(new Callable<List<EvaluatedCandidate<Integer>>>() {
+                    public List<EvaluatedCandidate<Integer>> call() {
+                        return engine.evolvePopulation(populationId, 10, 1, Arrays.asList(5, 7),
+                                                       new GenerationCount(200));
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                List<EvaluatedCandidate<Integer>> result = results.get(i).get();
+                assert result.size() == 10 : "Wrong population size: " + result.size();
+                assert result.get(0).getFitness() >= 7 : "Best candidate lost: " + result.get(0).getFitness();
+                assert engine.getSatisfiedTerminationConditions(i).size() == 1 : "Wrong outcome recorded.";
+                assert engine.getSession(i).getSatisfiedTerminationConditions() != null
+                    : "Only the finished session should be kept.";
+            }
+        } finally {
+            runs.shutdown();
+            runs.awaitTermination(10, TimeUnit.SECONDS);
+            engine.close();
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidEvaluationsInFlight() {
+        new AsynchronousSteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                            new IntegerAdjuster(1),
+                                                            new IntegerEvaluator(),
+                                                            new RouletteWheelSelection(),
+                                                            1,
+                                                            true,
+                                                            0,
+                                                            FrameworkTestUtils.getRNG());
+    }
+
+
+    /**
+     * Replaced candidates may still be shared with offspring being evaluated, so the
+     * engine must refuse a genome pool in the same way as other unsupported pool set-ups.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testGenomePoolRejected() {
+        AsynchronousSteadyStateEvolutionEngine<Integer> engine
+            = new AsynchronousSteadyStateEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                                  new IntegerAdjuster(1),
+                                                                  new IntegerEvaluator(),
+                                                                  new RouletteWheelSelection(),
+                                                                  1,
+                                                                  true,
+                                                                  4,
+                                                                  FrameworkTestUtils.getRNG());
+        engine.setGenomePool(new GenomePool<Integer>(4));
+    }
+}
@@ -15,23 +15,61 @@
 //=============================================================================
 package com.myrontuttle.sci.evolve.engines;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
+import org.uncommons.maths.random.Probability;
+import com.myrontuttle.sci.evolve.api.BatchFitnessEvaluator;
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
 import com.myrontuttle.sci.evolve.api.EvolutionEngine;
 import com.myrontuttle.sci.evolve.api.EvolutionObserver;
 import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.api.ExpressedFitnessEvaluator;
+import com.myrontuttle.sci.evolve.api.ExpressionStrategy;
+import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
 import com.myrontuttle.sci.evolve.FrameworkTestUtils;
 import com.myrontuttle.sci.evolve.api.TerminationCondition;
 import com.myrontuttle.sci.evolve.api.PopulationStats;
 import com.myrontuttle.sci.evolve.engines.GenerationalEvolutionEngine;
+import com.myrontuttle.sci.evolve.eval.CachingFitnessEvaluator;
+import com.myrontuttle.sci.evolve.eval.FitnessEvaluationWorker;
+import com.myrontuttle.sci.evolve.eval.GenomeEquivalence;
+import com.myrontuttle.sci.evolve.eval.IntArraySumEvaluator;
 import com.myrontuttle.sci.evolve.eval.IntegerEvaluator;
+import com.myrontuttle.sci.evolve.express.CachingExpressionStrategy;
+import com.myrontuttle.sci.evolve.express.CountingExpressionStrategy;
+import com.myrontuttle.sci.evolve.factories.IntArrayFactory;
 import com.myrontuttle.sci.evolve.factories.StubIntegerFactory;
+import com.myrontuttle.sci.evolve.operators.EvolutionPipeline;
+import com.myrontuttle.sci.evolve.operators.IntArrayCrossover;
+import com.myrontuttle.sci.evolve.operators.IntArrayMutation;
+import com.myrontuttle.sci.evolve.operators.IntegerAdjuster;
+import com.myrontuttle.sci.evolve.operators.PartitionableOperator;
 import com.myrontuttle.sci.evolve.selection.RouletteWheelSelection;
+import com.myrontuttle.sci.evolve.selection.TournamentSelection;
+import com.myrontuttle.sci.evolve.selection.TruncationSelection;
 import com.myrontuttle.sci.evolve.termination.ElapsedTime;
 import com.myrontuttle.sci.evolve.termination.GenerationCount;
+import com.myrontuttle.sci.evolve.util.ArrayPopulation;
+import com.myrontuttle.sci.evolve.util.GenomePool;
+import com.myrontuttle.sci.evolve.util.LatencyHistogram;
+import com.myrontuttle.sci.evolve.util.concurrent.ConfigurableThreadFactory;
 
 /**
  * Unit test for the {@link GenerationalEvolutionEngine} class.
@@ -90,6 +128,246 @@ public class GenerationalEvolutionEngineTest
     }
 
 
+    /**
+     * Pipelined generations must preserve the elite and keep the population size
+     * unchanged, even though offspring are evaluated in chunks as they are bred.
+     */
+    @Test
+    public void testPipelinedElitism()
+    {
+        GenerationalEvolutionEngine<Integer> pipelinedEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerZeroMaker(),
+                                                       new IntegerEvaluator(),
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        pipelinedEngine.setPipelined(true);
+        pipelinedEngine.setPipelineChunkSize(2);
+        List<Integer> elite = new ArrayList<Integer>(3);
+        elite.add(7); // This candidate should be discarded by elitism.
+        elite.add(11);
+        elite.add(13);
+        List<EvaluatedCandidate<Integer>> population = pipelinedEngine.evolvePopulation(0, 10,
+                                                                                        2,
+                                                                                        elite,
+                                                                                        new GenerationCount(3));
+        assert population.size() == 10 : "Wrong population size: " + population.size();
+        assert population.get(0).getCandidate() == 13 : "Fittest elite candidate not preserved.";
+        assert population.get(1).getCandidate() == 11 : "Second elite candidate not preserved.";
+        assert population.get(2).getCandidate() == 0 : "Non-elite candidate should have been discarded.";
+    }
+
+
+    /**
+     * With fitness carry-over enabled, candidates that survive unchanged from the previous
+     * generation must not be evaluated again.  The operator used here passes every parent
+     * through unchanged so only the initial population should ever be evaluated.
+     */
+    @Test
+    public void testFitnessCarryOver()
+    {
+        for (boolean pipelined : new boolean[]{false, true})
+        {
+            CountingEvaluator evaluator = new CountingEvaluator();
+            GenerationalEvolutionEngine<Integer> carryOverEngine
+                = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                           new IntegerPassThrough(),
+                                                           evaluator,
+                                                           new RouletteWheelSelection(),
+                                                           FrameworkTestUtils.getRNG());
+            carryOverEngine.setFitnessCarryOver(true);
+            carryOverEngine.setPipelined(pipelined);
+            List<Integer> seeds = new ArrayList<Integer>(2);
+            seeds.add(7);
+            seeds.add(11);
+            List<EvaluatedCandidate<Integer>> population = carryOverEngine.evolvePopulation(0, 10,
+                                                                                            2,
+                                                                                            seeds,
+                                                                                            new GenerationCount(4));
+            assert population.size() == 10 : "Wrong population size: " + population.size();
+            assert population.get(0).getCandidate() == 11 : "Fittest candidate not preserved.";
+            assert evaluator.getCount() == 10 : "Unchanged candidates re-evaluated: " + evaluator.getCount();
+        }
+    }
+
+
+    /**
+     * With lazy evaluation and tournament selection, offspring that are not drawn for a
+     * tournament must not be evaluated, and the population that is reported must be the
+     * evaluated candidates, including the elite.
+     */
+    @Test
+    public void testLazyEvaluation()
+    {
+        for (boolean singleThreaded : new boolean[]{true, false})
+        {
+            CountingEvaluator evaluator = new CountingEvaluator();
+            GenerationalEvolutionEngine<Integer> lazyEngine
+                = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                           new IntegerAdjuster(1),
+                                                           evaluator,
+                                                           new TournamentSelection(new Probability(0.9)),
+                                                           FrameworkTestUtils.getRNG());
+            lazyEngine.setLazyEvaluation(true);
+            lazyEngine.setSingleThreaded(singleThreaded);
+            final List<Integer> sizes = Collections.synchronizedList(new ArrayList<Integer>());
+            lazyEngine.addEvolutionObserver(new EvolutionObserver<Integer>()
+            {
+                public void populationUpdate(PopulationStats<? extends Integer> data)
+                {
+                    sizes.add(data.getPopulationSize());
+                }
+            });
+            List<EvaluatedCandidate<Integer>> population = lazyEngine.evolvePopulation(0, 200,
+                                                                                       2,
+                                                                                       new GenerationCount(10));
+            // Every generation after the first has 198 offspring, of which about 27 are
+            // never drawn.
+            assert evaluator.getCount() < 200 + 9 * 185 : "Too many evaluations: " + evaluator.getCount();
+            assert evaluator.getCount() > 200 + 9 * 150 : "Too few evaluations: " + evaluator.getCount();
+            assert sizes.size() == 10 : "Wrong number of generations: " + sizes.size();
+            assert sizes.get(0) == 200 : "Initial population should be evaluated in full.";
+            for (int size : sizes.subList(1, sizes.size()))
+            {
+                assert size > 2 && size < 200 : "Wrong population size: " + size;
+            }
+            assert population.size() == sizes.get(9) : "Wrong final population size: " + population.size();
+            for (int i = 1; i < population.size(); i++)
+            {
+                assert population.get(i - 1).getFitness() >= population.get(i).getFitness() : "Not sorted.";
+            }
+        }
+    }
+
+
+    /**
+     * Lazy evaluation must be refused for selection strategies that look at every
+     * candidate or rely on the population being sorted.
+     */
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testLazyEvaluationWithoutTournament()
+    {
+        GenerationalEvolutionEngine<Integer> lazyEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       new IntegerEvaluator(),
+                                                       new TruncationSelection(0.5d),
+                                                       FrameworkTestUtils.getRNG());
+        lazyEngine.setLazyEvaluation(true); // Should throw exception because selection needs a ranked population.
+    }
+
+
+    /**
+     * Offspring that are evaluated lazily must be subject to the evaluation timeout.
+     */
+    @Test
+    public void testLazyEvaluationTimeout()
+    {
+        final AtomicInteger count = new AtomicInteger(0);
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                // The first evaluation after the initial population.
+                if (count.incrementAndGet() == 21)
+                {
+                    try
+                    {
+                        Thread.sleep(10000);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return candidate + 1;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        GenerationalEvolutionEngine<Integer> lazyEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       evaluator,
+                                                       new TournamentSelection(new Probability(0.9)),
+                                                       FrameworkTestUtils.getRNG());
+        lazyEngine.setLazyEvaluation(true);
+        lazyEngine.setEvaluationTimeout(200, TimeUnit.MILLISECONDS, 0);
+        long start = System.currentTimeMillis();
+        List<EvaluatedCandidate<Integer>> population = lazyEngine.evolvePopulation(0, 20,
+                                                                                   0,
+                                                                                   new GenerationCount(2));
+        assert System.currentTimeMillis() - start < 5000 : "Slow evaluation was not timed out.";
+        assert population.get(population.size() - 1).getFitness() == 0 : "Timed-out candidate not penalised.";
+        lazyEngine.close();
+    }
+
+
+    /**
+     * With partial ranking only the elite and the candidates needed by truncation
+     * selection are ranked each generation, but the final population must still be
+     * completely sorted and the elite preserved.
+     */
+    @Test
+    public void testPartialRanking()
+    {
+        GenerationalEvolutionEngine<Integer> rankingEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       new IntegerEvaluator(),
+                                                       new TruncationSelection(0.25d),
+                                                       FrameworkTestUtils.getRNG());
+        rankingEngine.setPartialRanking(true);
+        List<EvaluatedCandidate<Integer>> population = rankingEngine.evolvePopulation(0, 40,
+                                                                                      3,
+                                                                                      new GenerationCount(5));
+        assert population.size() == 40 : "Wrong population size: " + population.size();
+        for (int i = 1; i < population.size(); i++)
+        {
+            assert population.get(i - 1).getFitness() >= population.get(i).getFitness()
+                : "Final population is not sorted.";
+        }
+        // Every generation adds one to each of the selected candidates.
+        assert population.get(0).getFitness() == 4 : "Wrong best fitness: " + population.get(0).getFitness();
+    }
+
+
+    /**
+     * Evolving with array populations must preserve the elite, both when evaluating on
+     * the request thread and on the worker threads.
+     */
+    @Test
+    public void testArrayPopulation()
+    {
+        for (boolean singleThreaded : new boolean[]{true, false})
+        {
+            GenerationalEvolutionEngine<Integer> arrayEngine
+                = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                           new IntegerZeroMaker(),
+                                                           new IntegerEvaluator(),
+                                                           new RouletteWheelSelection(),
+                                                           FrameworkTestUtils.getRNG());
+            arrayEngine.setArrayPopulation(true);
+            arrayEngine.setSingleThreaded(singleThreaded);
+            List<Integer> elite = new ArrayList<Integer>(3);
+            elite.add(7);
+            elite.add(11);
+            elite.add(13);
+            List<EvaluatedCandidate<Integer>> population = arrayEngine.evolvePopulation(0, 10,
+                                                                                        2,
+                                                                                        elite,
+                                                                                        new GenerationCount(3));
+            assert population instanceof ArrayPopulation : "Population should be an array population.";
+            assert population.size() == 10 : "Wrong population size: " + population.size();
+            assert population.get(0).getCandidate() == 13 : "Fittest elite candidate not preserved.";
+            assert population.get(1).getCandidate() == 11 : "Second elite candidate not preserved.";
+        }
+    }
+
+
     /**
      * The number of candidates preserved by elitism must be less than the total
      * population size.
@@ -151,6 +429,930 @@ public class GenerationalEvolutionEngineTest
     }
 
 
+    /**
+     * An engine with its own thread pool must evaluate candidates only on that pool's
+     * threads (or on the request thread when the bounded queue is full), and must shut
+     * the pool down when it is closed.
+     */
+    @Test
+    public void testOwnThreadPool()
+    {
+        ThreadRecordingEvaluator evaluator = new ThreadRecordingEvaluator();
+        GenerationalEvolutionEngine<Integer> poolEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerZeroMaker(),
+                                                       evaluator,
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        poolEngine.setThreadPool(1, 2);
+        poolEngine.evolve(0, 20, 0, new GenerationCount(3));
+        for (String name : evaluator.getThreadNames())
+        {
+            assert name.startsWith("FitnessEvaluationWorker") || name.equals(Thread.currentThread().getName())
+                : "Evaluation performed on unexpected thread " + name;
+        }
+        FitnessEvaluationWorker worker = poolEngine.getFitnessEvaluationWorker();
+        poolEngine.close();
+        assert worker.isShutdown() : "Engine's worker was not shut down.";
+        assert worker.getThreadCount() == 0 : "Close should wait for the pool's threads to finish.";
+        // A closed engine creates a new pool if it is used again.
+        poolEngine.evolve(0, 20, 0, new GenerationCount(2));
+        assert poolEngine.getFitnessEvaluationWorker() != worker : "Closed worker was re-used.";
+        poolEngine.close();
+    }
+
+
+    /**
+     * The thread pool must not be replaced or closed while a population is evolving.
+     */
+    @Test
+    public void testThreadPoolNotChangedDuringRun()
+    {
+        final GenerationalEvolutionEngine<Integer> poolEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerZeroMaker(),
+                                                       new IntegerEvaluator(),
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        poolEngine.setThreadPool(1, 2);
+        final AtomicInteger refusals = new AtomicInteger();
+        poolEngine.addEvolutionObserver(new EvolutionObserver<Integer>()
+        {
+            public void populationUpdate(PopulationStats<? extends Integer> data)
+            {
+                try
+                {
+                    poolEngine.setThreadPool(2, 2);
+                }
+                catch (IllegalStateException ex)
+                {
+                    refusals.incrementAndGet();
+                }
+                try
+                {
+                    poolEngine.close();
+                }
+                catch (IllegalStateException ex)
+                {
+                    refusals.incrementAndGet();
+                }
+            }
+        });
+        poolEngine.evolve(0, 20, 0, new GenerationCount(2));
+        assert refusals.get() == 4 : "Pool changes during the run should be refused: " + refusals.get();
+        // Once the run is over the pool can be changed.
+        poolEngine.setThreadPool(2, 2);
+        poolEngine.close();
+    }
+
+
+    /**
+     * An engine given an executor must use it for evaluations and must leave it running
+     * when the engine is closed.
+     */
+    @Test
+    public void testExecutorService()
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(2, new ConfigurableThreadFactory("TestPool",
+                                                                                                Thread.NORM_PRIORITY,
+                                                                                                true));
+        try
+        {
+            ThreadRecordingEvaluator evaluator = new ThreadRecordingEvaluator();
+            GenerationalEvolutionEngine<Integer> executorEngine
+                = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                           new IntegerZeroMaker(),
+                                                           evaluator,
+                                                           new RouletteWheelSelection(),
+                                                           FrameworkTestUtils.getRNG());
+            executorEngine.setExecutorService(executor);
+            executorEngine.evolve(0, 20, 0, new GenerationCount(3));
+            assert !evaluator.getThreadNames().isEmpty() : "No evaluations recorded.";
+            for (String name : evaluator.getThreadNames())
+            {
+                assert name.startsWith("TestPool") : "Evaluation performed on unexpected thread " + name;
+            }
+            executorEngine.close();
+            assert !executor.isShutdown() : "Application's executor should not be shut down.";
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * A batch fitness evaluator must be given batches no larger than the configured size
+     * and must score every candidate exactly once per generation.
+     */
+    @Test
+    public void testBatchEvaluation()
+    {
+        for (boolean singleThreaded : new boolean[]{true, false})
+        {
+            BatchRecordingEvaluator evaluator = new BatchRecordingEvaluator();
+            GenerationalEvolutionEngine<Integer> batchEngine
+                = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                           new IntegerAdjuster(1),
+                                                           evaluator,
+                                                           new RouletteWheelSelection(),
+                                                           FrameworkTestUtils.getRNG());
+            batchEngine.setSingleThreaded(singleThreaded);
+            batchEngine.setEvaluationBatchSize(7);
+            List<EvaluatedCandidate<Integer>> population = batchEngine.evolvePopulation(0, 30, 0,
+                                                                                        new GenerationCount(3));
+            assert evaluator.getCandidateCount() == 90 : "Wrong number of evaluations: " + evaluator.getCandidateCount();
+            assert evaluator.getLargestBatch() == 7 : "Wrong largest batch: " + evaluator.getLargestBatch();
+            for (EvaluatedCandidate<Integer> candidate : population)
+            {
+                assert candidate.getFitness() == candidate.getCandidate() : "Wrong fitness score.";
+            }
+        }
+    }
+
+
+    /**
+     * An ordinary fitness evaluator must still score every candidate when batched.
+     */
+    @Test
+    public void testBatchedOrdinaryEvaluator()
+    {
+        CountingEvaluator evaluator = new CountingEvaluator();
+        GenerationalEvolutionEngine<Integer> batchEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       evaluator,
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        batchEngine.setEvaluationBatchSize(4);
+        batchEngine.setArrayPopulation(true);
+        List<EvaluatedCandidate<Integer>> population = batchEngine.evolvePopulation(0, 30, 2,
+                                                                                    new GenerationCount(3));
+        assert evaluator.getCount() == 90 : "Wrong number of evaluations: " + evaluator.getCount();
+        assert population.size() == 30 : "Wrong population size: " + population.size();
+    }
+
+
+    /**
+     * Every generation, evaluation and pipeline stage must be timed, and the metrics
+     * must be readable through JMX.
+     */
+    @Test
+    public void testMetrics() throws JMException
+    {
+        List<EvolutionaryOperator<Integer>> operators = new ArrayList<EvolutionaryOperator<Integer>>(2);
+        operators.add(new IntegerAdjuster(1));
+        operators.add(new IntegerZeroMaker());
+        GenerationalEvolutionEngine<Integer> metricsEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new EvolutionPipeline<Integer>(operators),
+                                                       new IntegerEvaluator(),
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        metricsEngine.evolvePopulation(0, 20, 2, new GenerationCount(5));
+        MetricsSnapshot snapshot = metricsEngine.getMetrics().snapshot();
+        // The initial population is not counted as a generation.
+        assert snapshot.getGenerationCount() == 4 : "Wrong generation count: " + snapshot.getGenerationCount();
+        assert snapshot.getPhase(EngineMetrics.Phase.SELECTION).getCount() == 4 : "Selection not timed.";
+        assert snapshot.getPhase(EngineMetrics.Phase.EVALUATION).getCount() == 5 : "Evaluation not timed.";
+        assert snapshot.getPhase(EngineMetrics.Phase.NOTIFICATION).getCount() == 5 : "Notification not timed.";
+        assert snapshot.getEvaluationLatency().getCount() == 100
+            : "Wrong evaluation count: " + snapshot.getEvaluationLatency().getCount();
+        assert snapshot.getStageLatencies().size() == 2 : "Pipeline stages not timed.";
+        for (LatencyHistogram stage : snapshot.getStageLatencies().values())
+        {
+            assert stage.getCount() == 4 : "Wrong stage count: " + stage.getCount();
+        }
+
+        ObjectName name = metricsEngine.getMetrics().registerMBean("testMetrics");
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assert ((Long) server.getAttribute(name, "GenerationCount")) == 4 : "Wrong generation count from JMX.";
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assert metricsEngine.getMetrics().getEvaluationCount() == 0 : "Metrics not reset.";
+        }
+        finally
+        {
+            metricsEngine.getMetrics().unregisterMBean();
+        }
+    }
+
+
+    /**
+     * Discarded genomes must be recycled into new candidates without disturbing the
+     * candidates that are still in the population.
+     */
+    @Test
+    public void testGenomeRecycling()
+    {
+        GenomePool<int[]> pool = new GenomePool<int[]>(50);
+        IntArrayFactory factory = new IntArrayFactory(20, 10);
+        factory.setGenomePool(pool);
+        IntArrayCrossover crossover = new IntArrayCrossover();
+        crossover.setGenomePool(pool);
+        IntArrayMutation mutation = new IntArrayMutation(factory, 0.1);
+        mutation.setGenomePool(pool);
+        List<EvolutionaryOperator<int[]>> operators = new ArrayList<EvolutionaryOperator<int[]>>(2);
+        operators.add(crossover);
+        operators.add(mutation);
+        GenerationalEvolutionEngine<int[]> recyclingEngine
+            = new GenerationalEvolutionEngine<int[]>(factory,
+                                                     new EvolutionPipeline<int[]>(operators),
+                                                     new IntArraySumEvaluator(),
+                                                     new TruncationSelection(0.5),
+                                                     FrameworkTestUtils.getRNG());
+        recyclingEngine.setGenomePool(pool);
+        List<EvaluatedCandidate<int[]>> population = recyclingEngine.evolvePopulation(0, 30, 3,
+                                                                                      new GenerationCount(10));
+        assert pool.getRecycledCount() > 0 : "No genomes recycled.";
+        assert pool.getReusedCount() > 0 : "No genomes reused.";
+        for (EvaluatedCandidate<int[]> candidate : population)
+        {
+            assert candidate.getFitness() == IntArraySumEvaluator.sum(candidate.getCandidate())
+                : "Candidate was overwritten while still in the population.";
+        }
+    }
+
+
+    /**
+     * An identity-keyed fitness cache would return the score of a recycled genome's
+     * previous contents, so it must not be combined with a genome pool.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testGenomeRecyclingWithIdentityCache()
+    {
+        GenerationalEvolutionEngine<int[]> cachingEngine
+            = new GenerationalEvolutionEngine<int[]>(new IntArrayFactory(20, 10),
+                                                     new IntArrayMutation(new IntArrayFactory(20, 10), 0.1),
+                                                     new CachingFitnessEvaluator<int[]>(new IntArraySumEvaluator()),
+                                                     new TruncationSelection(0.5),
+                                                     FrameworkTestUtils.getRNG());
+        cachingEngine.setGenomePool(new GenomePool<int[]>(50));
+    }
+
+
+    /**
+     * Cached expressions keep their genomes, so an expression cache must not be combined
+     * with a genome pool either.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testGenomeRecyclingWithExpressionCache()
+    {
+        CachingExpressionStrategy<Integer> expressionStrategy
+            = new CachingExpressionStrategy<Integer>(new CountingExpressionStrategy<Integer>(),
+                                                     GenomeEquivalence.content(),
+                                                     100);
+        GenerationalEvolutionEngine<Integer> cachingEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       new IntegerExpressionEvaluator(),
+                                                       expressionStrategy,
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        cachingEngine.setGenomePool(new GenomePool<Integer>(10));
+    }
+
+
+    /**
+     * With a genome pool, candidates that leave the population must be destroyed by the
+     * expression strategy.  Without one, the strategy must not be asked to destroy anything.
+     */
+    @Test
+    public void testDestroyDiscarded()
+    {
+        for (boolean reclaim : new boolean[]{true, false})
+        {
+            final AtomicInteger destroyed = new AtomicInteger(0);
+            ExpressionStrategy<Integer> expressionStrategy = new ExpressionStrategy<Integer>()
+            {
+                public ExpressedCandidate<Integer> express(Integer candidate, long populationId)
+                {
+                    return new IntegerExpression(candidate);
+                }
+
+                public int getGenomeLength(long populationId)
+                {
+                    return 1;
+                }
+
+                public void beforeExpression(long populationId)
+                {
+                    // Do nothing.
+                }
+
+                public void candidatesExpressed(List<ExpressedCandidate<Integer>> expressedCandidates,
+                                                long populationId)
+                {
+                    // Do nothing.
+                }
+
+                public void destroy(Integer candidate, long populationId)
+                {
+                    destroyed.incrementAndGet();
+                }
+            };
+            GenerationalEvolutionEngine<Integer> expressionEngine
+                = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                           new IntegerAdjuster(1),
+                                                           new IntegerExpressionEvaluator(),
+                                                           expressionStrategy,
+                                                           new RouletteWheelSelection(),
+                                                           FrameworkTestUtils.getRNG());
+            expressionEngine.setSingleThreaded(true);
+            if (reclaim)
+            {
+                expressionEngine.setGenomePool(new GenomePool<Integer>(10));
+            }
+            expressionEngine.evolvePopulation(0, 10, 0, new GenerationCount(3));
+            assert reclaim == destroyed.get() > 0 : "Wrong number of candidates destroyed: " + destroyed.get();
+        }
+    }
+
+
+    /**
+     * An engine using virtual threads must evaluate candidates on its own threads and
+     * release them when it is closed.
+     */
+    @Test
+    public void testVirtualThreads()
+    {
+        ThreadRecordingEvaluator evaluator = new ThreadRecordingEvaluator();
+        GenerationalEvolutionEngine<Integer> virtualEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerZeroMaker(),
+                                                       evaluator,
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        virtualEngine.setVirtualThreads(4);
+        virtualEngine.evolve(0, 20, 0, new GenerationCount(3));
+        assert !evaluator.getThreadNames().isEmpty() : "No evaluations recorded.";
+        for (String name : evaluator.getThreadNames())
+        {
+            assert name.startsWith("FitnessEvaluationWorker") : "Evaluation performed on unexpected thread " + name;
+        }
+        FitnessEvaluationWorker worker = virtualEngine.getFitnessEvaluationWorker();
+        virtualEngine.close();
+        assert worker.isShutdown() : "Engine's worker was not shut down.";
+    }
+
+
+    /**
+     * With fused expression, candidates must be evaluated while others are still being
+     * expressed, and the expression strategy must be told about each expressed population
+     * exactly once.
+     */
+    @Test
+    public void testFusedExpression()
+    {
+        final CountDownLatch firstEvaluation = new CountDownLatch(1);
+        final AtomicBoolean overlapped = new AtomicBoolean(false);
+        final AtomicInteger evaluations = new AtomicInteger(0);
+        final AtomicBoolean first = new AtomicBoolean(true);
+        final List<Integer> expressedSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        ExpressionStrategy<Integer> expressionStrategy = new ExpressionStrategy<Integer>()
+        {
+            public ExpressedCandidate<Integer> express(Integer candidate, long populationId)
+            {
+                if (first.getAndSet(false))
+                {
+                    // Hold up the first expression until some other candidate has been evaluated.
+                    try
+                    {
+                        overlapped.set(firstEvaluation.await(5, TimeUnit.SECONDS));
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return new IntegerExpression(candidate);
+            }
+
+            public int getGenomeLength(long populationId)
+            {
+                return 1;
+            }
+
+            public void beforeExpression(long populationId)
+            {
+                // Do nothing.
+            }
+
+            public void candidatesExpressed(List<ExpressedCandidate<Integer>> expressedCandidates, long populationId)
+            {
+                expressedSizes.add(expressedCandidates.size());
+            }
+
+            public void destroy(Integer candidate, long populationId)
+            {
+                // Do nothing.
+            }
+        };
+        ExpressedFitnessEvaluator<Integer> evaluator = new ExpressedFitnessEvaluator<Integer>()
+        {
+            public double getFitness(ExpressedCandidate<Integer> candidate, List<ExpressedCandidate<Integer>> population)
+            {
+                evaluations.incrementAndGet();
+                firstEvaluation.countDown();
+                return candidate.getGenome();
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        GenerationalEvolutionEngine<Integer> fusedEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       evaluator,
+                                                       expressionStrategy,
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        fusedEngine.setThreadPool(2, 100);
+        fusedEngine.setFusedExpression(true);
+        try
+        {
+            List<EvaluatedCandidate<Integer>> population = fusedEngine.evolvePopulation(0, 10, 0,
+                                                                                        new GenerationCount(3));
+            assert population.size() == 10 : "Wrong population size: " + population.size();
+        }
+        finally
+        {
+            fusedEngine.close();
+        }
+        assert overlapped.get() : "Evaluation did not start until all candidates were expressed.";
+        assert evaluations.get() == 30 : "Wrong number of evaluations: " + evaluations.get();
+        assert expressedSizes.size() == 3 : "Expressed populations reported " + expressedSizes.size() + " times.";
+        for (int size : expressedSizes)
+        {
+            assert size == 10 : "Wrong expressed population size: " + size;
+        }
+    }
+
+
+    /**
+     * When one fused expression and evaluation fails, the tasks for the rest of the
+     * generation must be cancelled rather than left to run.
+     */
+    @Test
+    public void testFusedFailureCancelsOtherTasks() throws InterruptedException
+    {
+        final AtomicInteger evaluations = new AtomicInteger(0);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        ExpressionStrategy<Integer> expressionStrategy = new ExpressionStrategy<Integer>()
+        {
+            public ExpressedCandidate<Integer> express(Integer candidate, long populationId)
+            {
+                return new IntegerExpression(candidate);
+            }
+
+            public int getGenomeLength(long populationId)
+            {
+                return 1;
+            }
+
+            public void beforeExpression(long populationId)
+            {
+                // Do nothing.
+            }
+
+            public void candidatesExpressed(List<ExpressedCandidate<Integer>> expressedCandidates, long populationId)
+            {
+                // Do nothing.
+            }
+
+            public void destroy(Integer candidate, long populationId)
+            {
+                // Do nothing.
+            }
+        };
+        ExpressedFitnessEvaluator<Integer> evaluator = new ExpressedFitnessEvaluator<Integer>()
+        {
+            public double getFitness(ExpressedCandidate<Integer> candidate, List<ExpressedCandidate<Integer>> population)
+            {
+                if (evaluations.getAndIncrement() == 0)
+                {
+                    throw new IllegalArgumentException("First evaluation fails.");
+                }
+                try
+                {
+                    Thread.sleep(5000);
+                }
+                catch (InterruptedException ex)
+                {
+                    interrupted.countDown();
+                }
+                return candidate.getGenome();
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        GenerationalEvolutionEngine<Integer> fusedEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       evaluator,
+                                                       expressionStrategy,
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        // One thread, so that the failing task is the first in the generation.
+        fusedEngine.setThreadPool(1, 100);
+        fusedEngine.setFusedExpression(true);
+        try
+        {
+            fusedEngine.evolve(0, 10, 0, new GenerationCount(2));
+            assert false : "Failed evaluation should be reported.";
+        }
+        catch (IllegalStateException ex)
+        {
+            // Expected.
+        }
+        // Without cancellation the next queued evaluation would start straight away.
+        Thread.sleep(200);
+        assert evaluations.get() <= 2 : "Queued evaluations were not cancelled: " + evaluations.get();
+        assert evaluations.get() == 1 || interrupted.await(1, TimeUnit.SECONDS)
+            : "Running evaluation was not cancelled.";
+        fusedEngine.close();
+    }
+
+
+    /**
+     * When one evaluation fails, the evaluations for the rest of the population must be
+     * cancelled rather than left to run.
+     */
+    @Test
+    public void testEvaluationFailureCancelsOtherTasks() throws InterruptedException
+    {
+        final AtomicInteger evaluations = new AtomicInteger(0);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                if (evaluations.getAndIncrement() == 0)
+                {
+                    throw new IllegalArgumentException("First evaluation fails.");
+                }
+                try
+                {
+                    Thread.sleep(5000);
+                }
+                catch (InterruptedException ex)
+                {
+                    interrupted.countDown();
+                }
+                return candidate;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        GenerationalEvolutionEngine<Integer> failingEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       evaluator,
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        // One thread, so that the failing task is the first in the generation.
+        failingEngine.setThreadPool(1, 100);
+        try
+        {
+            failingEngine.evolve(0, 10, 0, new GenerationCount(2));
+            assert false : "Failed evaluation should be reported.";
+        }
+        catch (IllegalStateException ex)
+        {
+            // Expected.
+        }
+        // Without cancellation the next queued evaluation would start straight away.
+        Thread.sleep(200);
+        assert evaluations.get() <= 2 : "Queued evaluations were not cancelled: " + evaluations.get();
+        assert evaluations.get() == 1 || interrupted.await(1, TimeUnit.SECONDS)
+            : "Running evaluation was not cancelled.";
+        failingEngine.close();
+    }
+
+
+    /**
+     * An evaluation that runs past the timeout must not hold up evolution, and the
+     * candidate must be given the penalty fitness.
+     */
+    @Test
+    public void testEvaluationTimeout()
+    {
+        final AtomicBoolean first = new AtomicBoolean(true);
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                if (first.getAndSet(false))
+                {
+                    try
+                    {
+                        Thread.sleep(10000);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return candidate + 1;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        GenerationalEvolutionEngine<Integer> timedEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       evaluator,
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        timedEngine.setEvaluationTimeout(200, TimeUnit.MILLISECONDS, 0);
+        long start = System.currentTimeMillis();
+        List<EvaluatedCandidate<Integer>> population = timedEngine.evolvePopulation(0, 10, 0,
+                                                                                    new GenerationCount(1));
+        assert System.currentTimeMillis() - start < 5000 : "Slow evaluation was not timed out.";
+        assert population.get(population.size() - 1).getFitness() == 0 : "Timed-out candidate not penalised.";
+    }
+
+
+    /**
+     * With a timeout, a full work queue must not make the engine's own thread evaluate
+     * candidates, since nothing could then time the evaluation out.
+     */
+    @Test
+    public void testEvaluationTimeoutWithBoundedQueue()
+    {
+        ThreadRecordingEvaluator evaluator = new ThreadRecordingEvaluator();
+        GenerationalEvolutionEngine<Integer> timedEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       evaluator,
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        timedEngine.setThreadPool(1, 1);
+        timedEngine.setEvaluationTimeout(1, TimeUnit.SECONDS, 0);
+        try
+        {
+            timedEngine.evolve(0, 20, 0, new GenerationCount(3));
+        }
+        finally
+        {
+            timedEngine.close();
+        }
+        assert !evaluator.getThreadNames().isEmpty() : "No evaluations recorded.";
+        assert !evaluator.getThreadNames().contains(Thread.currentThread().getName())
+            : "Evaluation performed on the engine's thread.";
+    }
+
+
+    /**
+     * Once the time budget runs out, evaluations that are in progress must be abandoned
+     * and the best population so far returned.
+     */
+    @Test
+    public void testCancelInFlight()
+    {
+        final AtomicInteger evaluations = new AtomicInteger(0);
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                // The initial population is quick to evaluate, the next generation is not.
+                if (evaluations.incrementAndGet() > 10)
+                {
+                    try
+                    {
+                        Thread.sleep(10000);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return candidate;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        // Multi-threaded, single-threaded, and single-threaded with an array population.
+        for (int mode = 0; mode < 3; mode++)
+        {
+            boolean singleThreaded = mode > 0;
+            evaluations.set(0);
+            GenerationalEvolutionEngine<Integer> deadlineEngine
+                = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                           new IntegerAdjuster(1),
+                                                           evaluator,
+                                                           new RouletteWheelSelection(),
+                                                           FrameworkTestUtils.getRNG());
+            deadlineEngine.setSingleThreaded(singleThreaded);
+            deadlineEngine.setArrayPopulation(mode == 2);
+            deadlineEngine.setCancelInFlight(true);
+            long start = System.currentTimeMillis();
+            List<EvaluatedCandidate<Integer>> population = deadlineEngine.evolvePopulation(0, 10, 0,
+                                                                                           new ElapsedTime(300));
+            long elapsed = System.currentTimeMillis() - start;
+            // A single-threaded engine can only stop between candidates.
+            assert elapsed < (singleThreaded ? 15000 : 5000) : "Evaluation was not cancelled: " + elapsed + "ms";
+            assert population.size() == 10 : "Wrong population size: " + population.size();
+            assert deadlineEngine.getSatisfiedTerminationConditions().size() == 1 : "Elapsed time should be satisfied.";
+        }
+    }
+
+
+    /**
+     * With priority evaluation, the elite must be evaluated first followed by the offspring
+     * of the fittest parents.
+     */
+    @Test
+    public void testPriorityEvaluation()
+    {
+        final List<Integer> evaluated = Collections.synchronizedList(new ArrayList<Integer>());
+        FitnessEvaluator<Integer> evaluator = new FitnessEvaluator<Integer>()
+        {
+            public double getFitness(Integer candidate, List<? extends Integer> population)
+            {
+                evaluated.add(candidate);
+                return candidate;
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        GenerationalEvolutionEngine<Integer> priorityEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerPassThrough(),
+                                                       evaluator,
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        priorityEngine.setSingleThreaded(true);
+        priorityEngine.setPriorityEvaluation(true);
+        List<Integer> seeds = new ArrayList<Integer>();
+        for (int i = 1; i <= 10; i++)
+        {
+            seeds.add(i);
+        }
+        priorityEngine.evolvePopulation(0, 10, 2, seeds, new GenerationCount(2));
+        List<Integer> secondGeneration = evaluated.subList(10, 20);
+        assert secondGeneration.get(0) == 10 && secondGeneration.get(1) == 9 : "Elite should be evaluated first.";
+        for (int i = 3; i < secondGeneration.size(); i++)
+        {
+            assert secondGeneration.get(i) <= secondGeneration.get(i - 1) : "Offspring evaluated out of order.";
+        }
+    }
+
+
+    /**
+     * Cross-over shuffles the selection, so the position of an offspring says nothing about
+     * its parents.  Priority evaluation must then move only the elite to the front and leave
+     * the offspring in the order that they were bred.
+     */
+    @Test
+    public void testPriorityEvaluationWithCrossover()
+    {
+        final List<int[]> evaluated = Collections.synchronizedList(new ArrayList<int[]>());
+        FitnessEvaluator<int[]> evaluator = new FitnessEvaluator<int[]>()
+        {
+            public double getFitness(int[] candidate, List<? extends int[]> population)
+            {
+                evaluated.add(candidate);
+                return IntArraySumEvaluator.sum(candidate);
+            }
+
+            public boolean isNatural()
+            {
+                return true;
+            }
+        };
+        final List<List<int[]>> bred = new ArrayList<List<int[]>>();
+        EvolutionaryOperator<int[]> recorder = new PartitionableOperator<int[]>()
+        {
+            public List<int[]> apply(List<int[]> selectedCandidates, Random rng)
+            {
+                bred.add(new ArrayList<int[]>(selectedCandidates));
+                return selectedCandidates;
+            }
+
+            public int getGroupSize()
+            {
+                return 1;
+            }
+        };
+        List<EvolutionaryOperator<int[]>> operators = new ArrayList<EvolutionaryOperator<int[]>>(2);
+        operators.add(new IntArrayCrossover());
+        operators.add(recorder);
+        GenerationalEvolutionEngine<int[]> priorityEngine
+            = new GenerationalEvolutionEngine<int[]>(new IntArrayFactory(20, 10),
+                                                     new EvolutionPipeline<int[]>(operators),
+                                                     evaluator,
+                                                     new RouletteWheelSelection(),
+                                                     FrameworkTestUtils.getRNG());
+        priorityEngine.setSingleThreaded(true);
+        priorityEngine.setPriorityEvaluation(true);
+        priorityEngine.evolvePopulation(0, 10, 2, new GenerationCount(2));
+
+        int best = 0;
+        for (int[] candidate : evaluated.subList(0, 10))
+        {
+            best = Math.max(best, IntArraySumEvaluator.sum(candidate));
+        }
+        List<int[]> secondGeneration = evaluated.subList(10, 20);
+        assert IntArraySumEvaluator.sum(secondGeneration.get(0)) == best : "Elite should be evaluated first.";
+        assert bred.size() == 1 : "Offspring should be bred once.";
+        List<int[]> offspring = bred.get(0);
+        for (int i = 0; i < offspring.size(); i++)
+        {
+            assert secondGeneration.get(i + 2) == offspring.get(i) : "Offspring should be evaluated in the order bred.";
+        }
+    }
+
+
+    /**
+     * Several populations evolved at once by one engine must not share generation
+     * numbers or termination conditions.
+     */
+    @Test
+    public void testConcurrentPopulations() throws InterruptedException
+    {
+        final GenerationalEvolutionEngine<Integer> sharedEngine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       new IntegerEvaluator(),
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        final ConcurrentHashMap<Long, Integer> lastGeneration = new ConcurrentHashMap<Long, Integer>();
+        sharedEngine.addEvolutionObserver(new EvolutionObserver<Integer>()
+        {
+            public void populationUpdate(PopulationStats<? extends Integer> populationData)
+            {
+                lastGeneration.put(populationData.getPopulationId(), populationData.getGenerationNumber());
+            }
+        });
+        final int populations = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < populations; i++)
+        {
+            final long populationId = i;
+            Thread thread = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        TerminationCondition condition = new GenerationCount(10 * ((int) populationId + 1));
+                        sharedEngine.evolvePopulation(populationId, 10, 0, condition);
+                        List<TerminationCondition> satisfied = sharedEngine.getSatisfiedTerminationConditions(populationId);
+                        assert satisfied.size() == 1 && satisfied.get(0) == condition : "Wrong satisfied condition.";
+                    }
+                    catch (Throwable ex)
+                    {
+                        failures.add(ex);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assert failures.isEmpty() : "Evolution failed: " + failures;
+        for (long i = 0; i < populations; i++)
+        {
+            int generations = lastGeneration.get(i);
+            assert generations == 10 * (i + 1) - 1 : "Wrong generation count for population " + i + ": " + generations;
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreadPool()
+    {
+        ((GenerationalEvolutionEngine<Integer>) engine).setThreadPool(0, 10);
+    }
+
+
     @Test(expectedExceptions = IllegalStateException.class)
     public void testGetSatisfiedTerminationConditionsBeforeStart()
     {
@@ -174,4 +1376,161 @@ public class GenerationalEvolutionEngineTest
             return result;
         }
     }
+
+
+    /**
+     * Trivial test operator that passes every candidate through unchanged.
+     */
+    private static final class IntegerPassThrough implements PartitionableOperator<Integer>
+    {
+        public List<Integer> apply(List<Integer> selectedCandidates, Random rng)
+        {
+            return new ArrayList<Integer>(selectedCandidates);
+        }
+
+        public int getGroupSize()
+        {
+            return 1;
+        }
+    }
+
+
+    /**
+     * Fitness evaluator that counts how many evaluations it has performed.
+     */
+    private static final class CountingEvaluator implements FitnessEvaluator<Integer>
+    {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        public double getFitness(Integer candidate, List<? extends Integer> population)
+        {
+            count.incrementAndGet();
+            return candidate;
+        }
+
+        public boolean isNatural()
+        {
+            return true;
+        }
+
+        public int getCount()
+        {
+            return count.get();
+        }
+    }
+
+
+    /**
+     * Batch fitness evaluator that records how many candidates it has scored and the size
+     * of the largest batch.
+     */
+    private static final class BatchRecordingEvaluator implements BatchFitnessEvaluator<Integer>
+    {
+        private final AtomicInteger candidateCount = new AtomicInteger(0);
+        private final AtomicInteger largestBatch = new AtomicInteger(0);
+
+        public double[] getFitnessScores(List<? extends Integer> candidates,
+                                         List<? extends Integer> population)
+        {
+            candidateCount.addAndGet(candidates.size());
+            int largest = largestBatch.get();
+            while (candidates.size() > largest && !largestBatch.compareAndSet(largest, candidates.size()))
+            {
+                largest = largestBatch.get();
+            }
+            double[] scores = new double[candidates.size()];
+            for (int i = 0; i < scores.length; i++)
+            {
+                scores[i] = candidates.get(i);
+            }
+            return scores;
+        }
+
+        public double getFitness(Integer candidate, List<? extends Integer> population)
+        {
+            return candidate;
+        }
+
+        public boolean isNatural()
+        {
+            return true;
+        }
+
+        public int getCandidateCount()
+        {
+            return candidateCount.get();
+        }
+
+        public int getLargestBatch()
+        {
+            return largestBatch.get();
+        }
+    }
+
+
+    /**
+     * Scores an expressed integer by its value.
+     */
+    private static final class IntegerExpressionEvaluator implements ExpressedFitnessEvaluator<Integer>
+    {
+        public double getFitness(ExpressedCandidate<Integer> candidate, List<ExpressedCandidate<Integer>> population)
+        {
+            return candidate.getGenome();
+        }
+
+        public boolean isNatural()
+        {
+            return true;
+        }
+    }
+
+
+    /**
+     * Trivial expressed form of an integer candidate.
+     */
+    private static final class IntegerExpression implements ExpressedCandidate<Integer>
+    {
+        private final Integer genome;
+
+        IntegerExpression(Integer genome)
+        {
+            this.genome = genome;
+        }
+
+        public Integer getGenome()
+        {
+            return genome;
+        }
+
+        public int compareTo(ExpressedCandidate<Integer> expressedCandidate)
+        {
+            return genome.compareTo(expressedCandidate.getGenome());
+        }
+    }
+
+
+    /**
+     * Fitness evaluator that records the names of the threads that perform evaluations.
+     */
+    private static final class ThreadRecordingEvaluator implements FitnessEvaluator<Integer>
+    {
+        private final Set<String> threadNames
+            = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        public double getFitness(Integer candidate, List<? extends Integer> population)
+        {
+            threadNames.add(Thread.currentThread().getName());
+            return candidate;
+        }
+
+        public boolean isNatural()
+        {
+            return true;
+        }
+
+        public Set<String> getThreadNames()
+        {
+            return threadNames;
+        }
+    }
 }
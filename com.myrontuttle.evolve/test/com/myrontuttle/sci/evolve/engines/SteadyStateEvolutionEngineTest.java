@@ -22,10 +22,15 @@ import org.testng.annotations.Test;
 import com.myrontuttle.sci.evolve.FrameworkTestUtils;
 import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
 import com.myrontuttle.sci.evolve.engines.SteadyStateEvolutionEngine;
+import com.myrontuttle.sci.evolve.eval.IntArraySumEvaluator;
 import com.myrontuttle.sci.evolve.eval.NullFitnessEvaluator;
+import com.myrontuttle.sci.evolve.factories.IntArrayFactory;
 import com.myrontuttle.sci.evolve.factories.StubIntegerFactory;
+import com.myrontuttle.sci.evolve.operators.IntArrayMutation;
 import com.myrontuttle.sci.evolve.operators.IntegerAdjuster;
 import com.myrontuttle.sci.evolve.selection.RouletteWheelSelection;
+import com.myrontuttle.sci.evolve.termination.GenerationCount;
+import com.myrontuttle.sci.evolve.util.GenomePool;
 
 /**
  * Unit test for the {@link SteadyStateEvolutionEngine} class.
@@ -140,4 +145,34 @@ public class SteadyStateEvolutionEngineTest
             assert found : "Elite candidate should be preserved.";
         }
     }
+
+
+    /**
+     * Candidates displaced by offspring must be recycled without disturbing the rest of
+     * the population.
+     */
+    @Test
+    public void testGenomeRecycling()
+    {
+        GenomePool<int[]> pool = new GenomePool<int[]>(10);
+        IntArrayFactory factory = new IntArrayFactory(10, 10);
+        IntArrayMutation mutation = new IntArrayMutation(factory, 0.2);
+        mutation.setGenomePool(pool);
+        SteadyStateEvolutionEngine<int[]> steadyState = new SteadyStateEvolutionEngine<int[]>(factory,
+                                                                                              mutation,
+                                                                                              new IntArraySumEvaluator(),
+                                                                                              new RouletteWheelSelection(),
+                                                                                              2,
+                                                                                              false,
+                                                                                              FrameworkTestUtils.getRNG());
+        steadyState.setGenomePool(pool);
+        List<EvaluatedCandidate<int[]>> population = steadyState.evolvePopulation(0, 20, 0, new GenerationCount(50));
+        assert pool.getRecycledCount() > 0 : "No genomes recycled.";
+        assert pool.getReusedCount() > 0 : "No genomes reused.";
+        for (EvaluatedCandidate<int[]> candidate : population)
+        {
+            assert candidate.getFitness() == IntArraySumEvaluator.sum(candidate.getCandidate())
+                : "Candidate was overwritten while still in the population.";
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package com.myrontuttle.sci.evolve.engines;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+
+/**
+ * Unit test for the {@link TimedEvaluation} class.
+ * @author Myron Tuttle
+ */
+public class TimedEvaluationTest {
+
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void createExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+
+    @AfterMethod
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    public void testTimeout() throws InterruptedException, ExecutionException {
+        List<Callable<EvaluatedCandidate<Integer>>> tasks = new ArrayList<Callable<EvaluatedCandidate<Integer>>>();
+        for (int i = 0; i < 6; i++) {
+            tasks.add(new SlowTask(i, i == 2 ? 1 : 0));
+        }
+        TimedEvaluation<Integer> evaluation
+            = new TimedEvaluation<Integer>(new ExecutorCompletionService<EvaluatedCandidate<Integer>>(executor),
+                                           TimeUnit.MILLISECONDS.toNanos(100),
+                                           false,
+                                           4,
+                                           null);
+        long start = System.nanoTime();
+        List<EvaluatedCandidate<Integer>> results = evaluation.evaluate(tasks);
+        assert System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5) : "Slow evaluation was not timed out.";
+        assert results.size() == 6 : "Wrong number of results: " + results.size();
+        for (int i = 0; i < results.size(); i++) {
+            if (i == 2) {
+                assert results.get(i) == null : "Timed-out evaluation should have no result.";
+            } else {
+                assert results.get(i).getCandidate() == i : "Wrong result for task " + i;
+            }
+        }
+        assert evaluation.getTimeoutCount() == 1 : "Wrong timeout count: " + evaluation.getTimeoutCount();
+    }
+
+
+    /**
+     * A straggler whose first attempt hangs must be re-run, and the result of the second
+     * attempt used.
+     */
+    @Test
+    public void testSpeculation() throws InterruptedException, ExecutionException {
+        List<Callable<EvaluatedCandidate<Integer>>> tasks = new ArrayList<Callable<EvaluatedCandidate<Integer>>>();
+        for (int i = 0; i < 6; i++) {
+            tasks.add(new SlowTask(i, i == 4 ? 1 : 0));
+        }
+        TimedEvaluation<Integer> evaluation
+            = new TimedEvaluation<Integer>(new ExecutorCompletionService<EvaluatedCandidate<Integer>>(executor),
+                                           0,
+                                           true,
+                                           4,
+                                           null);
+        long start = System.nanoTime();
+        List<EvaluatedCandidate<Integer>> results = evaluation.evaluate(tasks);
+        assert System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5) : "Straggler was not re-run.";
+        for (int i = 0; i < results.size(); i++) {
+            assert results.get(i).getCandidate() == i : "Wrong result for task " + i;
+        }
+        assert evaluation.getSpeculationCount() == 1 : "Wrong speculation count: " + evaluation.getSpeculationCount();
+        assert evaluation.getTimeoutCount() == 0 : "No evaluation should time out.";
+    }
+
+
+    @Test
+    public void testStop() throws InterruptedException, ExecutionException {
+        List<Callable<EvaluatedCandidate<Integer>>> tasks = new ArrayList<Callable<EvaluatedCandidate<Integer>>>();
+        for (int i = 0; i < 6; i++) {
+            tasks.add(new SlowTask(i, i >= 3 ? 1 : 0));
+        }
+        final long stopTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+        TimedEvaluation<Integer> evaluation
+            = new TimedEvaluation<Integer>(new ExecutorCompletionService<EvaluatedCandidate<Integer>>(executor),
+                                           0,
+                                           false,
+                                           4,
+                                           new TimedEvaluation.StopCondition() {
+                                               public boolean isStopRequested() {
+                                                   return System.nanoTime() - stopTime >= 0;
+                                               }
+                                           });
+        List<EvaluatedCandidate<Integer>> results = evaluation.evaluate(tasks);
+        assert System.nanoTime() - stopTime < TimeUnit.SECONDS.toNanos(5) : "Evaluation was not stopped.";
+        assert evaluation.isStopped() : "Evaluation should be marked as stopped.";
+        for (int i = 0; i < results.size(); i++) {
+            if (i < 3) {
+                assert results.get(i).getCandidate() == i : "Wrong result for task " + i;
+            } else {
+                assert results.get(i) == null : "Stopped evaluation should have no result.";
+                assert !evaluation.isTimedOut(i) : "Stopped evaluation should not count as timed out.";
+            }
+        }
+    }
+
+
+    /**
+     * Task whose first few attempts hang for ten seconds (unless interrupted) and whose
+     * later attempts complete almost immediately.
+     */
+    private static final class SlowTask implements Callable<EvaluatedCandidate<Integer>> {
+        private final int candidate;
+        private final int slowAttempts;
+        private final AtomicInteger attempts = new AtomicInteger(0);
+
+        SlowTask(int candidate, int slowAttempts) {
+            this.candidate = candidate;
+            this.slowAttempts = slowAttempts;
+        }
+
+        public EvaluatedCandidate<Integer> call() throws InterruptedException {
+            Thread.sleep(attempts.getAndIncrement() < slowAttempts ? 10000 : 5);
+            return new EvaluatedCandidate<Integer>(candidate, candidate);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.api.ExpressedFitnessEvaluator;
+import com.myrontuttle.sci.evolve.express.StubExpression;
+
+/**
+ * Unit test for the {@link CachingExpressedFitnessEvaluator} wrapper.
+ * @author Myron Tuttle
+ */
+public class CachingExpressedFitnessEvaluatorTest {
+
+    @Test
+    public void testCacheHit() {
+        CountingEvaluator counter = new CountingEvaluator();
+        CachingExpressedFitnessEvaluator<int[]> evaluator
+            = new CachingExpressedFitnessEvaluator<int[]>(counter, GenomeEquivalence.arrays(), 1000);
+        List<ExpressedCandidate<int[]>> population = Collections.emptyList();
+        double first = evaluator.getFitness(new StubExpression<int[]>(new int[]{1, 2}), population);
+        double second = evaluator.getFitness(new StubExpression<int[]>(new int[]{1, 2}), population);
+        assert first == second : "Cached score should be returned.";
+        assert counter.count == 1 : "Expressions of equal genomes should share a score.";
+        evaluator.getFitness(new StubExpression<int[]>(new int[]{2, 1}), population);
+        assert counter.count == 2 : "Different genome should be evaluated.";
+        assert evaluator.getHitRate() == 1d / 3 : "Wrong hit rate: " + evaluator.getHitRate();
+    }
+
+
+    @Test
+    public void testNatural() {
+        CachingExpressedFitnessEvaluator<int[]> evaluator
+            = new CachingExpressedFitnessEvaluator<int[]>(new CountingEvaluator(), GenomeEquivalence.arrays(), 1);
+        assert !evaluator.isNatural() : "Wrapper for non-natural scores should be non-natural.";
+    }
+
+
+    private static final class CountingEvaluator implements ExpressedFitnessEvaluator<int[]> {
+        private int count = 0;
+
+        public double getFitness(ExpressedCandidate<int[]> candidate, List<ExpressedCandidate<int[]>> population) {
+            return ++count;
+        }
+
+        public boolean isNatural() {
+            return false;
+        }
+    }
+}
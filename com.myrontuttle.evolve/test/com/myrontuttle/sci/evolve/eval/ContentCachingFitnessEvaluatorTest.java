@@ -0,0 +1,160 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+import org.uncommons.maths.binary.BitString;
+
+import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
+
+/**
+ * Unit test for the {@link ContentCachingFitnessEvaluator} wrapper.
+ * @author Myron Tuttle
+ */
+public class ContentCachingFitnessEvaluatorTest {
+
+    @Test
+    public void testArrayCopiesHit() {
+        CountingEvaluator<int[]> counter = new CountingEvaluator<int[]>();
+        ContentCachingFitnessEvaluator<int[]> evaluator
+            = new ContentCachingFitnessEvaluator<int[]>(counter, GenomeEquivalence.content(), 1000);
+        int[] genome = {1, 2, 3};
+        evaluator.getFitness(genome, Collections.<int[]>emptyList());
+        evaluator.getFitness(genome.clone(), Collections.<int[]>emptyList());
+        evaluator.getFitness(new int[]{1, 2, 3}, Collections.<int[]>emptyList());
+        assert counter.count.get() == 1 : "Copies should hit the cache: " + counter.count.get();
+        evaluator.getFitness(new int[]{3, 2, 1}, Collections.<int[]>emptyList());
+        assert counter.count.get() == 2 : "Different genome should miss the cache.";
+        assert evaluator.getHitCount() == 2 : "Wrong hit count: " + evaluator.getHitCount();
+        assert evaluator.getMissCount() == 2 : "Wrong miss count: " + evaluator.getMissCount();
+        assert evaluator.getHitRate() == 0.5 : "Wrong hit rate: " + evaluator.getHitRate();
+    }
+
+
+    @Test
+    public void testCachedGenomeIsCopied() {
+        CountingEvaluator<int[]> counter = new CountingEvaluator<int[]>();
+        ContentCachingFitnessEvaluator<int[]> evaluator
+            = new ContentCachingFitnessEvaluator<int[]>(counter, GenomeEquivalence.content(), 1000);
+        int[] genome = {1, 2, 3};
+        evaluator.getFitness(genome, Collections.<int[]>emptyList());
+        // Changing the genome in place, as a genome pool would, must not change the entry.
+        genome[0] = 4;
+        evaluator.getFitness(new int[]{1, 2, 3}, Collections.<int[]>emptyList());
+        assert counter.count.get() == 1 : "Original genome should still be cached.";
+        evaluator.getFitness(genome, Collections.<int[]>emptyList());
+        assert counter.count.get() == 2 : "Changed genome should miss the cache.";
+    }
+
+
+    @Test
+    public void testOtherGenomeTypes() {
+        CountingEvaluator<Object> counter = new CountingEvaluator<Object>();
+        ContentCachingFitnessEvaluator<Object> evaluator
+            = new ContentCachingFitnessEvaluator<Object>(counter, GenomeEquivalence.content(), 1000);
+        BitString bits = new BitString("10110");
+        evaluator.getFitness(bits, Collections.emptyList());
+        evaluator.getFitness(bits.clone(), Collections.emptyList());
+        evaluator.getFitness(Arrays.asList(new double[]{1, 2}, new double[]{3}), Collections.emptyList());
+        evaluator.getFitness(Arrays.asList(new double[]{1, 2}, new double[]{3}), Collections.emptyList());
+        evaluator.getFitness(new StringBuilder("ABC").toString(), Collections.emptyList());
+        evaluator.getFitness("ABC", Collections.emptyList());
+        assert counter.count.get() == 3 : "Wrong number of evaluations: " + counter.count.get();
+    }
+
+
+    @Test
+    public void testEviction() {
+        CountingEvaluator<int[]> counter = new CountingEvaluator<int[]>();
+        // Each genome of ten ints weighs 11, so only a few fit.
+        ContentCachingFitnessEvaluator<int[]> evaluator
+            = new ContentCachingFitnessEvaluator<int[]>(counter, GenomeEquivalence.arrays(), 50);
+        for (int i = 0; i < 20; i++) {
+            int[] genome = new int[10];
+            genome[0] = i;
+            evaluator.getFitness(genome, Collections.<int[]>emptyList());
+        }
+        assert evaluator.getSize() <= 4 : "Cache exceeds its bound: " + evaluator.getSize();
+        assert evaluator.getEvictionCount() >= 16 : "Wrong eviction count: " + evaluator.getEvictionCount();
+        int[] latest = new int[10];
+        latest[0] = 19;
+        evaluator.getFitness(latest, Collections.<int[]>emptyList());
+        assert counter.count.get() == 20 : "Most recent genome should still be cached.";
+    }
+
+
+    /**
+     * Two threads asking for the same genome at once should share one evaluation.
+     */
+    @Test(timeOut = 10000)
+    public void testSingleFlight() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+        final ContentCachingFitnessEvaluator<int[]> evaluator
+            = new ContentCachingFitnessEvaluator<int[]>(new FitnessEvaluator<int[]>() {
+                public double getFitness(int[] candidate, List<? extends int[]> population) {
+                    count.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return 7;
+                }
+
+                public boolean isNatural() {
+                    return true;
+                }
+            }, GenomeEquivalence.arrays(), 1000);
+        final double[] results = new double[2];
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    results[index] = evaluator.getFitness(new int[]{5, 5}, Collections.<int[]>emptyList());
+                }
+            };
+        }
+        threads[0].start();
+        assert started.await(5, TimeUnit.SECONDS) : "Evaluation did not start.";
+        threads[1].start();
+        // Give the second thread time to find the evaluation in progress.
+        Thread.sleep(100);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assert count.get() == 1 : "Genome evaluated " + count.get() + " times.";
+        assert results[0] == 7 && results[1] == 7 : "Wrong fitness: " + Arrays.toString(results);
+    }
+
+
+    @Test
+    public void testNatural() {
+        assert new ContentCachingFitnessEvaluator<int[]>(new CountingEvaluator<int[]>(),
+                                                         GenomeEquivalence.arrays(),
+                                                         1).isNatural() : "Wrapper should be natural.";
+    }
+
+
+    private static final class CountingEvaluator<T> implements FitnessEvaluator<T> {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public double getFitness(T candidate, List<? extends T> population) {
+            return count.incrementAndGet();
+        }
+
+        public boolean isNatural() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.util.List;
+
+import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
+
+/**
+ * Scores an integer array by the sum of its elements.  Used by unit tests.
+ * @author Myron Tuttle
+ */
+public final class IntArraySumEvaluator implements FitnessEvaluator<int[]> {
+
+    public double getFitness(int[] candidate, List<? extends int[]> population) {
+        return sum(candidate);
+    }
+
+    public boolean isNatural() {
+        return true;
+    }
+
+    public static int sum(int[] candidate) {
+        int sum = 0;
+        for (int value : candidate) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,153 @@
+package com.myrontuttle.sci.evolve.eval;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.api.ExpressedFitnessEvaluator;
+import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
+import com.myrontuttle.sci.evolve.express.StubExpression;
+
+/**
+ * Unit test for the {@link PersistentFitnessCache} class.
+ * @author Myron Tuttle
+ */
+public class PersistentFitnessCacheTest {
+
+    private File file;
+
+    @BeforeMethod
+    public void createFile() throws IOException {
+        file = File.createTempFile("fitness", ".cache");
+        file.deleteOnExit();
+    }
+
+
+    @AfterMethod
+    public void deleteFile() {
+        file.delete();
+    }
+
+
+    @Test
+    public void testScoresSurviveReopening() throws IOException {
+        CountingEvaluator counter = new CountingEvaluator();
+        PersistentFitnessCache<int[]> cache = new PersistentFitnessCache<int[]>(file, 100, 1, int[].class, GenomeEquivalence.arrays());
+        FitnessEvaluator<int[]> evaluator = cache.wrap(counter);
+        double first = evaluator.getFitness(new int[]{1, 2, 3}, Collections.<int[]>emptyList());
+        double second = evaluator.getFitness(new int[]{1, 2, 3}, Collections.<int[]>emptyList());
+        assert first == second : "Cached score should be returned.";
+        assert counter.count == 1 : "Copy of genome should hit the cache.";
+        assert cache.getHitCount() == 1 && cache.getMissCount() == 1 : "Wrong statistics.";
+        cache.close();
+
+        cache = new PersistentFitnessCache<int[]>(file, 100, 1, int[].class, GenomeEquivalence.arrays());
+        assert cache.getSize() == 1 : "Wrong size: " + cache.getSize();
+        double reopened = cache.wrap(counter).getFitness(new int[]{1, 2, 3}, Collections.<int[]>emptyList());
+        assert reopened == first : "Wrong score after reopening: " + reopened;
+        assert counter.count == 1 : "Score should have been read from the file.";
+        cache.wrap(counter).getFitness(new int[]{3, 2, 1}, Collections.<int[]>emptyList());
+        assert counter.count == 2 : "Different genome should miss the cache.";
+        cache.close();
+    }
+
+
+    @Test
+    public void testFingerprintChangeEmptiesFile() throws IOException {
+        CountingEvaluator counter = new CountingEvaluator();
+        PersistentFitnessCache<int[]> cache = new PersistentFitnessCache<int[]>(file, 100, 1, int[].class, GenomeEquivalence.arrays());
+        cache.wrap(counter).getFitness(new int[]{4}, Collections.<int[]>emptyList());
+        cache.close();
+
+        cache = new PersistentFitnessCache<int[]>(file, 50, 2, int[].class, GenomeEquivalence.arrays());
+        assert cache.getSize() == 0 : "Scores from another evaluator should be discarded.";
+        assert cache.getCapacity() == 50 : "Wrong capacity: " + cache.getCapacity();
+        cache.wrap(counter).getFitness(new int[]{4}, Collections.<int[]>emptyList());
+        assert counter.count == 2 : "Genome should have been evaluated again.";
+        cache.close();
+    }
+
+
+    @Test
+    public void testFullTable() throws IOException {
+        CountingEvaluator counter = new CountingEvaluator();
+        PersistentFitnessCache<int[]> cache = new PersistentFitnessCache<int[]>(file, 8, 1, int[].class, GenomeEquivalence.arrays());
+        FitnessEvaluator<int[]> evaluator = cache.wrap(counter);
+        for (int i = 0; i < 20; i++) {
+            evaluator.getFitness(new int[]{i}, Collections.<int[]>emptyList());
+        }
+        assert cache.getSize() == 6 : "Only three-quarters of the table should be used: " + cache.getSize();
+        for (int i = 0; i < 20; i++) {
+            evaluator.getFitness(new int[]{i}, Collections.<int[]>emptyList());
+        }
+        assert counter.count == 34 : "Wrong number of evaluations: " + counter.count;
+        cache.close();
+    }
+
+
+    /**
+     * An evaluation that is interrupted, as the engine does when it cancels one, must
+     * neither close the file nor lose the interrupt.
+     */
+    @Test
+    public void testInterruptedEvaluation() throws IOException {
+        CountingEvaluator counter = new CountingEvaluator();
+        PersistentFitnessCache<int[]> cache = new PersistentFitnessCache<int[]>(file, 100, 1, int[].class, GenomeEquivalence.arrays());
+        FitnessEvaluator<int[]> evaluator = cache.wrap(counter);
+        Thread.currentThread().interrupt();
+        evaluator.getFitness(new int[]{1}, Collections.<int[]>emptyList());
+        assert Thread.interrupted() : "Interrupt should be preserved.";
+        evaluator.getFitness(new int[]{2}, Collections.<int[]>emptyList());
+        assert cache.getSize() == 2 : "Scores should still be stored: " + cache.getSize();
+        cache.close();
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testGenomeTypeWithoutPersistentForm() throws IOException {
+        // Should throw exception because the content of a StringBuilder cannot be hashed.
+        new PersistentFitnessCache<StringBuilder>(file, 100, 1, StringBuilder.class, GenomeEquivalence.content());
+    }
+
+
+    @Test
+    public void testExpressedEvaluator() throws IOException {
+        final int[] count = new int[1];
+        PersistentFitnessCache<String> cache = new PersistentFitnessCache<String>(file, 100, 1, String.class, GenomeEquivalence.strings());
+        ExpressedFitnessEvaluator<String> evaluator = cache.wrap(new ExpressedFitnessEvaluator<String>() {
+            public double getFitness(ExpressedCandidate<String> candidate, List<ExpressedCandidate<String>> population) {
+                ++count[0];
+                return candidate.getGenome().length();
+            }
+
+            public boolean isNatural() {
+                return false;
+            }
+        });
+        assert !evaluator.isNatural() : "Wrapper should be non-natural.";
+        double fitness = evaluator.getFitness(new StubExpression<String>("ABCD"), Collections.<ExpressedCandidate<String>>emptyList());
+        assert fitness == 4 : "Wrong fitness: " + fitness;
+        evaluator.getFitness(new StubExpression<String>("ABCD"), Collections.<ExpressedCandidate<String>>emptyList());
+        assert count[0] == 1 : "Expressions of the same genome should share a score.";
+        cache.close();
+    }
+
+
+    private static final class CountingEvaluator implements FitnessEvaluator<int[]> {
+        private int count = 0;
+
+        public double getFitness(int[] candidate, List<? extends int[]> population) {
+            return ++count;
+        }
+
+        public boolean isNatural() {
+            return true;
+        }
+    }
+}
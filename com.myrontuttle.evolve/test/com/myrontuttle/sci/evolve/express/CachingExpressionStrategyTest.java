@@ -0,0 +1,108 @@
+package com.myrontuttle.sci.evolve.express;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.eval.GenomeEquivalence;
+
+/**
+ * Unit test for the {@link CachingExpressionStrategy} wrapper.
+ * @author Myron Tuttle
+ */
+public class CachingExpressionStrategyTest {
+
+    @Test
+    public void testCacheHit() {
+        CountingExpressionStrategy<int[]> counter = new CountingExpressionStrategy<int[]>();
+        CachingExpressionStrategy<int[]> strategy
+            = new CachingExpressionStrategy<int[]>(counter, GenomeEquivalence.arrays(), 10);
+        ExpressedCandidate<int[]> first = strategy.express(new int[]{1, 2}, 1);
+        ExpressedCandidate<int[]> second = strategy.express(new int[]{1, 2}, 1);
+        assert second == first : "Copy of genome should get the cached expression.";
+        assert counter.getExpressionCount() == 1 : "Genome expressed " + counter.getExpressionCount() + " times.";
+        strategy.express(new int[]{2, 1}, 1);
+        assert counter.getExpressionCount() == 2 : "Different genome should be expressed.";
+        assert strategy.getHitCount() == 1 : "Wrong hit count: " + strategy.getHitCount();
+        assert strategy.getMissCount() == 2 : "Wrong miss count: " + strategy.getMissCount();
+    }
+
+
+    /**
+     * Changing a genome after it has been expressed must not change the key under which
+     * its expression is cached.
+     */
+    @Test
+    public void testKeyIsCopied() {
+        CountingExpressionStrategy<int[]> counter = new CountingExpressionStrategy<int[]>();
+        CachingExpressionStrategy<int[]> strategy
+            = new CachingExpressionStrategy<int[]>(counter, GenomeEquivalence.arrays(), 10);
+        int[] genome = {1, 2};
+        strategy.express(genome, 1);
+        genome[0] = 9;
+        strategy.express(new int[]{1, 2}, 1);
+        assert counter.getExpressionCount() == 1 : "Original content should still be cached.";
+        strategy.express(new int[]{9, 2}, 1);
+        assert counter.getExpressionCount() == 2 : "New content should not have been cached.";
+    }
+
+
+    @Test
+    public void testPopulationsAreSeparate() {
+        CountingExpressionStrategy<int[]> counter = new CountingExpressionStrategy<int[]>();
+        CachingExpressionStrategy<int[]> strategy
+            = new CachingExpressionStrategy<int[]>(counter, GenomeEquivalence.arrays(), 10);
+        strategy.express(new int[]{1, 2}, 1);
+        strategy.express(new int[]{1, 2}, 2);
+        assert counter.getExpressionCount() == 2 : "Genome should be expressed once per population.";
+    }
+
+
+    /**
+     * Expressions should be destroyed once they have left the cache and their population,
+     * not when the engine discards their candidates.
+     */
+    @Test
+    public void testDestroyedOnEviction() {
+        CountingExpressionStrategy<int[]> counter = new CountingExpressionStrategy<int[]>();
+        CachingExpressionStrategy<int[]> strategy
+            = new CachingExpressionStrategy<int[]>(counter, GenomeEquivalence.arrays(), 2);
+        int[] genome = {0};
+        List<ExpressedCandidate<int[]>> population = new ArrayList<ExpressedCandidate<int[]>>();
+        population.add(strategy.express(genome, 1));
+        strategy.destroy(genome, 1);
+        assert counter.getDestroyed().isEmpty() : "Cached expression should not be destroyed.";
+        for (int i = 1; i <= 5; i++) {
+            population.add(strategy.express(new int[]{i}, 1));
+        }
+        assert strategy.getSize() <= 2 : "Cache exceeds its bound: " + strategy.getSize();
+        assert strategy.getEvictionCount() >= 4 : "Wrong number evicted: " + strategy.getEvictionCount();
+
+        strategy.candidatesExpressed(population, 1);
+        assert counter.getDestroyed().isEmpty() : "Expressions still in the population should not be destroyed.";
+        strategy.candidatesExpressed(Collections.<ExpressedCandidate<int[]>>emptyList(), 2);
+        assert counter.getDestroyed().isEmpty() : "Another population should not affect this one.";
+        strategy.candidatesExpressed(Collections.<ExpressedCandidate<int[]>>emptyList(), 1);
+        assert counter.getDestroyed().size() == strategy.getEvictionCount()
+            : "Each evicted expression should be destroyed once.";
+
+        strategy.clear();
+        assert counter.getDestroyed().size() == 6 : "Clearing should destroy the remaining expressions.";
+        assert counter.getDestroyed().contains(genome) : "Destroyed genome should be the one expressed.";
+    }
+
+
+    @Test
+    public void testDelegation() {
+        CountingExpressionStrategy<int[]> counter = new CountingExpressionStrategy<int[]>();
+        CachingExpressionStrategy<int[]> strategy
+            = new CachingExpressionStrategy<int[]>(counter, GenomeEquivalence.arrays(), 10);
+        assert strategy.getGenomeLength(3) == 3 : "Genome length should come from the wrapped strategy.";
+        strategy.beforeExpression(1);
+        strategy.candidatesExpressed(new ArrayList<ExpressedCandidate<int[]>>(), 1);
+        assert counter.getNotificationCount() == 2 : "Notifications should be passed on.";
+    }
+}
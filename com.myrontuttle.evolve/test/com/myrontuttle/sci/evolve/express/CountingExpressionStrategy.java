@@ -0,0 +1,70 @@
+package com.myrontuttle.sci.evolve.express;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+import com.myrontuttle.sci.evolve.api.ExpressionStrategy;
+
+/**
+ * An expression strategy that wraps each genome in a {@link StubExpression} and counts
+ * how often it is called.  The genome length of a population is its ID.
+ * @param <T> The type of genome.
+ * @author Myron Tuttle
+ */
+public final class CountingExpressionStrategy<T> implements ExpressionStrategy<T> {
+
+    private final List<T> destroyed = new ArrayList<T>();
+    private int expressionCount = 0;
+    private int notificationCount = 0;
+
+    public synchronized ExpressedCandidate<T> express(T candidate, long populationId) {
+        ++expressionCount;
+        return new StubExpression<T>(candidate);
+    }
+
+
+    public int getGenomeLength(long populationId) {
+        return (int) populationId;
+    }
+
+
+    public synchronized void beforeExpression(long populationId) {
+        ++notificationCount;
+    }
+
+
+    public synchronized void candidatesExpressed(List<ExpressedCandidate<T>> expressedCandidates, long populationId) {
+        ++notificationCount;
+    }
+
+
+    public synchronized void destroy(T candidate, long populationId) {
+        destroyed.add(candidate);
+    }
+
+
+    /**
+     * @return The number of genomes expressed.
+     */
+    public synchronized int getExpressionCount() {
+        return expressionCount;
+    }
+
+
+    /**
+     * @return The number of calls to {@link #beforeExpression(long)} and
+     * {@link #candidatesExpressed(List, long)}.
+     */
+    public synchronized int getNotificationCount() {
+        return notificationCount;
+    }
+
+
+    /**
+     * @return The genomes whose expressions have been destroyed, in order.
+     */
+    public synchronized List<T> getDestroyed() {
+        return new ArrayList<T>(destroyed);
+    }
+}
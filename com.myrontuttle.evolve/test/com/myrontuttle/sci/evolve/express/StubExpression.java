@@ -0,0 +1,28 @@
+package com.myrontuttle.sci.evolve.express;
+
+import com.myrontuttle.sci.evolve.api.ExpressedCandidate;
+
+/**
+ * An expressed candidate that is nothing more than its genome, for tests of the caches
+ * that wrap expression strategies and expressed fitness evaluators.
+ * @param <T> The type of genome.
+ * @author Myron Tuttle
+ */
+public final class StubExpression<T> implements ExpressedCandidate<T> {
+
+    private final T genome;
+
+    public StubExpression(T genome) {
+        this.genome = genome;
+    }
+
+
+    public T getGenome() {
+        return genome;
+    }
+
+
+    public int compareTo(ExpressedCandidate<T> other) {
+        return 0;
+    }
+}
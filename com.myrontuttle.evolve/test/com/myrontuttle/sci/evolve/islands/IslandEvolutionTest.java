@@ -15,19 +15,25 @@
 //=============================================================================
 package com.myrontuttle.sci.evolve.islands;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.testng.annotations.Test;
 import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
 import com.myrontuttle.sci.evolve.FrameworkTestUtils;
 import com.myrontuttle.sci.evolve.api.PopulationStats;
+import com.myrontuttle.sci.evolve.eval.IntArraySumEvaluator;
+import com.myrontuttle.sci.evolve.factories.IntArrayFactory;
 import com.myrontuttle.sci.evolve.factories.StubIntegerFactory;
 import com.myrontuttle.sci.evolve.islands.IslandEvolution;
 import com.myrontuttle.sci.evolve.islands.IslandEvolutionObserver;
 import com.myrontuttle.sci.evolve.islands.RingMigration;
+import com.myrontuttle.sci.evolve.operators.IntArrayMutation;
 import com.myrontuttle.sci.evolve.operators.IntegerAdjuster;
 import com.myrontuttle.sci.evolve.selection.RouletteWheelSelection;
 import com.myrontuttle.sci.evolve.termination.ElapsedTime;
 import com.myrontuttle.sci.evolve.termination.GenerationCount;
+import com.myrontuttle.sci.evolve.util.SplittableRNG;
 
 /**
  * Unit test for the {@link IslandEvolution} class.
@@ -116,6 +122,48 @@ public class IslandEvolutionTest
     }
 
 
+    /**
+     * With a splittable source of randomness, each island has a stream of its own, so two
+     * runs with the same seed must give identical results even though the islands evolve
+     * in parallel.
+     */
+    @Test
+    public void testReproducibleWithSplittableRNG()
+    {
+        List<Double> firstRun = new ArrayList<Double>();
+        int[] firstBest = evolveIntArrays(new SplittableRNG(17), firstRun);
+        List<Double> secondRun = new ArrayList<Double>();
+        int[] secondBest = evolveIntArrays(new SplittableRNG(17), secondRun);
+        assert firstRun.size() == 4 : "Wrong number of epochs: " + firstRun.size();
+        assert firstRun.equals(secondRun) : "Runs diverged: " + firstRun + " vs " + secondRun;
+        assert Arrays.equals(firstBest, secondBest) : "Runs found different solutions.";
+    }
+
+
+    private int[] evolveIntArrays(SplittableRNG rng, final List<Double> bestFitnesses)
+    {
+        IntArrayFactory factory = new IntArrayFactory(20, 10);
+        IslandEvolution<int[]> islandEvolution = new IslandEvolution<int[]>(4,
+                                                                            new RandomMigration(),
+                                                                            factory,
+                                                                            new IntArrayMutation(factory, 0.05),
+                                                                            new IntArraySumEvaluator(),
+                                                                            new RouletteWheelSelection(),
+                                                                            rng);
+        islandEvolution.addEvolutionObserver(new IslandEvolutionObserver<int[]>()
+        {
+            public void populationUpdate(PopulationStats<? extends int[]> stats)
+            {
+                bestFitnesses.add(stats.getBestCandidateFitness());
+            }
+
+
+            public void islandPopulationUpdate(int islandIndex, PopulationStats<? extends int[]> stats){}
+        });
+        return islandEvolution.evolve(0, 20, 1, 5, 2, new GenerationCount(4));
+    }
+
+
     @Test(expectedExceptions = IllegalStateException.class)
     public void testGetSatisfiedTerminationConditionsBeforeStart()
     {
@@ -18,10 +18,16 @@ package com.myrontuttle.sci.evolve.operators;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.testng.annotations.Test;
+import org.uncommons.maths.random.Probability;
 import com.myrontuttle.sci.evolve.api.EvolutionaryOperator;
 import com.myrontuttle.sci.evolve.FrameworkTestUtils;
 import com.myrontuttle.sci.evolve.operators.EvolutionPipeline;
+import com.myrontuttle.sci.evolve.util.SplittableRNG;
 
 /**
  * Unit test for compound, sequential evolutionary schemes.
@@ -58,6 +64,121 @@ public class EvolutionPipelineTest
     }
 
 
+    /**
+     * A parallel pipeline should give the same results for the same seed, however many
+     * threads it uses, and should still apply operators that cannot be partitioned.
+     */
+    @Test
+    public void testParallelEvolution()
+    {
+        List<String> population = new ArrayList<String>(1001);
+        for (int i = 0; i < 1001; i++)
+        {
+            population.add("AAAAAAAAAAAAAAAAAAAA");
+        }
+        List<String> singleThreaded = evolveInParallel(population, new ForkJoinPool(1));
+        List<String> multiThreaded = evolveInParallel(population, new ForkJoinPool(4));
+        assert singleThreaded.size() == population.size() : "Wrong population size: " + singleThreaded.size();
+        assert singleThreaded.equals(multiThreaded) : "Results should not depend on the number of threads.";
+        int unchanged = 0;
+        for (String candidate : multiThreaded)
+        {
+            assert candidate.length() == 21 : "Non-partitionable stage not applied: " + candidate;
+            if (candidate.startsWith("AAAAAAAAAAAAAAAAAAAA"))
+            {
+                ++unchanged;
+            }
+        }
+        assert unchanged < population.size() : "Mutation not applied.";
+    }
+
+
+    private List<String> evolveInParallel(List<String> population, ForkJoinPool pool)
+    {
+        List<EvolutionaryOperator<String>> operators = new ArrayList<EvolutionaryOperator<String>>(3);
+        operators.add(new StringMutation(new char[]{'A', 'B', 'C'}, new Probability(0.05)));
+        operators.add(new StringCrossover());
+        operators.add(new EvolutionaryOperator<String>()
+        {
+            public List<String> apply(List<String> selectedCandidates, Random rng)
+            {
+                List<String> result = new ArrayList<String>(selectedCandidates.size());
+                for (String candidate : selectedCandidates)
+                {
+                    result.add(candidate + "X");
+                }
+                return result;
+            }
+        });
+        EvolutionPipeline<String> evolutionScheme = new EvolutionPipeline<String>(operators);
+        evolutionScheme.setParallel(pool);
+        evolutionScheme.setChunkSize(50);
+        try
+        {
+            return evolutionScheme.apply(population, new SplittableRNG(42));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * When one chunk fails, the chunks that have not started must not be applied.
+     */
+    @Test
+    public void testParallelFailureCancelsChunks() throws InterruptedException
+    {
+        final AtomicInteger applied = new AtomicInteger();
+        PartitionableOperator<String> failing = new PartitionableOperator<String>()
+        {
+            public List<String> apply(List<String> selectedCandidates, Random rng)
+            {
+                try
+                {
+                    if (selectedCandidates.contains("FAIL"))
+                    {
+                        Thread.sleep(100);
+                        throw new IllegalStateException("Operator failure.");
+                    }
+                    Thread.sleep(20);
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                applied.incrementAndGet();
+                return new ArrayList<String>(selectedCandidates);
+            }
+
+            public int getGroupSize()
+            {
+                return 1;
+            }
+        };
+        List<String> population = new ArrayList<String>(Collections.nCopies(200, "A"));
+        population.set(0, "FAIL");
+        EvolutionPipeline<String> evolutionScheme
+            = new EvolutionPipeline<String>(Collections.<EvolutionaryOperator<String>>singletonList(failing));
+        ForkJoinPool pool = new ForkJoinPool(1);
+        evolutionScheme.setParallel(pool);
+        evolutionScheme.setChunkSize(10);
+        try
+        {
+            evolutionScheme.apply(population, new SplittableRNG(42));
+            assert false : "Failure of a chunk should be thrown.";
+        }
+        catch (IllegalStateException ex)
+        {
+            // Expected.
+        }
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+        assert applied.get() < 19 : "Remaining chunks were not cancelled: " + applied.get();
+    }
+
+
     /**
      * An empty pipeline is not allowed.  An exception should be thrown.
      */
@@ -0,0 +1,31 @@
+package com.myrontuttle.sci.evolve.replacement;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.FrameworkTestUtils;
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
+
+/**
+ * Unit test for the {@link ReplaceWorst} replacement strategy.
+ * @author Myron Tuttle
+ */
+public class ReplaceWorstTest {
+
+    @Test
+    public void testReplaceWorst() {
+        IndexedPopulation<String> population = new IndexedPopulation<String>(false);
+        population.add(new EvaluatedCandidate<String>("Best", 1));
+        population.add(new EvaluatedCandidate<String>("Middle", 2));
+        population.add(new EvaluatedCandidate<String>("Worst", 3));
+        @SuppressWarnings("unchecked")
+        EvaluatedCandidate<String> offspring = new EvaluatedCandidate<String>("Offspring", 1.5);
+        new ReplaceWorst().replace(population, Arrays.asList(offspring), 1, FrameworkTestUtils.getRNG());
+        assert population.size() == 3 : "Population size should be unchanged.";
+        assert population.get(0).getCandidate().equals("Best") : "Best candidate should be first.";
+        assert population.get(1).getCandidate().equals("Offspring") : "Offspring should be ranked second.";
+        assert population.get(2).getCandidate().equals("Middle") : "Worst candidate should be replaced.";
+    }
+}
@@ -0,0 +1,43 @@
+package com.myrontuttle.sci.evolve.replacement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.FrameworkTestUtils;
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
+
+/**
+ * Unit test for the {@link TournamentReplacement} replacement strategy.
+ * @author Myron Tuttle
+ */
+public class TournamentReplacementTest {
+
+    /**
+     * Elite candidates must never be replaced, however many replacements are made.
+     */
+    @Test
+    public void testElitePreserved() {
+        IndexedPopulation<Integer> population = new IndexedPopulation<Integer>(true);
+        for (int i = 0; i < 20; i++) {
+            population.add(new EvaluatedCandidate<Integer>(i, i));
+        }
+        List<EvaluatedCandidate<Integer>> offspring = new ArrayList<EvaluatedCandidate<Integer>>();
+        for (int i = 0; i < 15; i++) {
+            offspring.add(new EvaluatedCandidate<Integer>(-1, 0));
+        }
+        new TournamentReplacement(3).replace(population, offspring, 5, FrameworkTestUtils.getRNG());
+        assert population.size() == 20 : "Population size should be unchanged.";
+        for (int i = 0; i < 5; i++) {
+            assert population.get(i).getCandidate() == 19 - i : "Elite candidate replaced.";
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidTournamentSize() {
+        new TournamentReplacement(0);
+    }
+}
@@ -0,0 +1,70 @@
+package com.myrontuttle.sci.evolve.selection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.testng.annotations.Test;
+import com.myrontuttle.sci.evolve.FrameworkTestUtils;
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.api.SelectionStrategy;
+
+/**
+ * Unit test for roulette selection using the alias method.
+ * @author Myron Tuttle
+ */
+public class AliasRouletteWheelSelectionTest {
+
+    /**
+     * Candidates should be selected in proportion to their fitness.
+     */
+    @Test
+    public void testNaturalFitnessSelection() {
+        SelectionStrategy<Object> selector = new AliasRouletteWheelSelection();
+        List<EvaluatedCandidate<String>> population = new ArrayList<EvaluatedCandidate<String>>(4);
+        population.add(new EvaluatedCandidate<String>("Steve", 4.0));
+        population.add(new EvaluatedCandidate<String>("Mary", 3.0));
+        population.add(new EvaluatedCandidate<String>("John", 2.0));
+        population.add(new EvaluatedCandidate<String>("Gary", 1.0));
+        List<String> selection = selector.select(population, true, 20000, FrameworkTestUtils.getRNG());
+        assert selection.size() == 20000 : "Selection size is " + selection.size() + ", should be 20000.";
+        assertShare(selection, "Steve", 0.4);
+        assertShare(selection, "Mary", 0.3);
+        assertShare(selection, "John", 0.2);
+        assertShare(selection, "Gary", 0.1);
+    }
+
+
+    @Test
+    public void testNonNaturalFitnessSelection() {
+        SelectionStrategy<Object> selector = new AliasRouletteWheelSelection();
+        List<EvaluatedCandidate<String>> population = new ArrayList<EvaluatedCandidate<String>>(2);
+        population.add(new EvaluatedCandidate<String>("Gary", 1.0));
+        population.add(new EvaluatedCandidate<String>("John", 3.0));
+        List<String> selection = selector.select(population, false, 20000, FrameworkTestUtils.getRNG());
+        assertShare(selection, "Gary", 0.75);
+        assertShare(selection, "John", 0.25);
+    }
+
+
+    /**
+     * Perfect non-natural scores take the whole wheel, and are shared equally.
+     */
+    @Test
+    public void testNonNaturalFitnessPerfectSolutions() {
+        SelectionStrategy<Object> selector = new AliasRouletteWheelSelection();
+        List<EvaluatedCandidate<String>> population = new ArrayList<EvaluatedCandidate<String>>(4);
+        population.add(new EvaluatedCandidate<String>("Gary", 0));
+        population.add(new EvaluatedCandidate<String>("John", 8.4));
+        population.add(new EvaluatedCandidate<String>("Mary", 0));
+        population.add(new EvaluatedCandidate<String>("Steve", 10.0));
+        List<String> selection = selector.select(population, false, 20000, FrameworkTestUtils.getRNG());
+        assertShare(selection, "Gary", 0.5);
+        assertShare(selection, "Mary", 0.5);
+    }
+
+
+    static void assertShare(List<String> selection, String name, double expectedShare) {
+        double share = (double) Collections.frequency(selection, name) / selection.size();
+        assert Math.abs(share - expectedShare) < 0.02 : name + " selected " + share + ", expected " + expectedShare;
+    }
+}
@@ -0,0 +1,139 @@
+package com.myrontuttle.sci.evolve.selection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.testng.annotations.Test;
+import com.myrontuttle.sci.evolve.FrameworkTestUtils;
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.api.SelectionStrategy;
+import com.myrontuttle.sci.evolve.util.IndexedPopulation;
+
+/**
+ * Unit test for roulette selection that keeps its wheel between selections.
+ * @author Myron Tuttle
+ */
+public class DynamicRouletteWheelSelectionTest {
+
+    @Test
+    public void testNaturalFitnessSelection() {
+        SelectionStrategy<Object> selector = new DynamicRouletteWheelSelection();
+        List<EvaluatedCandidate<String>> population = new ArrayList<EvaluatedCandidate<String>>(4);
+        population.add(new EvaluatedCandidate<String>("Steve", 4.0));
+        population.add(new EvaluatedCandidate<String>("Mary", 3.0));
+        population.add(new EvaluatedCandidate<String>("John", 2.0));
+        population.add(new EvaluatedCandidate<String>("Gary", 1.0));
+        List<String> selection = selector.select(population, true, 20000, FrameworkTestUtils.getRNG());
+        assert selection.size() == 20000 : "Selection size is " + selection.size() + ", should be 20000.";
+        AliasRouletteWheelSelectionTest.assertShare(selection, "Steve", 0.4);
+        AliasRouletteWheelSelectionTest.assertShare(selection, "Mary", 0.3);
+        AliasRouletteWheelSelectionTest.assertShare(selection, "John", 0.2);
+        AliasRouletteWheelSelectionTest.assertShare(selection, "Gary", 0.1);
+    }
+
+
+    /**
+     * Changes to the population between selections, including duplicated candidates
+     * and a switch to non-natural scores, must be reflected in the wheel.
+     */
+    @Test
+    public void testPopulationChanges() {
+        SelectionStrategy<Object> selector = new DynamicRouletteWheelSelection();
+        List<EvaluatedCandidate<String>> population = new ArrayList<EvaluatedCandidate<String>>(40);
+        for (int i = 0; i < 40; i++) {
+            population.add(new EvaluatedCandidate<String>("Old", 1.0));
+        }
+        selector.select(population, true, 10, FrameworkTestUtils.getRNG());
+
+        // Replace half of the population, with the same new candidate twice.
+        EvaluatedCandidate<String> steve = new EvaluatedCandidate<String>("Steve", 10.0);
+        for (int i = 0; i < 20; i++) {
+            population.set(i, new EvaluatedCandidate<String>("New", 1.0));
+        }
+        population.set(0, steve);
+        population.set(1, steve);
+        List<String> selection = selector.select(population, true, 20000, FrameworkTestUtils.getRNG());
+        // Steve has 20 of the 58 units of fitness, the 18 other new candidates have 18.
+        AliasRouletteWheelSelectionTest.assertShare(selection, "Steve", 20.0 / 58);
+        AliasRouletteWheelSelectionTest.assertShare(selection, "New", 18.0 / 58);
+        AliasRouletteWheelSelectionTest.assertShare(selection, "Old", 20.0 / 58);
+
+        population.set(0, new EvaluatedCandidate<String>("Perfect", 0));
+        selection = selector.select(population, false, 100, FrameworkTestUtils.getRNG());
+        for (String name : selection) {
+            assert name.equals("Perfect") : "Perfect solution should take the whole wheel, got " + name;
+        }
+    }
+
+
+    /**
+     * Many single replacements, as in steady-state evolution, must not let rounding
+     * errors build up in the wheel.
+     */
+    @Test
+    public void testSteadyStateReplacement() {
+        SelectionStrategy<Object> selector = new DynamicRouletteWheelSelection();
+        List<EvaluatedCandidate<String>> population = new ArrayList<EvaluatedCandidate<String>>(10);
+        for (int i = 0; i < 10; i++) {
+            population.add(new EvaluatedCandidate<String>("Old", 0.1 * (i + 1)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            selector.select(population, true, 1, FrameworkTestUtils.getRNG());
+            int index = i % 10;
+            population.set(index, index == 0
+                                  ? new EvaluatedCandidate<String>("Heavy", 9.0)
+                                  : new EvaluatedCandidate<String>("Light", 0.1 * index));
+        }
+        List<String> selection = selector.select(population, true, 20000, FrameworkTestUtils.getRNG());
+        AliasRouletteWheelSelectionTest.assertShare(selection, "Heavy", 9.0 / 13.5);
+    }
+
+
+    /**
+     * Selecting repeatedly from an indexed population applies only the reported changes,
+     * which must leave the wheel exactly as comparing the whole population would,
+     * including for candidates that appear more than once.
+     */
+    @Test
+    public void testIndexedPopulationChanges() {
+        SelectionStrategy<Object> selector = new DynamicRouletteWheelSelection();
+        IndexedPopulation<String> population = new IndexedPopulation<String>(true);
+        for (int i = 0; i < 10; i++) {
+            population.add(new EvaluatedCandidate<String>("Old", 0.1 * (i + 1)));
+        }
+        EvaluatedCandidate<String> heavy = new EvaluatedCandidate<String>("Heavy", 4.5);
+        Random rng = FrameworkTestUtils.getRNG();
+        for (int i = 0; i < 1000; i++) {
+            selector.select(population, true, 1, rng);
+            // Keep Heavy at rank zero, and in the population at most twice.
+            population.remove(1 + rng.nextInt(population.size() - 1));
+            population.add(i == 500
+                           ? heavy
+                           : new EvaluatedCandidate<String>("Light", 0.1 * (i % 10 + 1)));
+            if (i == 0) {
+                population.add(heavy);
+                population.remove(population.size() - 1);
+            }
+        }
+        List<String> selection = selector.select(population, true, 20000, rng);
+        AliasRouletteWheelSelectionTest.assertShare(selection, "Heavy", heavyShare(population, heavy));
+
+        // Removing one copy must reduce its share of the wheel.
+        population.remove(0);
+        selection = selector.select(population, true, 20000, rng);
+        AliasRouletteWheelSelectionTest.assertShare(selection, "Heavy", heavyShare(population, heavy));
+    }
+
+
+    private static double heavyShare(List<EvaluatedCandidate<String>> population, EvaluatedCandidate<String> heavy) {
+        double total = 0;
+        double heavyTotal = 0;
+        for (EvaluatedCandidate<String> candidate : population) {
+            total += candidate.getFitness();
+            if (candidate == heavy) {
+                heavyTotal += candidate.getFitness();
+            }
+        }
+        return heavyTotal / total;
+    }
+}
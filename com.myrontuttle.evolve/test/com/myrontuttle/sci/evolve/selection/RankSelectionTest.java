@@ -18,6 +18,7 @@ package com.myrontuttle.sci.evolve.selection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import org.testng.annotations.Test;
 import com.myrontuttle.sci.evolve.FrameworkTestUtils;
 import com.myrontuttle.sci.evolve.api.SelectionStrategy;
@@ -92,4 +93,33 @@ public class RankSelectionTest
         assert johnCount <= 1 : "Candidate selected wrong number of times (should be 0 or 1, was " + johnCount + ")";
         assert steveCount <= 1 : "Candidate selected wrong number of times (should be 0 or 1, was " + steveCount + ")";
     }
+
+
+    /**
+     * Passing the scores to a {@link WeightedSelectionStrategy} in an array must select
+     * the same candidates as passing a re-scored population to the same strategy.
+     */
+    @Test
+    public void testWeightedDelegate()
+    {
+        List<EvaluatedCandidate<String>> population = new ArrayList<EvaluatedCandidate<String>>(100);
+        for (int i = 0; i < 100; i++)
+        {
+            population.add(new EvaluatedCandidate<String>(String.valueOf(i), 200 - i * 1.5));
+        }
+        final SelectionStrategy<Object> sampler = new RouletteWheelSelection();
+        SelectionStrategy<Object> unweightedSampler = new SelectionStrategy<Object>()
+        {
+            public <S> List<S> select(List<EvaluatedCandidate<S>> candidates,
+                                      boolean naturalFitnessScores,
+                                      int selectionSize,
+                                      Random rng)
+            {
+                return sampler.select(candidates, naturalFitnessScores, selectionSize, rng);
+            }
+        };
+        List<String> weighted = new RankSelection(sampler).select(population, true, 50, new Random(42));
+        List<String> unweighted = new RankSelection(unweightedSampler).select(population, true, 50, new Random(42));
+        assert weighted.equals(unweighted) : "Weighted selection differs: " + weighted + " " + unweighted;
+    }
 }
@@ -15,6 +15,7 @@
 //=============================================================================
 package com.myrontuttle.sci.evolve.selection;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 import org.testng.annotations.Test;
@@ -76,6 +77,42 @@ public class TournamentSelectionTest
 
 
 
+    /**
+     * Each tournament only needs to look at its two candidates, so selecting from a large
+     * population must not read every member.
+     */
+    @Test
+    public void testOnlyTournamentCandidatesAreRead()
+    {
+        SelectionStrategy<Object> selector = new TournamentSelection(new Probability(0.7d));
+        final List<EvaluatedCandidate<Integer>> members = new ArrayList<EvaluatedCandidate<Integer>>(1000);
+        for (int i = 0; i < 1000; i++)
+        {
+            members.add(new EvaluatedCandidate<Integer>(i, i));
+        }
+        final int[] reads = new int[1];
+        List<EvaluatedCandidate<Integer>> population = new AbstractList<EvaluatedCandidate<Integer>>()
+        {
+            @Override
+            public EvaluatedCandidate<Integer> get(int index)
+            {
+                reads[0]++;
+                return members.get(index);
+            }
+
+            @Override
+            public int size()
+            {
+                return members.size();
+            }
+        };
+        List<Integer> selection = selector.select(population, true, 2, FrameworkTestUtils.getRNG());
+        assert selection.size() == 2 : "Selection size is " + selection.size() + ", should be 2.";
+        // Each tournament reads its two members and nothing else.
+        assert reads[0] <= 2 * selection.size() : "Read " + reads[0] + " members to select 2.";
+    }
+
+
     /**
      * The probability of selecting the fitter of two candidates must be greater than 0.5 to be
      * useful (if it is not, there is no selection pressure, or the pressure is in favour of weaker
@@ -96,4 +96,40 @@ public class StagnationTest
         data = new PopulationStats<Object>(0, new Object(), 2.2, 1.5, 0.1, true, 10, 0, 4, 4);
         assert stagnation.shouldTerminate(data) : "Stagnation should be triggered after 2 generations without improvement.";
     }
+
+
+    /**
+     * A shared instance must track the progress of each population separately.
+     */
+    @Test
+    public void testIndependentPopulations()
+    {
+        TerminationCondition stagnation = new Stagnation(2, true);
+        assert !stagnation.shouldTerminate(new PopulationStats<Object>(1, new Object(), 2, 1, 0.1, true, 10, 0, 0, 1));
+        assert !stagnation.shouldTerminate(new PopulationStats<Object>(2, new Object(), 5, 1, 0.1, true, 10, 0, 0, 1));
+        // Population 1 improves, population 2 does not.
+        assert !stagnation.shouldTerminate(new PopulationStats<Object>(1, new Object(), 3, 1, 0.1, true, 10, 0, 1, 2));
+        assert !stagnation.shouldTerminate(new PopulationStats<Object>(2, new Object(), 4, 1, 0.1, true, 10, 0, 1, 2));
+        // Population 1 improves again, population 2 has now stagnated.
+        assert !stagnation.shouldTerminate(new PopulationStats<Object>(1, new Object(), 4, 1, 0.1, true, 10, 0, 2, 3))
+            : "Population 1 should not be affected by the fitness of population 2.";
+        assert stagnation.shouldTerminate(new PopulationStats<Object>(2, new Object(), 4, 1, 0.1, true, 10, 0, 2, 3))
+            : "Population 2 should be stagnant.";
+    }
+
+
+    /**
+     * Once a run has ended, nothing should be remembered about it.
+     */
+    @Test
+    public void testEndRun()
+    {
+        Stagnation stagnation = new Stagnation(2, true);
+        stagnation.shouldTerminate(new PopulationStats<Object>(1, new Object(), 2, 1, 0.1, true, 10, 0, 0, 1));
+        assert stagnation.shouldTerminate(new PopulationStats<Object>(1, new Object(), 2, 1, 0.1, true, 10, 0, 2, 3));
+        stagnation.endRun(1);
+        // A later generation number is treated as the start of a new run's progress.
+        assert !stagnation.shouldTerminate(new PopulationStats<Object>(1, new Object(), 2, 1, 0.1, true, 10, 0, 3, 4))
+            : "Progress of the ended run should have been discarded.";
+    }
 }
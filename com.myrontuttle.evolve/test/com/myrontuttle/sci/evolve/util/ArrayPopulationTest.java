@@ -0,0 +1,117 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.FrameworkTestUtils;
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.selection.TruncationSelection;
+
+/**
+ * Unit test for the {@link ArrayPopulation} class.
+ * @author Myron Tuttle
+ */
+public class ArrayPopulationTest {
+
+    /**
+     * Sorting must give exactly the same order as sorting the equivalent list,
+     * including the order of candidates with equal fitness.
+     */
+    @Test
+    public void testSortMatchesList() {
+        Random rng = FrameworkTestUtils.getRNG();
+        for (boolean natural : new boolean[]{true, false}) {
+            List<EvaluatedCandidate<Integer>> list = new ArrayList<EvaluatedCandidate<Integer>>();
+            for (int i = 0; i < 500; i++) {
+                list.add(new EvaluatedCandidate<Integer>(i, rng.nextInt(20)));
+            }
+            ArrayPopulation<Integer> population = new ArrayPopulation<Integer>(list);
+            EvolutionUtils.sortEvaluatedPopulation(list, natural);
+            EvolutionUtils.sortEvaluatedPopulation(population, natural);
+            for (int i = 0; i < list.size(); i++) {
+                assert population.getCandidate(i).equals(list.get(i).getCandidate())
+                    : "Wrong candidate at position " + i + " (natural = " + natural + ")";
+                assert population.getFitness(i) == list.get(i).getFitness() : "Wrong fitness at " + i;
+            }
+        }
+    }
+
+
+    @Test
+    public void testListOperations() {
+        ArrayPopulation<String> population = new ArrayPopulation<String>(1);
+        population.add("A", 1);
+        population.add("B", 3);
+        population.add(new EvaluatedCandidate<String>("C", 2));
+        population.sort(true);
+        assert population.size() == 3 : "Wrong size: " + population.size();
+        assert population.get(0).getCandidate().equals("B") : "Fittest candidate should be first.";
+
+        EvaluatedCandidate<String> removed = population.remove(1);
+        assert removed.getCandidate().equals("C") : "Wrong candidate removed.";
+        assert population.size() == 2 : "Wrong size after removal.";
+        assert population.getCandidate(0).equals("B") && population.getCandidate(1).equals("A")
+            : "Order not preserved after removal.";
+
+        population.set(1, new EvaluatedCandidate<String>("D", 5));
+        assert population.getCandidate(1).equals("D") && population.getFitness(1) == 5
+            : "Candidate not replaced.";
+        double[] scores = ArrayPopulation.fitnessScores(population);
+        assert scores.length == 2 && scores[0] == 3 && scores[1] == 5 : "Wrong fitness scores.";
+    }
+
+
+    /**
+     * Removals from anywhere in a sorted population must keep the remaining candidates
+     * in order, and looking a candidate up must not create a new object each time.
+     */
+    @Test
+    public void testRemoveMatchesList() {
+        Random rng = FrameworkTestUtils.getRNG();
+        List<EvaluatedCandidate<Integer>> list = new ArrayList<EvaluatedCandidate<Integer>>();
+        ArrayPopulation<Integer> population = new ArrayPopulation<Integer>(1);
+        for (int i = 0; i < 200; i++) {
+            population.add(i, rng.nextInt(50));
+        }
+        population.sort(false);
+        list.addAll(population);
+        assert population.get(7) == population.get(7) : "Evaluated candidate should be kept.";
+        for (int removals = 1; !list.isEmpty(); removals++) {
+            int index = rng.nextInt(list.size());
+            EvaluatedCandidate<Integer> removed = population.remove(index);
+            EvaluatedCandidate<Integer> expected = list.remove(index);
+            assert removed == expected : "Wrong candidate removed.";
+            for (int i = 0; i < list.size(); i++) {
+                assert population.getCandidate(i).equals(list.get(i).getCandidate())
+                    : "Wrong candidate at position " + i + " after removal.";
+            }
+            if (removals % 50 == 0) {
+                population.add(list.size(), 25);
+                list.add(population.get(list.size()));
+                population.sort(false);
+                EvolutionUtils.sortEvaluatedPopulation(list, false);
+            }
+        }
+    }
+
+
+    /**
+     * Selection strategies must treat an array population the same as a list.
+     */
+    @Test
+    public void testSelection() {
+        ArrayPopulation<String> population = new ArrayPopulation<String>(4);
+        population.add("Gary", 6.2);
+        population.add("Steve", 10.0);
+        population.add("John", 8.4);
+        population.add("Mary", 9.1);
+        population.sort(true);
+        List<String> selection = new TruncationSelection(0.5d).select(population, true, 2, null);
+        assert selection.size() == 2 : "Selection size is " + selection.size() + ", should be 2.";
+        assert selection.contains("Steve") : "Best candidate not selected.";
+        assert selection.contains("Mary") : "Second best candidate not selected.";
+    }
+}
@@ -0,0 +1,88 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.FrameworkTestUtils;
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+import com.myrontuttle.sci.evolve.selection.RouletteWheelSelection;
+import com.myrontuttle.sci.evolve.selection.TruncationSelection;
+
+/**
+ * Unit test for the partial ranking methods in {@link EvolutionUtils}.
+ * @author Myron Tuttle
+ */
+public class EvolutionUtilsTest {
+
+    /**
+     * The ranked prefix must match the start of a fully sorted copy of the population
+     * and no unranked candidate may be fitter than the last ranked one.
+     */
+    @Test
+    public void testRankEvaluatedPopulation() {
+        for (boolean natural : new boolean[]{true, false}) {
+            for (int rankedCount : new int[]{1, 7, 50, 199, 200}) {
+                List<EvaluatedCandidate<Integer>> population = createPopulation(200, FrameworkTestUtils.getRNG());
+                List<EvaluatedCandidate<Integer>> sorted = new ArrayList<EvaluatedCandidate<Integer>>(population);
+                EvolutionUtils.sortEvaluatedPopulation(sorted, natural);
+
+                EvolutionUtils.rankEvaluatedPopulation(population, rankedCount, natural);
+                assert population.size() == 200 : "Population size changed.";
+                for (int i = 0; i < rankedCount; i++) {
+                    assert population.get(i).getFitness() == sorted.get(i).getFitness()
+                        : "Wrong candidate at rank " + i + " (natural = " + natural + ")";
+                }
+                double last = population.get(rankedCount - 1).getFitness();
+                for (int i = rankedCount; i < population.size(); i++) {
+                    double fitness = population.get(i).getFitness();
+                    assert natural ? fitness <= last : fitness >= last
+                        : "Unranked candidate fitter than ranked candidates.";
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Selecting the fittest must move exactly the fittest candidates to the front.
+     */
+    @Test
+    public void testSelectFittest() {
+        List<EvaluatedCandidate<Integer>> population = new ArrayList<EvaluatedCandidate<Integer>>();
+        for (int i = 0; i < 100; i++) {
+            // Lots of duplicate scores.
+            population.add(new EvaluatedCandidate<Integer>(i, i % 10));
+        }
+        EvolutionUtils.selectFittest(population, 25, true);
+        int nines = 0;
+        for (int i = 0; i < 25; i++) {
+            double fitness = population.get(i).getFitness();
+            assert fitness >= 7 : "Unfit candidate in selected prefix: " + fitness;
+            if (fitness == 9) {
+                ++nines;
+            }
+        }
+        assert nines == 10 : "All of the fittest candidates should be selected.";
+    }
+
+
+    @Test
+    public void testGetRankedCount() {
+        assert EvolutionUtils.getRankedCount(new RouletteWheelSelection(), 100, 90) == 0
+            : "Roulette wheel selection does not need a ranked population.";
+        assert EvolutionUtils.getRankedCount(new TruncationSelection(0.2d), 100, 90) == 20
+            : "Truncation selection should only need the eligible candidates ranked.";
+    }
+
+
+    private List<EvaluatedCandidate<Integer>> createPopulation(int size, Random rng) {
+        List<EvaluatedCandidate<Integer>> population = new ArrayList<EvaluatedCandidate<Integer>>(size);
+        for (int i = 0; i < size; i++) {
+            population.add(new EvaluatedCandidate<Integer>(i, rng.nextInt(50)));
+        }
+        return population;
+    }
+}
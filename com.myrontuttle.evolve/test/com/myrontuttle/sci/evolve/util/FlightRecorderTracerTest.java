@@ -0,0 +1,105 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.FrameworkTestUtils;
+import com.myrontuttle.sci.evolve.engines.GenerationalEvolutionEngine;
+import com.myrontuttle.sci.evolve.eval.IntegerEvaluator;
+import com.myrontuttle.sci.evolve.factories.StubIntegerFactory;
+import com.myrontuttle.sci.evolve.operators.IntegerAdjuster;
+import com.myrontuttle.sci.evolve.selection.RouletteWheelSelection;
+import com.myrontuttle.sci.evolve.termination.GenerationCount;
+
+/**
+ * Unit test for the {@link FlightRecorderTracer} class.  The recording API is used by
+ * reflection, as the tracer does, and the test does nothing on a JVM without Flight
+ * Recorder.
+ * @author Myron Tuttle
+ */
+public class FlightRecorderTracerTest {
+
+    @AfterMethod
+    public void uninstallTracer() {
+        Tracing.install(null);
+    }
+
+
+    /**
+     * Events of a traced evolution run must appear in a recording that enables them.
+     */
+    @Test
+    public void testRecording() throws Exception {
+        if (!FlightRecorderTracer.isAvailable()) {
+            return;
+        }
+        Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        Object recording = recordingClass.getConstructor().newInstance();
+        Path file = Files.createTempFile("evolution", ".jfr");
+        try {
+            Method enable = recordingClass.getMethod("enable", String.class);
+            enable.invoke(recording, "com.myrontuttle.sci.evolve.GenerationStarted");
+            enable.invoke(recording, "com.myrontuttle.sci.evolve.GenerationFinished");
+            enable.invoke(recording, "com.myrontuttle.sci.evolve.EvaluationFinished");
+            recordingClass.getMethod("start").invoke(recording);
+
+            GenerationalEvolutionEngine<Integer> engine
+                = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                           new IntegerAdjuster(1),
+                                                           new IntegerEvaluator(),
+                                                           new RouletteWheelSelection(),
+                                                           FrameworkTestUtils.getRNG());
+            engine.setThreadPool(2, 16);
+            Tracing.install(FlightRecorderTracer.getInstance());
+            engine.evolve(0, 10, 0, new GenerationCount(3));
+            Tracing.install(null);
+            engine.close();
+
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+            List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                .getMethod("readAllEvents", Path.class).invoke(null, file);
+            Set<String> names = new HashSet<String>();
+            int generations = 0;
+            for (Object event : events) {
+                Object type = event.getClass().getMethod("getEventType").invoke(event);
+                String name = (String) type.getClass().getMethod("getName").invoke(type);
+                names.add(name);
+                if (name.equals("com.myrontuttle.sci.evolve.GenerationFinished")) {
+                    ++generations;
+                }
+            }
+            assert generations == 3 : "Wrong number of generations recorded: " + generations;
+            assert names.contains("com.myrontuttle.sci.evolve.GenerationStarted") : "Missing generation starts.";
+            assert names.contains("com.myrontuttle.sci.evolve.EvaluationFinished") : "Missing evaluations.";
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+            Files.delete(file);
+        }
+    }
+
+
+    /**
+     * Events must be ignored cheaply while no recording has them enabled.
+     */
+    @Test
+    public void testDisabledEvents() {
+        if (!FlightRecorderTracer.isAvailable()) {
+            return;
+        }
+        FlightRecorderTracer tracer = FlightRecorderTracer.getInstance();
+        tracer.generationStarted(0, 0, 10);
+        tracer.generationFinished(0, 0, 10, 1000);
+        tracer.evaluationFinished(1, 1000);
+        tracer.expressionFinished(0, 1000);
+        tracer.epochFinished(0, 0, 2, 1000);
+        tracer.migrationFinished(0, 0, 1, 1000);
+    }
+}
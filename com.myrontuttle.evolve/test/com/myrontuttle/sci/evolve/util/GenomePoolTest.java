@@ -0,0 +1,59 @@
+package com.myrontuttle.sci.evolve.util;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link GenomePool} class.
+ * @author Myron Tuttle
+ */
+public class GenomePoolTest {
+
+    @Test
+    public void testTakeAndRecycle() {
+        GenomePool<int[]> pool = new GenomePool<int[]>(2);
+        assert pool.take() == null : "Empty pool should return null.";
+        int[] first = new int[3];
+        int[] second = new int[3];
+        assert pool.recycle(first) : "Genome not accepted.";
+        assert pool.recycle(second) : "Genome not accepted.";
+        assert !pool.recycle(new int[3]) : "Full pool should reject genomes.";
+        assert !pool.recycle(null) : "Null should be rejected.";
+        assert pool.size() == 2 : "Wrong size: " + pool.size();
+        int[] taken = pool.take();
+        assert taken == first || taken == second : "Pool returned a genome it was not given.";
+        assert pool.take() != taken : "Same genome returned twice.";
+        assert pool.take() == null : "Pool should be empty.";
+        assert pool.getRecycledCount() == 2 : "Wrong recycled count: " + pool.getRecycledCount();
+        assert pool.getReusedCount() == 2 : "Wrong reused count: " + pool.getReusedCount();
+    }
+
+
+    /**
+     * Arrays of the wrong length must stay in the pool rather than being handed out
+     * and thrown away.
+     */
+    @Test
+    public void testTakeArray() {
+        GenomePool<int[]> pool = new GenomePool<int[]>(3);
+        int[] short1 = new int[2];
+        int[] long1 = new int[5];
+        int[] short2 = new int[2];
+        pool.recycle(short1);
+        pool.recycle(long1);
+        pool.recycle(short2);
+        assert pool.takeArray(5) == long1 : "Array of the right length not found.";
+        assert pool.takeArray(5) == null : "No array of length 5 should be left.";
+        assert pool.size() == 2 : "Arrays of other lengths should stay in the pool.";
+        int[] taken = pool.takeArray(2);
+        assert taken == short1 || taken == short2 : "Pool returned an array it was not given.";
+        assert pool.takeArray(2) != taken : "Same array returned twice.";
+        assert pool.size() == 0 : "Pool should be empty.";
+        assert pool.getReusedCount() == 3 : "Wrong reused count: " + pool.getReusedCount();
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroCapacity() {
+        new GenomePool<int[]>(0);
+    }
+}
@@ -0,0 +1,170 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+import org.uncommons.maths.statistics.DataSet;
+
+import com.myrontuttle.sci.evolve.FrameworkTestUtils;
+import com.myrontuttle.sci.evolve.api.EvaluatedCandidate;
+
+/**
+ * Unit test for the {@link IndexedPopulation} class.
+ * @author Myron Tuttle
+ */
+public class IndexedPopulationTest {
+
+    /**
+     * After a sequence of random insertions and removals the population must match a
+     * sorted list that received the same operations.
+     */
+    @Test
+    public void testRandomUpdates() {
+        for (boolean natural : new boolean[]{true, false}) {
+            Random rng = FrameworkTestUtils.getRNG();
+            IndexedPopulation<Integer> population = new IndexedPopulation<Integer>(natural);
+            List<EvaluatedCandidate<Integer>> expected = new ArrayList<EvaluatedCandidate<Integer>>();
+            for (int i = 0; i < 2000; i++) {
+                if (expected.isEmpty() || rng.nextInt(3) > 0) {
+                    EvaluatedCandidate<Integer> candidate = new EvaluatedCandidate<Integer>(i, rng.nextInt(100));
+                    population.add(candidate);
+                    expected.add(candidate);
+                    EvolutionUtils.sortEvaluatedPopulation(expected, natural);
+                } else {
+                    int index = rng.nextInt(expected.size());
+                    assert population.remove(index).getFitness() == expected.remove(index).getFitness()
+                        : "Wrong candidate removed.";
+                }
+            }
+            assert population.size() == expected.size() : "Wrong size: " + population.size();
+            Iterator<EvaluatedCandidate<Integer>> iterator = population.iterator();
+            for (int i = 0; i < expected.size(); i++) {
+                double fitness = expected.get(i).getFitness();
+                assert population.get(i).getFitness() == fitness : "Wrong candidate at rank " + i;
+                assert iterator.next().getFitness() == fitness : "Iteration out of order at rank " + i;
+            }
+            assert !iterator.hasNext() : "Iterator should be exhausted.";
+        }
+    }
+
+
+    /**
+     * Candidates with equal fitness should be kept in the order they were added.
+     */
+    @Test
+    public void testTiesKeepInsertionOrder() {
+        IndexedPopulation<String> population = new IndexedPopulation<String>(true);
+        population.add(new EvaluatedCandidate<String>("A", 1));
+        population.add(new EvaluatedCandidate<String>("B", 2));
+        population.add(new EvaluatedCandidate<String>("C", 1));
+        assert population.get(0).getCandidate().equals("B") : "Fittest candidate should be first.";
+        assert population.get(1).getCandidate().equals("A") : "Earlier candidate should rank first.";
+        assert population.get(2).getCandidate().equals("C") : "Later candidate should rank last.";
+    }
+
+
+    /**
+     * The maintained statistics must agree with statistics calculated from scratch.
+     */
+    @Test
+    public void testStatistics() {
+        IndexedPopulation<Integer> population = new IndexedPopulation<Integer>(true);
+        for (int i = 0; i < 10; i++) {
+            population.add(new EvaluatedCandidate<Integer>(i, i));
+        }
+        population.remove(0);
+        population.remove(population.size() - 1);
+        DataSet expected = new DataSet();
+        for (EvaluatedCandidate<Integer> candidate : population) {
+            expected.addValue(candidate.getFitness());
+        }
+        assert Math.abs(population.getMeanFitness() - expected.getArithmeticMean()) < 1e-9
+            : "Wrong mean: " + population.getMeanFitness();
+        assert Math.abs(population.getFitnessStandardDeviation() - expected.getStandardDeviation()) < 1e-9
+            : "Wrong standard deviation: " + population.getFitnessStandardDeviation();
+    }
+
+
+    /**
+     * Scores with a large mean and a small spread must not lose the variance to
+     * cancellation.
+     */
+    @Test
+    public void testStatisticsWithLargeMean() {
+        IndexedPopulation<Integer> population = new IndexedPopulation<Integer>(true);
+        for (int i = 0; i < 1000; i++) {
+            population.add(new EvaluatedCandidate<Integer>(i, 1e9 + i % 4));
+        }
+        for (int i = 0; i < 500; i++) {
+            population.remove(population.size() / 2);
+        }
+        DataSet expected = new DataSet();
+        for (EvaluatedCandidate<Integer> candidate : population) {
+            expected.addValue(candidate.getFitness());
+        }
+        assert Math.abs(population.getFitnessStandardDeviation() - expected.getStandardDeviation()) < 1e-6
+            : "Wrong standard deviation: " + population.getFitnessStandardDeviation();
+    }
+
+
+    /**
+     * Repeated look-ups by rank must still see modifications made between them.
+     */
+    @Test
+    public void testGetAfterModification() {
+        IndexedPopulation<Integer> population = new IndexedPopulation<Integer>(false);
+        for (int i = 0; i < 100; i++) {
+            population.add(new EvaluatedCandidate<Integer>(i, i));
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < population.size(); i++) {
+                assert population.get(i).getCandidate() == i + round : "Wrong candidate at rank " + i;
+            }
+            population.remove(0);
+        }
+    }
+
+
+    /**
+     * Changes since a version must be reported while they are all recorded, and not
+     * once they are not.
+     */
+    @Test
+    public void testChangesSince() {
+        IndexedPopulation<Integer> population = new IndexedPopulation<Integer>(true);
+        EvaluatedCandidate<Integer> first = new EvaluatedCandidate<Integer>(1, 1);
+        population.add(first);
+        List<EvaluatedCandidate<Integer>> added = new ArrayList<EvaluatedCandidate<Integer>>();
+        List<EvaluatedCandidate<Integer>> removed = new ArrayList<EvaluatedCandidate<Integer>>();
+        assert !population.getChangesSince(0, added, removed) : "Changes before the record began are not known.";
+
+        long version = population.getVersion();
+        EvaluatedCandidate<Integer> second = new EvaluatedCandidate<Integer>(2, 2);
+        population.add(second);
+        population.remove(1);
+        assert population.getVersion() == version + 2 : "Each change should advance the version.";
+        assert population.getChangesSince(version, added, removed) : "Recent changes should be known.";
+        assert added.size() == 1 && added.get(0) == second : "Wrong additions: " + added;
+        assert removed.size() == 1 && removed.get(0) == first : "Wrong removals: " + removed;
+
+        version = population.getVersion();
+        for (int i = 0; i < 100; i++) {
+            population.add(new EvaluatedCandidate<Integer>(i, i));
+        }
+        assert !population.getChangesSince(version, added, removed) : "Changes beyond the record are not known.";
+        version = population.getVersion();
+        population.clear();
+        assert !population.getChangesSince(version, added, removed) : "Clearing is not recorded.";
+    }
+
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSetNotSupported() {
+        IndexedPopulation<Integer> population = new IndexedPopulation<Integer>(true);
+        population.add(new EvaluatedCandidate<Integer>(1, 1));
+        population.set(0, new EvaluatedCandidate<Integer>(2, 2));
+    }
+}
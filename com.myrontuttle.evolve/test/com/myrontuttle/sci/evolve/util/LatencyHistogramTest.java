@@ -0,0 +1,106 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link LatencyHistogram} class.
+ * @author Myron Tuttle
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSummaryStatistics() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        assert histogram.getCount() == 100 : "Wrong count: " + histogram.getCount();
+        assert histogram.getTotalNanos() == 5050000 : "Wrong total: " + histogram.getTotalNanos();
+        assert histogram.getMaxNanos() == 100000 : "Wrong max: " + histogram.getMaxNanos();
+        assert histogram.getMeanNanos() == 50500 : "Wrong mean: " + histogram.getMeanNanos();
+    }
+
+
+    /**
+     * Percentiles are upper bounds that must be within a factor of two of the exact value
+     * and never exceed the maximum.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        long median = histogram.getPercentileNanos(50);
+        assert median >= 500 && median < 1000 : "Wrong median: " + median;
+        long p99 = histogram.getPercentileNanos(99);
+        assert p99 >= 990 && p99 <= 1000 : "Wrong 99th percentile: " + p99;
+        assert histogram.getPercentileNanos(100) == 1000 : "Wrong 100th percentile.";
+        assert histogram.getPercentileNanos(0) == 1 : "Wrong 0th percentile.";
+        assert new LatencyHistogram().getPercentileNanos(50) == 0 : "Empty histogram should report zero.";
+    }
+
+
+    @Test
+    public void testRepeatedOccurrences() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(200, 5);
+        histogram.record(-3);
+        assert histogram.getCount() == 6 : "Wrong count: " + histogram.getCount();
+        assert histogram.getTotalNanos() == 1000 : "Wrong total: " + histogram.getTotalNanos();
+        assert histogram.getPercentileNanos(10) == 0 : "Negative duration should count as zero.";
+    }
+
+
+    @Test
+    public void testCopyAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(20);
+        LatencyHistogram copy = histogram.copy();
+        histogram.reset();
+        histogram.record(5);
+        assert copy.getCount() == 2 : "Copy should not see later updates.";
+        assert copy.getMaxNanos() == 20 : "Wrong max in copy: " + copy.getMaxNanos();
+        assert histogram.getCount() == 1 : "Wrong count after reset: " + histogram.getCount();
+        assert histogram.getMaxNanos() == 5 : "Wrong max after reset: " + histogram.getMaxNanos();
+    }
+
+
+    /**
+     * No updates may be lost when many threads record at once.
+     */
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threadCount = 4;
+        final int updates = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final long duration = t + 1;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int i = 0; i < updates; i++) {
+                        histogram.record(duration);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assert histogram.getCount() == threadCount * updates : "Lost updates: " + histogram.getCount();
+        assert histogram.getTotalNanos() == 10 * updates : "Wrong total: " + histogram.getTotalNanos();
+        assert histogram.getMaxNanos() == threadCount : "Wrong max: " + histogram.getMaxNanos();
+    }
+}
@@ -0,0 +1,130 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+import org.uncommons.maths.statistics.DataSet;
+
+/**
+ * Unit test for the {@link SplittableRNG} class.
+ * @author Myron Tuttle
+ */
+public class SplittableRNGTest {
+
+    @Test
+    public void testRepeatable() {
+        SplittableRNG rng = new SplittableRNG(42);
+        SplittableRNG duplicate = new SplittableRNG(rng.getSeed());
+        for (int i = 0; i < 1000; i++) {
+            assert rng.nextLong() == duplicate.nextLong() : "Generators with the same seed diverged.";
+        }
+        rng.setSeed(42);
+        assert rng.nextLong() == new SplittableRNG(42).nextLong() : "Re-seeding did not restart the sequence.";
+    }
+
+
+    /**
+     * A numbered stream depends only on the seed, not on how far the parent has advanced.
+     */
+    @Test
+    public void testNumberedStreams() {
+        SplittableRNG rng = new SplittableRNG(7);
+        SplittableRNG before = rng.stream(3);
+        for (int i = 0; i < 100; i++) {
+            rng.nextInt();
+        }
+        SplittableRNG after = rng.stream(3);
+        SplittableRNG other = rng.stream(4);
+        boolean differs = false;
+        for (int i = 0; i < 100; i++) {
+            long value = before.nextLong();
+            assert value == after.nextLong() : "Same stream number gave different numbers.";
+            differs |= value != other.nextLong();
+        }
+        assert differs : "Different stream numbers gave the same numbers.";
+    }
+
+
+    @Test
+    public void testSplit() {
+        SplittableRNG first = new SplittableRNG(99);
+        SplittableRNG second = new SplittableRNG(99);
+        SplittableRNG child1 = first.split();
+        SplittableRNG child2 = second.split();
+        for (int i = 0; i < 100; i++) {
+            assert child1.nextLong() == child2.nextLong() : "Splits in the same order should match.";
+        }
+        assert first.nextLong() != child1.nextLong() : "Split stream should differ from its parent.";
+    }
+
+
+    /**
+     * Bulk fills must produce exactly the numbers of the equivalent individual calls.
+     */
+    @Test
+    public void testBulkFills() {
+        SplittableRNG bulk = new SplittableRNG(5);
+        SplittableRNG single = new SplittableRNG(5);
+        int[] ints = new int[50];
+        bulk.nextInts(ints, 13);
+        for (int value : ints) {
+            assert value == single.nextInt(13) : "Bounded bulk fill differs from nextInt(int).";
+        }
+        bulk.nextInts(ints);
+        for (int value : ints) {
+            assert value == single.nextInt() : "Bulk fill differs from nextInt().";
+        }
+        double[] doubles = new double[50];
+        bulk.nextDoubles(doubles);
+        for (double value : doubles) {
+            assert value == single.nextDouble() : "Bulk fill differs from nextDouble().";
+        }
+    }
+
+
+    @Test
+    public void testDistribution() {
+        SplittableRNG rng = new SplittableRNG(123);
+        double[] doubles = new double[20000];
+        rng.nextDoubles(doubles);
+        DataSet data = new DataSet(doubles);
+        assert data.getMinimum() >= 0 && data.getMaximum() < 1 : "Double out of range.";
+        assert Math.abs(data.getArithmeticMean() - 0.5) < 0.01 : "Wrong mean: " + data.getArithmeticMean();
+        int[] counts = new int[10];
+        int[] ints = new int[20000];
+        rng.nextInts(ints, 10);
+        for (int value : ints) {
+            ++counts[value];
+        }
+        for (int count : counts) {
+            assert Math.abs(count - 2000) < 200 : "Uneven distribution: " + Arrays.toString(counts);
+        }
+    }
+
+
+    /**
+     * A split or numbered stream must be reproducible from its own seed, so that an island
+     * or chunk of work can be replayed from a logged seed.
+     */
+    @Test
+    public void testDerivedStreamSeeds() {
+        SplittableRNG rng = new SplittableRNG(5);
+        SplittableRNG[] derived = {rng.split(), rng.stream(2)};
+        for (SplittableRNG stream : derived) {
+            byte[] seed = stream.getSeed();
+            assert seed.length == 16 : "Derived stream seed should be 16 bytes: " + seed.length;
+            SplittableRNG replay = new SplittableRNG(seed);
+            for (int i = 0; i < 100; i++) {
+                assert stream.nextLong() == replay.nextLong() : "Replayed stream diverged.";
+            }
+            assert stream.stream(1).nextLong() == replay.stream(1).nextLong() : "Replayed sub-streams diverged.";
+        }
+        assert new SplittableRNG(5).getSeed().length == 8 : "Plain seed should be 8 bytes.";
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongSeedLength() {
+        new SplittableRNG(new byte[4]);
+    }
+}
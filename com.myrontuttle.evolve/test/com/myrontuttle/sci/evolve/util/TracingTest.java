@@ -0,0 +1,143 @@
+package com.myrontuttle.sci.evolve.util;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.myrontuttle.sci.evolve.FrameworkTestUtils;
+import com.myrontuttle.sci.evolve.api.FitnessEvaluator;
+import com.myrontuttle.sci.evolve.engines.GenerationalEvolutionEngine;
+import com.myrontuttle.sci.evolve.factories.StubIntegerFactory;
+import com.myrontuttle.sci.evolve.islands.IslandEvolution;
+import com.myrontuttle.sci.evolve.islands.RingMigration;
+import com.myrontuttle.sci.evolve.operators.IntegerAdjuster;
+import com.myrontuttle.sci.evolve.selection.RouletteWheelSelection;
+import com.myrontuttle.sci.evolve.termination.GenerationCount;
+
+/**
+ * Unit test for the {@link Tracing} class and the events reported to an
+ * {@link EvolutionTracer}.
+ * @author Myron Tuttle
+ */
+public class TracingTest {
+
+    @AfterMethod
+    public void uninstallTracer() {
+        Tracing.install(null);
+    }
+
+
+    /**
+     * Island evolution must report every epoch and migration, and the engines on each
+     * island must report matching start and end events for every generation.
+     */
+    @Test
+    public void testIslandEvents() {
+        final int islandCount = 3;
+        IslandEvolution<Integer> islandEvolution = new IslandEvolution<Integer>(islandCount,
+                                                                                new RingMigration(),
+                                                                                new StubIntegerFactory(),
+                                                                                new IntegerAdjuster(2),
+                                                                                new ConstantEvaluator(),
+                                                                                new RouletteWheelSelection(),
+                                                                                FrameworkTestUtils.getRNG());
+        CountingTracer tracer = new CountingTracer();
+        Tracing.install(tracer);
+        islandEvolution.evolve(0, 5, 0, 5, 1, new GenerationCount(2));
+        assert tracer.epochs.get() == 2 : "Wrong number of epochs: " + tracer.epochs.get();
+        assert tracer.migrations.get() == 2 : "Wrong number of migrations: " + tracer.migrations.get();
+        // Each epoch is 5 generations, including the initial population, on each island.
+        assert tracer.generationsStarted.get() == 2 * 5 * islandCount
+            : "Wrong number of generations started: " + tracer.generationsStarted.get();
+        assert tracer.generationsFinished.get() == tracer.generationsStarted.get()
+            : "Generation start and end events do not match.";
+    }
+
+
+    /**
+     * Each multi-threaded evaluation task must be reported.
+     */
+    @Test
+    public void testEvaluationEvents() {
+        GenerationalEvolutionEngine<Integer> engine
+            = new GenerationalEvolutionEngine<Integer>(new StubIntegerFactory(),
+                                                       new IntegerAdjuster(1),
+                                                       new ConstantEvaluator(),
+                                                       new RouletteWheelSelection(),
+                                                       FrameworkTestUtils.getRNG());
+        CountingTracer tracer = new CountingTracer();
+        Tracing.install(tracer);
+        engine.evolvePopulation(0, 10, 0, new GenerationCount(3));
+        assert tracer.generationsStarted.get() == 3 : "Wrong number of generations: " + tracer.generationsStarted.get();
+        assert tracer.evaluations.get() == 30 : "Wrong number of evaluations: " + tracer.evaluations.get();
+    }
+
+
+    /**
+     * Nothing is reported once the tracer has been removed.
+     */
+    @Test
+    public void testDisabled() {
+        IslandEvolution<Integer> islandEvolution = new IslandEvolution<Integer>(2,
+                                                                                new RingMigration(),
+                                                                                new StubIntegerFactory(),
+                                                                                new IntegerAdjuster(2),
+                                                                                new ConstantEvaluator(),
+                                                                                new RouletteWheelSelection(),
+                                                                                FrameworkTestUtils.getRNG());
+        CountingTracer tracer = new CountingTracer();
+        Tracing.install(tracer);
+        Tracing.install(null);
+        assert Tracing.current() == null : "Tracer not removed.";
+        islandEvolution.evolve(0, 5, 0, 2, 1, new GenerationCount(2));
+        assert tracer.generationsStarted.get() == 0 : "Events reported while tracing was disabled.";
+        assert tracer.evaluations.get() == 0 : "Events reported while tracing was disabled.";
+    }
+
+
+    private static final class CountingTracer implements EvolutionTracer {
+        private final AtomicInteger generationsStarted = new AtomicInteger(0);
+        private final AtomicInteger generationsFinished = new AtomicInteger(0);
+        private final AtomicInteger evaluations = new AtomicInteger(0);
+        private final AtomicInteger epochs = new AtomicInteger(0);
+        private final AtomicInteger migrations = new AtomicInteger(0);
+
+        public void generationStarted(long populationId, int generationIndex, int populationSize) {
+            generationsStarted.incrementAndGet();
+        }
+
+        public void generationFinished(long populationId, int generationIndex, int populationSize, long durationNanos) {
+            assert durationNanos >= 0 : "Negative duration.";
+            generationsFinished.incrementAndGet();
+        }
+
+        public void evaluationFinished(int candidateCount, long durationNanos) {
+            evaluations.addAndGet(candidateCount);
+        }
+
+        public void expressionFinished(long populationId, long durationNanos) {
+            // Not used by these tests.
+        }
+
+        public void epochFinished(long populationId, int epochIndex, int islandCount, long durationNanos) {
+            epochs.incrementAndGet();
+        }
+
+        public void migrationFinished(long populationId, int epochIndex, int migrantCount, long durationNanos) {
+            migrations.incrementAndGet();
+        }
+    }
+
+
+    private static final class ConstantEvaluator implements FitnessEvaluator<Integer> {
+        public double getFitness(Integer candidate, List<? extends Integer> population) {
+            return 1;
+        }
+
+        public boolean isNatural() {
+            return true;
+        }
+    }
+}
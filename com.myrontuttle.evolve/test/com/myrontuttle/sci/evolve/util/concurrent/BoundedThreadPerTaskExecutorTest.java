@@ -0,0 +1,136 @@
+package com.myrontuttle.sci.evolve.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link BoundedThreadPerTaskExecutor} class.
+ * @author Myron Tuttle
+ */
+public class BoundedThreadPerTaskExecutorTest {
+
+    @Test
+    public void testConcurrencyLimit() throws InterruptedException, ExecutionException {
+        BoundedThreadPerTaskExecutor executor
+            = new BoundedThreadPerTaskExecutor(ConfigurableThreadFactory.virtualThreadFactory("Test"), 3);
+        final AtomicInteger active = new AtomicInteger(0);
+        final AtomicInteger maxActive = new AtomicInteger(0);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < 20; i++) {
+            final int value = i;
+            results.add(executor.submit(new Callable<Integer>() {
+                public Integer call() throws InterruptedException {
+                    int now = active.incrementAndGet();
+                    int max = maxActive.get();
+                    while (now > max && !maxActive.compareAndSet(max, now)) {
+                        max = maxActive.get();
+                    }
+                    Thread.sleep(5);
+                    active.decrementAndGet();
+                    return value;
+                }
+            }));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assert results.get(i).get() == i : "Wrong result for task " + i;
+        }
+        assert maxActive.get() <= 3 : "Too many concurrent tasks: " + maxActive.get();
+        executor.shutdown();
+        assert executor.awaitTermination(1, TimeUnit.SECONDS) : "Executor did not terminate.";
+        assert executor.isTerminated() : "Executor should be terminated.";
+    }
+
+
+    @Test(expectedExceptions = RejectedExecutionException.class)
+    public void testRejectAfterShutdown() {
+        BoundedThreadPerTaskExecutor executor
+            = new BoundedThreadPerTaskExecutor(ConfigurableThreadFactory.virtualThreadFactory("Test"), 1);
+        executor.shutdown();
+        executor.execute(new Runnable() {
+            public void run() {
+                // Do nothing.
+            }
+        });
+    }
+
+
+    /**
+     * A submitter interrupted while waiting for a permit should see the interrupt when it
+     * waits for the result, rather than an unchecked exception from the submission.
+     */
+    @Test
+    public void testInterruptedSubmitter() throws ExecutionException {
+        BoundedThreadPerTaskExecutor executor
+            = new BoundedThreadPerTaskExecutor(ConfigurableThreadFactory.virtualThreadFactory("Test"), 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.submit(new Callable<Object>() {
+            public Object call() throws InterruptedException {
+                release.await();
+                return null;
+            }
+        });
+        Thread.currentThread().interrupt();
+        Future<Object> pending = executor.submit(new Callable<Object>() {
+            public Object call() {
+                return null;
+            }
+        });
+        assert Thread.currentThread().isInterrupted() : "Interrupt status should be kept.";
+        try {
+            pending.get();
+            assert false : "Wait for the task should have been interrupted.";
+        } catch (InterruptedException ex) {
+            // Expected.
+        }
+        assert pending.cancel(true) : "Task that was not run should be cancellable.";
+        release.countDown();
+        executor.shutdown();
+    }
+
+
+    /**
+     * A permit must not be lost when the thread factory fails.
+     */
+    @Test
+    public void testThreadFactoryFailure() throws InterruptedException, ExecutionException {
+        final AtomicInteger attempts = new AtomicInteger(0);
+        final ThreadFactory delegate = ConfigurableThreadFactory.virtualThreadFactory("Test");
+        BoundedThreadPerTaskExecutor executor = new BoundedThreadPerTaskExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new IllegalStateException("No thread.");
+                }
+                return delegate.newThread(runnable);
+            }
+        }, 1);
+        Callable<Integer> task = new Callable<Integer>() {
+            public Integer call() {
+                return 1;
+            }
+        };
+        try {
+            executor.submit(task);
+            assert false : "Factory failure should be reported.";
+        } catch (IllegalStateException ex) {
+            // Expected.
+        }
+        assert executor.submit(task).get() == 1 : "Permit was not released after the failure.";
+        executor.shutdown();
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidLimit() {
+        new BoundedThreadPerTaskExecutor(ConfigurableThreadFactory.virtualThreadFactory("Test"), 0);
+    }
+}
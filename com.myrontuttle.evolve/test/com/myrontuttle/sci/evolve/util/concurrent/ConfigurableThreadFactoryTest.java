@@ -74,6 +74,36 @@ public class ConfigurableThreadFactoryTest
     }
 
 
+    /**
+     * A virtual thread factory creates virtual threads where the runtime supports them,
+     * and daemon threads otherwise.
+     */
+    @Test
+    public void testVirtualThreads() throws Exception
+    {
+        ConfigurableThreadFactory threadFactory = ConfigurableThreadFactory.virtualThreadFactory("Test");
+        assert threadFactory.isVirtual() == ConfigurableThreadFactory.isVirtualThreadSupported()
+            : "Factory should only create virtual threads when they are supported.";
+        final AtomicInteger runCount = new AtomicInteger(0);
+        Thread thread = threadFactory.newThread(new Runnable()
+        {
+            public void run()
+            {
+                runCount.incrementAndGet();
+            }
+        });
+        assert thread.getName().startsWith("Test") : "Wrong thread name: " + thread.getName();
+        assert thread.isDaemon() : "Thread should be a daemon.";
+        if (threadFactory.isVirtual())
+        {
+            assert (Boolean) Thread.class.getMethod("isVirtual").invoke(thread) : "Thread should be virtual.";
+        }
+        thread.start();
+        thread.join();
+        assert runCount.get() == 1 : "Task was not run.";
+    }
+
+
     @Test
     public void testDefaultExceptionHandler() throws InterruptedException
     {
@@ -0,0 +1,32 @@
+package com.myrontuttle.sci.evolve.api;
+
+import java.util.List;
+
+/**
+ * <p>A {@link FitnessEvaluator} that can score several candidates in one call.  Evolution
+ * engines that recognise this interface divide the candidates to be evaluated into
+ * batches, so that each worker thread receives one task per batch rather than one per
+ * candidate.  This reduces the scheduling overhead for very cheap fitness functions and
+ * lets an evaluator perform expensive set-up (such as loading a window of data) once per
+ * batch.</p>
+ * <p>Batches may be evaluated concurrently and therefore any access to mutable shared
+ * state should be properly synchronised.  The single-candidate
+ * {@link #getFitness(Object, List)} method must give the same score as a batch
+ * containing just that candidate.</p>
+ * @param <T> The type of evolvable entity that can be evaluated.
+ * @author Myron Tuttle
+ */
+public interface BatchFitnessEvaluator<T> extends FitnessEvaluator<T> {
+    /**
+     * Calculates fitness scores for a batch of candidates.  The same rules apply to each
+     * score as to {@link #getFitness(Object, List)}.
+     * @param candidates The candidates to calculate fitness for.  This is a slice of the
+     * population, although the candidates need not be adjacent in it.
+     * @param population The entire population.  This will include all of the specified
+     * candidates.
+     * @return The fitness scores of the candidates, in the same order as the candidates.
+     * The array must have exactly one element per candidate.
+     */
+    double[] getFitnessScores(List<? extends T> candidates,
+                              List<? extends T> population);
+}
@@ -0,0 +1,25 @@
+package com.myrontuttle.sci.evolve.api;
+
+/**
+ * <p>A {@link SelectionStrategy} that declares how much of the population actually
+ * needs to be in fitness order for it to work.  Evolution engines may use this to
+ * rank only the fittest part of a large population rather than sorting all of it.</p>
+ * <p>A selection strategy that does not implement this interface is assumed to need
+ * the whole population sorted, as described by {@link SelectionStrategy#select}.</p>
+ * @param <T> The type of evolved entity that we are selecting.
+ * @author Myron Tuttle
+ */
+public interface RankedSelectionStrategy<T> extends SelectionStrategy<T> {
+    /**
+     * <p>Specifies how many of the fittest candidates must be at the start of the
+     * population, in descending order of fitness, when the population is passed to
+     * {@link #select}.  The remaining candidates will all be less fit than those in
+     * the ranked prefix but may be in any order.</p>
+     * @param populationSize The number of candidates in the population.
+     * @param selectionSize The number of individual selections that will be made.
+     * @return The number of leading candidates that must be ranked.  Zero means that
+     * the strategy does not depend on the order of the population at all, and a value
+     * equal to the population size means that the whole population must be sorted.
+     */
+    int getRankedCount(int populationSize, int selectionSize);
+}